@@ -0,0 +1,14 @@
+package com.musicplayer.browse;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/** An album of one artist; the same title under two artists is two albums. {@code artist} is null for untagged tracks. */
+@Getter
+@AllArgsConstructor
+public class AlbumSummary {
+    private final String name;
+    private final String artist;
+    private final int tracks;
+    private final long durationMs;
+}
@@ -0,0 +1,14 @@
+package com.musicplayer.browse;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/** An artist as first spelled by its tracks, with totals over every track credited to it. */
+@Getter
+@AllArgsConstructor
+public class ArtistSummary {
+    private final String name;
+    private final int tracks;
+    private final int albums;
+    private final long durationMs;
+}
@@ -0,0 +1,13 @@
+package com.musicplayer.browse;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+@Getter
+@AllArgsConstructor
+public class BrowsePage<T> {
+    private final List<T> items;
+    private final String nextCursor;
+}
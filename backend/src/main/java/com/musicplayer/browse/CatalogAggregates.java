@@ -0,0 +1,301 @@
+package com.musicplayer.browse;
+
+import com.musicplayer.event.CatalogChangedEvent;
+import com.musicplayer.model.Track;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * Per-artist and per-album track counts and durations for the browse
+ * views, kept in memory so a browse page never groups the tracks table.
+ *
+ * The totals are read once in the background at startup. After that each
+ * track's contribution is remembered, so a create, edit or delete moves
+ * exactly that track between groups. Track writes in TrackService are
+ * applied directly; ingest and bulk import changes arrive as
+ * {@link CatalogChangedEvent}s and are re-read from the database.
+ * Artists and albums are grouped case-insensitively and keep the spelling
+ * of the first track seen.
+ */
+@Component
+@RequiredArgsConstructor
+public class CatalogAggregates {
+    private static final String PAGE_SQL =
+            "SELECT id, artist, album, duration_ms FROM tracks WHERE id > ? ORDER BY id LIMIT ?";
+    private static final int PAGE_SIZE = 50_000;
+    private static final int MAX_LIMIT = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // replaced whole by a build; guarded by this
+    private State state = new State();
+    private volatile boolean ready;
+    private final AtomicBoolean building = new AtomicBoolean();
+    private final Set<Long> changedDuringBuild = new HashSet<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        rebuild();
+    }
+
+    /** Artists by name; empty until the first build is done. */
+    public synchronized BrowsePage<ArtistSummary> artists(int limit, String after) {
+        return page(state.artists, limit, after, this::artistSummary);
+    }
+
+    public synchronized BrowsePage<AlbumSummary> albums(int limit, String after) {
+        return page(state.albums, limit, after, this::albumSummary);
+    }
+
+    /** The albums of one artist, or {@code null} if no track is credited to it. */
+    public synchronized BrowsePage<AlbumSummary> albumsOf(String artist, int limit, String after) {
+        String key = key(artist);
+        Group group = key != null ? state.artists.get(key) : null;
+        if (group == null) {
+            return null;
+        }
+        return page(group.albums, limit, after, this::albumSummary);
+    }
+
+    public void upsert(Track track) {
+        remember(List.of(track.getId()));
+        synchronized (this) {
+            state.put(track.getId(), track.getArtist(), track.getAlbum(), track.getDurationMs());
+        }
+    }
+
+    public void remove(Long trackId) {
+        remember(List.of(trackId));
+        synchronized (this) {
+            state.remove(trackId);
+        }
+    }
+
+    @EventListener
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        remember(event.getTrackIds());
+        refresh(event.getTrackIds());
+    }
+
+    public synchronized Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("ready", ready);
+        stats.put("building", building.get());
+        stats.put("tracks", state.members.size());
+        stats.put("artists", state.artists.size());
+        stats.put("albums", state.albums.size());
+        return stats;
+    }
+
+    /** Returns {@code false} if a rebuild is already running. */
+    public boolean rebuild() {
+        if (!building.compareAndSet(false, true)) {
+            return false;
+        }
+        Thread builder = new Thread(() -> {
+            try {
+                long started = System.currentTimeMillis();
+                State built = new State();
+                long lastId = 0;
+                while (true) {
+                    List<Long> ids = new ArrayList<>();
+                    jdbcTemplate.query(PAGE_SQL, rs -> {
+                        long id = rs.getLong("id");
+                        built.put(id, rs.getString("artist"), rs.getString("album"), duration(rs));
+                        ids.add(id);
+                    }, lastId, PAGE_SIZE);
+                    if (ids.size() < PAGE_SIZE) {
+                        break;
+                    }
+                    lastId = ids.get(ids.size() - 1);
+                }
+
+                // writes applied to the old state are lost with it; re-read them
+                List<Long> changed;
+                synchronized (this) {
+                    state = built;
+                    building.set(false);
+                    changed = new ArrayList<>(changedDuringBuild);
+                    changedDuringBuild.clear();
+                }
+                refresh(changed);
+                ready = true;
+                System.out.println("Browse aggregates built in " + (System.currentTimeMillis() - started)
+                        + " ms: " + stats());
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    building.set(false);
+                    changedDuringBuild.clear();
+                }
+                System.err.println("Browse aggregates build failed: " + e.getMessage());
+            }
+        }, "browse-aggregates-build");
+        builder.setDaemon(true);
+        builder.start();
+        return true;
+    }
+
+    private synchronized void remember(List<Long> trackIds) {
+        if (building.get()) {
+            changedDuringBuild.addAll(trackIds);
+        }
+    }
+
+    /** Re-reads the given tracks; ids no longer in the table are dropped. */
+    private void refresh(List<Long> ids) {
+        for (int from = 0; from < ids.size(); from += 1000) {
+            List<Long> chunk = ids.subList(from, Math.min(ids.size(), from + 1000));
+            String placeholders = String.join(",", Collections.nCopies(chunk.size(), "?"));
+            Set<Long> missing = new HashSet<>(chunk);
+            List<Object[]> found = jdbcTemplate.query(
+                    "SELECT id, artist, album, duration_ms FROM tracks WHERE id IN (" + placeholders + ")",
+                    (rs, i) -> new Object[]{rs.getLong("id"), rs.getString("artist"), rs.getString("album"),
+                            duration(rs)},
+                    chunk.toArray());
+
+            synchronized (this) {
+                for (Object[] row : found) {
+                    missing.remove((Long) row[0]);
+                    state.put((Long) row[0], (String) row[1], (String) row[2], (Long) row[3]);
+                }
+                for (Long id : missing) {
+                    state.remove(id);
+                }
+            }
+        }
+    }
+
+    private static Long duration(ResultSet rs) throws SQLException {
+        long duration = rs.getLong("duration_ms");
+        return rs.wasNull() ? null : duration;
+    }
+
+    private <T> BrowsePage<T> page(NavigableMap<String, Group> groups, int limit, String after,
+                                   Function<Group, T> summary) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_LIMIT));
+        Map<String, Group> from = after != null ? groups.tailMap(decode(after), false) : groups;
+        List<T> items = new ArrayList<>(Math.min(pageSize, groups.size()));
+        String last = null;
+        for (Map.Entry<String, Group> entry : from.entrySet()) {
+            if (items.size() == pageSize) {
+                return new BrowsePage<>(items, encode(last));
+            }
+            items.add(summary.apply(entry.getValue()));
+            last = entry.getKey();
+        }
+        return new BrowsePage<>(items, null);
+    }
+
+    private ArtistSummary artistSummary(Group group) {
+        return new ArtistSummary(group.name, group.tracks, group.albums.size(), group.durationMs);
+    }
+
+    private AlbumSummary albumSummary(Group group) {
+        return new AlbumSummary(group.name, group.artist, group.tracks, group.durationMs);
+    }
+
+    private static String encode(String key) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decode(String cursor) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+
+    /** Grouping key: trimmed and lower-cased; {@code null} for a missing or blank name. */
+    private static String key(String name) {
+        if (name == null || name.isBlank()) {
+            return null;
+        }
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static final class Group {
+        private final String name;
+        private final String artist;
+        // an artist's albums by key; unused for albums
+        private final NavigableMap<String, Group> albums = new TreeMap<>();
+        private int tracks;
+        private long durationMs;
+
+        private Group(String name, String artist) {
+            this.name = name;
+            this.artist = artist;
+        }
+    }
+
+    /** What one track added to its groups, so it can be taken back out. */
+    private record Member(Group artist, Group album, long durationMs) {
+    }
+
+    private static final class State {
+        private final NavigableMap<String, Group> artists = new TreeMap<>();
+        // album key, then artist key, so the listing is by album title
+        private final NavigableMap<String, Group> albums = new TreeMap<>();
+        private final Map<Long, Member> members = new HashMap<>();
+
+        private void put(long trackId, String artist, String album, Long durationMs) {
+            remove(trackId);
+            String artistKey = key(artist);
+            String albumKey = key(album);
+            long duration = durationMs != null ? durationMs : 0;
+
+            Group artistGroup = null;
+            if (artistKey != null) {
+                artistGroup = artists.computeIfAbsent(artistKey, k -> new Group(artist.trim(), null));
+                artistGroup.tracks++;
+                artistGroup.durationMs += duration;
+            }
+            Group albumGroup = null;
+            if (albumKey != null) {
+                String artistName = artistGroup != null ? artistGroup.name : null;
+                albumGroup = albums.computeIfAbsent(albumKey + '\0' + (artistKey != null ? artistKey : ""),
+                        k -> new Group(album.trim(), artistName));
+                albumGroup.tracks++;
+                albumGroup.durationMs += duration;
+                if (artistGroup != null) {
+                    artistGroup.albums.putIfAbsent(albumKey, albumGroup);
+                }
+            }
+            if (artistGroup != null || albumGroup != null) {
+                members.put(trackId, new Member(artistGroup, albumGroup, duration));
+            }
+        }
+
+        private void remove(long trackId) {
+            Member member = members.remove(trackId);
+            if (member == null) {
+                return;
+            }
+            Group album = member.album();
+            Group artist = member.artist();
+            // a group's key is the key of the spelling it kept
+            if (album != null && --album.tracks == 0) {
+                albums.remove(key(album.name) + '\0' + (album.artist != null ? key(album.artist) : ""));
+                if (artist != null) {
+                    artist.albums.remove(key(album.name));
+                }
+            } else if (album != null) {
+                album.durationMs -= member.durationMs();
+            }
+            if (artist != null && --artist.tracks == 0) {
+                artists.remove(key(artist.name));
+            } else if (artist != null) {
+                artist.durationMs -= member.durationMs();
+            }
+        }
+    }
+}
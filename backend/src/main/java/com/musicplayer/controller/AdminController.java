@@ -0,0 +1,163 @@
+package com.musicplayer.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.musicplayer.browse.CatalogAggregates;
+import com.musicplayer.search.CatalogIndexer;
+import com.musicplayer.search.TrackSuggester;
+import com.musicplayer.service.CatalogTransferService;
+import com.musicplayer.service.IngestService;
+import com.musicplayer.service.LibraryImportService;
+import com.musicplayer.service.ShardMigrationService;
+import com.musicplayer.service.TieringService;
+import com.musicplayer.service.StorageMigrationService;
+import com.musicplayer.streaming.MediaCache;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import java.io.InputStream;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/admin")
+@CrossOrigin(origins = "*")
+@RequiredArgsConstructor
+public class AdminController {
+    private final MediaCache mediaCache;
+    private final StorageMigrationService storageMigrationService;
+    private final ShardMigrationService shardMigrationService;
+    private final TieringService tieringService;
+    private final CatalogIndexer catalogIndexer;
+    private final TrackSuggester trackSuggester;
+    private final CatalogAggregates catalogAggregates;
+    private final IngestService ingestService;
+    private final LibraryImportService libraryImportService;
+    private final CatalogTransferService catalogTransferService;
+
+    @GetMapping("/cache")
+    public ResponseEntity<Map<String, Object>> getCacheStats() {
+        return ResponseEntity.ok(mediaCache.stats());
+    }
+
+    @PostMapping("/storage/migrate")
+    public ResponseEntity<?> migrateStorage() {
+        try {
+            return ResponseEntity.ok(storageMigrationService.migrateToContentAddressing());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError()
+                    .body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @PostMapping("/storage/shard")
+    public ResponseEntity<?> shardStorage() {
+        if (!shardMigrationService.start()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", "Shard migration is already running"));
+        }
+        return ResponseEntity.accepted().body(Map.of("message", "Shard migration started"));
+    }
+
+    @GetMapping("/storage/shard")
+    public ResponseEntity<Map<String, Object>> getShardStats() {
+        return ResponseEntity.ok(shardMigrationService.stats());
+    }
+
+    @GetMapping("/storage/tiers")
+    public ResponseEntity<Map<String, Object>> getTierStats() {
+        return ResponseEntity.ok(tieringService.stats());
+    }
+
+    @PostMapping("/storage/tiers/rebalance")
+    public ResponseEntity<?> rebalanceTiers() {
+        if (!tieringService.rebalance()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", "Tiering is off or a rebalance is already running"));
+        }
+        return ResponseEntity.ok(tieringService.stats());
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<Map<String, Object>> getSearchIndexStats() {
+        return ResponseEntity.ok(catalogIndexer.stats());
+    }
+
+    @GetMapping("/suggest")
+    public ResponseEntity<Map<String, Object>> getSuggestIndexStats() {
+        return ResponseEntity.ok(trackSuggester.stats());
+    }
+
+    @PostMapping("/suggest/rebuild")
+    public ResponseEntity<?> rebuildSuggestIndex() {
+        if (!trackSuggester.rebuild()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", "A rebuild is already running"));
+        }
+        return ResponseEntity.accepted().body(Map.of("message", "Suggestion index rebuild started"));
+    }
+
+    @GetMapping("/browse")
+    public ResponseEntity<Map<String, Object>> getBrowseStats() {
+        return ResponseEntity.ok(catalogAggregates.stats());
+    }
+
+    @GetMapping("/ingest")
+    public ResponseEntity<Map<String, Object>> getIngestStats() {
+        return ResponseEntity.ok(ingestService.stats());
+    }
+
+    @PostMapping("/ingest/backfill")
+    public ResponseEntity<?> backfillIngest() {
+        if (!ingestService.startBackfill()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", "Backfill is already running"));
+        }
+        return ResponseEntity.accepted().body(Map.of("message", "Backfill started"));
+    }
+
+    @PostMapping("/import")
+    public ResponseEntity<?> startImport(@RequestParam String path,
+                                         @RequestParam(defaultValue = "true") boolean resume) {
+        try {
+            return ResponseEntity.accepted().body(libraryImportService.start(path, resume));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError()
+                    .body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/import")
+    public ResponseEntity<Map<String, Object>> getImportProgress() {
+        return ResponseEntity.ok(libraryImportService.progress());
+    }
+
+    /**
+     * Loads rows in the format of {@code GET /api/tracks/export}; the media
+     * files must already be in the store. Safe to repeat: rows already in
+     * the catalog are skipped. A failure part-way answers with the counts
+     * committed before it.
+     */
+    @PostMapping("/catalog/import")
+    public ResponseEntity<?> importCatalog(InputStream body) {
+        try {
+            return ResponseEntity.ok(catalogTransferService.importTracks(body));
+        } catch (CatalogTransferService.ImportFailedException e) {
+            Throwable cause = e.getCause();
+            boolean badInput = cause instanceof IllegalArgumentException || cause instanceof JsonProcessingException;
+            return ResponseEntity.status(badInput ? HttpStatus.BAD_REQUEST : HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(e.getProgress());
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError()
+                    .body(Map.of("error", e.getMessage()));
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.musicplayer.controller;
+
+import com.musicplayer.browse.AlbumSummary;
+import com.musicplayer.browse.ArtistSummary;
+import com.musicplayer.browse.BrowsePage;
+import com.musicplayer.browse.CatalogAggregates;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Artist and album browse views with track counts and total durations,
+ * served from {@link CatalogAggregates}. Pages are ordered by name; when
+ * more follow, the cursor of the next page is returned in
+ * {@code X-Next-Cursor}.
+ */
+@RestController
+@RequestMapping("/api")
+@CrossOrigin(origins = "*")
+@RequiredArgsConstructor
+public class BrowseController {
+    private final CatalogAggregates catalogAggregates;
+
+    @GetMapping("/artists")
+    public ResponseEntity<?> getArtists(
+            @RequestParam(defaultValue = "200") int limit,
+            @RequestParam(required = false) String after) {
+        try {
+            return pageResponse(catalogAggregates.artists(limit, after));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /** {@code artist} narrows the list to one artist, for names such as "AC/DC" that cannot be a path segment. */
+    @GetMapping("/albums")
+    public ResponseEntity<?> getAlbums(
+            @RequestParam(required = false) String artist,
+            @RequestParam(defaultValue = "200") int limit,
+            @RequestParam(required = false) String after) {
+        if (artist != null) {
+            return getArtistAlbums(artist, limit, after);
+        }
+        try {
+            return pageResponse(catalogAggregates.albums(limit, after));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/artists/{name}/albums")
+    public ResponseEntity<?> getArtistAlbums(
+            @PathVariable String name,
+            @RequestParam(defaultValue = "200") int limit,
+            @RequestParam(required = false) String after) {
+        try {
+            BrowsePage<AlbumSummary> page = catalogAggregates.albumsOf(name, limit, after);
+            if (page == null) {
+                return ResponseEntity.notFound().build();
+            }
+            return pageResponse(page);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    private <T> ResponseEntity<List<T>> pageResponse(BrowsePage<T> page) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header("X-Next-Cursor", page.getNextCursor());
+        }
+        return response.body(page.getItems());
+    }
+}
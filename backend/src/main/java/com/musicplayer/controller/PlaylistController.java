@@ -1,12 +1,18 @@
 package com.musicplayer.controller;
 
+import com.musicplayer.dto.PlaylistChanges;
 import com.musicplayer.dto.PlaylistDto;
+import com.musicplayer.dto.PlaylistItemOp;
+import com.musicplayer.dto.PlaylistSummary;
 import com.musicplayer.model.Playlist;
 import com.musicplayer.service.PlaylistService;
+import com.musicplayer.service.TrackService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import java.util.*;
 
 @RestController
@@ -15,15 +21,57 @@ import java.util.*;
 @RequiredArgsConstructor
 public class PlaylistController {
     private final PlaylistService playlistService;
+    private final TrackService trackService;
 
     @GetMapping("/user/{userId}")
     public ResponseEntity<List<PlaylistDto>> getUserPlaylists(@PathVariable Long userId) {
         return ResponseEntity.ok(playlistService.getUserPlaylists(userId));
     }
 
+    /** Id, name, track count, total duration and version of each playlist, without the tracks. */
+    @GetMapping("/user/{userId}/summary")
+    public ResponseEntity<List<PlaylistSummary>> getUserPlaylistSummaries(@PathVariable Long userId,
+                                                                          WebRequest webRequest) {
+        // durations come from the tracks, so catalog changes invalidate too
+        String etag = "\"playlists-" + userId + "-" + playlistService.getPlaylistsVersion()
+                + "-" + trackService.getCatalogVersion() + "\"";
+        long lastModified = Math.max(playlistService.getPlaylistsLastModified(),
+                trackService.getCatalogLastModified());
+        if (webRequest.checkNotModified(etag, lastModified)) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .body(playlistService.getUserPlaylistSummaries(userId));
+    }
+
     @GetMapping("/{id}")
-    public ResponseEntity<PlaylistDto> getPlaylist(@PathVariable Long id) {
-        return ResponseEntity.ok(playlistService.getPlaylistById(id));
+    public ResponseEntity<PlaylistDto> getPlaylist(@PathVariable Long id, WebRequest webRequest) {
+        // Playlist bodies embed track metadata, so both counters feed the validator
+        String etag = "\"playlist-" + id + "-" + playlistService.getPlaylistsVersion()
+                + "-" + trackService.getCatalogVersion() + "\"";
+        long lastModified = Math.max(playlistService.getPlaylistsLastModified(),
+                trackService.getCatalogLastModified());
+        if (webRequest.checkNotModified(etag, lastModified)) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .body(playlistService.getPlaylistById(id));
+    }
+
+    /**
+     * What changed after version {@code since}: the edits in order, or the
+     * whole playlist ({@code "snapshot": true}) when there is no {@code since}
+     * or the log no longer reaches back to it.
+     */
+    @GetMapping("/{id}/changes")
+    public ResponseEntity<PlaylistChanges> getChanges(
+            @PathVariable Long id,
+            @RequestParam(required = false) Long since) {
+        // read first: a track edit landing in between makes the client refetch, never miss it
+        long catalogVersion = trackService.getCatalogVersion();
+        return ResponseEntity.ok(playlistService.getChanges(id, since).withCatalogVersion(catalogVersion));
     }
 
     @PostMapping
@@ -68,11 +116,72 @@ public class PlaylistController {
         return ResponseEntity.ok(playlist);
     }
 
+    /**
+     * Replaces the whole order. With {@code baseVersion} it is refused with
+     * 409 if anyone else has edited the playlist since; the caller then reads
+     * /changes and sends its moves instead.
+     */
     @PutMapping("/{id}/tracks/order")
     public ResponseEntity<?> reorderTracks(
             @PathVariable Long id,
+            @RequestParam(required = false) Long baseVersion,
             @RequestBody List<Long> trackIds) {
-        playlistService.updateTrackOrder(id, trackIds);
-        return ResponseEntity.ok(Map.of("message", "Playlist order updated"));
+        try {
+            playlistService.updateTrackOrder(id, trackIds, baseVersion);
+            return ResponseEntity.ok(Map.of("message", "Playlist order updated"));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Moves one track, writing only its row. {@code after} is the track it
+     * should follow, {@code 0} for the front; {@code index} is its new place.
+     */
+    @PutMapping("/{id}/items/{trackId}/position")
+    public ResponseEntity<?> moveTrack(
+            @PathVariable Long id,
+            @PathVariable Long trackId,
+            @RequestParam(required = false) Long after,
+            @RequestParam(required = false) Integer index) {
+        if ((after == null) == (index == null)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Give exactly one of after or index"));
+        }
+        try {
+            if (after != null) {
+                playlistService.moveTrackAfter(id, trackId, after == 0 ? null : after);
+            } else {
+                playlistService.moveTrackTo(id, trackId, index);
+            }
+            return ResponseEntity.ok(Map.of("message", "Track moved"));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Adds, removes and moves ({@code [{"op": "ADD", "trackId": 7}, ...]}) in
+     * one transaction. Always 200 with one result per operation, in order,
+     * and the version they produced; a duplicate add or a missing track is a
+     * result, not an error. Edits from several clients merge: each one lands
+     * relative to the tracks as they are when it arrives.
+     */
+    @PostMapping("/{id}/items/batch")
+    public ResponseEntity<?> applyItemOps(
+            @PathVariable Long id,
+            @RequestBody List<PlaylistItemOp> ops) {
+        try {
+            return ResponseEntity.ok(playlistService.applyItemOps(id, ops));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    // every endpoint here that names a playlist, including the ones that lock it for an edit
+    @ExceptionHandler(NoSuchElementException.class)
+    public ResponseEntity<?> playlistNotFound(NoSuchElementException e) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                .body(Map.of("error", e.getMessage()));
     }
-}
\ No newline at end of file
+}
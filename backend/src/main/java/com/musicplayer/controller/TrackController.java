@@ -1,16 +1,31 @@
 package com.musicplayer.controller;
 
 import com.musicplayer.dto.TrackDto;
+import com.musicplayer.dto.TrackPage;
+import com.musicplayer.media.Mp3Segmenter;
+import com.musicplayer.media.SeekTable;
 import com.musicplayer.model.Track;
+import com.musicplayer.search.Suggestion;
 import com.musicplayer.service.*;
+import com.musicplayer.streaming.MediaResource;
+import com.musicplayer.streaming.MediaStreamer;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
 import org.springframework.http.*;
+import org.springframework.util.DigestUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.Principal;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
 @RestController
@@ -20,15 +35,99 @@ import java.util.Map;
 public class TrackController {
     private final TrackService trackService;
     private final StorageService storageService;
+    private final MediaStreamer mediaStreamer;
+    private final SeekIndexService seekIndexService;
+    private final HlsService hlsService;
+    private final TieringService tieringService;
+    private final CatalogTransferService catalogTransferService;
 
+    private static final MediaType AUDIO_MPEG = MediaType.parseMediaType("audio/mpeg");
+    private static final MediaType HLS_PLAYLIST = MediaType.parseMediaType("application/vnd.apple.mpegurl");
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    /**
+     * The catalog one page at a time: {@code sort=id} oldest first, or
+     * {@code sort=createdAt} newest first. The cursor of the next page is
+     * returned in {@code X-Next-Cursor} and the size of the whole catalog in
+     * {@code X-Total-Count}.
+     */
     @GetMapping
-    public ResponseEntity<List<TrackDto>> getAllTracks() {
-        return ResponseEntity.ok(trackService.getAllTracks());
+    public ResponseEntity<?> getTracks(
+            @RequestParam(defaultValue = "id") String sort,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String after,
+            WebRequest webRequest) {
+        if (webRequest.checkNotModified("\"catalog-" + trackService.getCatalogVersion() + "\"",
+                trackService.getCatalogLastModified())) {
+            return null;
+        }
+        try {
+            TrackService.Order order = TrackService.Order.valueOf(
+                    sort.replaceAll("([a-z])([A-Z])", "$1_$2").toUpperCase(Locale.ROOT));
+            return pageResponse(trackService.listTracks(order, limit, after));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", e.getMessage()));
+        }
     }
 
+    /**
+     * Ranked search, one page at a time. When more matches exist the cursor
+     * of the next page is returned in {@code X-Next-Cursor}; pass it back as
+     * {@code after}. {@code X-Search-Mode} names the mode that answered, so
+     * a fuzzy query run as natural (no in-memory index) is visible. A cursor
+     * that can no longer be continued answers 410; search again without it.
+     */
     @GetMapping("/search")
-    public ResponseEntity<List<TrackDto>> searchTracks(@RequestParam String query) {
-        return ResponseEntity.ok(trackService.searchTracks(query));
+    public ResponseEntity<?> searchTracks(
+            @RequestParam String query,
+            @RequestParam(defaultValue = "natural") String mode,
+            @RequestParam(defaultValue = "100") int limit,
+            @RequestParam(required = false) String after) {
+        try {
+            if (query.isBlank()) {
+                return pageResponse(trackService.listTracks(TrackService.Order.ID, limit, after));
+            }
+            TrackPage page = trackService.searchTracks(query,
+                    TrackSearchService.Mode.valueOf(mode.toUpperCase(Locale.ROOT)), limit, after);
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                    .header("X-Search-Mode", page.getSearchMode());
+            if (page.getNextCursor() != null) {
+                response.header("X-Next-Cursor", page.getNextCursor());
+            }
+            return response.body(page.getTracks());
+        } catch (TrackSearchService.StaleCursorException e) {
+            return ResponseEntity.status(HttpStatus.GONE)
+                    .body(Map.of("error", e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * The whole catalog for sync and offline clients, streamed from a
+     * database cursor: {@code format=ndjson} writes one track per line,
+     * {@code format=json} a single array.
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportTracks(@RequestParam(defaultValue = "ndjson") String format) {
+        if (!format.equalsIgnoreCase("ndjson") && !format.equalsIgnoreCase("json")) {
+            return ResponseEntity.badRequest().build();
+        }
+        boolean ndjson = format.equalsIgnoreCase("ndjson");
+        return ResponseEntity.ok()
+                .contentType(ndjson ? NDJSON : MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"catalog." + (ndjson ? "ndjson" : "json") + "\"")
+                .body(out -> catalogTransferService.export(out, ndjson));
+    }
+
+    /** Best completions of a prefix across titles, artists and albums. */
+    @GetMapping("/suggest")
+    public ResponseEntity<List<Suggestion>> suggest(
+            @RequestParam String prefix,
+            @RequestParam(defaultValue = "10") int k) {
+        return ResponseEntity.ok(trackService.suggest(prefix, k));
     }
 
     @GetMapping("/{id}")
@@ -37,31 +136,163 @@ public class TrackController {
     }
 
     @GetMapping("/{id}/stream")
-    public ResponseEntity<Resource> streamTrack(@PathVariable Long id) {
+    public ResponseEntity<StreamingResponseBody> streamTrack(
+            @PathVariable Long id,
+            @RequestParam(name = "t", required = false) Double startSeconds,
+            HttpServletRequest request,
+            HttpServletResponse response) {
         try {
             Track track = trackService.getTrackById(id);
             Path file = storageService.load(track.getStoragePath());
-            Resource resource = new UrlResource(file.toUri());
 
-            if (!resource.exists() || !resource.isReadable()) {
+            if (!Files.isRegularFile(file) || !Files.isReadable(file)) {
+                return ResponseEntity.notFound().build();
+            }
+
+            // ?t= starts the entity at the first frame of that moment; files without a table play from the start
+            long offset = 0;
+            SeekTable seekTable = startSeconds != null && startSeconds > 0
+                    ? seekIndexService.find(track.getStoragePath()) : null;
+            if (seekTable != null) {
+                offset = seekTable.offsetFor(startSeconds);
+                response.setHeader("X-Seek-Time", String.valueOf(seekTable.timeFor(startSeconds)));
+            }
+            boolean playbackStart = seekTable == null && isPlaybackStart(request);
+
+            MediaResource media = MediaResource.builder()
+                    .file(file)
+                    .cacheKey(track.getStoragePath())
+                    .contentType(AUDIO_MPEG)
+                    .filename(track.getTitle() + ".mp3")
+                    .etag(mediaETag(track, file, offset))
+                    .lastModified(toEpochMilli(track.getCreatedAt()))
+                    .offset(offset)
+                    .build();
+            ResponseEntity<StreamingResponseBody> result = mediaStreamer.stream(request, response, media,
+                    clientKey(request));
+            // only a body that was admitted counts; 304, 416, 503 and HEAD have none
+            if (result != null && result.getBody() != null) {
+                if (playbackStart) {
+                    trackService.recordPlay(id);
+                }
+                if (playbackStart || seekTable != null) {
+                    tieringService.recordAccess(track.getStoragePath());
+                }
+            }
+            return result;
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * Segmented delivery: {@code hls/index.m3u8} and the {@code seg-NNNNN.mp3}
+     * files it lists, resolved relative to the playlist URL.
+     */
+    @GetMapping("/{id}/hls/{name}")
+    public ResponseEntity<StreamingResponseBody> streamSegment(
+            @PathVariable Long id,
+            @PathVariable String name,
+            HttpServletRequest request,
+            HttpServletResponse response) {
+        boolean playlist = Mp3Segmenter.PLAYLIST.equals(name);
+        if (!hlsService.isEnabled() || (!playlist && !Mp3Segmenter.isSegmentName(name))) {
+            return ResponseEntity.notFound().build();
+        }
+
+        try {
+            Track track = trackService.getTrackById(id);
+            if (!Files.isRegularFile(storageService.load(track.getStoragePath()))) {
+                return ResponseEntity.notFound().build();
+            }
+            Path file = hlsService.find(track.getStoragePath(), name);
+            if (file == null || !Files.isRegularFile(file)) {
                 return ResponseEntity.notFound().build();
             }
 
-            return ResponseEntity.ok()
-                    .contentType(MediaType.parseMediaType("audio/mpeg"))
-                    .header(HttpHeaders.CONTENT_DISPOSITION,
-                            "inline; filename=\"" + track.getTitle() + ".mp3\"")
-                    .body(resource);
+            MediaResource media = MediaResource.builder()
+                    .file(file)
+                    .contentType(playlist ? HLS_PLAYLIST : AUDIO_MPEG)
+                    .filename(name)
+                    .etag("\"" + Long.toHexString(Files.size(file)) + "-"
+                            + DigestUtils.md5DigestAsHex(track.getStoragePath().getBytes(StandardCharsets.UTF_8))
+                            + "-" + name + "\"")
+                    .lastModified(toEpochMilli(track.getCreatedAt()))
+                    .build();
+            ResponseEntity<StreamingResponseBody> result = mediaStreamer.stream(request, response, media,
+                    clientKey(request));
+            if (playlist && result != null && result.getBody() != null && isPlaybackStart(request)) {
+                trackService.recordPlay(id);
+                tieringService.recordAccess(track.getStoragePath());
+            }
+            return result;
         } catch (Exception e) {
             return ResponseEntity.internalServerError().build();
         }
     }
 
+    /**
+     * Resolves a playback time to the byte offset of the frame that starts
+     * it, so range-capable clients can request the exact bytes themselves.
+     */
+    @GetMapping("/{id}/seek")
+    public ResponseEntity<?> seek(@PathVariable Long id, @RequestParam("t") double seconds) {
+        try {
+            Track track = trackService.getTrackById(id);
+            SeekTable seekTable = seekIndexService.find(track.getStoragePath());
+            if (seekTable == null) {
+                return ResponseEntity.unprocessableEntity()
+                        .body(Map.of("error", "Track has no seek index"));
+            }
+            return ResponseEntity.ok(Map.of(
+                    "time", seekTable.timeFor(seconds),
+                    "offset", seekTable.offsetFor(seconds),
+                    "durationMs", seekTable.getDurationMs()));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    private ResponseEntity<List<TrackDto>> pageResponse(TrackPage page) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .header("X-Total-Count", String.valueOf(trackService.countTracks()));
+        if (page.getNextCursor() != null) {
+            response.header("X-Next-Cursor", page.getNextCursor());
+        }
+        return response.body(page.getTracks());
+    }
+
+    /** Authenticated principal when there is one, else the remote address; never anything the client sends. */
+    private String clientKey(HttpServletRequest request) {
+        Principal principal = request.getUserPrincipal();
+        return principal != null ? "user:" + principal.getName() : "addr:" + request.getRemoteAddr();
+    }
+
+    private boolean isPlaybackStart(HttpServletRequest request) {
+        String range = request.getHeader(HttpHeaders.RANGE);
+        return "GET".equals(request.getMethod())
+                && request.getHeader(HttpHeaders.IF_NONE_MATCH) == null
+                && (range == null || range.startsWith("bytes=0-"));
+    }
+
+    private String mediaETag(Track track, Path file, long offset) {
+        long size = track.getSizeBytes() != null ? track.getSizeBytes() : file.toFile().length();
+        return "\"" + Long.toHexString(size) + "-"
+                + DigestUtils.md5DigestAsHex(track.getStoragePath().getBytes(StandardCharsets.UTF_8))
+                + (offset > 0 ? "@" + Long.toHexString(offset) : "") + "\"";
+    }
+
+    private long toEpochMilli(LocalDateTime time) {
+        return time != null ? time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : -1;
+    }
+
     @PostMapping
     public ResponseEntity<?> createTrack(
-            @RequestParam String title,
-            @RequestParam String artist,
-            @RequestParam String album,
+            @RequestParam(required = false) String title,
+            @RequestParam(required = false) String artist,
+            @RequestParam(required = false) String album,
             @RequestParam MultipartFile file) {
         try {
             Track track = trackService.createTrack(title, artist, album, file);
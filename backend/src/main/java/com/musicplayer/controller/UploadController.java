@@ -0,0 +1,101 @@
+package com.musicplayer.controller;
+
+import com.musicplayer.model.Track;
+import com.musicplayer.service.UploadService;
+import com.musicplayer.service.UploadSession;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.dao.DataAccessException;
+import org.springframework.web.bind.annotation.*;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Resumable uploads: create a session, PUT chunks (raw bytes, any order,
+ * in parallel) each with a required {@code X-Chunk-Sha256} header, check
+ * which chunks arrived, then complete to create the track.
+ */
+@RestController
+@RequestMapping("/api/uploads")
+@CrossOrigin(origins = "*")
+@RequiredArgsConstructor
+public class UploadController {
+    private final UploadService uploadService;
+
+    @PostMapping
+    public ResponseEntity<?> createUpload(
+            @RequestParam String filename,
+            @RequestParam long size,
+            @RequestParam(required = false) Integer chunkSize,
+            @RequestParam(required = false) String title,
+            @RequestParam(required = false) String artist,
+            @RequestParam(required = false) String album) {
+        try {
+            UploadSession session = uploadService.create(filename, size, chunkSize, title, artist, album);
+            return ResponseEntity.status(HttpStatus.CREATED).body(uploadService.describe(session));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/{uploadId}")
+    public ResponseEntity<?> getUpload(@PathVariable String uploadId) {
+        try {
+            return ResponseEntity.ok(uploadService.describe(uploadService.get(uploadId)));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @PutMapping(value = "/{uploadId}/chunks/{index}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<?> putChunk(
+            @PathVariable String uploadId,
+            @PathVariable int index,
+            @RequestHeader(value = "X-Chunk-Sha256", required = false) String sha256,
+            HttpServletRequest request) {
+        try {
+            uploadService.writeChunk(uploadId, index, sha256, request.getInputStream());
+            return ResponseEntity.noContent().build();
+        } catch (UploadService.ChecksumMismatchException e) {
+            return ResponseEntity.unprocessableEntity()
+                    .body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @PostMapping("/{uploadId}/complete")
+    public ResponseEntity<?> completeUpload(@PathVariable String uploadId) {
+        try {
+            Track track = uploadService.complete(uploadId);
+            return ResponseEntity.ok(track);
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", e.getMessage()));
+        } catch (IOException | DataAccessException e) {
+            // the session is kept; the client can call complete again
+            return ResponseEntity.internalServerError()
+                    .body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @DeleteMapping("/{uploadId}")
+    public ResponseEntity<?> abortUpload(@PathVariable String uploadId) {
+        try {
+            uploadService.abort(uploadId);
+            return ResponseEntity.ok(Map.of("message", "Upload aborted"));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", e.getMessage()));
+        }
+    }
+}
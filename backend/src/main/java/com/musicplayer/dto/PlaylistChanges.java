@@ -0,0 +1,29 @@
+package com.musicplayer.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.With;
+import java.util.List;
+
+/**
+ * What a client holding {@code since} needs to reach {@code version}. Either
+ * the edits in order, with the tracks they add, or, when {@code snapshot}
+ * is set, the whole track list and no edits. ADD appends; MOVE puts the
+ * track right after {@code after}, or first when that is null. {@code name}
+ * is the name at {@code version}; renames are not among the edits.
+ * {@code catalogVersion} is the catalog version the track rows were read
+ * at; edits to tracks are not among the edits either, so a client whose
+ * copy was read at another catalog version should take the whole list.
+ */
+@Getter
+@AllArgsConstructor
+public class PlaylistChanges {
+    private final Long id;
+    private final String name;
+    private final Long version;
+    private final boolean snapshot;
+    private final List<PlaylistItemOp> changes;
+    private final List<TrackDto> tracks;
+    @With
+    private final Long catalogVersion;
+}
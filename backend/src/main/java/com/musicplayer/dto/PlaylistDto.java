@@ -12,5 +12,6 @@ public class PlaylistDto {
     private String name;
     private Long userOwnerId;
     private Boolean isPublic;
+    private Long version;
     private List<TrackDto> tracks;
 }
\ No newline at end of file
@@ -0,0 +1,20 @@
+package com.musicplayer.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One entry of a batch playlist edit, and of a change log read back.
+ * {@code after} is only read by MOVE; null or 0 means the front.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PlaylistItemOp {
+    public enum Type { ADD, REMOVE, MOVE }
+
+    private Type op;
+    private Long trackId;
+    private Long after;
+}
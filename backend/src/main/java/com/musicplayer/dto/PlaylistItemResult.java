@@ -0,0 +1,16 @@
+package com.musicplayer.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/** What one operation of a batch did, in request order; {@code message} explains INVALID. */
+@Getter
+@AllArgsConstructor
+public class PlaylistItemResult {
+    public enum Status { ADDED, DUPLICATE, NOT_FOUND, REMOVED, NOT_IN_PLAYLIST, MOVED, INVALID }
+
+    private final PlaylistItemOp.Type op;
+    private final Long trackId;
+    private final Status status;
+    private final String message;
+}
@@ -0,0 +1,13 @@
+package com.musicplayer.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import java.util.List;
+
+/** Reply to a batch edit: one result per operation and the playlist version after it. */
+@Getter
+@AllArgsConstructor
+public class PlaylistItemResults {
+    private final Long version;
+    private final List<PlaylistItemResult> results;
+}
@@ -0,0 +1,20 @@
+package com.musicplayer.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * A playlist without its tracks, for lists of playlists. {@code version}
+ * changes whenever the name, the tracks or their order change, so a
+ * client can tell which cached playlists are stale without loading them.
+ */
+@Getter
+@AllArgsConstructor
+public class PlaylistSummary {
+    private final Long id;
+    private final String name;
+    private final Boolean isPublic;
+    private final Long version;
+    private final Long trackCount;
+    private final Long durationMs;
+}
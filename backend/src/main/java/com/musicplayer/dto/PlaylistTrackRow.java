@@ -0,0 +1,17 @@
+package com.musicplayer.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/** One playlist entry joined with the track columns a playlist shows; built by a JPQL constructor expression. */
+@Getter
+@AllArgsConstructor
+public class PlaylistTrackRow {
+    private final Long playlistId;
+    private final Long trackId;
+    private final String title;
+    private final String artist;
+    private final String album;
+    private final Long durationMs;
+    private final Long sizeBytes;
+}
@@ -1,5 +1,6 @@
 package com.musicplayer.dto;
 
+import com.musicplayer.model.TrackStatus;
 import lombok.*;
 
 @Data
@@ -13,4 +14,7 @@ public class TrackDto {
     private String album;
     private Long durationMs;
     private Long sizeBytes;
+    private Integer bitrate;
+    private Integer sampleRate;
+    private TrackStatus status;
 }
\ No newline at end of file
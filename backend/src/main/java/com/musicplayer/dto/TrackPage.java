@@ -0,0 +1,16 @@
+package com.musicplayer.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TrackPage {
+    private List<TrackDto> tracks;
+    private String nextCursor;
+    // search only: the mode that answered
+    private String searchMode;
+}
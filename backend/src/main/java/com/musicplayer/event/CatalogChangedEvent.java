@@ -0,0 +1,15 @@
+package com.musicplayer.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import java.util.List;
+
+/**
+ * Published when track rows change outside {@code TrackService}, so
+ * catalog validators and derived views can refresh.
+ */
+@Getter
+@AllArgsConstructor
+public class CatalogChangedEvent {
+    private final List<Long> trackIds;
+}
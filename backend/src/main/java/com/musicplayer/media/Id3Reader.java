@@ -0,0 +1,181 @@
+package com.musicplayer.media;
+
+import org.springframework.stereotype.Component;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Reads title, artist and album from ID3v2.2/2.3/2.4 and ID3v1 tags.
+ * ID3v2 values win; ID3v1 fills whatever the v2 tag lacks. Only the text
+ * frames are decoded, and pictures and other large frames are skipped.
+ */
+@Component
+public class Id3Reader {
+    // cover art lives in the tag too; text frames come first in practice
+    private static final int MAX_TAG_BYTES = 8 * 1024 * 1024;
+
+    public Id3Tags read(Path file) throws IOException {
+        Id3Tags v2 = readV2(file);
+        Id3Tags v1 = readV1(file);
+        return v2.orElse(v1);
+    }
+
+    private Id3Tags readV2(Path file) throws IOException {
+        byte[] tag;
+        int major;
+        int flags;
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] header = in.readNBytes(10);
+            if (header.length < 10 || header[0] != 'I' || header[1] != 'D' || header[2] != '3') {
+                return Id3Tags.EMPTY;
+            }
+            major = header[3];
+            flags = header[5] & 0xFF;
+            int size = syncsafe(header, 6);
+            tag = in.readNBytes(Math.min(size, MAX_TAG_BYTES));
+        }
+        if (major < 2 || major > 4) {
+            return Id3Tags.EMPTY;
+        }
+        if ((flags & 0x80) != 0 && major < 4) {
+            tag = resync(tag, 0, tag.length);
+        }
+
+        int p = 0;
+        if ((flags & 0x40) != 0 && major >= 3) {
+            // extended header: v2.3 size excludes its own 4 bytes, v2.4 includes them
+            p = major == 4 ? syncsafe(tag, 0) : 4 + readInt(tag, 0);
+        }
+
+        String title = null;
+        String artist = null;
+        String album = null;
+        int idLength = major == 2 ? 3 : 4;
+        int headerLength = major == 2 ? 6 : 10;
+
+        while (p + headerLength <= tag.length && tag[p] != 0) {
+            String id = new String(tag, p, idLength, StandardCharsets.ISO_8859_1);
+            int size = major == 2 ? ((tag[p + 3] & 0xFF) << 16) | ((tag[p + 4] & 0xFF) << 8) | (tag[p + 5] & 0xFF)
+                    : major == 4 ? syncsafe(tag, p + 4) : readInt(tag, p + 4);
+            int formatFlags = major == 2 ? 0 : tag[p + 9] & 0xFF;
+            int start = p + headerLength;
+            if (size <= 0 || start + size > tag.length) {
+                break;
+            }
+
+            String key = switch (id) {
+                case "TIT2", "TT2" -> "title";
+                case "TPE1", "TP1" -> "artist";
+                case "TALB", "TAL" -> "album";
+                default -> null;
+            };
+            if (key != null && !isCompressedOrEncrypted(major, formatFlags)) {
+                byte[] body = frameBody(tag, start, size, major, formatFlags);
+                String value = decodeText(body);
+                if (value != null) {
+                    switch (key) {
+                        case "title" -> title = value;
+                        case "artist" -> artist = value;
+                        default -> album = value;
+                    }
+                }
+            }
+            p = start + size;
+        }
+        return new Id3Tags(title, artist, album);
+    }
+
+    private Id3Tags readV1(Path file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "r")) {
+            if (raf.length() < 128) {
+                return Id3Tags.EMPTY;
+            }
+            byte[] tag = new byte[128];
+            raf.seek(raf.length() - 128);
+            raf.readFully(tag);
+            if (tag[0] != 'T' || tag[1] != 'A' || tag[2] != 'G') {
+                return Id3Tags.EMPTY;
+            }
+            return new Id3Tags(latin1(tag, 3, 30), latin1(tag, 33, 30), latin1(tag, 63, 30));
+        }
+    }
+
+    private boolean isCompressedOrEncrypted(int major, int formatFlags) {
+        if (major == 3) {
+            return (formatFlags & 0xC0) != 0;
+        }
+        return major == 4 && (formatFlags & 0x0C) != 0;
+    }
+
+    private byte[] frameBody(byte[] tag, int start, int size, int major, int formatFlags) {
+        if (major != 4) {
+            return Arrays.copyOfRange(tag, start, start + size);
+        }
+        int from = start;
+        if ((formatFlags & 0x01) != 0) {
+            from += 4; // data length indicator
+        }
+        return (formatFlags & 0x02) != 0
+                ? resync(tag, from, start + size)
+                : Arrays.copyOfRange(tag, from, start + size);
+    }
+
+    private String decodeText(byte[] body) {
+        if (body.length < 2) {
+            return null;
+        }
+        Charset charset = switch (body[0]) {
+            case 1 -> StandardCharsets.UTF_16;
+            case 2 -> StandardCharsets.UTF_16BE;
+            case 3 -> StandardCharsets.UTF_8;
+            default -> StandardCharsets.ISO_8859_1;
+        };
+        String value = new String(body, 1, body.length - 1, charset);
+        // v2.4 separates multiple values with NUL; keep the first
+        int nul = value.indexOf('\0');
+        if (nul >= 0) {
+            value = value.substring(0, nul);
+        }
+        value = value.trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private String latin1(byte[] tag, int offset, int length) {
+        String value = new String(tag, offset, length, StandardCharsets.ISO_8859_1);
+        int nul = value.indexOf('\0');
+        if (nul >= 0) {
+            value = value.substring(0, nul);
+        }
+        value = value.trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    /** Undoes unsynchronisation: every 0xFF 0x00 pair becomes 0xFF. */
+    private byte[] resync(byte[] data, int from, int to) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(to - from);
+        for (int i = from; i < to; i++) {
+            out.write(data[i]);
+            if ((data[i] & 0xFF) == 0xFF && i + 1 < to && data[i + 1] == 0) {
+                i++;
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private int syncsafe(byte[] data, int offset) {
+        return ((data[offset] & 0x7F) << 21) | ((data[offset + 1] & 0x7F) << 14)
+                | ((data[offset + 2] & 0x7F) << 7) | (data[offset + 3] & 0x7F);
+    }
+
+    private int readInt(byte[] data, int offset) {
+        return ((data[offset] & 0xFF) << 24) | ((data[offset + 1] & 0xFF) << 16)
+                | ((data[offset + 2] & 0xFF) << 8) | (data[offset + 3] & 0xFF);
+    }
+}
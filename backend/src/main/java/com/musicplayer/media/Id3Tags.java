@@ -0,0 +1,21 @@
+package com.musicplayer.media;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class Id3Tags {
+    public static final Id3Tags EMPTY = new Id3Tags(null, null, null);
+
+    private final String title;
+    private final String artist;
+    private final String album;
+
+    Id3Tags orElse(Id3Tags fallback) {
+        return new Id3Tags(
+                title != null ? title : fallback.title,
+                artist != null ? artist : fallback.artist,
+                album != null ? album : fallback.album);
+    }
+}
@@ -0,0 +1,100 @@
+package com.musicplayer.media;
+
+import lombok.Getter;
+
+/**
+ * Decoded 32-bit MPEG audio frame header (MPEG 1, 2 and 2.5, layers I-III).
+ */
+@Getter
+public class Mp3FrameHeader {
+    public static final int MPEG_2_5 = 0;
+    public static final int MPEG_2 = 2;
+    public static final int MPEG_1 = 3;
+
+    private static final int[][] BITRATES_KBPS = {
+            // MPEG 1: layer I, II, III
+            {0, 32, 64, 96, 128, 160, 192, 224, 256, 288, 320, 352, 384, 416, 448},
+            {0, 32, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, 384},
+            {0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320},
+            // MPEG 2 / 2.5: layer I, layers II and III
+            {0, 32, 48, 56, 64, 80, 96, 112, 128, 144, 160, 176, 192, 224, 256},
+            {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160}
+    };
+
+    private static final int[][] SAMPLE_RATES = {
+            {11025, 12000, 8000},   // MPEG 2.5
+            {0, 0, 0},              // reserved
+            {22050, 24000, 16000},  // MPEG 2
+            {44100, 48000, 32000}   // MPEG 1
+    };
+
+    private final int version;
+    private final int layer;
+    private final int bitrateKbps;
+    private final int sampleRate;
+    private final boolean padding;
+    private final boolean mono;
+    private final int frameLength;
+    private final int samplesPerFrame;
+
+    private Mp3FrameHeader(int version, int layer, int bitrateKbps, int sampleRate,
+                           boolean padding, boolean mono) {
+        this.version = version;
+        this.layer = layer;
+        this.bitrateKbps = bitrateKbps;
+        this.sampleRate = sampleRate;
+        this.padding = padding;
+        this.mono = mono;
+
+        int pad = padding ? 1 : 0;
+        if (layer == 1) {
+            this.samplesPerFrame = 384;
+            this.frameLength = (12 * bitrateKbps * 1000 / sampleRate + pad) * 4;
+        } else if (layer == 3 && version != MPEG_1) {
+            this.samplesPerFrame = 576;
+            this.frameLength = 72 * bitrateKbps * 1000 / sampleRate + pad;
+        } else {
+            this.samplesPerFrame = 1152;
+            this.frameLength = 144 * bitrateKbps * 1000 / sampleRate + pad;
+        }
+    }
+
+    /**
+     * Returns {@code null} unless the four bytes form a usable header. Free
+     * format and reserved values are rejected; they are far more likely to be
+     * a false sync inside tag or audio data than a real frame.
+     */
+    public static Mp3FrameHeader parse(int header) {
+        if ((header >>> 21) != 0x7FF) {
+            return null;
+        }
+
+        int version = (header >>> 19) & 0x3;
+        int layerBits = (header >>> 17) & 0x3;
+        int bitrateIndex = (header >>> 12) & 0xF;
+        int sampleRateIndex = (header >>> 10) & 0x3;
+        if (version == 1 || layerBits == 0 || bitrateIndex == 0 || bitrateIndex == 15 || sampleRateIndex == 3) {
+            return null;
+        }
+
+        int layer = 4 - layerBits;
+        int table = version == MPEG_1 ? layer - 1 : (layer == 1 ? 3 : 4);
+        boolean padding = ((header >>> 9) & 0x1) == 1;
+        boolean mono = ((header >>> 6) & 0x3) == 3;
+
+        return new Mp3FrameHeader(version, layer, BITRATES_KBPS[table][bitrateIndex],
+                SAMPLE_RATES[version][sampleRateIndex], padding, mono);
+    }
+
+    /** Frames of one stream keep version, layer and sample rate. */
+    public boolean isCompatibleWith(Mp3FrameHeader other) {
+        return other != null && version == other.version && layer == other.layer
+                && sampleRate == other.sampleRate;
+    }
+
+    /** Offset of a Xing/Info tag inside the first frame. */
+    public int xingOffset() {
+        int sideInfo = version == MPEG_1 ? (mono ? 17 : 32) : (mono ? 9 : 17);
+        return 4 + sideInfo;
+    }
+}
@@ -0,0 +1,184 @@
+package com.musicplayer.media;
+
+import org.springframework.stereotype.Component;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Walks the frame headers of an MPEG audio file and builds its
+ * {@link SeekTable}. Every frame is visited, so the table is exact for CBR
+ * and VBR files alike; Xing/Info and VBRI tag frames are recognised and kept
+ * out of the audio timeline. Only headers are decoded, and frame bodies are
+ * skipped in the buffered stream.
+ */
+@Component
+public class Mp3FrameScanner {
+    public static final int DEFAULT_INTERVAL_MS = 100;
+
+    private static final int MAX_FRAME_LENGTH = 2881;
+    // real MPEG streams sync right after their tags; anything else (WAV, FLAC, ...) is rejected early
+    private static final int MAX_SYNC_SEARCH = 256 * 1024;
+
+    /**
+     * Returns {@code null} if no MPEG audio stream was found in the file.
+     */
+    public SeekTable scan(Path file) throws IOException {
+        return scan(file, DEFAULT_INTERVAL_MS);
+    }
+
+    public SeekTable scan(Path file, int intervalMs) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file), 64 * 1024)) {
+            return scan(in, intervalMs);
+        }
+    }
+
+    private SeekTable scan(InputStream in, int intervalMs) throws IOException {
+        long position = skipId3v2(in);
+        long syncLimit = position + MAX_SYNC_SEARCH;
+
+        Mp3FrameHeader first = null;
+        long audioStart = -1;
+        long audioEnd = -1;
+        long samples = 0;
+        long audioBytes = 0;
+        int bitrate = -1;
+        boolean vbr = false;
+
+        long[] offsets = new long[1024];
+        int count = 0;
+
+        byte[] frame = new byte[MAX_FRAME_LENGTH + 4];
+        while (true) {
+            in.mark(frame.length + 4);
+            long header = readHeader(in);
+            if (header < 0 || (first == null && position > syncLimit)) {
+                break;
+            }
+
+            Mp3FrameHeader fh = Mp3FrameHeader.parse((int) header);
+            if (fh == null || (first != null && !fh.isCompatibleWith(first))) {
+                in.reset();
+                in.skip(1);
+                position++;
+                continue;
+            }
+
+            if (first == null) {
+                // a lone sync word is common inside tags and junk; require a second frame right behind it
+                int body = fh.getFrameLength() - 4;
+                long next = in.readNBytes(frame, 4, body) == body ? readHeader(in) : -1;
+                if (next < 0 || !fh.isCompatibleWith(Mp3FrameHeader.parse((int) next))) {
+                    in.reset();
+                    in.skip(1);
+                    position++;
+                    continue;
+                }
+                in.reset();
+                in.skip(4);
+                in.readNBytes(frame, 4, body);
+
+                first = fh;
+                if (isVbrTagFrame(frame, fh)) {
+                    vbr = true;
+                    position += fh.getFrameLength();
+                    continue;
+                }
+            } else {
+                int body = fh.getFrameLength() - 4;
+                if (skip(in, body) < body) {
+                    break; // truncated final frame
+                }
+            }
+
+            if (audioStart < 0) {
+                audioStart = position;
+            }
+            if (bitrate >= 0 && bitrate != fh.getBitrateKbps()) {
+                vbr = true;
+            }
+            bitrate = fh.getBitrateKbps();
+
+            long frameStartMs = samples * 1000 / fh.getSampleRate();
+            while ((long) count * intervalMs <= frameStartMs) {
+                if (count == offsets.length) {
+                    offsets = Arrays.copyOf(offsets, count * 2);
+                }
+                offsets[count++] = position;
+            }
+
+            samples += fh.getSamplesPerFrame();
+            audioBytes += fh.getFrameLength();
+            position += fh.getFrameLength();
+            audioEnd = position;
+        }
+
+        if (first == null || audioStart < 0) {
+            return null;
+        }
+
+        long durationMs = samples * 1000 / first.getSampleRate();
+        int averageKbps = durationMs > 0 ? (int) (audioBytes * 8 / durationMs) : first.getBitrateKbps();
+        return new SeekTable(intervalMs, durationMs, first.getSampleRate(), averageKbps,
+                vbr, audioStart, audioEnd, Arrays.copyOf(offsets, count));
+    }
+
+    private boolean isVbrTagFrame(byte[] frame, Mp3FrameHeader header) {
+        int xing = header.xingOffset();
+        return matches(frame, xing, "Xing") || matches(frame, xing, "Info") || matches(frame, 36, "VBRI");
+    }
+
+    private boolean matches(byte[] frame, int offset, String tag) {
+        for (int i = 0; i < tag.length(); i++) {
+            if (frame[offset + i] != tag.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Skips a leading ID3v2 tag and returns the number of bytes consumed. */
+    private long skipId3v2(InputStream in) throws IOException {
+        in.mark(10);
+        byte[] tag = in.readNBytes(10);
+        if (tag.length < 10 || tag[0] != 'I' || tag[1] != 'D' || tag[2] != '3') {
+            in.reset();
+            return 0;
+        }
+        long size = ((tag[6] & 0x7F) << 21) | ((tag[7] & 0x7F) << 14) | ((tag[8] & 0x7F) << 7) | (tag[9] & 0x7F);
+        if ((tag[5] & 0x10) != 0) {
+            size += 10; // footer
+        }
+        return 10 + skip(in, size);
+    }
+
+    /** Returns the next four bytes as an unsigned value, or -1 at end of stream. */
+    private long readHeader(InputStream in) throws IOException {
+        int b0 = in.read();
+        int b1 = in.read();
+        int b2 = in.read();
+        int b3 = in.read();
+        if ((b0 | b1 | b2 | b3) < 0) {
+            return -1;
+        }
+        return ((long) b0 << 24) | (b1 << 16) | (b2 << 8) | b3;
+    }
+
+    private long skip(InputStream in, long count) throws IOException {
+        long skipped = 0;
+        while (skipped < count) {
+            long n = in.skip(count - skipped);
+            if (n <= 0) {
+                if (in.read() < 0) {
+                    break;
+                }
+                n = 1;
+            }
+            skipped += n;
+        }
+        return skipped;
+    }
+}
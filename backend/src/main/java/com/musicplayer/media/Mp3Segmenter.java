@@ -0,0 +1,122 @@
+package com.musicplayer.media;
+
+import org.springframework.stereotype.Component;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+/**
+ * Cuts an MPEG audio file into fixed-duration segments at frame boundaries
+ * taken from its {@link SeekTable} and writes an HLS media playlist for them
+ * (packed audio, RFC 8216 section 3.4). Each segment starts with the ID3
+ * PRIV timestamp that packed audio segments are required to carry.
+ */
+@Component
+public class Mp3Segmenter {
+    public static final String PLAYLIST = "index.m3u8";
+
+    private static final String TIMESTAMP_OWNER = "com.apple.streaming.transportStreamTimestamp";
+
+    /**
+     * Writes the segments and playlist into {@code targetDir}, which must
+     * be empty or absent. Returns the number of segments.
+     */
+    public int split(Path source, SeekTable table, int segmentSeconds, Path targetDir) throws IOException {
+        Files.createDirectories(targetDir);
+
+        long segmentMs = segmentSeconds * 1000L;
+        int count = (int) Math.max(1, (table.getDurationMs() + segmentMs - 1) / segmentMs);
+
+        StringBuilder playlist = new StringBuilder()
+                .append("#EXTM3U\n")
+                .append("#EXT-X-VERSION:3\n")
+                .append("#EXT-X-TARGETDURATION:").append(segmentSeconds + 1).append('\n')
+                .append("#EXT-X-MEDIA-SEQUENCE:0\n")
+                .append("#EXT-X-PLAYLIST-TYPE:VOD\n");
+
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+            for (int i = 0; i < count; i++) {
+                double startSeconds = (double) i * segmentSeconds;
+                long start = table.offsetFor(startSeconds);
+                long end = i + 1 < count ? table.offsetFor(startSeconds + segmentSeconds) : table.getAudioEnd();
+                double startTime = table.timeFor(startSeconds);
+                double endTime = i + 1 < count
+                        ? table.timeFor(startSeconds + segmentSeconds) : table.getDurationMs() / 1000.0;
+
+                String name = segmentName(i);
+                try (OutputStream out = Files.newOutputStream(targetDir.resolve(name))) {
+                    out.write(timestampTag(startTime));
+                    out.flush();
+                    WritableByteChannel target = Channels.newChannel(out);
+                    for (long position = start; position < end; ) {
+                        long written = in.transferTo(position, end - position, target);
+                        if (written <= 0) {
+                            throw new IOException("Unexpected end of " + source);
+                        }
+                        position += written;
+                    }
+                }
+
+                playlist.append(String.format(Locale.ROOT, "#EXTINF:%.3f,\n", endTime - startTime))
+                        .append(name).append('\n');
+            }
+        }
+        playlist.append("#EXT-X-ENDLIST\n");
+
+        Files.writeString(targetDir.resolve(PLAYLIST), playlist, StandardCharsets.US_ASCII);
+        return count;
+    }
+
+    public static String segmentName(int index) {
+        return String.format("seg-%05d.mp3", index);
+    }
+
+    public static boolean isSegmentName(String name) {
+        return name.matches("seg-\\d{5}\\.mp3");
+    }
+
+    /** ID3v2.4 tag with a single PRIV frame holding the 33-bit 90 kHz start timestamp. */
+    private byte[] timestampTag(double startSeconds) {
+        byte[] owner = TIMESTAMP_OWNER.getBytes(StandardCharsets.ISO_8859_1);
+        int frameSize = owner.length + 1 + 8;
+        int tagSize = 10 + frameSize;
+        long pts = Math.round(startSeconds * 90000) & 0x1FFFFFFFFL;
+
+        byte[] tag = new byte[10 + tagSize];
+        int p = 0;
+        tag[p++] = 'I';
+        tag[p++] = 'D';
+        tag[p++] = '3';
+        tag[p++] = 4;
+        tag[p++] = 0;
+        tag[p++] = 0;
+        p = writeSyncsafe(tag, p, tagSize);
+        tag[p++] = 'P';
+        tag[p++] = 'R';
+        tag[p++] = 'I';
+        tag[p++] = 'V';
+        p = writeSyncsafe(tag, p, frameSize);
+        p += 2; // frame flags
+        System.arraycopy(owner, 0, tag, p, owner.length);
+        p += owner.length + 1;
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            tag[p++] = (byte) (pts >>> shift);
+        }
+        return tag;
+    }
+
+    private int writeSyncsafe(byte[] target, int p, int value) {
+        target[p++] = (byte) ((value >>> 21) & 0x7F);
+        target[p++] = (byte) ((value >>> 14) & 0x7F);
+        target[p++] = (byte) ((value >>> 7) & 0x7F);
+        target[p++] = (byte) (value & 0x7F);
+        return p;
+    }
+}
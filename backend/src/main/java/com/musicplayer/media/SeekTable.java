@@ -0,0 +1,114 @@
+package com.musicplayer.media;
+
+import lombok.Getter;
+import java.io.*;
+
+/**
+ * Maps playback time to the byte offset of the first MPEG frame starting at
+ * or after it, in fixed steps of {@code intervalMs}. Offsets are stored as
+ * varint deltas, so a five minute track takes a few kilobytes on disk.
+ */
+@Getter
+public class SeekTable {
+    private static final int MAGIC = 0x4D50534B; // "MPSK"
+    private static final int FORMAT_VERSION = 1;
+
+    private final int intervalMs;
+    private final long durationMs;
+    private final int sampleRate;
+    private final int bitrateKbps;
+    private final boolean vbr;
+    private final long audioStart;
+    private final long audioEnd;
+    private final long[] offsets;
+
+    public SeekTable(int intervalMs, long durationMs, int sampleRate, int bitrateKbps,
+                     boolean vbr, long audioStart, long audioEnd, long[] offsets) {
+        this.intervalMs = intervalMs;
+        this.durationMs = durationMs;
+        this.sampleRate = sampleRate;
+        this.bitrateKbps = bitrateKbps;
+        this.vbr = vbr;
+        this.audioStart = audioStart;
+        this.audioEnd = audioEnd;
+        this.offsets = offsets;
+    }
+
+    private int indexFor(double seconds) {
+        if (offsets.length == 0 || seconds <= 0) {
+            return 0;
+        }
+        long index = (long) (seconds * 1000 / intervalMs);
+        return (int) Math.min(index, offsets.length - 1);
+    }
+
+    public long offsetFor(double seconds) {
+        return offsets.length == 0 ? audioStart : offsets[indexFor(seconds)];
+    }
+
+    /** Start time of the frame returned by {@link #offsetFor(double)}, to within one frame. */
+    public double timeFor(double seconds) {
+        return indexFor(seconds) * intervalMs / 1000.0;
+    }
+
+    public void writeTo(OutputStream target) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(target));
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(intervalMs);
+        out.writeLong(durationMs);
+        out.writeInt(sampleRate);
+        out.writeInt(bitrateKbps);
+        out.writeBoolean(vbr);
+        out.writeLong(audioStart);
+        out.writeLong(audioEnd);
+        out.writeInt(offsets.length);
+        long previous = 0;
+        for (long offset : offsets) {
+            writeVarLong(out, offset - previous);
+            previous = offset;
+        }
+        out.flush();
+    }
+
+    public static SeekTable readFrom(InputStream source) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(source));
+        if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+            throw new IOException("Not a seek table");
+        }
+        int intervalMs = in.readInt();
+        long durationMs = in.readLong();
+        int sampleRate = in.readInt();
+        int bitrateKbps = in.readInt();
+        boolean vbr = in.readBoolean();
+        long audioStart = in.readLong();
+        long audioEnd = in.readLong();
+        long[] offsets = new long[in.readInt()];
+        long previous = 0;
+        for (int i = 0; i < offsets.length; i++) {
+            previous += readVarLong(in);
+            offsets[i] = previous;
+        }
+        return new SeekTable(intervalMs, durationMs, sampleRate, bitrateKbps, vbr, audioStart, audioEnd, offsets);
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
@@ -0,0 +1,16 @@
+package com.musicplayer.media;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/** What ingest learned about a stored file; stream fields are null for non-MPEG audio. */
+@Getter
+@AllArgsConstructor
+public class TrackAnalysis {
+    private final Long durationMs;
+    private final Integer bitrate;
+    private final Integer sampleRate;
+    private final String title;
+    private final String artist;
+    private final String album;
+}
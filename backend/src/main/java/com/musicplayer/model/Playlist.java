@@ -24,6 +24,11 @@ public class Playlist {
     @Column(name = "is_public")
     private Boolean isPublic = false;
 
+    // bumped by PlaylistRepository on every change to the name, tracks or order
+    @Builder.Default
+    @Column(nullable = false)
+    private Long version = 0L;
+
     @Column(name = "created_at")
     private LocalDateTime createdAt = LocalDateTime.now();
 }
\ No newline at end of file
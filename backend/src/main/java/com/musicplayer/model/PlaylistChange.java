@@ -0,0 +1,46 @@
+package com.musicplayer.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import java.time.LocalDateTime;
+
+/**
+ * One entry of a playlist's change log. Every version bump writes at least
+ * one row under the new version, so the rows after a version, in id order,
+ * replay exactly the edits made since.
+ */
+@Entity
+@Table(name = "playlist_changes")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PlaylistChange {
+    public enum Type { ADD, REMOVE, MOVE, RENAME }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "playlist_id", nullable = false)
+    private Long playlistId;
+
+    @Column(nullable = false)
+    private Long version;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Type op;
+
+    // null for RENAME
+    @Column(name = "track_id")
+    private Long trackId;
+
+    // MOVE only: the track it now follows, null for the front
+    @Column(name = "after_track_id")
+    private Long afterTrackId;
+
+    @Builder.Default
+    @Column(name = "created_at")
+    private LocalDateTime createdAt = LocalDateTime.now();
+}
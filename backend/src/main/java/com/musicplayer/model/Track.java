@@ -5,7 +5,11 @@ import lombok.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "tracks")
+// declared here so ddl-auto creates them on existing schemas too: created_at backs the newest-first
+// listing, (storage_path, title) the reference counts and the catalog import's existing-row check
+@Table(name = "tracks", indexes = {
+        @Index(name = "idx_created_at", columnList = "created_at"),
+        @Index(name = "idx_storage_path_title", columnList = "storage_path, title")})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -30,6 +34,22 @@ public class Track {
     @Column(name = "size_bytes")
     private Long sizeBytes;
 
-    @Column(name = "created_at")
+    // average kbps and Hz of the MPEG stream, filled in by ingest
+    private Integer bitrate;
+
+    @Column(name = "sample_rate")
+    private Integer sampleRate;
+
+    @Builder.Default
+    @Enumerated(EnumType.STRING)
+    @Column(length = 16)
+    private TrackStatus status = TrackStatus.PENDING;
+
+    @Builder.Default
+    @Column(name = "play_count", nullable = false)
+    private Long playCount = 0L;
+
+    @Builder.Default
+    @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt = LocalDateTime.now();
 }
@@ -0,0 +1,5 @@
+package com.musicplayer.model;
+
+public enum TrackStatus {
+    PENDING, READY, FAILED
+}
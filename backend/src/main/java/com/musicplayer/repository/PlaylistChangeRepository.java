@@ -0,0 +1,35 @@
+package com.musicplayer.repository;
+
+import com.musicplayer.model.PlaylistChange;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import java.util.List;
+
+@Repository
+public interface PlaylistChangeRepository extends JpaRepository<PlaylistChange, Long> {
+    // Ordered like idx_playlist_version, then by id, which is the order the edits were made in
+    @Query("SELECT c FROM PlaylistChange c WHERE c.playlistId = :playlistId AND c.version > :since " +
+            "AND c.version <= :until ORDER BY c.playlistId, c.version, c.id")
+    List<PlaylistChange> findBetween(@Param("playlistId") Long playlistId, @Param("since") Long since,
+                                     @Param("until") Long until, Pageable pageable);
+
+    @Modifying
+    @Query("DELETE FROM PlaylistChange c WHERE c.playlistId = :playlistId AND c.version <= :version")
+    int deleteUpTo(@Param("playlistId") Long playlistId, @Param("version") Long version);
+
+    @Modifying
+    @Query("DELETE FROM PlaylistChange c WHERE c.playlistId = :playlistId")
+    int deleteByPlaylistId(@Param("playlistId") Long playlistId);
+
+    // After PlaylistRepository.incrementVersionsContaining, before the items go: a REMOVE at each new version
+    @Modifying
+    @Query(value = "INSERT INTO playlist_changes (playlist_id, version, op, track_id, created_at) " +
+            "SELECT i.playlist_id, p.version, 'REMOVE', i.track_id, CURRENT_TIMESTAMP " +
+            "FROM playlist_items i JOIN playlists p ON p.id = i.playlist_id WHERE i.track_id = :trackId",
+            nativeQuery = true)
+    int logTrackRemoved(@Param("trackId") Long trackId);
+}
@@ -1,16 +1,51 @@
 package com.musicplayer.repository;
 
+import com.musicplayer.dto.PlaylistTrackRow;
 import com.musicplayer.model.PlaylistItem;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface PlaylistItemRepository extends JpaRepository<PlaylistItem, Long> {
     List<PlaylistItem> findByPlaylistIdOrderByPositionAsc(Long playlistId);
-    void deleteByPlaylistIdAndTrackId(Long playlistId, Long trackId);
+
+    // The tracks of several playlists in one query, in playlist order; only the columns a playlist shows
+    @Query("SELECT new com.musicplayer.dto.PlaylistTrackRow(i.playlistId, t.id, t.title, t.artist, t.album, " +
+            "t.durationMs, t.sizeBytes) FROM PlaylistItem i JOIN Track t ON t.id = i.trackId " +
+            "WHERE i.playlistId IN :playlistIds ORDER BY i.playlistId, i.position")
+    List<PlaylistTrackRow> findTrackRows(@Param("playlistIds") Collection<Long> playlistIds);
+    long deleteByPlaylistIdAndTrackId(Long playlistId, Long trackId);
     void deleteByPlaylistId(Long playlistId);
     void deleteByTrackId(Long trackId);
     boolean existsByPlaylistIdAndTrackId(Long playlistId, Long trackId);
 
+    @Query("SELECT i.position FROM PlaylistItem i WHERE i.playlistId = :playlistId AND i.trackId = :trackId")
+    Integer findPosition(@Param("playlistId") Long playlistId, @Param("trackId") Long trackId);
+
+    // one index lookup on MySQL, which reads the idx_position prefix from the end
+    @Query("SELECT MAX(i.position) FROM PlaylistItem i WHERE i.playlistId = :playlistId")
+    Integer findMaxPosition(@Param("playlistId") Long playlistId);
+
+    // Ordered like idx_position so the scan stops after the page; with a page size of one the page number is the rank
+    @Query("SELECT i.position FROM PlaylistItem i WHERE i.playlistId = :playlistId AND i.position >= :from " +
+            "ORDER BY i.playlistId, i.position")
+    List<Integer> findPositionsFrom(@Param("playlistId") Long playlistId, @Param("from") Integer from,
+                                    Pageable pageable);
+
+    // The track just before a position, for logging where a move by index landed
+    @Query("SELECT i.trackId FROM PlaylistItem i WHERE i.playlistId = :playlistId AND i.position < :position " +
+            "ORDER BY i.playlistId DESC, i.position DESC")
+    List<Long> findTrackIdsBefore(@Param("playlistId") Long playlistId, @Param("position") Integer position,
+                                  Pageable pageable);
+
+    @Modifying
+    @Query("UPDATE PlaylistItem i SET i.position = :position WHERE i.playlistId = :playlistId AND i.trackId = :trackId")
+    int updatePosition(@Param("playlistId") Long playlistId, @Param("trackId") Long trackId,
+                       @Param("position") Integer position);
 }
\ No newline at end of file
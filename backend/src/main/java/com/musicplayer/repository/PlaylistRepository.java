@@ -1,11 +1,49 @@
 package com.musicplayer.repository;
 
+import com.musicplayer.dto.PlaylistSummary;
 import com.musicplayer.model.Playlist;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface PlaylistRepository extends JpaRepository<Playlist, Long> {
     List<Playlist> findByUserOwnerId(Long userId);
+
+    // Held until commit by every edit that picks item positions, so two writers never take the same slot
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM Playlist p WHERE p.id = :id")
+    Optional<Playlist> lockById(@Param("id") Long id);
+
+    // One grouped query over this user's items only; playlists without tracks still count, as zero
+    @Query("SELECT new com.musicplayer.dto.PlaylistSummary(p.id, p.name, p.isPublic, p.version, COUNT(i.id), " +
+            "COALESCE(SUM(t.durationMs), 0L)) FROM Playlist p " +
+            "LEFT JOIN PlaylistItem i ON i.playlistId = p.id LEFT JOIN Track t ON t.id = i.trackId " +
+            "WHERE p.userOwnerId = :userId GROUP BY p.id, p.name, p.isPublic, p.version ORDER BY p.id")
+    List<PlaylistSummary> findSummariesByUserOwnerId(@Param("userId") Long userId);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE Playlist p SET p.version = p.version + 1 WHERE p.id = :id")
+    int incrementVersion(@Param("id") Long id);
+
+    // clears the session so the caller's next read sees the new name and version
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Playlist p SET p.name = :name, p.version = p.version + 1 WHERE p.id = :id")
+    int rename(@Param("id") Long id, @Param("name") String name);
+
+    // before a track is deleted, for every playlist that loses it
+    @Transactional
+    @Modifying
+    @Query("UPDATE Playlist p SET p.version = p.version + 1 " +
+            "WHERE p.id IN (SELECT i.playlistId FROM PlaylistItem i WHERE i.trackId = :trackId)")
+    int incrementVersionsContaining(@Param("trackId") Long trackId);
 }
\ No newline at end of file
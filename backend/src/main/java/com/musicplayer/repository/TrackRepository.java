@@ -1,20 +1,65 @@
 package com.musicplayer.repository;
 
 import com.musicplayer.model.Track;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
 public interface TrackRepository extends JpaRepository<Track, Long> {
-    @Query("SELECT t FROM Track t WHERE " +
+    // Substring match for queries the FULLTEXT index cannot serve; newest first, keyset on id
+    @Query("SELECT t.id FROM Track t WHERE (" +
             "LOWER(t.title) LIKE LOWER(CONCAT('%', :query, '%')) OR " +
             "LOWER(t.artist) LIKE LOWER(CONCAT('%', :query, '%')) OR " +
-            "LOWER(t.album) LIKE LOWER(CONCAT('%', :query, '%'))")
-    List<Track> searchTracks(@Param("query") String query);
+            "LOWER(t.album) LIKE LOWER(CONCAT('%', :query, '%'))) " +
+            "AND (:afterId IS NULL OR t.id < :afterId) ORDER BY t.id DESC")
+    List<Long> searchTrackIds(@Param("query") String query, @Param("afterId") Long afterId, Pageable pageable);
+
+    // Catalog listing: keyset on id, oldest first, or on (created_at, id), newest first
+    List<Track> findByIdGreaterThanOrderByIdAsc(Long afterId, Pageable pageable);
+
+    @Query("SELECT t FROM Track t ORDER BY t.createdAt DESC, t.id DESC")
+    List<Track> findNewest(Pageable pageable);
+
+    @Query("SELECT t FROM Track t WHERE t.createdAt < :createdAt OR (t.createdAt = :createdAt AND t.id < :id) " +
+            "ORDER BY t.createdAt DESC, t.id DESC")
+    List<Track> findNewestBefore(@Param("createdAt") LocalDateTime createdAt, @Param("id") Long id,
+                                 Pageable pageable);
 
     List<Track> findByArtistContainingIgnoreCase(String artist);
     List<Track> findByAlbumContainingIgnoreCase(String album);
+
+    List<Track> findAllByOrderByPlayCountDesc(Pageable pageable);
+
+    long countByStoragePath(String storagePath);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE Track t SET t.storagePath = :newPath WHERE t.storagePath = :oldPath")
+    int updateStoragePath(@Param("oldPath") String oldPath, @Param("newPath") String newPath);
+
+    // rows inserted through the builder before createdAt had a default; they would drop out of the newest-first listing
+    @Transactional
+    @Modifying
+    @Query("UPDATE Track t SET t.createdAt = CURRENT_TIMESTAMP WHERE t.createdAt IS NULL")
+    int backfillCreatedAt();
+
+    // only the edited columns, so it cannot undo an ingest write or a play count that landed meanwhile
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Track t SET t.title = COALESCE(NULLIF(:title, ''), t.title), " +
+            "t.artist = COALESCE(:artist, t.artist), t.album = COALESCE(:album, t.album) WHERE t.id = :id")
+    int updateMetadata(@Param("id") Long id, @Param("title") String title,
+                       @Param("artist") String artist, @Param("album") String album);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE Track t SET t.playCount = t.playCount + 1 WHERE t.id = :id")
+    void incrementPlayCount(@Param("id") Long id);
 }
\ No newline at end of file
@@ -0,0 +1,14 @@
+package com.musicplayer.search;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/** The searchable fields of one track. */
+@Getter
+@AllArgsConstructor
+public class CatalogEntry {
+    private final int id;
+    private final String title;
+    private final String artist;
+    private final String album;
+}
@@ -0,0 +1,540 @@
+package com.musicplayer.search;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * In-memory trigram index over track titles, artists and albums.
+ *
+ * The index is one immutable {@link Generation}: a large base segment, a
+ * small delta segment holding recent changes, and the ids whose base entry
+ * is dead (deleted or superseded by the delta). Readers take the current
+ * generation from a volatile field and never lock. Writers serialise on a
+ * private monitor, rebuild only the delta and publish a new generation.
+ * Once the delta grows past the merge threshold, a background thread folds
+ * it into a new base and replays whatever changed in the meantime.
+ */
+public class CatalogIndex {
+    private static final int INTERSECT_RATIO = 16;
+    private static final int MAX_ALTERNATIVES = 8;
+    private static final int MAX_FUZZY_CANDIDATES = 5000;
+
+    private final ForkJoinPool pool;
+    private final int mergeThreshold;
+
+    private volatile Generation generation = new Generation(IndexSegment.EMPTY, IndexSegment.EMPTY, new int[0]);
+
+    // guarded by writeLock
+    private final Object writeLock = new Object();
+    private boolean merging;
+    private long epoch;
+    private final Set<Integer> touchedDuringMerge = new HashSet<>();
+
+    private volatile long lastBuildMs;
+    private volatile long merges;
+
+    public CatalogIndex(ForkJoinPool pool, int mergeThreshold) {
+        this.pool = pool;
+        this.mergeThreshold = mergeThreshold;
+    }
+
+    /** Replaces the whole index; used for the initial build. */
+    public void load(List<CatalogEntry> entries) {
+        long started = System.currentTimeMillis();
+        IndexSegment base = IndexSegment.build(dedupe(entries), pool);
+        synchronized (writeLock) {
+            epoch++;
+            merging = false;
+            touchedDuringMerge.clear();
+            generation = new Generation(base, IndexSegment.EMPTY, new int[0]);
+        }
+        lastBuildMs = System.currentTimeMillis() - started;
+    }
+
+    /** Adds or replaces entries. */
+    public void upsert(List<CatalogEntry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        List<CatalogEntry> changed = dedupe(entries);
+        Set<Integer> ids = new HashSet<>();
+        for (CatalogEntry entry : changed) {
+            ids.add(entry.getId());
+        }
+        synchronized (writeLock) {
+            Generation current = generation;
+            List<CatalogEntry> delta = current.delta.entries(ids::contains);
+            delta.addAll(changed);
+            publish(current, delta, ids);
+        }
+    }
+
+    public void remove(Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        Set<Integer> removed = new HashSet<>(ids);
+        synchronized (writeLock) {
+            Generation current = generation;
+            publish(current, current.delta.entries(removed::contains), removed);
+        }
+    }
+
+    /**
+     * Ranked matches as {@code score << 32 | id}, highest first, at most
+     * {@code limit} of them and all below {@code after} (use
+     * {@link Long#MAX_VALUE} for the first page). Every query word must
+     * occur in the title, artist or album; two-letter words must start a
+     * word. With {@code fuzzy}, a word may instead be one of the closest
+     * dictionary words within one or two edits, scored lower the more edits
+     * it took. Returns {@code null} when no word has two letters, which the
+     * index cannot answer.
+     */
+    public long[] search(String query, int limit, long after, boolean fuzzy) {
+        String phrase = Trigrams.normalize(query);
+        String[] words = phrase.isEmpty() ? new String[0] : phrase.split(" ");
+        boolean usable = false;
+        for (String word : words) {
+            usable |= word.length() >= 2;
+        }
+        if (!usable) {
+            return null;
+        }
+
+        Generation current = generation;
+        String[][] alternatives = new String[words.length][];
+        int[][] edits = new int[words.length][];
+        for (int i = 0; i < words.length; i++) {
+            expand(current, words[i], fuzzy, alternatives, edits, i);
+        }
+
+        TopHits hits = new TopHits(limit);
+        if (fuzzy) {
+            collectEach(current.base, current.tombstones, alternatives, edits, phrase, after, hits);
+            collectEach(current.delta, null, alternatives, edits, phrase, after, hits);
+        } else {
+            collect(current.base, current.tombstones, words, alternatives, edits, phrase, after, hits);
+            collect(current.delta, null, words, alternatives, edits, phrase, after, hits);
+        }
+        return hits.sorted();
+    }
+
+    /**
+     * Edits allowed when correcting a word: none below four letters or for
+     * numbers, one up to seven letters, two beyond.
+     */
+    static int allowedEdits(String word) {
+        if (word.length() < 4 || word.chars().noneMatch(Character::isLetter)) {
+            return 0;
+        }
+        return word.length() < 8 ? 1 : 2;
+    }
+
+    /** The word itself, then up to MAX_ALTERNATIVES - 1 dictionary words, fewest edits and most common first. */
+    private static void expand(Generation current, String word, boolean fuzzy,
+                               String[][] alternatives, int[][] edits, int i) {
+        int allowed = fuzzy ? allowedEdits(word) : 0;
+        if (allowed == 0) {
+            alternatives[i] = new String[] {word};
+            edits[i] = new int[] {0};
+            return;
+        }
+        Map<String, long[]> near = new HashMap<>();
+        WordDictionary.Visitor visitor = (candidate, distance, count) -> {
+            if (distance > 0) {
+                near.merge(candidate, new long[] {distance, count}, (a, b) -> new long[] {a[0], a[1] + b[1]});
+            }
+        };
+        current.base.words().near(word, allowed, visitor);
+        current.delta.words().near(word, allowed, visitor);
+
+        List<Map.Entry<String, long[]>> ranked = new ArrayList<>(near.entrySet());
+        ranked.sort((a, b) -> a.getValue()[0] != b.getValue()[0]
+                ? Long.compare(a.getValue()[0], b.getValue()[0])
+                : Long.compare(b.getValue()[1], a.getValue()[1]));
+        int n = 1 + Math.min(ranked.size(), MAX_ALTERNATIVES - 1);
+        alternatives[i] = new String[n];
+        edits[i] = new int[n];
+        alternatives[i][0] = word;
+        for (int j = 1; j < n; j++) {
+            alternatives[i][j] = ranked.get(j - 1).getKey();
+            edits[i][j] = (int) ranked.get(j - 1).getValue()[0];
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Generation current = generation;
+        long documents = current.base.size() - current.tombstones.length + current.delta.size();
+        long memory = current.base.memoryBytes() + current.delta.memoryBytes() + 4L * current.tombstones.length;
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("documents", documents);
+        stats.put("baseDocuments", current.base.size());
+        stats.put("deltaDocuments", current.delta.size());
+        stats.put("deadDocuments", current.tombstones.length);
+        stats.put("trigrams", current.base.keyCount());
+        stats.put("postingBytes", current.base.postingBytes() + current.delta.postingBytes());
+        stats.put("memoryBytes", memory);
+        stats.put("bytesPerTrack", documents > 0 ? memory / documents : 0);
+        stats.put("lastBuildMs", lastBuildMs);
+        stats.put("merges", merges);
+        return stats;
+    }
+
+    private void collect(IndexSegment segment, int[] tombstones, String[] words, String[][] alternatives,
+                         int[][] edits, String phrase, long after, TopHits hits) {
+        if (segment.size() == 0) {
+            return;
+        }
+        verify(segment, tombstones, candidates(segment, queryKeys(words)), alternatives, edits, phrase, after, hits);
+    }
+
+    /**
+     * Fuzzy variant: a word matches through any of its alternatives, so its
+     * candidates are the union of theirs. Only the rarest words are decoded.
+     * Tracks holding every word as typed are always verified, exactly as a
+     * natural query would; since a correction towards a very common word can
+     * match a good part of the catalog, at most MAX_FUZZY_CANDIDATES of the
+     * newest tracks found only through corrections are.
+     */
+    private void collectEach(IndexSegment segment, int[] tombstones, String[][] alternatives, int[][] edits,
+                             String phrase, long after, TopHits hits) {
+        if (segment.size() == 0) {
+            return;
+        }
+        List<long[]> byEstimate = new ArrayList<>();
+        for (int i = 0; i < alternatives.length; i++) {
+            if (alternatives[i][0].length() < 2) {
+                continue;
+            }
+            long estimate = 0;
+            for (String option : alternatives[i]) {
+                int rarest = Integer.MAX_VALUE;
+                for (int key : Trigrams.queryKeys(option)) {
+                    rarest = Math.min(rarest, segment.count(key));
+                }
+                estimate += rarest;
+            }
+            byEstimate.add(new long[] {estimate, i});
+        }
+        byEstimate.sort(Comparator.comparingLong(word -> word[0]));
+
+        int[] candidates = null;
+        for (long[] word : byEstimate) {
+            if (candidates != null && (candidates.length == 0 || word[0] > (long) candidates.length * INTERSECT_RATIO)) {
+                break;
+            }
+            int[] union = new int[0];
+            for (String option : alternatives[(int) word[1]]) {
+                union = merge(union, candidates(segment, Trigrams.queryKeys(option)));
+            }
+            candidates = candidates == null ? union : intersect(candidates, union);
+        }
+        String[] typed = new String[alternatives.length];
+        for (int i = 0; i < alternatives.length; i++) {
+            typed[i] = alternatives[i][0];
+        }
+        int[] exact = candidates(segment, queryKeys(typed));
+        verify(segment, tombstones, exact, alternatives, edits, phrase, after, hits);
+
+        int[] corrected = subtract(candidates, exact);
+        if (corrected.length > MAX_FUZZY_CANDIDATES) {
+            corrected = Arrays.copyOfRange(corrected, corrected.length - MAX_FUZZY_CANDIDATES, corrected.length);
+        }
+        verify(segment, tombstones, corrected, alternatives, edits, phrase, after, hits);
+    }
+
+    /** Ids holding all the keys, rarest list first; longer lists are probed rather than decoded. */
+    private static int[] candidates(IndexSegment segment, int[] keys) {
+        long[] byCount = new long[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            byCount[i] = ((long) segment.count(keys[i]) << 32) | i;
+        }
+        Arrays.sort(byCount);
+        if (byCount.length == 0 || byCount[0] >>> 32 == 0) {
+            return new int[0];
+        }
+        int[] candidates = segment.postings(keys[(int) byCount[0]]);
+        for (int k = 1; k < byCount.length && candidates.length > 0; k++) {
+            candidates = segment.retain(candidates, keys[(int) byCount[k]]);
+        }
+        return candidates;
+    }
+
+    private static void verify(IndexSegment segment, int[] tombstones, int[] candidates, String[][] alternatives,
+                               int[][] edits, String phrase, long after, TopHits hits) {
+        for (int id : candidates) {
+            if (tombstones != null && Arrays.binarySearch(tombstones, id) >= 0) {
+                continue;
+            }
+            int slot = segment.slot(id);
+            int score = score(segment.title(slot), segment.artist(slot), segment.album(slot),
+                    alternatives, edits, phrase);
+            if (score >= 0) {
+                long packed = ((long) score << 32) | id;
+                if (packed < after) {
+                    hits.offer(packed);
+                }
+            }
+        }
+    }
+
+    /**
+     * Title hits outrank artist hits, which outrank album hits; word starts
+     * outrank matches inside a word. A corrected word counts half per edit.
+     * A title equal to or starting with the whole query gets a bonus.
+     * Returns -1 when a word is missing.
+     */
+    static int score(String title, String artist, String album, String[][] alternatives, int[][] edits,
+                     String phrase) {
+        int total = 0;
+        for (int i = 0; i < alternatives.length; i++) {
+            int best = 0;
+            for (int j = 0; j < alternatives[i].length; j++) {
+                String word = alternatives[i][j];
+                int found = Math.max(fieldScore(title, word, 30, 20),
+                        Math.max(fieldScore(artist, word, 15, 10), fieldScore(album, word, 8, 5)));
+                best = Math.max(best, found >> edits[i][j]);
+            }
+            if (best == 0) {
+                return -1;
+            }
+            total += best;
+        }
+        if (title.equals(phrase)) {
+            total += 100;
+        } else if (title.startsWith(phrase)) {
+            total += 50;
+        }
+        return total;
+    }
+
+    private static int fieldScore(String field, String word, int wordStart, int inside) {
+        int found = 0;
+        for (int at = field.indexOf(word); at >= 0; at = field.indexOf(word, at + 1)) {
+            if (at == 0 || field.charAt(at - 1) == ' ') {
+                return wordStart;
+            }
+            found = word.length() > 2 ? inside : 0;
+        }
+        return found;
+    }
+
+    private static int[] queryKeys(String[] words) {
+        int[] keys = new int[0];
+        for (String word : words) {
+            int[] wordKeys = Trigrams.queryKeys(word);
+            int n = keys.length;
+            keys = Arrays.copyOf(keys, n + wordKeys.length);
+            System.arraycopy(wordKeys, 0, keys, n, wordKeys.length);
+        }
+        return Arrays.stream(keys).distinct().toArray();
+    }
+
+    static int[] intersect(int[] a, int[] b) {
+        int[] out = new int[Math.min(a.length, b.length)];
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                out[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    /** Ids in {@code a} but not in {@code b}; both sorted. */
+    static int[] subtract(int[] a, int[] b) {
+        int[] out = new int[a.length];
+        int j = 0;
+        int n = 0;
+        for (int id : a) {
+            while (j < b.length && b[j] < id) {
+                j++;
+            }
+            if (j == b.length || b[j] != id) {
+                out[n++] = id;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    /** Caller holds writeLock. */
+    private void publish(Generation current, List<CatalogEntry> delta, Set<Integer> changedIds) {
+        int[] tombstones = current.tombstones;
+        List<Integer> dead = new ArrayList<>();
+        for (int id : changedIds) {
+            if (current.base.slot(id) >= 0 && Arrays.binarySearch(tombstones, id) < 0) {
+                dead.add(id);
+            }
+        }
+        if (!dead.isEmpty()) {
+            tombstones = union(tombstones, dead);
+        }
+
+        generation = new Generation(current.base, IndexSegment.build(delta, null), tombstones);
+        if (merging) {
+            touchedDuringMerge.addAll(changedIds);
+        } else if (generation.delta.size() >= mergeThreshold) {
+            startMerge();
+        }
+    }
+
+    /** Caller holds writeLock. */
+    private void startMerge() {
+        merging = true;
+        touchedDuringMerge.clear();
+        Generation snapshot = generation;
+        long startedEpoch = epoch;
+
+        Thread merger = new Thread(() -> {
+            try {
+                int[] dead = snapshot.tombstones;
+                List<CatalogEntry> live = snapshot.base.entries(id -> Arrays.binarySearch(dead, id) >= 0);
+                live.addAll(snapshot.delta.entries(id -> false));
+                IndexSegment base = IndexSegment.build(live, pool);
+
+                synchronized (writeLock) {
+                    if (epoch != startedEpoch) {
+                        return;
+                    }
+                    // changes made while merging stay in the delta and shadow the new base
+                    Generation current = generation;
+                    List<CatalogEntry> delta = current.delta.entries(id -> !touchedDuringMerge.contains(id));
+                    List<Integer> shadowed = new ArrayList<>();
+                    for (int id : touchedDuringMerge) {
+                        if (base.slot(id) >= 0) {
+                            shadowed.add(id);
+                        }
+                    }
+                    generation = new Generation(base, IndexSegment.build(delta, null), union(new int[0], shadowed));
+                    merging = false;
+                    touchedDuringMerge.clear();
+                    merges++;
+                }
+            } catch (RuntimeException e) {
+                synchronized (writeLock) {
+                    merging = false;
+                }
+                System.err.println("Search index merge failed: " + e.getMessage());
+            }
+        }, "search-index-merge");
+        merger.setDaemon(true);
+        merger.start();
+    }
+
+    private static int[] merge(int[] a, int[] b) {
+        if (a.length == 0) {
+            return b;
+        }
+        int[] out = new int[a.length + b.length];
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (i < a.length || j < b.length) {
+            if (j == b.length || (i < a.length && a[i] < b[j])) {
+                out[n++] = a[i++];
+            } else if (i == a.length || b[j] < a[i]) {
+                out[n++] = b[j++];
+            } else {
+                out[n++] = a[i++];
+                j++;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    private static int[] union(int[] sorted, Collection<Integer> more) {
+        int[] result = Arrays.copyOf(sorted, sorted.length + more.size());
+        int n = sorted.length;
+        for (int id : more) {
+            result[n++] = id;
+        }
+        Arrays.sort(result);
+        return result;
+    }
+
+    private static List<CatalogEntry> dedupe(List<CatalogEntry> entries) {
+        Map<Integer, CatalogEntry> byId = new LinkedHashMap<>();
+        for (CatalogEntry entry : entries) {
+            byId.put(entry.getId(), entry);
+        }
+        return new ArrayList<>(byId.values());
+    }
+
+    private static final class Generation {
+        private final IndexSegment base;
+        private final IndexSegment delta;
+        private final int[] tombstones;
+
+        private Generation(IndexSegment base, IndexSegment delta, int[] tombstones) {
+            this.base = base;
+            this.delta = delta;
+            this.tombstones = tombstones;
+        }
+    }
+
+    /** Bounded min-heap of packed hits; keeps the {@code limit} largest. */
+    private static final class TopHits {
+        private final long[] heap;
+        private int size;
+
+        TopHits(int limit) {
+            heap = new long[Math.max(1, limit)];
+        }
+
+        void offer(long value) {
+            if (size < heap.length) {
+                int i = size++;
+                heap[i] = value;
+                while (i > 0 && heap[(i - 1) / 2] > heap[i]) {
+                    swap(i, (i - 1) / 2);
+                    i = (i - 1) / 2;
+                }
+            } else if (value > heap[0]) {
+                heap[0] = value;
+                int i = 0;
+                while (true) {
+                    int smallest = i;
+                    int left = 2 * i + 1;
+                    int right = left + 1;
+                    if (left < size && heap[left] < heap[smallest]) {
+                        smallest = left;
+                    }
+                    if (right < size && heap[right] < heap[smallest]) {
+                        smallest = right;
+                    }
+                    if (smallest == i) {
+                        break;
+                    }
+                    swap(i, smallest);
+                    i = smallest;
+                }
+            }
+        }
+
+        long[] sorted() {
+            long[] result = Arrays.copyOf(heap, size);
+            Arrays.sort(result);
+            for (int i = 0, j = result.length - 1; i < j; i++, j--) {
+                long tmp = result[i];
+                result[i] = result[j];
+                result[j] = tmp;
+            }
+            return result;
+        }
+
+        private void swap(int a, int b) {
+            long tmp = heap[a];
+            heap[a] = heap[b];
+            heap[b] = tmp;
+        }
+    }
+}
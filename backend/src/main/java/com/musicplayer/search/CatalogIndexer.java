@@ -0,0 +1,186 @@
+package com.musicplayer.search;
+
+import com.musicplayer.event.CatalogChangedEvent;
+import com.musicplayer.model.Track;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Owns the {@link CatalogIndex} when {@code music.search.engine=memory}.
+ * The index is built in the background at startup; until it is ready,
+ * searches go to the database. Track writes in TrackService update it
+ * directly, and ingest and bulk import updates arrive as
+ * {@link CatalogChangedEvent}s and are re-read from the database.
+ */
+@Component
+@RequiredArgsConstructor
+public class CatalogIndexer {
+    private static final String PAGE_SQL =
+            "SELECT id, title, artist, album FROM tracks WHERE id > ? ORDER BY id LIMIT ?";
+    private static final int PAGE_SIZE = 50_000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${music.search.engine:database}")
+    private String engine;
+
+    @Value("${music.search.index-threads:0}")
+    private int threads;
+
+    @Value("${music.search.index-merge-threshold:2048}")
+    private int mergeThreshold;
+
+    private CatalogIndex index;
+    private volatile boolean ready;
+    private volatile boolean failed;
+
+    // ids changed while the initial build was reading the table; guarded by this
+    private final Set<Long> changedDuringBuild = new HashSet<>();
+
+    public boolean isEnabled() {
+        return "memory".equalsIgnoreCase(engine) && !failed;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        if (!isEnabled()) {
+            return;
+        }
+        int parallelism = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        index = new CatalogIndex(new ForkJoinPool(parallelism), mergeThreshold);
+
+        Thread builder = new Thread(() -> {
+            try {
+                long started = System.currentTimeMillis();
+                List<CatalogEntry> entries = new ArrayList<>();
+                long lastId = 0;
+                while (true) {
+                    List<CatalogEntry> page = jdbcTemplate.query(PAGE_SQL, (rs, i) -> entry(rs.getLong("id"),
+                            rs.getString("title"), rs.getString("artist"), rs.getString("album")), lastId, PAGE_SIZE);
+                    entries.addAll(page);
+                    if (page.size() < PAGE_SIZE) {
+                        break;
+                    }
+                    lastId = page.get(page.size() - 1).getId();
+                }
+                long loaded = System.currentTimeMillis();
+                index.load(entries);
+
+                List<Long> changed;
+                synchronized (this) {
+                    ready = true;
+                    changed = new ArrayList<>(changedDuringBuild);
+                    changedDuringBuild.clear();
+                }
+                refresh(changed);
+                System.out.println("Search index built for " + entries.size() + " tracks in "
+                        + (System.currentTimeMillis() - started) + " ms (read " + (loaded - started) + " ms): "
+                        + index.stats());
+            } catch (RuntimeException e) {
+                failed = true;
+                System.err.println("Search index build failed, searching the database instead: " + e.getMessage());
+            }
+        }, "search-index-build");
+        builder.setDaemon(true);
+        builder.start();
+    }
+
+    public void upsert(Track track) {
+        if (deferred(track.getId())) {
+            return;
+        }
+        index.upsert(List.of(entry(track.getId(), track.getTitle(), track.getArtist(), track.getAlbum())));
+    }
+
+    public void remove(Long trackId) {
+        if (deferred(trackId)) {
+            return;
+        }
+        index.remove(List.of(Math.toIntExact(trackId)));
+    }
+
+    @EventListener
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        if (!isEnabled()) {
+            return;
+        }
+        List<Long> ids = new ArrayList<>();
+        for (Long id : event.getTrackIds()) {
+            if (!deferred(id)) {
+                ids.add(id);
+            }
+        }
+        refresh(ids);
+    }
+
+    /** Packed {@code score << 32 | id} hits, or {@code null} if the index cannot answer. */
+    public long[] search(String query, int limit, long after, boolean fuzzy) {
+        return ready ? index.search(query, limit, after, fuzzy) : null;
+    }
+
+    public Map<String, Object> stats() {
+        if (!isEnabled()) {
+            return Map.of("engine", engine);
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("engine", engine);
+        stats.put("ready", ready);
+        if (ready) {
+            stats.putAll(index.stats());
+        }
+        return stats;
+    }
+
+    /** Re-reads the given tracks; ids no longer in the table are dropped. */
+    private void refresh(List<Long> ids) {
+        for (int from = 0; from < ids.size(); from += 1000) {
+            List<Long> chunk = ids.subList(from, Math.min(ids.size(), from + 1000));
+            String placeholders = String.join(",", Collections.nCopies(chunk.size(), "?"));
+            List<CatalogEntry> found = jdbcTemplate.query(
+                    "SELECT id, title, artist, album FROM tracks WHERE id IN (" + placeholders + ")",
+                    (rs, i) -> entry(rs.getLong("id"), rs.getString("title"), rs.getString("artist"), rs.getString("album")),
+                    chunk.toArray());
+
+            Set<Integer> missing = new HashSet<>();
+            for (Long id : chunk) {
+                missing.add(Math.toIntExact(id));
+            }
+            for (CatalogEntry entry : found) {
+                missing.remove(entry.getId());
+            }
+            index.upsert(found);
+            index.remove(missing);
+        }
+    }
+
+    /** While the initial build runs, changes are remembered and replayed once it finishes. */
+    private boolean deferred(Long trackId) {
+        if (!isEnabled()) {
+            return true;
+        }
+        if (ready) {
+            return false;
+        }
+        synchronized (this) {
+            if (ready) {
+                return false;
+            }
+            changedDuringBuild.add(trackId);
+            return true;
+        }
+    }
+
+    private static CatalogEntry entry(long id, String title, String artist, String album) {
+        return new CatalogEntry(Math.toIntExact(id), title, artist, album);
+    }
+}
@@ -0,0 +1,402 @@
+package com.musicplayer.search;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+/**
+ * Immutable slice of the catalog index: the normalised fields of a set of
+ * tracks and, for every trigram key, the ascending ids of the tracks that
+ * contain it. Posting lists are stored as varint-encoded gaps, back to
+ * back in one byte array, with a sorted key table pointing into it; long
+ * lists also keep a skip entry (the id before the block and its offset)
+ * every {@code BLOCK} postings. The distinct words also go into a {@link WordDictionary} for typo correction.
+ */
+final class IndexSegment {
+    static final IndexSegment EMPTY = build(List.of(), null);
+
+    private static final int CHUNK = 1 << 16;
+    // lists longer than this get a skip entry per block of postings
+    private static final int BLOCK = 64;
+
+    private final int[] docIds;
+    private final String[] titles;
+    private final String[] artists;
+    private final String[] albums;
+
+    private final int[] keys;
+    private final int[] offsets;
+    private final int[] counts;
+    private final byte[] data;
+    private final int[] skipStarts;
+    private final int[] skipBases;
+    private final int[] skipOffsets;
+    private final WordDictionary words;
+    private final long textBytes;
+
+    private IndexSegment(int[] docIds, String[] titles, String[] artists, String[] albums,
+                         int[] keys, int[] offsets, int[] counts, byte[] data,
+                         int[] skipStarts, int[] skipBases, int[] skipOffsets, WordDictionary words) {
+        this.docIds = docIds;
+        this.titles = titles;
+        this.artists = artists;
+        this.albums = albums;
+        this.keys = keys;
+        this.offsets = offsets;
+        this.counts = counts;
+        this.data = data;
+        this.skipStarts = skipStarts;
+        this.skipBases = skipBases;
+        this.skipOffsets = skipOffsets;
+        this.words = words;
+
+        long text = 0;
+        for (int i = 0; i < docIds.length; i++) {
+            text += stringBytes(titles[i]) + stringBytes(artists[i]) + stringBytes(albums[i]);
+        }
+        this.textBytes = text;
+    }
+
+    /**
+     * Builds a segment over the given entries (ids must be distinct). With a
+     * pool, normalisation, trigram extraction and posting encoding run in
+     * parallel, the key space split into one shard per thread.
+     */
+    static IndexSegment build(List<CatalogEntry> entries, ForkJoinPool pool) {
+        CatalogEntry[] sorted = entries.toArray(new CatalogEntry[0]);
+        Arrays.sort(sorted, Comparator.comparingInt(CatalogEntry::getId));
+        int n = sorted.length;
+
+        int[] docIds = new int[n];
+        String[] titles = new String[n];
+        String[] artists = new String[n];
+        String[] albums = new String[n];
+
+        int shardCount = pool != null ? Math.min(pool.getParallelism(), 64) : 1;
+        List<Map<Integer, IntList>> shards = new ArrayList<>(shardCount);
+        for (int s = 0; s < shardCount; s++) {
+            shards.add(new HashMap<>());
+        }
+
+        // bounded chunks keep the per-document key arrays from piling up for the whole catalog
+        for (int from = 0; from < n; from += CHUNK) {
+            int start = from;
+            int end = Math.min(n, from + CHUNK);
+            int[][] docKeys = new int[end - start][];
+            forEach(pool, start, end, i -> {
+                CatalogEntry entry = sorted[i];
+                docIds[i] = entry.getId();
+                titles[i] = Trigrams.normalize(entry.getTitle());
+                artists[i] = Trigrams.normalize(entry.getArtist());
+                albums[i] = Trigrams.normalize(entry.getAlbum());
+                docKeys[i - start] = Trigrams.documentKeys(titles[i], artists[i], albums[i]);
+            });
+            forEach(pool, 0, shardCount, s -> {
+                Map<Integer, IntList> shard = shards.get(s);
+                for (int i = start; i < end; i++) {
+                    for (int key : docKeys[i - start]) {
+                        if (Math.floorMod(key, shardCount) == s) {
+                            shard.computeIfAbsent(key, k -> new IntList()).add(docIds[i]);
+                        }
+                    }
+                }
+            });
+        }
+
+        // encode each shard, then lay all lists out in key order
+        EncodedShard[] encoded = new EncodedShard[shardCount];
+        forEach(pool, 0, shardCount, s -> encoded[s] = EncodedShard.encode(shards.get(s)));
+        shards.clear();
+
+        int keyCount = 0;
+        for (EncodedShard shard : encoded) {
+            keyCount += shard.keys.length;
+        }
+        long[] order = new long[keyCount];
+        int p = 0;
+        for (int s = 0; s < shardCount; s++) {
+            for (int i = 0; i < encoded[s].keys.length; i++) {
+                order[p++] = ((long) encoded[s].keys[i] << 32) | ((long) s << 24) | i;
+            }
+        }
+        Arrays.sort(order);
+
+        int[] keys = new int[keyCount];
+        int[] offsets = new int[keyCount + 1];
+        int[] counts = new int[keyCount];
+        int[] skipStarts = new int[keyCount + 1];
+        int size = 0;
+        int skips = 0;
+        for (int k = 0; k < keyCount; k++) {
+            EncodedShard shard = encoded[(int) (order[k] >>> 24) & 0xFF];
+            int i = (int) (order[k] & 0xFFFFFF);
+            keys[k] = (int) (order[k] >> 32);
+            counts[k] = shard.counts[i];
+            offsets[k] = size;
+            skipStarts[k] = skips;
+            size += shard.starts[i + 1] - shard.starts[i];
+            skips += shard.skipStarts[i + 1] - shard.skipStarts[i];
+        }
+        offsets[keyCount] = size;
+        skipStarts[keyCount] = skips;
+
+        byte[] data = new byte[size];
+        int[] skipBases = new int[skips];
+        int[] skipOffsets = new int[skips];
+        for (int k = 0; k < keyCount; k++) {
+            EncodedShard shard = encoded[(int) (order[k] >>> 24) & 0xFF];
+            int i = (int) (order[k] & 0xFFFFFF);
+            System.arraycopy(shard.bytes, shard.starts[i], data, offsets[k], offsets[k + 1] - offsets[k]);
+            for (int from = shard.skipStarts[i], to = skipStarts[k]; from < shard.skipStarts[i + 1]; from++, to++) {
+                skipBases[to] = shard.skipBases[from];
+                skipOffsets[to] = shard.skipOffsets[from] - shard.starts[i] + offsets[k];
+            }
+        }
+
+        return new IndexSegment(docIds, titles, artists, albums, keys, offsets, counts, data,
+                skipStarts, skipBases, skipOffsets, WordDictionary.build(wordCounts(titles, artists, albums)));
+    }
+
+    /** How many fields hold each word that has a letter in it; numbers are never corrected. */
+    private static Map<String, Integer> wordCounts(String[]... fields) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (String[] column : fields) {
+            for (String value : column) {
+                if (value.isEmpty()) {
+                    continue;
+                }
+                for (String word : value.split(" ")) {
+                    if (word.length() >= 2 && word.chars().anyMatch(Character::isLetter)) {
+                        counts.merge(word, 1, Integer::sum);
+                    }
+                }
+            }
+        }
+        return counts;
+    }
+
+    int size() {
+        return docIds.length;
+    }
+
+    /** Number of documents holding the key; 0 if none. */
+    int count(int key) {
+        int k = Arrays.binarySearch(keys, key);
+        return k >= 0 ? counts[k] : 0;
+    }
+
+    /** Ascending ids of the documents holding the key. */
+    int[] postings(int key) {
+        int k = Arrays.binarySearch(keys, key);
+        if (k < 0) {
+            return new int[0];
+        }
+        int[] ids = new int[counts[k]];
+        int position = offsets[k];
+        int previous = 0;
+        for (int i = 0; i < ids.length; i++) {
+            int gap = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[position++];
+                gap |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            previous += gap;
+            ids[i] = previous;
+        }
+        return ids;
+    }
+
+    /**
+     * The ascending candidates that also hold the key. The list is decoded
+     * in step with the candidates and never materialised; whenever the next
+     * candidate lies beyond the following block, the skip entries jump
+     * straight to the block that may hold it.
+     */
+    int[] retain(int[] candidates, int key) {
+        int k = Arrays.binarySearch(keys, key);
+        if (k < 0 || candidates.length == 0) {
+            return new int[0];
+        }
+        int firstSkip = skipStarts[k];
+        int lastSkip = skipStarts[k + 1];
+        int count = counts[k];
+
+        int[] out = new int[Math.min(candidates.length, count)];
+        int n = 0;
+        int position = offsets[k];
+        int decoded = 0;
+        int current = 0;
+        for (int candidate : candidates) {
+            int next = firstSkip + decoded / BLOCK + 1;
+            if (next < lastSkip && skipBases[next] < candidate) {
+                // last block whose base lies below the candidate
+                int low = next;
+                int high = lastSkip - 1;
+                while (low < high) {
+                    int mid = (low + high + 1) >>> 1;
+                    if (skipBases[mid] < candidate) {
+                        low = mid;
+                    } else {
+                        high = mid - 1;
+                    }
+                }
+                position = skipOffsets[low];
+                current = skipBases[low];
+                decoded = (low - firstSkip) * BLOCK;
+            }
+            while (current < candidate && decoded < count) {
+                int gap = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = data[position++];
+                    gap |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                current += gap;
+                decoded++;
+            }
+            if (current == candidate) {
+                out[n++] = candidate;
+            } else if (current < candidate) {
+                break;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    int slot(int id) {
+        return Arrays.binarySearch(docIds, id);
+    }
+
+    int id(int slot) {
+        return docIds[slot];
+    }
+
+    String title(int slot) {
+        return titles[slot];
+    }
+
+    String artist(int slot) {
+        return artists[slot];
+    }
+
+    String album(int slot) {
+        return albums[slot];
+    }
+
+    WordDictionary words() {
+        return words;
+    }
+
+    /** Entries of this segment (with normalised fields), skipping the given ids. */
+    List<CatalogEntry> entries(IntPredicate skip) {
+        List<CatalogEntry> result = new ArrayList<>(docIds.length);
+        for (int i = 0; i < docIds.length; i++) {
+            if (!skip.test(docIds[i])) {
+                result.add(new CatalogEntry(docIds[i], titles[i], artists[i], albums[i]));
+            }
+        }
+        return result;
+    }
+
+    int keyCount() {
+        return keys.length;
+    }
+
+    long postingBytes() {
+        return data.length + 8L * skipBases.length;
+    }
+
+    /** Rough heap footprint: key table, postings, id table, the stored text and the word tree. */
+    long memoryBytes() {
+        return data.length + 8L * skipBases.length + 16L * keys.length + 4L * docIds.length + 3 * 16L * docIds.length + textBytes
+                + words.memoryBytes();
+    }
+
+    private static long stringBytes(String value) {
+        // compact strings: one byte per char for Latin-1, two otherwise, plus the String and array headers
+        boolean latin1 = value.chars().allMatch(c -> c < 256);
+        return 40 + (long) value.length() * (latin1 ? 1 : 2);
+    }
+
+    private static void forEach(ForkJoinPool pool, int from, int to, IntConsumer body) {
+        if (pool == null || to - from < 2) {
+            for (int i = from; i < to; i++) {
+                body.accept(i);
+            }
+            return;
+        }
+        pool.submit(() -> IntStream.range(from, to).parallel().forEach(body)).join();
+    }
+
+    /** Growable primitive list used while postings are collected. */
+    static final class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+
+    private static final class EncodedShard {
+        private int[] keys;
+        private int[] counts;
+        private int[] starts;
+        private byte[] bytes;
+        private int[] skipStarts;
+        private int[] skipBases;
+        private int[] skipOffsets;
+
+        static EncodedShard encode(Map<Integer, IntList> lists) {
+            EncodedShard shard = new EncodedShard();
+            shard.keys = lists.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+            shard.counts = new int[shard.keys.length];
+            shard.starts = new int[shard.keys.length + 1];
+            shard.skipStarts = new int[shard.keys.length + 1];
+
+            byte[] out = new byte[64];
+            int size = 0;
+            IntList bases = new IntList();
+            IntList positions = new IntList();
+            for (int k = 0; k < shard.keys.length; k++) {
+                IntList ids = lists.get(shard.keys[k]);
+                shard.counts[k] = ids.size;
+                shard.starts[k] = size;
+                shard.skipStarts[k] = bases.size;
+                int previous = 0;
+                for (int i = 0; i < ids.size; i++) {
+                    if (ids.size > BLOCK && i % BLOCK == 0) {
+                        bases.add(previous);
+                        positions.add(size);
+                    }
+                    if (out.length - size < 5) {
+                        out = Arrays.copyOf(out, out.length * 2);
+                    }
+                    int gap = ids.values[i] - previous;
+                    previous = ids.values[i];
+                    while ((gap & ~0x7F) != 0) {
+                        out[size++] = (byte) ((gap & 0x7F) | 0x80);
+                        gap >>>= 7;
+                    }
+                    out[size++] = (byte) gap;
+                }
+            }
+            shard.starts[shard.keys.length] = size;
+            shard.skipStarts[shard.keys.length] = bases.size;
+            shard.bytes = Arrays.copyOf(out, size);
+            shard.skipBases = Arrays.copyOf(bases.values, bases.size);
+            shard.skipOffsets = Arrays.copyOf(positions.values, positions.size);
+            return shard;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.musicplayer.search;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/** The completable fields of one track and its play count. */
+@Getter
+@AllArgsConstructor
+public class SuggestEntry {
+    private final int id;
+    private final String title;
+    private final String artist;
+    private final String album;
+    private final long plays;
+}
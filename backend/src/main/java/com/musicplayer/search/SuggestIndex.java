@@ -0,0 +1,561 @@
+package com.musicplayer.search;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Prefix completion over track titles, artists and albums.
+ *
+ * Each distinct normalised title, artist and album is one term, carrying
+ * the summed play count of its tracks and the newest of them. The base
+ * keeps the terms sorted by their UTF-8 bytes, back to back in one array,
+ * so the completions of a prefix are one contiguous range found by binary
+ * search: the walk a trie would do, without an object per character. A max
+ * tree over the term ranks then takes the best {@code k} out of that range
+ * in O(k log n), however many terms share the prefix.
+ *
+ * Tracks changed since the base was built go to a small delta: the terms
+ * they touch are copied there with their new totals and hidden in the base.
+ * Readers take the current generation from a volatile field and never lock;
+ * writers serialise on a private monitor. Applying a track is idempotent,
+ * so a rebuild can simply replay whatever changed while it ran.
+ */
+public class SuggestIndex {
+    public enum Kind { TITLE, ARTIST, ALBUM }
+
+    private static final Kind[] KINDS = Kind.values();
+    private static final TrackState ABSENT = new TrackState(new String[KINDS.length], null, 0);
+
+    private volatile Generation generation = new Generation(Base.build(List.of()), Collections.emptyNavigableMap());
+
+    // guarded by writeLock
+    private final Object writeLock = new Object();
+    private final TreeMap<String, Term> deltaTerms = new TreeMap<>();
+    private final Map<Integer, TrackState> deltaTracks = new HashMap<>();
+
+    private volatile long lastBuildMs;
+
+    /** Replaces the whole index. */
+    public void load(List<SuggestEntry> entries) {
+        long started = System.currentTimeMillis();
+        Base base = Base.build(entries);
+        synchronized (writeLock) {
+            deltaTerms.clear();
+            deltaTracks.clear();
+            generation = new Generation(base, Collections.emptyNavigableMap());
+        }
+        lastBuildMs = System.currentTimeMillis() - started;
+    }
+
+    /** Brings the given tracks up to date; applying the same state twice changes nothing. */
+    public void apply(List<SuggestEntry> upserts, Collection<Integer> removed) {
+        if (upserts.isEmpty() && removed.isEmpty()) {
+            return;
+        }
+        synchronized (writeLock) {
+            Base base = generation.base;
+            Map<String, Term> copied = new HashMap<>();
+            for (SuggestEntry entry : upserts) {
+                change(base, copied, entry.getId(),
+                        new TrackState(keysOf(entry), displaysOf(entry), entry.getPlays()), entry);
+            }
+            for (int id : removed) {
+                change(base, copied, id, ABSENT, null);
+            }
+            generation = new Generation(base, Collections.unmodifiableNavigableMap(new TreeMap<>(deltaTerms)));
+        }
+    }
+
+    /** Tracks changed since the last {@link #load}. */
+    public int pendingChanges() {
+        synchronized (writeLock) {
+            return deltaTracks.size();
+        }
+    }
+
+    /**
+     * The {@code k} best terms starting with the normalised prefix, most
+     * played first and, among equals, the one with the newest track. A
+     * trailing space in the prefix asks for a whole word.
+     */
+    public List<Suggestion> suggest(String prefix, int k) {
+        String normalized = Trigrams.normalize(prefix);
+        if (normalized.isEmpty() || k <= 0) {
+            return List.of();
+        }
+        if (Character.isWhitespace(prefix.charAt(prefix.length() - 1))) {
+            normalized += " ";
+        }
+
+        Generation current = generation;
+        Base base = current.base;
+        NavigableMap<String, Term> delta = current.delta;
+
+        // worst of the best k on top
+        PriorityQueue<Term> found = new PriorityQueue<>(k + 1, Comparator.reverseOrder());
+        for (Term term : delta.subMap(normalized, true, normalized + Character.MAX_VALUE, false).values()) {
+            if (term.tracks > 0) {
+                keep(found, term, k);
+            }
+        }
+
+        // split the range around each best term until k visible ones are out
+        byte[] bytes = normalized.getBytes(StandardCharsets.UTF_8);
+        int from = base.bound(bytes, false);
+        int to = base.bound(bytes, true);
+        PriorityQueue<int[]> ranges = new PriorityQueue<>((a, b) -> base.compare(a[2], b[2]));
+        if (from < to) {
+            ranges.add(new int[] {from, to, base.best(from, to)});
+        }
+        int taken = 0;
+        while (taken < k && !ranges.isEmpty()) {
+            int[] range = ranges.poll();
+            int best = range[2];
+            if (range[0] < best) {
+                ranges.add(new int[] {range[0], best, base.best(range[0], best)});
+            }
+            if (best + 1 < range[1]) {
+                ranges.add(new int[] {best + 1, range[1], base.best(best + 1, range[1])});
+            }
+            if (delta.isEmpty() || !delta.containsKey(base.key(best))) {
+                keep(found, base.term(best), k);
+                taken++;
+            }
+        }
+
+        List<Term> ranked = new ArrayList<>(found);
+        ranked.sort(Term::compareTo);
+        List<Suggestion> result = new ArrayList<>(ranked.size());
+        for (Term term : ranked) {
+            result.add(new Suggestion(term.display, kindOf(term.key).name().toLowerCase(Locale.ROOT),
+                    term.latest, term.plays, term.tracks));
+        }
+        return result;
+    }
+
+    private static void keep(PriorityQueue<Term> found, Term term, int k) {
+        if (found.size() < k) {
+            found.add(term);
+        } else if (term.compareTo(found.peek()) < 0) {
+            found.poll();
+            found.add(term);
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Generation current = generation;
+        int tracks = current.base.trackIds.length;
+        long memory = current.base.memoryBytes();
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("terms", current.base.size());
+        stats.put("tracks", tracks);
+        stats.put("deltaTerms", current.delta.size());
+        stats.put("memoryBytes", memory);
+        stats.put("bytesPerTrack", tracks > 0 ? memory / tracks : 0);
+        stats.put("lastBuildMs", lastBuildMs);
+        return stats;
+    }
+
+    /** Caller holds writeLock. */
+    private void change(Base base, Map<String, Term> copied, int id, TrackState next, SuggestEntry entry) {
+        TrackState previous = deltaTracks.get(id);
+        if (previous == null) {
+            previous = base.track(id);
+        }
+        deltaTracks.put(id, next);
+        for (String key : previous.keys) {
+            if (key != null) {
+                Term term = writable(base, copied, key);
+                term.remove(previous.plays);
+                if (term.latest == id) {
+                    findLatest(base, term, id);
+                }
+            }
+        }
+        for (int f = 0; f < next.keys.length; f++) {
+            if (next.keys[f] != null) {
+                writable(base, copied, next.keys[f]).add(id, displayOf(entry, KINDS[f]), next.plays);
+            }
+        }
+    }
+
+    /**
+     * The newest track left under a term whose newest one just went away,
+     * and its spelling. Delta tracks are few; base tracks are scanned from
+     * the newest down, so the walk usually stops after a handful. Caller
+     * holds writeLock.
+     */
+    private void findLatest(Base base, Term term, int removedId) {
+        int f = kindOf(term.key).ordinal();
+        int latest = 0;
+        String display = "";
+        for (Map.Entry<Integer, TrackState> track : deltaTracks.entrySet()) {
+            int id = track.getKey();
+            if (id != removedId && id > latest && term.key.equals(track.getValue().keys[f])) {
+                latest = id;
+                display = track.getValue().displays[f];
+            }
+        }
+        int index = base.indexOf(term.key);
+        if (index >= 0) {
+            for (int t = base.trackIds.length - 1; t >= 0 && base.trackIds[t] > latest; t--) {
+                int id = base.trackIds[t];
+                if (base.trackTerms[t * KINDS.length + f] == index && id != removedId
+                        && !deltaTracks.containsKey(id)) {
+                    latest = id;
+                    display = base.spelling(t, f, index);
+                    break;
+                }
+            }
+        }
+        term.latest = latest;
+        term.display = display;
+    }
+
+    /** Published terms are never modified; the first change in an apply works on a copy. */
+    private Term writable(Base base, Map<String, Term> copied, String key) {
+        return copied.computeIfAbsent(key, k -> {
+            Term existing = deltaTerms.get(k);
+            Term copy = existing != null ? existing.copy() : base.seed(k);
+            deltaTerms.put(k, copy);
+            return copy;
+        });
+    }
+
+    private static String[] keysOf(SuggestEntry entry) {
+        String[] keys = new String[KINDS.length];
+        for (Kind kind : KINDS) {
+            String normalized = Trigrams.normalize(displayOf(entry, kind));
+            keys[kind.ordinal()] = normalized.isEmpty() ? null : normalized + '\u0000' + (char) ('0' + kind.ordinal());
+        }
+        return keys;
+    }
+
+    private static String[] displaysOf(SuggestEntry entry) {
+        String[] displays = new String[KINDS.length];
+        for (Kind kind : KINDS) {
+            displays[kind.ordinal()] = displayOf(entry, kind);
+        }
+        return displays;
+    }
+
+    private static String displayOf(SuggestEntry entry, Kind kind) {
+        String value = switch (kind) {
+            case TITLE -> entry.getTitle();
+            case ARTIST -> entry.getArtist();
+            case ALBUM -> entry.getAlbum();
+        };
+        return value != null ? value.trim() : "";
+    }
+
+    private static Kind kindOf(String key) {
+        return KINDS[key.charAt(key.length() - 1) - '0'];
+    }
+
+    private static final class Generation {
+        private final Base base;
+        private final NavigableMap<String, Term> delta;
+
+        private Generation(Base base, NavigableMap<String, Term> delta) {
+            this.base = base;
+            this.delta = delta;
+        }
+    }
+
+    private static final class TrackState {
+        private final String[] keys;
+        // spelling per kind; only kept for tracks in the delta
+        private final String[] displays;
+        private final long plays;
+
+        private TrackState(String[] keys, String[] displays, long plays) {
+            this.keys = keys;
+            this.displays = displays;
+            this.plays = plays;
+        }
+    }
+
+    /** Totals of one term; the key is the normalised text, a NUL and the kind. */
+    private static final class Term implements Comparable<Term> {
+        private final String key;
+        private String display = "";
+        private long plays;
+        private int tracks;
+        private int latest;
+
+        // used while building a base only
+        private byte[] bytes;
+        private int index;
+
+        private Term(String key) {
+            this.key = key;
+        }
+
+        private Term(String key, String display, long plays, int tracks, int latest) {
+            this.key = key;
+            this.display = display;
+            this.plays = plays;
+            this.tracks = tracks;
+            this.latest = latest;
+        }
+
+        private Term copy() {
+            return new Term(key, display, plays, tracks, latest);
+        }
+
+        private void add(int trackId, String spelling, long trackPlays) {
+            tracks++;
+            plays += trackPlays;
+            if (trackId >= latest) {
+                latest = trackId;
+                display = spelling;
+            }
+        }
+
+        private void remove(long trackPlays) {
+            tracks--;
+            plays -= trackPlays;
+        }
+
+        @Override
+        public int compareTo(Term other) {
+            if (plays != other.plays) {
+                return plays > other.plays ? -1 : 1;
+            }
+            return Integer.compare(other.latest, latest);
+        }
+    }
+
+    /**
+     * Immutable sorted terms, their max tree, and the terms each track was
+     * counted under. A track's spelling is kept only where it differs from
+     * its term's display, which is rare.
+     */
+    private static final class Base {
+        private final byte[] keys;
+        private final int[] keyStarts;
+        private final byte[] display;
+        private final int[] displayStarts;
+        private final long[] plays;
+        private final int[] tracks;
+        private final int[] latest;
+        private final int[] tree;
+
+        private final int[] trackIds;
+        private final int[] trackTerms;
+        private final long[] trackPlays;
+        private final Map<Integer, String> spellings;
+
+        private Base(byte[] keys, int[] keyStarts, byte[] display, int[] displayStarts, long[] plays,
+                     int[] tracks, int[] latest, int[] trackIds, int[] trackTerms, long[] trackPlays,
+                     Map<Integer, String> spellings) {
+            this.keys = keys;
+            this.keyStarts = keyStarts;
+            this.display = display;
+            this.displayStarts = displayStarts;
+            this.plays = plays;
+            this.tracks = tracks;
+            this.latest = latest;
+            this.trackIds = trackIds;
+            this.trackTerms = trackTerms;
+            this.trackPlays = trackPlays;
+            this.spellings = spellings;
+
+            int n = plays.length;
+            this.tree = new int[2 * Math.max(n, 1)];
+            for (int i = 0; i < n; i++) {
+                tree[n + i] = i;
+            }
+            for (int i = n - 1; i > 0; i--) {
+                tree[i] = better(tree[2 * i], tree[2 * i + 1]);
+            }
+        }
+
+        static Base build(List<SuggestEntry> entries) {
+            SuggestEntry[] sorted = entries.toArray(new SuggestEntry[0]);
+            Arrays.sort(sorted, Comparator.comparingInt(SuggestEntry::getId));
+
+            Map<String, Term> byKey = new HashMap<>();
+            Term[] counted = new Term[sorted.length * KINDS.length];
+            for (int t = 0; t < sorted.length; t++) {
+                String[] keys = keysOf(sorted[t]);
+                for (int f = 0; f < keys.length; f++) {
+                    if (keys[f] != null) {
+                        Term term = byKey.computeIfAbsent(keys[f], Term::new);
+                        term.add(sorted[t].getId(), displayOf(sorted[t], KINDS[f]), sorted[t].getPlays());
+                        counted[t * KINDS.length + f] = term;
+                    }
+                }
+            }
+
+            Term[] terms = byKey.values().toArray(new Term[0]);
+            byKey.clear();
+            int keyBytes = 0;
+            int displayBytes = 0;
+            List<byte[]> spellings = new ArrayList<>(terms.length);
+            for (Term term : terms) {
+                term.bytes = term.key.getBytes(StandardCharsets.UTF_8);
+                keyBytes += term.bytes.length;
+            }
+            Arrays.sort(terms, (a, b) -> Arrays.compareUnsigned(a.bytes, b.bytes));
+            for (Term term : terms) {
+                byte[] spelling = term.display.getBytes(StandardCharsets.UTF_8);
+                spellings.add(spelling);
+                displayBytes += spelling.length;
+            }
+
+            int n = terms.length;
+            byte[] keys = new byte[keyBytes];
+            int[] keyStarts = new int[n + 1];
+            byte[] display = new byte[displayBytes];
+            int[] displayStarts = new int[n + 1];
+            long[] plays = new long[n];
+            int[] tracks = new int[n];
+            int[] latest = new int[n];
+            for (int i = 0, k = 0, d = 0; i < n; i++) {
+                Term term = terms[i];
+                term.index = i;
+                keyStarts[i] = k;
+                System.arraycopy(term.bytes, 0, keys, k, term.bytes.length);
+                k += term.bytes.length;
+                term.bytes = null;
+                displayStarts[i] = d;
+                byte[] spelling = spellings.get(i);
+                System.arraycopy(spelling, 0, display, d, spelling.length);
+                d += spelling.length;
+                plays[i] = term.plays;
+                tracks[i] = term.tracks;
+                latest[i] = term.latest;
+            }
+            keyStarts[n] = keyBytes;
+            displayStarts[n] = displayBytes;
+
+            int[] trackIds = new int[sorted.length];
+            int[] trackTerms = new int[counted.length];
+            long[] trackPlays = new long[sorted.length];
+            for (int t = 0; t < sorted.length; t++) {
+                trackIds[t] = sorted[t].getId();
+                trackPlays[t] = sorted[t].getPlays();
+            }
+            Map<Integer, String> variants = new HashMap<>();
+            for (int i = 0; i < counted.length; i++) {
+                trackTerms[i] = counted[i] != null ? counted[i].index : -1;
+                if (counted[i] != null) {
+                    String spelling = displayOf(sorted[i / KINDS.length], KINDS[i % KINDS.length]);
+                    if (!spelling.equals(counted[i].display)) {
+                        variants.put(i, spelling);
+                    }
+                }
+            }
+            return new Base(keys, keyStarts, display, displayStarts, plays, tracks, latest,
+                    trackIds, trackTerms, trackPlays, variants);
+        }
+
+        int size() {
+            return plays.length;
+        }
+
+        /** Negative if term a ranks above term b. */
+        int compare(int a, int b) {
+            if (plays[a] != plays[b]) {
+                return plays[a] > plays[b] ? -1 : 1;
+            }
+            return Integer.compare(latest[b], latest[a]);
+        }
+
+        private int better(int a, int b) {
+            return a < 0 || compare(b, a) < 0 ? b : a;
+        }
+
+        /** Best-ranked term in [from, to). */
+        int best(int from, int to) {
+            int n = size();
+            int best = -1;
+            for (int l = from + n, r = to + n; l < r; l >>= 1, r >>= 1) {
+                if ((l & 1) == 1) {
+                    best = better(best, tree[l++]);
+                }
+                if ((r & 1) == 1) {
+                    best = better(best, tree[--r]);
+                }
+            }
+            return best;
+        }
+
+        /**
+         * First term whose key, cut to the prefix length, is at least
+         * ({@code after == false}) or above ({@code after == true}) the prefix.
+         */
+        int bound(byte[] prefix, boolean after) {
+            int low = 0;
+            int high = size();
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                int start = keyStarts[mid];
+                int end = Math.min(keyStarts[mid + 1], start + prefix.length);
+                int cmp = Arrays.compareUnsigned(keys, start, end, prefix, 0, prefix.length);
+                if (cmp < 0 || (after && cmp == 0)) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        String key(int i) {
+            return new String(keys, keyStarts[i], keyStarts[i + 1] - keyStarts[i], StandardCharsets.UTF_8);
+        }
+
+        Term term(int i) {
+            String spelling = new String(display, displayStarts[i], displayStarts[i + 1] - displayStarts[i],
+                    StandardCharsets.UTF_8);
+            return new Term(key(i), spelling, plays[i], tracks[i], latest[i]);
+        }
+
+        /** A copy of the term with this key, or an empty one. */
+        Term seed(String key) {
+            int i = indexOf(key);
+            return i >= 0 ? term(i) : new Term(key);
+        }
+
+        int indexOf(String key) {
+            byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+            int i = bound(bytes, false);
+            if (i < size() && keyStarts[i + 1] - keyStarts[i] == bytes.length
+                    && Arrays.equals(keys, keyStarts[i], keyStarts[i + 1], bytes, 0, bytes.length)) {
+                return i;
+            }
+            return -1;
+        }
+
+        /** How track {@code t} spells term {@code i} in field {@code f}. */
+        String spelling(int t, int f, int i) {
+            String spelling = spellings.get(t * KINDS.length + f);
+            return spelling != null ? spelling
+                    : new String(display, displayStarts[i], displayStarts[i + 1] - displayStarts[i],
+                            StandardCharsets.UTF_8);
+        }
+
+        TrackState track(int id) {
+            int t = Arrays.binarySearch(trackIds, id);
+            if (t < 0) {
+                return ABSENT;
+            }
+            String[] keys = new String[KINDS.length];
+            for (int f = 0; f < keys.length; f++) {
+                int term = trackTerms[t * KINDS.length + f];
+                keys[f] = term >= 0 ? key(term) : null;
+            }
+            return new TrackState(keys, null, trackPlays[t]);
+        }
+
+        long memoryBytes() {
+            return keys.length + display.length + 4L * (keyStarts.length + displayStarts.length)
+                    + 16L * plays.length + 4L * tree.length
+                    + 4L * (trackIds.length + trackTerms.length) + 8L * trackPlays.length
+                    + 64L * spellings.size();
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.musicplayer.search;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * One completion: a title, artist or album as spelled by its newest
+ * track. {@code trackId} is that newest track; {@code plays} sums the play
+ * counts of every track carrying the text.
+ */
+@Getter
+@AllArgsConstructor
+public class Suggestion {
+    private final String text;
+    private final String type;
+    private final long trackId;
+    private final long plays;
+    private final int tracks;
+}
@@ -0,0 +1,188 @@
+package com.musicplayer.search;
+
+import com.musicplayer.event.CatalogChangedEvent;
+import com.musicplayer.model.Track;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Owns the {@link SuggestIndex}. It is built in the background at startup
+ * and rebuilt from the table on a schedule, which is how play counts reach
+ * the ranking, and early once enough tracks have changed. Track writes in
+ * TrackService are applied directly; ingest and bulk import changes arrive
+ * as {@link CatalogChangedEvent}s and are re-read from the database.
+ */
+@Component
+@RequiredArgsConstructor
+public class TrackSuggester {
+    private static final String PAGE_SQL =
+            "SELECT id, title, artist, album, play_count FROM tracks WHERE id > ? ORDER BY id LIMIT ?";
+    private static final int PAGE_SIZE = 50_000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SuggestIndex index = new SuggestIndex();
+
+    @Value("${music.suggest.enabled:true}")
+    private boolean enabled;
+
+    @Value("${music.suggest.rebuild-threshold:4096}")
+    private int rebuildThreshold;
+
+    private volatile boolean ready;
+    private final AtomicBoolean building = new AtomicBoolean();
+
+    // ids changed while a rebuild was reading the table; guarded by this
+    private final Set<Long> changedDuringBuild = new HashSet<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        if (enabled) {
+            rebuild();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${music.suggest.rebuild-interval-ms:900000}",
+            initialDelayString = "${music.suggest.rebuild-interval-ms:900000}")
+    public void scheduledRebuild() {
+        if (enabled && ready) {
+            rebuild();
+        }
+    }
+
+    /** Up to {@code k} completions; empty until the first build is done. */
+    public List<Suggestion> suggest(String prefix, int k) {
+        return ready ? index.suggest(prefix, k) : List.of();
+    }
+
+    public void upsert(Track track) {
+        if (!enabled) {
+            return;
+        }
+        remember(List.of(track.getId()));
+        index.apply(List.of(entry(track.getId(), track.getTitle(), track.getArtist(), track.getAlbum(),
+                track.getPlayCount())), List.of());
+        rebuildIfBehind();
+    }
+
+    public void remove(Long trackId) {
+        if (!enabled) {
+            return;
+        }
+        remember(List.of(trackId));
+        index.apply(List.of(), List.of(Math.toIntExact(trackId)));
+        rebuildIfBehind();
+    }
+
+    @EventListener
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        remember(event.getTrackIds());
+        refresh(event.getTrackIds());
+        rebuildIfBehind();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("ready", ready);
+        stats.put("building", building.get());
+        if (ready) {
+            stats.putAll(index.stats());
+            stats.put("pendingChanges", index.pendingChanges());
+        }
+        return stats;
+    }
+
+    /** Returns {@code false} if a rebuild is already running. */
+    public boolean rebuild() {
+        if (!building.compareAndSet(false, true)) {
+            return false;
+        }
+        Thread builder = new Thread(() -> {
+            try {
+                long started = System.currentTimeMillis();
+                List<SuggestEntry> entries = new ArrayList<>();
+                long lastId = 0;
+                while (true) {
+                    List<SuggestEntry> page = jdbcTemplate.query(PAGE_SQL, (rs, i) -> entry(rs.getLong("id"),
+                            rs.getString("title"), rs.getString("artist"), rs.getString("album"),
+                            rs.getLong("play_count")), lastId, PAGE_SIZE);
+                    entries.addAll(page);
+                    if (page.size() < PAGE_SIZE) {
+                        break;
+                    }
+                    lastId = page.get(page.size() - 1).getId();
+                }
+                index.load(entries);
+
+                // the new base may predate these; re-reading them is harmless either way
+                List<Long> changed;
+                synchronized (this) {
+                    building.set(false);
+                    changed = new ArrayList<>(changedDuringBuild);
+                    changedDuringBuild.clear();
+                }
+                refresh(changed);
+                ready = true;
+                System.out.println("Suggestion index built for " + entries.size() + " tracks in "
+                        + (System.currentTimeMillis() - started) + " ms: " + index.stats());
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    building.set(false);
+                    changedDuringBuild.clear();
+                }
+                System.err.println("Suggestion index build failed: " + e.getMessage());
+            }
+        }, "suggest-index-build");
+        builder.setDaemon(true);
+        builder.start();
+        return true;
+    }
+
+    private synchronized void remember(List<Long> trackIds) {
+        if (building.get()) {
+            changedDuringBuild.addAll(trackIds);
+        }
+    }
+
+    private void rebuildIfBehind() {
+        if (ready && index.pendingChanges() >= rebuildThreshold) {
+            rebuild();
+        }
+    }
+
+    /** Re-reads the given tracks; ids no longer in the table are dropped. */
+    private void refresh(List<Long> ids) {
+        for (int from = 0; from < ids.size(); from += 1000) {
+            List<Long> chunk = ids.subList(from, Math.min(ids.size(), from + 1000));
+            String placeholders = String.join(",", Collections.nCopies(chunk.size(), "?"));
+            List<SuggestEntry> found = jdbcTemplate.query(
+                    "SELECT id, title, artist, album, play_count FROM tracks WHERE id IN (" + placeholders + ")",
+                    (rs, i) -> entry(rs.getLong("id"), rs.getString("title"), rs.getString("artist"),
+                            rs.getString("album"), rs.getLong("play_count")),
+                    chunk.toArray());
+
+            Set<Integer> missing = new HashSet<>();
+            for (Long id : chunk) {
+                missing.add(Math.toIntExact(id));
+            }
+            for (SuggestEntry entry : found) {
+                missing.remove(entry.getId());
+            }
+            index.apply(found, missing);
+        }
+    }
+
+    private static SuggestEntry entry(long id, String title, String artist, String album, Long plays) {
+        return new SuggestEntry(Math.toIntExact(id), title, artist, album, plays != null ? plays : 0);
+    }
+}
@@ -0,0 +1,81 @@
+package com.musicplayer.search;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Text normalisation and trigram keys shared by indexing and querying.
+ * Text is lower-cased, stripped of accents and reduced to letters and
+ * digits separated by single spaces. Trigrams are taken over the text
+ * padded with a space on each side, so a two-letter word start ({@code " ab"})
+ * is a key as well.
+ */
+public final class Trigrams {
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private Trigrams() {
+    }
+
+    public static String normalize(String text) {
+        if (text == null || text.isEmpty()) {
+            return "";
+        }
+        String decomposed = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        return SEPARATORS.matcher(decomposed.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+    }
+
+    /** Hash of three characters; collisions only cost a failed verification. */
+    public static int key(char a, char b, char c) {
+        long h = ((a * 0x9E3779B1L) ^ (b * 0x85EBCA77L) * 31) ^ (c * 0xC2B2AE3DL) * 961;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /** Distinct keys of the padded fields, sorted. */
+    public static int[] documentKeys(String... normalizedFields) {
+        int total = 0;
+        for (String field : normalizedFields) {
+            total += field.length() + 2;
+        }
+        int[] keys = new int[total];
+        int count = 0;
+        for (String field : normalizedFields) {
+            if (field.isEmpty()) {
+                continue;
+            }
+            String padded = " " + field + " ";
+            for (int i = 0; i + 3 <= padded.length(); i++) {
+                keys[count++] = key(padded.charAt(i), padded.charAt(i + 1), padded.charAt(i + 2));
+            }
+        }
+        Arrays.sort(keys, 0, count);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || keys[distinct - 1] != keys[i]) {
+                keys[distinct++] = keys[i];
+            }
+        }
+        return Arrays.copyOf(keys, distinct);
+    }
+
+    /**
+     * Keys a document must contain to match one query word: every trigram of
+     * the word, or its padded start when the word has only two letters.
+     * Single letters give no keys.
+     */
+    public static int[] queryKeys(String word) {
+        if (word.length() < 2) {
+            return new int[0];
+        }
+        if (word.length() == 2) {
+            return new int[] {key(' ', word.charAt(0), word.charAt(1))};
+        }
+        int[] keys = new int[word.length() - 2];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = key(word.charAt(i), word.charAt(i + 1), word.charAt(i + 2));
+        }
+        return keys;
+    }
+}
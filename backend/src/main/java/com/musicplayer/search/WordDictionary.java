@@ -0,0 +1,163 @@
+package com.musicplayer.search;
+
+import java.util.*;
+
+/**
+ * Immutable sorted dictionary of the distinct words of a segment, used to
+ * find the words within a small edit distance of a misspelt query word.
+ *
+ * Distance is Levenshtein with a swap of two adjacent letters counting as
+ * one edit ("theives" is one edit from "thieves"). The lookup walks the
+ * sorted array the way a Levenshtein automaton walks a trie: one row of the
+ * edit-distance table per character of the current word, rows reused for
+ * the prefix shared with the previous word, and as soon as a row has
+ * nothing within the limit every word under that prefix is skipped. The
+ * prefix each word shares with the one before it is precomputed, with a
+ * min tree over those lengths, so skipping a prefix is a descent over
+ * bytes rather than string comparisons. Only prefixes that can still lead to a
+ * match are ever expanded, so the cost follows the size of the answer
+ * rather than the dictionary.
+ */
+final class WordDictionary {
+    // shared prefixes are stored in a byte; longer query words are not corrected
+    static final int MAX_WORD = 100;
+
+    private final String[] words;
+    private final int[] counts;
+    private final int leaves;
+    private final byte[] shared;
+
+    private WordDictionary(String[] words, int[] counts) {
+        this.words = words;
+        this.counts = counts;
+
+        // shared[leaves + i]: prefix length word i shares with word i - 1; inner nodes hold the minimum below
+        int n = words.length;
+        this.leaves = Integer.highestOneBit(Math.max(1, n - 1)) * 2;
+        this.shared = new byte[2 * leaves];
+        for (int i = 1; i < n; i++) {
+            shared[leaves + i] = (byte) Math.min(Byte.MAX_VALUE, commonPrefix(words[i - 1], words[i]));
+        }
+        for (int node = leaves - 1; node > 0; node--) {
+            shared[node] = (byte) Math.min(shared[2 * node], shared[2 * node + 1]);
+        }
+    }
+
+    static WordDictionary build(Map<String, Integer> wordCounts) {
+        String[] words = wordCounts.keySet().toArray(new String[0]);
+        Arrays.sort(words);
+        int[] counts = new int[words.length];
+        for (int i = 0; i < words.length; i++) {
+            counts[i] = wordCounts.get(words[i]);
+        }
+        return new WordDictionary(words, counts);
+    }
+
+    int size() {
+        return words.length;
+    }
+
+    /** Calls back with every word within {@code maxDistance}, its distance and how many fields hold it. */
+    void near(String word, int maxDistance, Visitor visitor) {
+        int length = word.length();
+        if (length > MAX_WORD) {
+            return;
+        }
+        // no word longer than length + maxDistance can match, so deeper rows are never needed
+        int[][] rows = new int[length + maxDistance + 2][length + 1];
+        for (int j = 0; j <= length; j++) {
+            rows[0][j] = j;
+        }
+
+        int valid = 0;
+        int i = 0;
+        while (i < words.length) {
+            String candidate = words[i];
+            // what the previous word visited, or skipped past, shares with this one
+            int depth = Math.min(valid, shared[leaves + i]);
+            boolean dead = false;
+            while (depth < candidate.length()) {
+                depth++;
+                if (!advance(rows, depth, word, candidate, maxDistance)) {
+                    dead = true;
+                    break;
+                }
+            }
+            valid = depth;
+            if (dead) {
+                i = firstBelow(i + 1, depth);
+                continue;
+            }
+            int distance = rows[depth][length];
+            if (distance <= maxDistance) {
+                visitor.visit(candidate, distance, counts[i]);
+            }
+            i++;
+        }
+    }
+
+    long memoryBytes() {
+        long text = 0;
+        for (String word : words) {
+            text += 40 + word.length();
+        }
+        return text + 8L * words.length + shared.length;
+    }
+
+    /** Fills the row for the candidate's first {@code depth} chars; {@code false} once no cell is within the limit. */
+    private static boolean advance(int[][] rows, int depth, String word, String candidate, int maxDistance) {
+        int[] above = rows[depth - 1];
+        int[] row = rows[depth];
+        char c = candidate.charAt(depth - 1);
+        row[0] = above[0] + 1;
+        int best = row[0];
+        for (int j = 1; j < row.length; j++) {
+            int substitute = above[j - 1] + (word.charAt(j - 1) == c ? 0 : 1);
+            int value = Math.min(substitute, Math.min(above[j], row[j - 1]) + 1);
+            if (depth > 1 && j > 1 && c == word.charAt(j - 2) && candidate.charAt(depth - 2) == word.charAt(j - 1)) {
+                value = Math.min(value, rows[depth - 2][j - 2] + 1);
+            }
+            row[j] = value;
+            best = Math.min(best, value);
+        }
+        return best <= maxDistance;
+    }
+
+    /** First index from {@code from} on whose word shares fewer than {@code depth} chars with its predecessor. */
+    private int firstBelow(int from, int depth) {
+        if (from >= words.length) {
+            return words.length;
+        }
+        int node = leaves + from;
+        while (shared[node] >= depth) {
+            // next subtree to the right
+            while ((node & 1) == 1) {
+                node >>= 1;
+            }
+            if (node == 0) {
+                return words.length;
+            }
+            node++;
+        }
+        while (node < leaves) {
+            node = 2 * node;
+            if (shared[node] >= depth) {
+                node++;
+            }
+        }
+        return Math.min(node - leaves, words.length);
+    }
+
+    private static int commonPrefix(String a, String b) {
+        int n = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < n && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+
+    interface Visitor {
+        void visit(String word, int distance, int count);
+    }
+}
@@ -0,0 +1,351 @@
+package com.musicplayer.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.musicplayer.event.CatalogChangedEvent;
+import com.musicplayer.model.TrackStatus;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+
+/**
+ * Whole-catalog export and import in a form other instances and offline
+ * clients can consume: one JSON object per track, either one per line
+ * (NDJSON) or as a single array.
+ *
+ * Export reads a forward-only JDBC cursor and writes each row straight to a
+ * Jackson generator, so no entity, DTO or response string is ever held for
+ * more than one row and the heap stays flat whatever the catalog size. On
+ * MySQL that takes the driver's row-streaming mode; other databases get a
+ * plain fetch size.
+ *
+ * Import accepts either form from a streaming parser and inserts JDBC
+ * batches, as the library import does. Ids are assigned by this database;
+ * the exported id is ignored. Only rows whose media file is in the store
+ * are taken, and a row whose storage path and title a track already has is
+ * skipped, so running the same import again changes nothing. A failure
+ * part-way reports what was committed before it.
+ */
+@Service
+@RequiredArgsConstructor
+public class CatalogTransferService {
+    private static final String SELECT_SQL = "SELECT id, title, artist, album, storage_path, duration_ms, size_bytes, "
+            + "bitrate, sample_rate, status, play_count, created_at FROM tracks ORDER BY id";
+
+    private static final String INSERT_SQL = "INSERT INTO tracks "
+            + "(title, artist, album, storage_path, duration_ms, size_bytes, bitrate, sample_rate, status, play_count, created_at) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final StorageService storageService;
+    private final PlatformTransactionManager transactionManager;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObjectMapper objectMapper;
+
+    @Value("${music.export.fetch-size:1000}")
+    private int fetchSize;
+
+    @Value("${music.export.import-batch-size:1000}")
+    private int importBatchSize;
+
+    private volatile Boolean mysql;
+
+    /** Writes every track to {@code out}; the caller owns and closes the stream. */
+    public long export(OutputStream out, boolean ndjson) throws IOException {
+        long[] rows = {0};
+        try (JsonGenerator json = objectMapper.getFactory().createGenerator(out)) {
+            json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            if (ndjson) {
+                json.setRootValueSeparator(new SerializedString("\n"));
+            } else {
+                json.writeStartArray();
+            }
+            jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(SELECT_SQL,
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                // Connector/J buffers the whole result unless the fetch size is MIN_VALUE
+                statement.setFetchSize(isMysql() ? Integer.MIN_VALUE : fetchSize);
+                return statement;
+            }, (ResultSet rs) -> {
+                try {
+                    writeTrack(json, rs);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                rows[0]++;
+            });
+            if (ndjson) {
+                json.writeRaw('\n');
+            } else {
+                json.writeEndArray();
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return rows[0];
+    }
+
+    /**
+     * Reads NDJSON or an array of tracks from {@code in} and inserts them in
+     * batches. Rows without a title or storage path, or with an unknown
+     * status, count as invalid; rows whose file is not in the store as
+     * missing; rows already in the catalog as existing.
+     */
+    public Map<String, Object> importTracks(InputStream in) throws IOException {
+        long started = System.currentTimeMillis();
+        Tally tally = new Tally();
+        List<Object[]> batch = new ArrayList<>(importBatchSize);
+        int line = 0;
+
+        try (JsonParser parser = objectMapper.getFactory().createParser(in)) {
+            JsonToken token = parser.nextToken();
+            boolean array = token == JsonToken.START_ARRAY;
+            if (array) {
+                token = parser.nextToken();
+            }
+            while (token != null && token != JsonToken.END_ARRAY) {
+                line = parser.getCurrentLocation().getLineNr();
+                if (token != JsonToken.START_OBJECT) {
+                    throw new IllegalArgumentException("Expected a track object at line " + line);
+                }
+                Object[] row = readTrack(parser);
+                if (row == null) {
+                    tally.invalid++;
+                } else if (!isStored((String) row[3])) {
+                    tally.missingFiles++;
+                } else {
+                    batch.add(row);
+                }
+                if (batch.size() >= importBatchSize) {
+                    insert(batch, tally);
+                    batch.clear();
+                }
+                token = parser.nextToken();
+            }
+            if (!batch.isEmpty()) {
+                insert(batch, tally);
+            }
+        } catch (IOException | RuntimeException e) {
+            Map<String, Object> progress = tally.toMap(started);
+            progress.put("failedAtLine", line);
+            progress.put("error", e.getMessage());
+            throw new ImportFailedException(e, progress);
+        }
+        return tally.toMap(started);
+    }
+
+    private boolean isStored(String storagePath) {
+        if (!StorageService.isContentName(storagePath) && !StorageService.isShardedPath(storagePath)) {
+            return false;
+        }
+        return Files.isRegularFile(storageService.load(storagePath));
+    }
+
+    private void writeTrack(JsonGenerator json, ResultSet rs) throws IOException, SQLException {
+        json.writeStartObject();
+        json.writeNumberField("id", rs.getLong("id"));
+        json.writeStringField("title", rs.getString("title"));
+        json.writeStringField("artist", rs.getString("artist"));
+        json.writeStringField("album", rs.getString("album"));
+        json.writeStringField("storagePath", rs.getString("storage_path"));
+        writeNumber(json, "durationMs", rs, "duration_ms");
+        writeNumber(json, "sizeBytes", rs, "size_bytes");
+        writeNumber(json, "bitrate", rs, "bitrate");
+        writeNumber(json, "sampleRate", rs, "sample_rate");
+        json.writeStringField("status", rs.getString("status"));
+        json.writeNumberField("playCount", rs.getLong("play_count"));
+        Timestamp createdAt = rs.getTimestamp("created_at");
+        json.writeStringField("createdAt", createdAt != null ? createdAt.toLocalDateTime().toString() : null);
+        json.writeEndObject();
+    }
+
+    private void writeNumber(JsonGenerator json, String field, ResultSet rs, String column)
+            throws IOException, SQLException {
+        long value = rs.getLong(column);
+        if (rs.wasNull()) {
+            json.writeNullField(field);
+        } else {
+            json.writeNumberField(field, value);
+        }
+    }
+
+    /**
+     * One object in INSERT_SQL parameter order, or {@code null} when it lacks
+     * a title or storage path or names an unknown status.
+     */
+    private Object[] readTrack(JsonParser parser) throws IOException {
+        Object[] row = new Object[11];
+        row[8] = TrackStatus.PENDING.name();
+        row[9] = 0L;
+        boolean valid = true;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if (value == JsonToken.VALUE_NULL) {
+                continue;
+            }
+            switch (field) {
+                case "title" -> row[0] = parser.getText();
+                case "artist" -> row[1] = parser.getText();
+                case "album" -> row[2] = parser.getText();
+                case "storagePath" -> row[3] = parser.getText();
+                case "durationMs" -> row[4] = parser.getLongValue();
+                case "sizeBytes" -> row[5] = parser.getLongValue();
+                case "bitrate" -> row[6] = parser.getIntValue();
+                case "sampleRate" -> row[7] = parser.getIntValue();
+                case "status" -> {
+                    String status = parser.getText();
+                    valid &= Arrays.stream(TrackStatus.values()).anyMatch(known -> known.name().equals(status));
+                    row[8] = status;
+                }
+                case "playCount" -> row[9] = parser.getLongValue();
+                case "createdAt" -> row[10] = parseTime(parser.getText());
+                default -> parser.skipChildren();
+            }
+        }
+        if (!valid || row[0] == null || row[3] == null) {
+            return null;
+        }
+        if (row[10] == null) {
+            row[10] = new Timestamp(System.currentTimeMillis());
+        }
+        return row;
+    }
+
+    private Timestamp parseTime(String value) {
+        try {
+            return Timestamp.valueOf(LocalDateTime.parse(value));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid createdAt: " + value);
+        }
+    }
+
+    private void insert(List<Object[]> batch, Tally tally) {
+        Set<List<String>> present = existing(batch);
+        List<Object[]> rows = new ArrayList<>(batch.size());
+        for (Object[] row : batch) {
+            // also drops a repeat of the same track later in this batch
+            if (present.add(List.of((String) row[3], (String) row[0]))) {
+                rows.add(row);
+            } else {
+                tally.existing++;
+            }
+        }
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        GeneratedKeyHolder keys = new GeneratedKeyHolder();
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                jdbcTemplate.batchUpdate(
+                        connection -> connection.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS),
+                        new BatchPreparedStatementSetter() {
+                            @Override
+                            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                                Object[] row = rows.get(i);
+                                for (int column = 0; column < row.length; column++) {
+                                    ps.setObject(column + 1, row[column]);
+                                }
+                            }
+
+                            @Override
+                            public int getBatchSize() {
+                                return rows.size();
+                            }
+                        },
+                        keys));
+        tally.imported += rows.size();
+
+        List<Long> ids = new ArrayList<>(rows.size());
+        for (Map<String, Object> key : keys.getKeyList()) {
+            ids.add(((Number) key.values().iterator().next()).longValue());
+        }
+        eventPublisher.publishEvent(new CatalogChangedEvent(ids));
+    }
+
+    /**
+     * (storage path, title) of the tracks in the catalog that match rows of
+     * the batch. One exact index lookup per row, sent as a single UNION ALL:
+     * IN lists over both columns make some optimizers read every track of a
+     * shared file, which grows with the catalog.
+     */
+    private Set<List<String>> existing(List<Object[]> batch) {
+        StringBuilder sql = new StringBuilder();
+        List<Object> args = new ArrayList<>(batch.size() * 2);
+        for (Object[] row : batch) {
+            if (!args.isEmpty()) {
+                sql.append(" UNION ALL ");
+            }
+            sql.append("SELECT storage_path, title FROM tracks WHERE storage_path = ? AND title = ?");
+            args.add(row[3]);
+            args.add(row[0]);
+        }
+        Set<List<String>> present = new HashSet<>();
+        jdbcTemplate.query(sql.toString(), (ResultSet rs) -> {
+            present.add(List.of(rs.getString(1), rs.getString(2)));
+        }, args.toArray());
+        return present;
+    }
+
+    private boolean isMysql() {
+        Boolean result = mysql;
+        if (result == null) {
+            String product = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                    connection.getMetaData().getDatabaseProductName());
+            result = product != null && (product.toLowerCase(Locale.ROOT).contains("mysql")
+                    || product.toLowerCase(Locale.ROOT).contains("mariadb"));
+            mysql = result;
+        }
+        return result;
+    }
+
+    private static class Tally {
+        private long imported;
+        private long existing;
+        private long missingFiles;
+        private long invalid;
+
+        private Map<String, Object> toMap(long started) {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("imported", imported);
+            result.put("existing", existing);
+            result.put("missingFiles", missingFiles);
+            result.put("invalid", invalid);
+            result.put("elapsedMs", System.currentTimeMillis() - started);
+            return result;
+        }
+    }
+
+    /** An import that stopped part-way; {@code progress} holds what was committed before the failure. */
+    public static class ImportFailedException extends RuntimeException {
+        private final Map<String, Object> progress;
+
+        public ImportFailedException(Throwable cause, Map<String, Object> progress) {
+            super(cause.getMessage(), cause);
+            this.progress = progress;
+        }
+
+        public Map<String, Object> getProgress() {
+            return progress;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.musicplayer.service;
+
+import com.musicplayer.media.Mp3Segmenter;
+import com.musicplayer.media.SeekTable;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Segmented delivery: every stored MP3 gets a {@code <file>.hls} directory
+ * with frame-aligned segments and an HLS playlist. Segments never change
+ * once written, so they are served as immutable, cacheable objects.
+ */
+@Service
+@RequiredArgsConstructor
+public class HlsService {
+    public static final String SUFFIX = ".hls";
+
+    private final StorageService storageService;
+    private final SeekIndexService seekIndexService;
+    private final Mp3Segmenter mp3Segmenter;
+
+    @Value("${music.hls.enabled:true}")
+    private boolean enabled;
+
+    @Value("${music.hls.segment-seconds:10}")
+    private int segmentSeconds;
+
+    private final ConcurrentHashMap<String, Object> building = new ConcurrentHashMap<>();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean isSegmented(String storagePath) {
+        return Files.isDirectory(storageService.loadSidecar(storagePath, SUFFIX));
+    }
+
+    /**
+     * Segments are built in a scratch directory and renamed into place, so
+     * readers never see a half-written set.
+     */
+    public void segment(String storagePath, SeekTable table) throws IOException {
+        Path target = storageService.loadSidecar(storagePath, SUFFIX);
+        Path scratch = target.resolveSibling(target.getFileName() + ".tmp-" + UUID.randomUUID());
+        try {
+            int count = mp3Segmenter.split(storageService.load(storagePath), table, segmentSeconds, scratch);
+            Files.move(scratch, target, StandardCopyOption.ATOMIC_MOVE);
+            System.out.println("Segmented " + storagePath + " into " + count + " parts");
+        } catch (IOException e) {
+            if (Files.isDirectory(target)) {
+                return; // another request finished first
+            }
+            throw e;
+        } finally {
+            storageService.deleteRecursively(scratch);
+        }
+    }
+
+    /**
+     * Resolves a playlist or segment file, segmenting tracks stored before
+     * segmented delivery was enabled on first use. Returns {@code null} if
+     * the track cannot be segmented.
+     */
+    public Path find(String storagePath, String name) throws IOException {
+        Path dir = storageService.loadSidecar(storagePath, SUFFIX);
+        if (!Files.isDirectory(dir)) {
+            Object lock = building.computeIfAbsent(storagePath, key -> new Object());
+            try {
+                synchronized (lock) {
+                    if (!Files.isDirectory(dir)) {
+                        SeekTable table = seekIndexService.find(storagePath);
+                        if (table == null) {
+                            return null;
+                        }
+                        segment(storagePath, table);
+                    }
+                }
+            } finally {
+                building.remove(storagePath);
+            }
+        }
+        return dir.resolve(name);
+    }
+}
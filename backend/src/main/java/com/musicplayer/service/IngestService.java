@@ -0,0 +1,326 @@
+package com.musicplayer.service;
+
+import com.musicplayer.event.CatalogChangedEvent;
+import com.musicplayer.media.Id3Reader;
+import com.musicplayer.media.Id3Tags;
+import com.musicplayer.media.SeekTable;
+import com.musicplayer.media.TrackAnalysis;
+import com.musicplayer.model.Track;
+import com.musicplayer.model.TrackStatus;
+import com.musicplayer.repository.TrackRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Post-upload analysis. A bounded pool reads ID3 tags and scans MPEG frames
+ * (duration, bitrate, sample rate, seek table, segments); a single writer
+ * drains the results into batched UPDATEs. Tag values only fill fields the
+ * uploader left empty.
+ */
+@Service
+@RequiredArgsConstructor
+public class IngestService {
+    private static final String UPDATE_SQL = "UPDATE tracks SET "
+            + "duration_ms = COALESCE(?, duration_ms), bitrate = COALESCE(?, bitrate), "
+            + "sample_rate = COALESCE(?, sample_rate), "
+            + "title = CASE WHEN title = '' THEN ? ELSE title END, "
+            + "artist = COALESCE(NULLIF(artist, ''), ?), album = COALESCE(NULLIF(album, ''), ?), "
+            + "status = ? WHERE id = ?";
+    private static final String FAIL_SQL = "UPDATE tracks SET status = 'FAILED' WHERE id = ?";
+
+    private final TrackRepository trackRepository;
+    private final StorageService storageService;
+    private final SeekIndexService seekIndexService;
+    private final HlsService hlsService;
+    private final Id3Reader id3Reader;
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${music.ingest.workers:0}")
+    private int workers;
+
+    @Value("${music.ingest.queue-capacity:1000}")
+    private int queueCapacity;
+
+    @Value("${music.ingest.batch-size:100}")
+    private int batchSize;
+
+    @Value("${music.ingest.flush-interval-ms:500}")
+    private long flushIntervalMs;
+
+    @Value("${music.ingest.backfill-on-startup:true}")
+    private boolean backfillOnStartup;
+
+    private ThreadPoolExecutor pool;
+    private Semaphore slots;
+    private final BlockingQueue<Result> results = new LinkedBlockingQueue<>();
+    private final AtomicBoolean backfilling = new AtomicBoolean();
+    private volatile boolean running = true;
+    private Thread writer;
+
+    private final LongAdder processed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        int threads = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+        pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(queueCapacity), daemonThreads("ingest-"));
+        slots = new Semaphore(threads + queueCapacity);
+
+        writer = new Thread(this::drainResults, "ingest-writer");
+        writer.setDaemon(true);
+        writer.start();
+
+        if (backfillOnStartup) {
+            startBackfill();
+        }
+    }
+
+    /** Runs {@link #backfill()} in the background; false if one is already running. */
+    public boolean startBackfill() {
+        if (pool == null || !backfilling.compareAndSet(false, true)) {
+            return false;
+        }
+        Thread backfiller = new Thread(this::backfill, "ingest-backfill");
+        backfiller.setDaemon(true);
+        backfiller.start();
+        return true;
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (pool != null) {
+            pool.shutdown();
+            pool.awaitTermination(10, TimeUnit.SECONDS);
+        }
+        if (writer != null) {
+            writer.interrupt();
+            writer.join(5000);
+        }
+    }
+
+    /**
+     * Queues a freshly stored track without ever blocking the upload. When
+     * the queue is full the track stays PENDING for the next backfill.
+     */
+    public boolean submit(Long trackId, String originalFilename) {
+        if (pool == null || !slots.tryAcquire()) {
+            return false;
+        }
+        pool.execute(() -> process(trackId, originalFilename));
+        return true;
+    }
+
+    /** Queues every PENDING track, waiting for room as it goes. FAILED tracks are left alone. */
+    private void backfill() {
+        int queued = 0;
+        try {
+            long afterId = 0;
+            List<Long> ids;
+            do {
+                ids = jdbcTemplate.queryForList(
+                        "SELECT id FROM tracks WHERE (status IS NULL OR status = 'PENDING') AND id > ? "
+                                + "ORDER BY id LIMIT 500", Long.class, afterId);
+                for (Long id : ids) {
+                    slots.acquire();
+                    pool.execute(() -> process(id, null));
+                    queued++;
+                    afterId = id;
+                }
+            } while (!ids.isEmpty() && running);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            backfilling.set(false);
+        }
+        if (queued > 0) {
+            System.out.println("Ingest backfill queued " + queued + " tracks");
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("workers", pool != null ? pool.getMaximumPoolSize() : 0);
+        stats.put("active", pool != null ? pool.getActiveCount() : 0);
+        stats.put("queued", pool != null ? pool.getQueue().size() : 0);
+        stats.put("pendingWrites", results.size());
+        stats.put("processed", processed.sum());
+        stats.put("failed", failed.sum());
+        stats.put("batches", batches.sum());
+        stats.put("backfilling", backfilling.get());
+        return stats;
+    }
+
+    private void process(Long trackId, String originalFilename) {
+        try {
+            Track track = trackRepository.findById(trackId).orElse(null);
+            if (track == null) {
+                return;
+            }
+            TrackAnalysis analysis = analyse(track.getStoragePath(), originalFilename);
+            results.add(analysis != null
+                    ? new Result(trackId, analysis, TrackStatus.READY)
+                    : failure(trackId, originalFilename));
+        } catch (Exception e) {
+            System.err.println("Ingest failed for track " + trackId + ": " + e.getMessage());
+            results.add(failure(trackId, originalFilename));
+        } finally {
+            slots.release();
+        }
+    }
+
+    /**
+     * Reads tags and scans the stream of a stored file, writing its seek
+     * table and segments on the way. Returns {@code null} if the file is
+     * missing. Also used by bulk import, which runs its own workers.
+     */
+    public TrackAnalysis analyse(String storagePath, String originalFilename) throws IOException {
+        Path file = storageService.load(storagePath);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+
+        Id3Tags tags = id3Reader.read(file);
+        SeekTable table = seekIndexService.find(storagePath);
+        if (table != null && hlsService.isEnabled() && !hlsService.isSegmented(storagePath)) {
+            hlsService.segment(storagePath, table);
+        }
+
+        return new TrackAnalysis(
+                table != null ? table.getDurationMs() : null,
+                table != null ? table.getBitrateKbps() : null,
+                table != null ? table.getSampleRate() : null,
+                fallbackTitle(tags.getTitle(), originalFilename),
+                tags.getArtist(), tags.getAlbum());
+    }
+
+    private Result failure(Long trackId, String originalFilename) {
+        return new Result(trackId, new TrackAnalysis(null, null, null,
+                fallbackTitle(null, originalFilename), null, null), TrackStatus.FAILED);
+    }
+
+    private String fallbackTitle(String tagTitle, String originalFilename) {
+        if (tagTitle != null) {
+            return tagTitle;
+        }
+        if (originalFilename != null && !originalFilename.isBlank()) {
+            return originalFilename.replaceFirst("[.][^.]+$", "");
+        }
+        return "Unknown";
+    }
+
+    private void drainResults() {
+        List<Result> batch = new ArrayList<>(batchSize);
+        while (running || !results.isEmpty()) {
+            try {
+                Result first = results.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                results.drainTo(batch, batchSize - 1);
+                write(batch);
+            } catch (InterruptedException e) {
+                if (!running) {
+                    results.drainTo(batch);
+                    write(batch);
+                    return;
+                }
+            } catch (RuntimeException e) {
+                System.err.println("Ingest batch write failed: " + e.getMessage());
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<Result> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            jdbcTemplate.batchUpdate(UPDATE_SQL, batch, batch.size(), (ps, r) -> bind(ps, r));
+            for (Result r : batch) {
+                (r.status == TrackStatus.FAILED ? failed : processed).increment();
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Ingest batch write failed, retrying row by row: " + e.getMessage());
+            for (Result r : batch) {
+                writeOne(r);
+            }
+        }
+        batches.increment();
+        eventPublisher.publishEvent(new CatalogChangedEvent(batch.stream().map(r -> r.trackId).toList()));
+    }
+
+    /**
+     * Writes a row the batch could not. If that fails too the track is
+     * marked FAILED rather than left PENDING until the next backfill.
+     */
+    private void writeOne(Result r) {
+        try {
+            jdbcTemplate.update(UPDATE_SQL, ps -> bind(ps, r));
+            (r.status == TrackStatus.FAILED ? failed : processed).increment();
+            return;
+        } catch (RuntimeException e) {
+            System.err.println("Ingest write failed for track " + r.trackId + ": " + e.getMessage());
+        }
+        failed.increment();
+        try {
+            jdbcTemplate.update(FAIL_SQL, r.trackId);
+        } catch (RuntimeException e) {
+            System.err.println("Could not mark track " + r.trackId + " as failed: " + e.getMessage());
+        }
+    }
+
+    private static void bind(PreparedStatement ps, Result r) throws SQLException {
+        ps.setObject(1, r.analysis.getDurationMs());
+        ps.setObject(2, r.analysis.getBitrate());
+        ps.setObject(3, r.analysis.getSampleRate());
+        ps.setString(4, r.analysis.getTitle());
+        ps.setString(5, r.analysis.getArtist());
+        ps.setString(6, r.analysis.getAlbum());
+        ps.setString(7, r.status.name());
+        ps.setLong(8, r.trackId);
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static class Result {
+        private final Long trackId;
+        private final TrackAnalysis analysis;
+        private final TrackStatus status;
+
+        private Result(Long trackId, TrackAnalysis analysis, TrackStatus status) {
+            this.trackId = trackId;
+            this.analysis = analysis;
+            this.status = status;
+        }
+    }
+}
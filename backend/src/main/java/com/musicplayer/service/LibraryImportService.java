@@ -0,0 +1,401 @@
+package com.musicplayer.service;
+
+import com.musicplayer.event.CatalogChangedEvent;
+import com.musicplayer.media.TrackAnalysis;
+import com.musicplayer.model.TrackStatus;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.DigestUtils;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Imports a directory tree of audio files. Files are hashed while they are
+ * copied into the content-addressed store, and then analysed, by a parallel
+ * pool. A single writer inserts the rows in JDBC batches, which Hibernate
+ * cannot do for IDENTITY ids.
+ *
+ * Every committed batch appends its source paths to a checkpoint file, so
+ * an interrupted import resumes where it stopped. Files already in the
+ * library (same content) are skipped.
+ *
+ * Only directories under {@code music.import.root} can be imported; the
+ * requested path is resolved against it, and symbolic links are not
+ * followed out of it.
+ */
+@Service
+@RequiredArgsConstructor
+public class LibraryImportService {
+    private static final Set<String> AUDIO_EXTENSIONS = Set.of("mp3", "flac", "wav", "m4a", "aac", "ogg");
+
+    private static final String INSERT_SQL = "INSERT INTO tracks "
+            + "(title, artist, album, storage_path, duration_ms, size_bytes, bitrate, sample_rate, status, play_count, created_at) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, 0, ?)";
+
+    private final StorageService storageService;
+    private final IngestService ingestService;
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${music.import.root:}")
+    private String importRoot;
+
+    @Value("${music.import.workers:0}")
+    private int workers;
+
+    @Value("${music.import.batch-size:500}")
+    private int batchSize;
+
+    @Value("${music.import.checkpoint-path:storage/import-checkpoints}")
+    private String checkpointPath;
+
+    private final AtomicReference<ImportJob> current = new AtomicReference<>();
+
+    /** {@code directory} is relative to the import root, or an absolute path inside it. */
+    public Map<String, Object> start(String directory, boolean resume) throws IOException {
+        if (importRoot.isBlank()) {
+            throw new IllegalStateException("Library import is disabled: music.import.root is not set");
+        }
+        Path base = Paths.get(importRoot).toAbsolutePath().normalize();
+        Path root = base.resolve(directory).normalize();
+        if (!root.startsWith(base)) {
+            throw new IllegalArgumentException("Path is outside the import root: " + directory);
+        }
+        if (!Files.isDirectory(root) || !root.toRealPath().startsWith(base.toRealPath())) {
+            throw new IllegalArgumentException("Not a directory under the import root: " + directory);
+        }
+
+        ImportJob job = new ImportJob(root, resume);
+        ImportJob running = current.get();
+        if (running != null && running.state.equals("RUNNING")) {
+            throw new IllegalStateException("An import is already running");
+        }
+        if (!current.compareAndSet(running, job)) {
+            throw new IllegalStateException("An import is already running");
+        }
+
+        Thread thread = new Thread(job::run, "library-import");
+        thread.setDaemon(true);
+        thread.start();
+        return job.progress();
+    }
+
+    public Map<String, Object> progress() {
+        ImportJob job = current.get();
+        return job != null ? job.progress() : Map.of("state", "IDLE");
+    }
+
+    private class ImportJob {
+        private final Path root;
+        private final boolean resume;
+        private final Path checkpoint;
+        private final long started = System.currentTimeMillis();
+        private volatile long finished;
+        private volatile String state = "RUNNING";
+        private volatile String error;
+        private volatile Exception writerFailure;
+
+        private final LongAdder discovered = new LongAdder();
+        private final LongAdder imported = new LongAdder();
+        private final LongAdder duplicates = new LongAdder();
+        private final LongAdder resumed = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+
+        // a few batches deep: workers wait here instead of piling rows up when the writer falls behind
+        private final BlockingQueue<Row> rows = new LinkedBlockingQueue<>(Math.max(1, batchSize) * 4);
+        // content claimed by this run but not inserted yet
+        private final Set<String> claimed = ConcurrentHashMap.newKeySet();
+
+        private ImportJob(Path root, boolean resume) {
+            this.root = root;
+            this.resume = resume;
+            this.checkpoint = Paths.get(checkpointPath).resolve(
+                    DigestUtils.md5DigestAsHex(root.toString().getBytes(StandardCharsets.UTF_8)) + ".checkpoint");
+        }
+
+        private void run() {
+            int threads = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+            AtomicInteger threadNumber = new AtomicInteger();
+            ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "library-import-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            Semaphore inFlight = new Semaphore(threads * 4);
+            Thread writer = null;
+
+            try {
+                Set<String> done = loadCheckpoint();
+                Files.createDirectories(checkpoint.getParent());
+                BufferedWriter checkpointOut = Files.newBufferedWriter(checkpoint, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                writer = new Thread(() -> writeRows(checkpointOut), "library-import-writer");
+                writer.start();
+
+                try (Stream<Path> files = Files.walk(root)) {
+                    files.filter(file -> Files.isRegularFile(file, LinkOption.NOFOLLOW_LINKS)).filter(this::isAudio).forEach(file -> {
+                        checkWriter();
+                        discovered.increment();
+                        String relative = root.relativize(file).toString();
+                        if (done.contains(relative)) {
+                            resumed.increment();
+                            return;
+                        }
+                        inFlight.acquireUninterruptibly();
+                        pool.execute(() -> {
+                            try {
+                                importFile(file, relative);
+                            } finally {
+                                inFlight.release();
+                            }
+                        });
+                    });
+                }
+
+                pool.shutdown();
+                pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+                enqueue(Row.END);
+                writer.join();
+                checkWriter();
+
+                if (failed.sum() == 0) {
+                    Files.deleteIfExists(checkpoint);
+                }
+                state = "COMPLETED";
+            } catch (Exception e) {
+                pool.shutdownNow();
+                if (writer != null) {
+                    try {
+                        enqueue(Row.END);
+                    } catch (Exception ignored) {
+                        // the writer died as well; its rows are counted below
+                    }
+                }
+                if (writerFailure != null) {
+                    // rows the dead writer never picked up; the checkpoint stays for a resume
+                    failed.add(rows.stream().filter(row -> row != Row.END).count());
+                    rows.clear();
+                }
+                error = e.getMessage();
+                state = "FAILED";
+                System.err.println("Library import of " + root + " failed: " + e.getMessage());
+            } finally {
+                finished = System.currentTimeMillis();
+                System.out.println("Library import of " + root + " " + state.toLowerCase(Locale.ROOT) + ": " + progress());
+            }
+        }
+
+        private void importFile(Path file, String relative) {
+            try {
+                long size = Files.size(file);
+                String name = file.getFileName().toString();
+                String storagePath;
+                try (InputStream in = Files.newInputStream(file)) {
+                    storagePath = storageService.store(in, name, path ->
+                            storageService.isReferenced(path) || !claimed.add(path) ? null : path);
+                }
+                bytes.add(size);
+
+                if (storagePath == null) {
+                    duplicates.increment();
+                    enqueue(new Row(relative, null, null));
+                    return;
+                }
+
+                TrackAnalysis analysis = ingestService.analyse(storagePath, name);
+                enqueue(new Row(relative, storagePath, new TrackAnalysis(
+                        analysis.getDurationMs(), analysis.getBitrate(), analysis.getSampleRate(),
+                        analysis.getTitle(),
+                        analysis.getArtist() != null ? analysis.getArtist() : folderName(file, 2),
+                        analysis.getAlbum() != null ? analysis.getAlbum() : folderName(file, 1)),
+                        size));
+            } catch (Exception e) {
+                failed.increment();
+                System.err.println("Failed to import " + file + ": " + e.getMessage());
+            }
+        }
+
+        /** Artist/Album/track.mp3 layouts stand in for missing tags. */
+        private String folderName(Path file, int levelsUp) {
+            Path folder = file;
+            for (int i = 0; i < levelsUp; i++) {
+                folder = folder.getParent();
+                if (folder == null || folder.equals(root) || !folder.startsWith(root)) {
+                    return null;
+                }
+            }
+            return folder.getFileName().toString();
+        }
+
+        private void writeRows(BufferedWriter checkpointOut) {
+            List<Row> batch = new ArrayList<>(batchSize);
+            boolean end = false;
+            try (checkpointOut) {
+                while (!end) {
+                    Row first = rows.poll(500, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                    rows.drainTo(batch, batchSize - 1);
+                    end = batch.remove(Row.END);
+                    insert(batch, checkpointOut);
+                    batch.clear();
+                }
+            } catch (Exception e) {
+                failed.add(batch.size());
+                writerFailure = e;
+                System.err.println("Library import writer failed: " + e.getMessage());
+            }
+        }
+
+        /** Blocks while the queue is full, but gives up once the writer has failed. */
+        private void enqueue(Row row) throws InterruptedException {
+            while (!rows.offer(row, 500, TimeUnit.MILLISECONDS)) {
+                checkWriter();
+            }
+        }
+
+        private void checkWriter() {
+            Exception failure = writerFailure;
+            if (failure != null) {
+                throw new IllegalStateException("Writer failed: " + failure.getMessage(), failure);
+            }
+        }
+
+        private void insert(List<Row> batch, BufferedWriter checkpointOut) throws IOException {
+            List<Row> inserts = batch.stream().filter(row -> row.storagePath != null).toList();
+            List<Long> ids = new ArrayList<>(inserts.size());
+
+            if (!inserts.isEmpty()) {
+                Timestamp now = new Timestamp(System.currentTimeMillis());
+                GeneratedKeyHolder keys = new GeneratedKeyHolder();
+                new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                        jdbcTemplate.batchUpdate(
+                                connection -> connection.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS),
+                                new BatchPreparedStatementSetter() {
+                                    @Override
+                                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                                        Row row = inserts.get(i);
+                                        ps.setString(1, row.analysis.getTitle());
+                                        ps.setString(2, row.analysis.getArtist());
+                                        ps.setString(3, row.analysis.getAlbum());
+                                        ps.setString(4, row.storagePath);
+                                        ps.setObject(5, row.analysis.getDurationMs());
+                                        ps.setLong(6, row.sizeBytes);
+                                        ps.setObject(7, row.analysis.getBitrate());
+                                        ps.setObject(8, row.analysis.getSampleRate());
+                                        ps.setString(9, TrackStatus.READY.name());
+                                        ps.setTimestamp(10, now);
+                                    }
+
+                                    @Override
+                                    public int getBatchSize() {
+                                        return inserts.size();
+                                    }
+                                },
+                                keys));
+                for (Map<String, Object> key : keys.getKeyList()) {
+                    Object id = key.values().iterator().next();
+                    ids.add(((Number) id).longValue());
+                }
+                inserts.forEach(row -> claimed.remove(row.storagePath));
+                imported.add(inserts.size());
+            }
+
+            // only after the rows are committed
+            for (Row row : batch) {
+                checkpointOut.write(row.relativePath);
+                checkpointOut.newLine();
+            }
+            checkpointOut.flush();
+
+            if (!ids.isEmpty()) {
+                eventPublisher.publishEvent(new CatalogChangedEvent(ids));
+            }
+        }
+
+        private Set<String> loadCheckpoint() throws IOException {
+            if (!resume) {
+                Files.deleteIfExists(checkpoint);
+                return Set.of();
+            }
+            if (!Files.isRegularFile(checkpoint)) {
+                return Set.of();
+            }
+            try (Stream<String> lines = Files.lines(checkpoint, StandardCharsets.UTF_8)) {
+                return lines.filter(line -> !line.isBlank()).collect(HashSet::new, Set::add, Set::addAll);
+            }
+        }
+
+        private boolean isAudio(Path file) {
+            String name = file.getFileName().toString();
+            int dot = name.lastIndexOf('.');
+            return dot >= 0 && AUDIO_EXTENSIONS.contains(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+        }
+
+        private Map<String, Object> progress() {
+            long elapsed = Math.max(1, (finished > 0 ? finished : System.currentTimeMillis()) - started);
+            double seconds = elapsed / 1000.0;
+            long processedFiles = imported.sum() + duplicates.sum();
+
+            Map<String, Object> progress = new LinkedHashMap<>();
+            progress.put("state", state);
+            progress.put("root", root.toString());
+            progress.put("discovered", discovered.sum());
+            progress.put("imported", imported.sum());
+            progress.put("duplicates", duplicates.sum());
+            progress.put("resumed", resumed.sum());
+            progress.put("failed", failed.sum());
+            progress.put("pendingRows", rows.size());
+            progress.put("bytes", bytes.sum());
+            progress.put("elapsedMs", elapsed);
+            progress.put("filesPerSecond", Math.round(processedFiles / seconds * 10) / 10.0);
+            progress.put("megabytesPerSecond", Math.round(bytes.sum() / 1048576.0 / seconds * 10) / 10.0);
+            if (error != null) {
+                progress.put("error", error);
+            }
+            return progress;
+        }
+    }
+
+    private static class Row {
+        private static final Row END = new Row("", null, null);
+
+        private final String relativePath;
+        private final String storagePath;
+        private final TrackAnalysis analysis;
+        private final long sizeBytes;
+
+        private Row(String relativePath, String storagePath, TrackAnalysis analysis) {
+            this(relativePath, storagePath, analysis, 0);
+        }
+
+        private Row(String relativePath, String storagePath, TrackAnalysis analysis, long sizeBytes) {
+            this.relativePath = relativePath;
+            this.storagePath = storagePath;
+            this.analysis = analysis;
+            this.sizeBytes = sizeBytes;
+        }
+    }
+}
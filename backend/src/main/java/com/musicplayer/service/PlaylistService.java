@@ -4,28 +4,158 @@ import com.musicplayer.dto.*;
 import com.musicplayer.model.*;
 import com.musicplayer.repository.*;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.sql.Timestamp;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
+/**
+ * Playlists and their items. Item positions are sparse: appends go
+ * a fixed gap past the last item and a move takes the midpoint of its new
+ * neighbours, so an edit writes one row however long the playlist is.
+ * Positions are only ever compared, never shown. When a gap gets narrow the
+ * playlist is renumbered in the background; if an edit finds no gap at all
+ * it renumbers first, in the same transaction.
+ *
+ * Each edit also bumps the playlist version and logs what it did under the
+ * new version in playlist_changes, so a client holding an older version
+ * can catch up from the log instead of reloading the playlist. The log
+ * keeps the last {@code music.playlist.change-log-versions} versions; a
+ * client further behind gets the whole playlist.
+ */
 @Service
 @RequiredArgsConstructor
 public class PlaylistService {
+    private static final int GAP = 1024;
+    // about six more halvings left; renumber before they run out
+    private static final int MIN_GAP = 64;
+
     private final PlaylistRepository playlistRepository;
     private final PlaylistItemRepository playlistItemRepository;
+    private final PlaylistChangeRepository playlistChangeRepository;
     private final TrackRepository trackRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${music.playlist.max-batch:5000}")
+    private int maxBatch;
+
+    @Value("${music.playlist.change-log-versions:1000}")
+    private long changeLogVersions;
+
+    // past this many logged edits the whole playlist is the smaller answer
+    @Value("${music.playlist.max-changes:5000}")
+    private int maxChanges;
+
+    private final Set<Long> renumberQueued = ConcurrentHashMap.newKeySet();
+    private final ExecutorService renumberer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "playlist-renumber");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Seeded from the clock so validators handed out before a restart never match again
+    private final AtomicLong playlistsVersion = new AtomicLong(System.currentTimeMillis());
+    private volatile long playlistsLastModified = System.currentTimeMillis();
+
+    public long getPlaylistsVersion() {
+        return playlistsVersion.get();
+    }
+
+    public long getPlaylistsLastModified() {
+        return playlistsLastModified;
+    }
+
+    /** After commit when in a transaction, so no GET can cache uncommitted state under the new ETag. */
+    private void markPlaylistsChanged() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    bumpPlaylistsVersion();
+                }
+            });
+        } else {
+            bumpPlaylistsVersion();
+        }
+    }
+
+    private void bumpPlaylistsVersion() {
+        playlistsLastModified = System.currentTimeMillis();
+        playlistsVersion.incrementAndGet();
+    }
 
     public List<PlaylistDto> getUserPlaylists(Long userId) {
-        return playlistRepository.findByUserOwnerId(userId).stream()
-                .map(this::convertToDto)
-                .collect(Collectors.toList());
+        return convertToDtos(playlistRepository.findByUserOwnerId(userId));
+    }
+
+    /** Names, sizes and versions only; tracks are loaded when a playlist is opened. */
+    public List<PlaylistSummary> getUserPlaylistSummaries(Long userId) {
+        return playlistRepository.findSummariesByUserOwnerId(userId);
     }
 
     public PlaylistDto getPlaylistById(Long id) {
         Playlist playlist = playlistRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Playlist not found"));
-        return convertToDto(playlist);
+                .orElseThrow(() -> new NoSuchElementException("Playlist not found"));
+        return convertToDtos(List.of(playlist)).get(0);
+    }
+
+    /**
+     * The edits after version {@code since}, or the whole playlist when
+     * {@code since} is null, ahead of the server, older than the log reaches,
+     * or followed by more than {@code maxChanges} edits. Tracks an edit
+     * adds come along, so the client never has to ask for them. Renames
+     * are not replayed; the name in the reply is the current one. Read-only,
+     * so the playlist row and its log are read from one snapshot.
+     */
+    @Transactional(readOnly = true)
+    public PlaylistChanges getChanges(Long playlistId, Long since) {
+        Playlist playlist = playlistRepository.findById(playlistId)
+                .orElseThrow(() -> new NoSuchElementException("Playlist not found"));
+        long version = playlist.getVersion();
+        if (since != null && since == version) {
+            return new PlaylistChanges(playlistId, playlist.getName(), version, false, List.of(), List.of(), null);
+        }
+        if (since != null && since >= 0 && since < version) {
+            // bounded by the version read above, so an edit committed since then waits for the next call
+            List<PlaylistChange> logged = playlistChangeRepository.findBetween(playlistId, since, version,
+                    PageRequest.of(0, maxChanges + 1));
+            // every version has a row and the log is only ever cut from the front, so this proves it is whole
+            boolean complete = !logged.isEmpty() && logged.size() <= maxChanges
+                    && logged.get(0).getVersion() == since + 1
+                    && logged.get(logged.size() - 1).getVersion() == version;
+            if (complete) {
+                List<PlaylistItemOp> changes = new ArrayList<>(logged.size());
+                Set<Long> added = new LinkedHashSet<>();
+                for (PlaylistChange change : logged) {
+                    if (change.getOp() == PlaylistChange.Type.RENAME) {
+                        // carried by the name instead
+                        continue;
+                    }
+                    changes.add(new PlaylistItemOp(PlaylistItemOp.Type.valueOf(change.getOp().name()),
+                            change.getTrackId(), change.getAfterTrackId()));
+                    if (change.getOp() == PlaylistChange.Type.ADD) {
+                        added.add(change.getTrackId());
+                    }
+                }
+                return new PlaylistChanges(playlistId, playlist.getName(), version, false, changes,
+                        trackDtos(added), null);
+            }
+        }
+        PlaylistDto whole = convertToDtos(List.of(playlist)).get(0);
+        return new PlaylistChanges(playlistId, playlist.getName(), version, true, List.of(), whole.getTracks(), null);
     }
 
     public Playlist createPlaylist(Long userId, String name) {
@@ -34,88 +164,563 @@ public class PlaylistService {
                 .userOwnerId(userId)
                 .isPublic(false)
                 .build();
-        return playlistRepository.save(playlist);
+        Playlist saved = playlistRepository.save(playlist);
+        markPlaylistsChanged();
+        return saved;
     }
 
     @Transactional
     public void addTrackToPlaylist(Long playlistId, Long trackId) {
+        long version = lock(playlistId);
         if (playlistItemRepository.existsByPlaylistIdAndTrackId(playlistId, trackId)) {
             throw new IllegalStateException("Track is already in this playlist");
         }
 
-        List<PlaylistItem> items = playlistItemRepository
-                .findByPlaylistIdOrderByPositionAsc(playlistId);
-
-        int nextPosition = items.isEmpty() ? 0 :
-                items.get(items.size() - 1).getPosition() + 1;
+        Integer last = playlistItemRepository.findMaxPosition(playlistId);
+        if (last != null && last > Integer.MAX_VALUE - GAP) {
+            renumber(playlistId);
+            last = playlistItemRepository.findMaxPosition(playlistId);
+        }
 
         PlaylistItem item = PlaylistItem.builder()
                 .playlistId(playlistId)
                 .trackId(trackId)
-                .position(nextPosition)
+                .position(last == null ? 0 : last + GAP)
                 .build();
 
         playlistItemRepository.save(item);
+        commit(playlistId, version, List.of(new PlaylistItemOp(PlaylistItemOp.Type.ADD, trackId, null)));
+    }
+
+    /**
+     * Moves one track to just after {@code afterTrackId}, or to the front when
+     * that is {@code null}. Only the moved row is written.
+     */
+    @Transactional
+    public void moveTrackAfter(Long playlistId, Long trackId, Long afterTrackId) {
+        long version = lock(playlistId);
+        moveAfter(playlistId, trackId, afterTrackId);
+        commit(playlistId, version, List.of(new PlaylistItemOp(PlaylistItemOp.Type.MOVE, trackId, afterTrackId)));
+    }
+
+    /** Moves one track to {@code index} in the playlist; past the end means last. */
+    @Transactional
+    public void moveTrackTo(Long playlistId, Long trackId, int index) {
+        long version = lock(playlistId);
+        Integer position = slotAt(playlistId, trackId, index);
+        if (position == null) {
+            renumber(playlistId);
+            position = slotAt(playlistId, trackId, index);
+        }
+        playlistItemRepository.updatePosition(playlistId, trackId, position);
+        List<Long> before = playlistItemRepository.findTrackIdsBefore(playlistId, position, PageRequest.of(0, 1));
+        Long after = before.isEmpty() ? null : before.get(0);
+        commit(playlistId, version, List.of(new PlaylistItemOp(PlaylistItemOp.Type.MOVE, trackId, after)));
+    }
+
+    /**
+     * Applies adds, removes and moves in request order, in one transaction,
+     * and reports each one. Which tracks exist and which are already in the
+     * playlist is read with one query per thousand ids. Consecutive adds and
+     * removes are written as JDBC batches; a move writes them out first, since
+     * it places its track among the rows in the table. The cost follows the
+     * number of operations, not the length of the playlist.
+     */
+    @Transactional
+    public PlaylistItemResults applyItemOps(Long playlistId, List<PlaylistItemOp> ops) {
+        if (ops.size() > maxBatch) {
+            throw new IllegalArgumentException("At most " + maxBatch + " operations per request");
+        }
+        for (PlaylistItemOp op : ops) {
+            if (op == null || op.getOp() == null || op.getTrackId() == null) {
+                throw new IllegalArgumentException("Every operation needs op and trackId");
+            }
+        }
+        long version = lock(playlistId);
+
+        Set<Long> mentioned = new HashSet<>();
+        Set<Long> adding = new HashSet<>();
+        for (PlaylistItemOp op : ops) {
+            if (op.getOp() != PlaylistItemOp.Type.MOVE) {
+                mentioned.add(op.getTrackId());
+            }
+            if (op.getOp() == PlaylistItemOp.Type.ADD) {
+                adding.add(op.getTrackId());
+            }
+        }
+        Set<Long> present = found("SELECT track_id FROM playlist_items WHERE playlist_id = ? AND track_id IN (",
+                List.of(playlistId), mentioned);
+        Set<Long> known = found("SELECT id FROM tracks WHERE id IN (", List.of(), adding);
+
+        List<PlaylistItemResult> results = new ArrayList<>(ops.size());
+        List<PlaylistItemOp> changes = new ArrayList<>();
+        Set<Long> pendingAdds = new LinkedHashSet<>();
+        List<Long> pendingRemoves = new ArrayList<>();
+        for (PlaylistItemOp op : ops) {
+            Long trackId = op.getTrackId();
+            PlaylistItemResult.Status status;
+            String message = null;
+            switch (op.getOp()) {
+                case ADD -> {
+                    if (!known.contains(trackId)) {
+                        status = PlaylistItemResult.Status.NOT_FOUND;
+                    } else if (!present.add(trackId)) {
+                        status = PlaylistItemResult.Status.DUPLICATE;
+                    } else {
+                        pendingAdds.add(trackId);
+                        status = PlaylistItemResult.Status.ADDED;
+                    }
+                }
+                case REMOVE -> {
+                    if (!present.remove(trackId)) {
+                        status = PlaylistItemResult.Status.NOT_IN_PLAYLIST;
+                    } else {
+                        // added earlier in this batch and not written yet: just drop it
+                        if (!pendingAdds.remove(trackId)) {
+                            pendingRemoves.add(trackId);
+                        }
+                        status = PlaylistItemResult.Status.REMOVED;
+                    }
+                }
+                default -> {
+                    writePending(playlistId, pendingAdds, pendingRemoves);
+                    Long after = op.getAfter() != null && op.getAfter() != 0 ? op.getAfter() : null;
+                    if (playlistItemRepository.findPosition(playlistId, trackId) == null) {
+                        status = PlaylistItemResult.Status.NOT_IN_PLAYLIST;
+                    } else {
+                        try {
+                            moveAfter(playlistId, trackId, after);
+                            status = PlaylistItemResult.Status.MOVED;
+                        } catch (IllegalArgumentException e) {
+                            status = PlaylistItemResult.Status.INVALID;
+                            message = e.getMessage();
+                        }
+                    }
+                }
+            }
+            if (status == PlaylistItemResult.Status.ADDED || status == PlaylistItemResult.Status.REMOVED
+                    || status == PlaylistItemResult.Status.MOVED) {
+                Long after = op.getOp() == PlaylistItemOp.Type.MOVE && op.getAfter() != null && op.getAfter() != 0
+                        ? op.getAfter() : null;
+                changes.add(new PlaylistItemOp(op.getOp(), trackId, after));
+            }
+            results.add(new PlaylistItemResult(op.getOp(), trackId, status, message));
+        }
+        writePending(playlistId, pendingAdds, pendingRemoves);
+
+        if (changes.isEmpty()) {
+            return new PlaylistItemResults(version, results);
+        }
+        commit(playlistId, version, changes);
+        return new PlaylistItemResults(version + 1, results);
     }
 
     @Transactional
     public void removeTrackFromPlaylist(Long playlistId, Long trackId) {
-        playlistItemRepository.deleteByPlaylistIdAndTrackId(playlistId, trackId);
+        long version = lock(playlistId);
+        if (playlistItemRepository.deleteByPlaylistIdAndTrackId(playlistId, trackId) > 0) {
+            commit(playlistId, version, List.of(new PlaylistItemOp(PlaylistItemOp.Type.REMOVE, trackId, null)));
+        }
     }
 
     @Transactional
     public void deletePlaylist(Long id) {
         playlistItemRepository.deleteByPlaylistId(id);
+        playlistChangeRepository.deleteByPlaylistId(id);
         playlistRepository.deleteById(id);
+        markPlaylistsChanged();
     }
 
 
+    /**
+     * Tracks left out of {@code trackIdsInOrder} keep their relative order
+     * after the listed ones. Only the tracks outside the longest run already
+     * in order get new positions, so moving one track writes one row, and
+     * only those are logged, as moves. With {@code baseVersion} the order
+     * is refused if the playlist has changed since that version, rather than
+     * overwriting edits the caller has not seen.
+     */
     @Transactional
-    public void updateTrackOrder(Long playlistId, List<Long> trackIdsInOrder) {
+    public void updateTrackOrder(Long playlistId, List<Long> trackIdsInOrder, Long baseVersion) {
+        long version = lock(playlistId);
+        if (baseVersion != null && baseVersion != version) {
+            throw new IllegalStateException("Playlist has changed since version " + baseVersion);
+        }
         List<PlaylistItem> items = playlistItemRepository.findByPlaylistIdOrderByPositionAsc(playlistId);
         Map<Long, PlaylistItem> itemMap = items.stream()
                 .collect(Collectors.toMap(PlaylistItem::getTrackId, item -> item));
 
-        for (int i = 0; i < trackIdsInOrder.size(); i++) {
-            Long trackId = trackIdsInOrder.get(i);
+        List<PlaylistItem> order = new ArrayList<>(items.size());
+        Set<Long> listed = new HashSet<>();
+        for (Long trackId : trackIdsInOrder) {
             PlaylistItem item = itemMap.get(trackId);
+            if (item != null && listed.add(trackId)) {
+                order.add(item);
+            }
+        }
+        for (PlaylistItem item : items) {
+            if (!listed.contains(item.getTrackId())) {
+                order.add(item);
+            }
+        }
 
-            if (item != null) {
-                item.setPosition(i);
+        // managed entities: the flush writes only the ones whose position changed
+        boolean[] kept = reposition(playlistId, order);
+        List<PlaylistItemOp> changes = new ArrayList<>();
+        for (int i = 0; i < order.size(); i++) {
+            if (!kept[i]) {
+                Long after = i > 0 ? order.get(i - 1).getTrackId() : null;
+                changes.add(new PlaylistItemOp(PlaylistItemOp.Type.MOVE, order.get(i).getTrackId(), after));
             }
         }
-        playlistItemRepository.saveAll(items);
+        if (!changes.isEmpty()) {
+            commit(playlistId, version, changes);
+        }
     }
 
+    @Transactional
     public Playlist renamePlaylist(Long id, String newName) {
-        Playlist playlist = playlistRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Playlist not found"));
-        playlist.setName(newName);
-        return playlistRepository.save(playlist);
-    }
-
-    private PlaylistDto convertToDto(Playlist playlist) {
-        List<TrackDto> tracks = playlistItemRepository
-                .findByPlaylistIdOrderByPositionAsc(playlist.getId()).stream()
-                .map(item -> trackRepository.findById(item.getTrackId()))
-                .filter(Optional::isPresent)
-                .map(Optional::get)
-                .map(track -> TrackDto.builder()
-                        .id(track.getId())
-                        .title(track.getTitle())
-                        .artist(track.getArtist())
-                        .album(track.getAlbum())
-                        .durationMs(track.getDurationMs())
-                        .sizeBytes(track.getSizeBytes())
+        // an UPDATE rather than a save of the loaded row, which would write back a stale version
+        long version = lock(id);
+        playlistRepository.rename(id, newName);
+        // logged with no track, so the version still has its row
+        log(id, version + 1, List.<Object[]>of(new Object[]{id, version + 1, PlaylistChange.Type.RENAME.name(),
+                null, null, new Timestamp(System.currentTimeMillis())}));
+        markPlaylistsChanged();
+        return playlistRepository.findById(id)
+                .orElseThrow(() -> new NoSuchElementException("Playlist not found"));
+    }
+
+    /** Locks the playlist until commit and returns its version; NoSuchElementException (404) if it is gone. */
+    private long lock(Long playlistId) {
+        return playlistRepository.lockById(playlistId)
+                .orElseThrow(() -> new NoSuchElementException("Playlist not found"))
+                .getVersion();
+    }
+
+    /** Bumps the version past {@code version}, which the caller read under the lock, and logs the edits under it. */
+    private void commit(Long playlistId, long version, List<PlaylistItemOp> changes) {
+        playlistRepository.incrementVersion(playlistId);
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        List<Object[]> rows = new ArrayList<>(changes.size());
+        for (PlaylistItemOp change : changes) {
+            rows.add(new Object[]{playlistId, version + 1, change.getOp().name(), change.getTrackId(),
+                    change.getAfter(), now});
+        }
+        log(playlistId, version + 1, rows);
+        markPlaylistsChanged();
+    }
+
+    private void log(Long playlistId, long version, List<Object[]> rows) {
+        jdbcTemplate.batchUpdate("INSERT INTO playlist_changes "
+                + "(playlist_id, version, op, track_id, after_track_id, created_at) VALUES (?, ?, ?, ?, ?, ?)", rows);
+        // an index range on (playlist_id, version); empty unless this edit pushed a version out
+        playlistChangeRepository.deleteUpTo(playlistId, version - changeLogVersions);
+    }
+
+    private int requirePosition(Long playlistId, Long trackId) {
+        Integer position = playlistItemRepository.findPosition(playlistId, trackId);
+        if (position == null) {
+            throw new IllegalArgumentException("Track is not in this playlist");
+        }
+        return position;
+    }
+
+    private void moveAfter(Long playlistId, Long trackId, Long afterTrackId) {
+        if (trackId.equals(afterTrackId)) {
+            throw new IllegalArgumentException("A track cannot be moved after itself");
+        }
+        Integer position = slotAfter(playlistId, trackId, afterTrackId);
+        if (position == null) {
+            renumber(playlistId);
+            position = slotAfter(playlistId, trackId, afterTrackId);
+        }
+        playlistItemRepository.updatePosition(playlistId, trackId, position);
+    }
+
+    /** Deletes, then appends, whatever a batch has queued, and clears both. */
+    private void writePending(Long playlistId, Set<Long> adds, List<Long> removes) {
+        if (!removes.isEmpty()) {
+            List<Object[]> args = new ArrayList<>(removes.size());
+            for (Long trackId : removes) {
+                args.add(new Object[]{playlistId, trackId});
+            }
+            jdbcTemplate.batchUpdate("DELETE FROM playlist_items WHERE playlist_id = ? AND track_id = ?", args);
+            removes.clear();
+        }
+        if (adds.isEmpty()) {
+            return;
+        }
+        Integer last = playlistItemRepository.findMaxPosition(playlistId);
+        if (last != null && (long) last + (long) adds.size() * GAP > Integer.MAX_VALUE) {
+            renumber(playlistId);
+            last = playlistItemRepository.findMaxPosition(playlistId);
+        }
+        long position = last == null ? -GAP : last;
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        List<Object[]> args = new ArrayList<>(adds.size());
+        for (Long trackId : adds) {
+            position += GAP;
+            args.add(new Object[]{playlistId, trackId, (int) position, now});
+        }
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO playlist_items (playlist_id, track_id, position, added_at) VALUES (?, ?, ?, ?)", args);
+        adds.clear();
+    }
+
+    /** The ids among {@code ids} that {@code sqlPrefix}, ending in "IN (", returns; a thousand per query. */
+    private Set<Long> found(String sqlPrefix, List<Object> leading, Collection<Long> ids) {
+        Set<Long> found = new HashSet<>();
+        List<Long> list = new ArrayList<>(ids);
+        for (int from = 0; from < list.size(); from += 1000) {
+            List<Long> chunk = list.subList(from, Math.min(list.size(), from + 1000));
+            List<Object> args = new ArrayList<>(leading);
+            args.addAll(chunk);
+            found.addAll(jdbcTemplate.queryForList(
+                    sqlPrefix + String.join(",", Collections.nCopies(chunk.size(), "?")) + ")",
+                    Long.class, args.toArray()));
+        }
+        return found;
+    }
+
+    /** A position right after {@code afterTrackId}, or the front; {@code null} if its neighbours leave none. */
+    private Integer slotAfter(Long playlistId, Long trackId, Long afterTrackId) {
+        int current = requirePosition(playlistId, trackId);
+        if (afterTrackId == null) {
+            return slotAfterPosition(playlistId, current, null);
+        }
+        Integer before = playlistItemRepository.findPosition(playlistId, afterTrackId);
+        if (before == null) {
+            throw new IllegalArgumentException("Track " + afterTrackId + " is not in this playlist");
+        }
+        return slotAfterPosition(playlistId, current, before);
+    }
+
+    /** As {@link #slotAfter}, for the {@code index}-th place among the other tracks. */
+    private Integer slotAt(Long playlistId, Long trackId, int index) {
+        int current = requirePosition(playlistId, trackId);
+        if (index <= 0) {
+            return slotAfterPosition(playlistId, current, null);
+        }
+        // ranks count the moved track too, so skip it if it comes before
+        Integer before = positionAt(playlistId, Integer.MIN_VALUE, index - 1);
+        if (before != null && before >= current) {
+            before = positionAt(playlistId, Integer.MIN_VALUE, index);
+        }
+        if (before == null) {
+            before = playlistItemRepository.findMaxPosition(playlistId);
+        }
+        return before == current ? current : slotAfterPosition(playlistId, current, before);
+    }
+
+    /** The free position after {@code before}, or the track's own when it is already next. */
+    private Integer slotAfterPosition(Long playlistId, int current, Integer before) {
+        Integer next;
+        if (before == null) {
+            next = positionAt(playlistId, Integer.MIN_VALUE, 0);
+        } else {
+            next = before < Integer.MAX_VALUE ? positionAt(playlistId, before + 1, 0) : null;
+        }
+        if (next != null && next == current) {
+            return current;
+        }
+        return slotBetween(playlistId, before, next);
+    }
+
+    private Integer positionAt(Long playlistId, int from, int rank) {
+        List<Integer> positions = playlistItemRepository.findPositionsFrom(playlistId, from, PageRequest.of(rank, 1));
+        return positions.isEmpty() ? null : positions.get(0);
+    }
+
+    private Integer slotBetween(Long playlistId, Integer before, Integer after) {
+        int[] slots = spread(playlistId, before, after, 1);
+        return slots != null ? slots[0] : null;
+    }
+
+    /**
+     * {@code count} increasing positions strictly between {@code low} and
+     * {@code high} (either may be open), or {@code null} if they do not fit.
+     * A range that fits but leaves little room queues a renumbering, so the
+     * next edit there still finds a gap.
+     */
+    private int[] spread(Long playlistId, Integer low, Integer high, int count) {
+        int[] slots = new int[count];
+        long step;
+        long first;
+        if (low == null && high == null) {
+            step = GAP;
+            first = 0;
+        } else if (low == null) {
+            step = GAP;
+            first = (long) high - (long) count * GAP;
+        } else if (high == null) {
+            step = GAP;
+            first = (long) low + GAP;
+        } else {
+            step = ((long) high - low) / (count + 1);
+            first = low + step;
+            if (step < 1) {
+                return null;
+            }
+            if (step < MIN_GAP) {
+                scheduleRenumber(playlistId);
+            }
+        }
+        long lastSlot = first + (count - 1) * step;
+        if (first < Integer.MIN_VALUE || lastSlot > Integer.MAX_VALUE) {
+            return null;
+        }
+        for (int i = 0; i < count; i++) {
+            slots[i] = (int) (first + i * step);
+        }
+        return slots;
+    }
+
+    /** Gives new positions to the items outside the longest run in order; returns which items kept theirs. */
+    private boolean[] reposition(Long playlistId, List<PlaylistItem> order) {
+        boolean[] keep = longestIncreasingRun(order);
+        int i = 0;
+        while (i < order.size()) {
+            if (keep[i]) {
+                i++;
+                continue;
+            }
+            // a run of moved items goes between the kept items around it, which never change
+            int start = i;
+            while (i < order.size() && !keep[i]) {
+                i++;
+            }
+            Integer low = start > 0 ? order.get(start - 1).getPosition() : null;
+            Integer high = i < order.size() ? order.get(i).getPosition() : null;
+            int[] slots = spread(playlistId, low, high, i - start);
+            if (slots == null) {
+                // no room between them; lay the whole playlist out again
+                int step = step(order.size());
+                for (int j = 0; j < order.size(); j++) {
+                    order.get(j).setPosition(j * step);
+                }
+                // every row is rewritten, but the order still differs from the old one only by the unkept items
+                return keep;
+            }
+            for (int j = 0; j < slots.length; j++) {
+                order.get(start + j).setPosition(slots[j]);
+            }
+        }
+        return keep;
+    }
+
+    /** Marks a longest strictly increasing run of positions, in O(n log n). */
+    private static boolean[] longestIncreasingRun(List<PlaylistItem> order) {
+        int n = order.size();
+        int[] tails = new int[n];
+        int[] previous = new int[n];
+        int length = 0;
+        for (int i = 0; i < n; i++) {
+            int position = order.get(i).getPosition();
+            int lo = 0;
+            int hi = length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (order.get(tails[mid]).getPosition() < position) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            previous[i] = lo > 0 ? tails[lo - 1] : -1;
+            tails[lo] = i;
+            length = Math.max(length, lo + 1);
+        }
+        boolean[] keep = new boolean[n];
+        for (int i = length > 0 ? tails[length - 1] : -1; i >= 0; i = previous[i]) {
+            keep[i] = true;
+        }
+        return keep;
+    }
+
+    /** Lays a playlist out again at even gaps; the caller holds its lock. */
+    private void renumber(Long playlistId) {
+        List<Long> ids = jdbcTemplate.queryForList(
+                "SELECT id FROM playlist_items WHERE playlist_id = ? ORDER BY position, id", Long.class, playlistId);
+        int step = step(ids.size());
+        List<Object[]> args = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            args.add(new Object[]{i * step, ids.get(i)});
+        }
+        jdbcTemplate.batchUpdate("UPDATE playlist_items SET position = ? WHERE id = ?", args);
+    }
+
+    private static int step(int items) {
+        return (int) Math.max(1, Math.min(GAP, Integer.MAX_VALUE / Math.max(1, items)));
+    }
+
+    private void scheduleRenumber(Long playlistId) {
+        if (!renumberQueued.add(playlistId)) {
+            return;
+        }
+        renumberer.execute(() -> {
+            try {
+                // waits on the lock of the edit that queued it, so it sees that edit
+                new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                    if (playlistRepository.lockById(playlistId).isPresent()) {
+                        renumber(playlistId);
+                    }
+                });
+            } catch (RuntimeException e) {
+                System.err.println("Renumbering playlist " + playlistId + " failed: " + e.getMessage());
+            } finally {
+                renumberQueued.remove(playlistId);
+            }
+        });
+    }
+
+    /** Tracks deleted from the catalog since are left out; their removal is in the log too. */
+    private List<TrackDto> trackDtos(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        List<TrackDto> tracks = new ArrayList<>(ids.size());
+        for (Track track : trackRepository.findAllById(ids)) {
+            tracks.add(TrackDto.builder()
+                    .id(track.getId())
+                    .title(track.getTitle())
+                    .artist(track.getArtist())
+                    .album(track.getAlbum())
+                    .durationMs(track.getDurationMs())
+                    .sizeBytes(track.getSizeBytes())
+                    .build());
+        }
+        return tracks;
+    }
+
+    /** All tracks of all the given playlists come from one join, whatever their number and length. */
+    private List<PlaylistDto> convertToDtos(List<Playlist> playlists) {
+        if (playlists.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, List<TrackDto>> tracksByPlaylist = new HashMap<>();
+        List<Long> ids = playlists.stream().map(Playlist::getId).toList();
+        for (PlaylistTrackRow row : playlistItemRepository.findTrackRows(ids)) {
+            tracksByPlaylist.computeIfAbsent(row.getPlaylistId(), id -> new ArrayList<>())
+                    .add(TrackDto.builder()
+                            .id(row.getTrackId())
+                            .title(row.getTitle())
+                            .artist(row.getArtist())
+                            .album(row.getAlbum())
+                            .durationMs(row.getDurationMs())
+                            .sizeBytes(row.getSizeBytes())
+                            .build());
+        }
+
+        return playlists.stream()
+                .map(playlist -> PlaylistDto.builder()
+                        .id(playlist.getId())
+                        .name(playlist.getName())
+                        .userOwnerId(playlist.getUserOwnerId())
+                        .isPublic(playlist.getIsPublic())
+                        .version(playlist.getVersion())
+                        .tracks(tracksByPlaylist.getOrDefault(playlist.getId(), new ArrayList<>()))
                         .build())
                 .collect(Collectors.toList());
-
-        return PlaylistDto.builder()
-                .id(playlist.getId())
-                .name(playlist.getName())
-                .userOwnerId(playlist.getUserOwnerId())
-                .isPublic(playlist.getIsPublic())
-                .tracks(tracks)
-                .build();
     }
 }
\ No newline at end of file
@@ -0,0 +1,19 @@
+package com.musicplayer.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Track ids in rank order, the cursor of the next page ({@code null} on the
+ * last one), and the mode that actually answered: a fuzzy query the
+ * in-memory index cannot serve is run as a natural one.
+ */
+@Getter
+@AllArgsConstructor
+public class SearchResult {
+    private final List<Long> trackIds;
+    private final String nextCursor;
+    private final TrackSearchService.Mode mode;
+}
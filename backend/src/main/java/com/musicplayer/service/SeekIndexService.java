@@ -0,0 +1,110 @@
+package com.musicplayer.service;
+
+import com.musicplayer.media.Mp3FrameScanner;
+import com.musicplayer.media.SeekTable;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds and serves per-track seek tables. Tables are written as sidecars
+ * when a track is stored; tracks stored before that are indexed lazily on
+ * their first time-based request. Files that yield no table are remembered
+ * too, so time-based requests for them don't rescan the whole file: non-MPEG
+ * content for good (stored files never change), read failures for a short
+ * while before the next attempt.
+ */
+@Service
+@RequiredArgsConstructor
+public class SeekIndexService {
+    public static final String SUFFIX = ".seek";
+
+    private static final int MAX_CACHED_TABLES = 1024;
+    private static final int MAX_UNSEEKABLE = 4096;
+    private static final long FAILED_SCAN_RETRY_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final StorageService storageService;
+    private final Mp3FrameScanner mp3FrameScanner;
+
+    private final Map<String, SeekTable> tables = Collections.synchronizedMap(
+            new LinkedHashMap<>(64, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, SeekTable> eldest) {
+                    return size() > MAX_CACHED_TABLES;
+                }
+            });
+
+    /** Storage path to the nanoTime after which a scan may be retried. */
+    private final Map<String, Long> unseekable = Collections.synchronizedMap(
+            new LinkedHashMap<>(64, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                    return size() > MAX_UNSEEKABLE;
+                }
+            });
+
+    /**
+     * Scans the stored file and writes its seek table. Returns {@code null}
+     * when the file holds no MPEG audio.
+     */
+    public SeekTable index(String storagePath) throws IOException {
+        SeekTable table;
+        try {
+            table = mp3FrameScanner.scan(storageService.load(storagePath));
+        } catch (IOException e) {
+            unseekable.put(storagePath, System.nanoTime() + FAILED_SCAN_RETRY_NANOS);
+            throw e;
+        }
+        if (table == null) {
+            unseekable.put(storagePath, Long.MAX_VALUE);
+            return null;
+        }
+        unseekable.remove(storagePath);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        table.writeTo(out);
+        storageService.storeSidecar(storagePath, SUFFIX, out.toByteArray());
+        tables.put(storagePath, table);
+        return table;
+    }
+
+    public SeekTable find(String storagePath) throws IOException {
+        SeekTable table = tables.get(storagePath);
+        if (table != null) {
+            return table;
+        }
+
+        Long retryAt = unseekable.get(storagePath);
+        if (retryAt != null) {
+            if (retryAt == Long.MAX_VALUE || System.nanoTime() - retryAt < 0) {
+                return null;
+            }
+            unseekable.remove(storagePath);
+        }
+
+        Path sidecar = storageService.loadSidecar(storagePath, SUFFIX);
+        if (Files.isRegularFile(sidecar)) {
+            try (InputStream in = Files.newInputStream(sidecar)) {
+                table = SeekTable.readFrom(in);
+                tables.put(storagePath, table);
+                return table;
+            } catch (IOException e) {
+                System.err.println("Rebuilding unreadable seek table " + sidecar + ": " + e.getMessage());
+            }
+        }
+        return index(storagePath);
+    }
+
+    public void evict(String storagePath) {
+        tables.remove(storagePath);
+        unseekable.remove(storagePath);
+    }
+}
@@ -0,0 +1,234 @@
+package com.musicplayer.service;
+
+import com.musicplayer.streaming.MediaCache;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Moves flat content files (and their sidecars) into the sharded layout
+ * while the server keeps running. Moves are renames, paced to a files per
+ * second budget so the directory work does not compete with streaming.
+ * Each chunk of moved files is followed by one batched UPDATE of
+ * {@code storage_path}.
+ *
+ * Readers resolve either layout, so the gap between a move and its UPDATE
+ * is harmless. A final sweep also repoints rows left behind by a crash or
+ * registered against a flat file during the run.
+ */
+@Service
+@RequiredArgsConstructor
+public class ShardMigrationService {
+    private static final String UPDATE_SQL = "UPDATE tracks SET storage_path = ? WHERE storage_path = ?";
+
+    private final StorageService storageService;
+    private final JdbcTemplate jdbcTemplate;
+    private final MediaCache mediaCache;
+    private final SeekIndexService seekIndexService;
+
+    @Value("${music.storage.shard-migration.threads:2}")
+    private int threads;
+
+    @Value("${music.storage.shard-migration.files-per-second:200}")
+    private int filesPerSecond;
+
+    @Value("${music.storage.shard-migration.batch-size:500}")
+    private int batchSize;
+
+    @Value("${music.storage.shard-migration.on-startup:true}")
+    private boolean onStartup;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicLong nextSlot = new AtomicLong();
+
+    private final LongAdder moved = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder repointed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private volatile long pending;
+    private volatile long started;
+    private volatile long finished;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startOnReady() {
+        if (onStartup) {
+            start();
+        }
+    }
+
+    /** Returns {@code false} if a migration is already running. */
+    public boolean start() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        Thread thread = new Thread(() -> {
+            try {
+                migrate();
+            } catch (Exception e) {
+                System.err.println("Shard migration failed: " + e.getMessage());
+            } finally {
+                finished = System.currentTimeMillis();
+                running.set(false);
+            }
+        }, "shard-migration");
+        thread.setDaemon(true);
+        thread.start();
+        return true;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("running", running.get());
+        stats.put("pending", pending);
+        stats.put("moved", moved.sum());
+        stats.put("duplicates", duplicates.sum());
+        stats.put("repointed", repointed.sum());
+        stats.put("failed", failed.sum());
+        if (started > 0) {
+            stats.put("elapsedMs", (running.get() ? System.currentTimeMillis() : finished) - started);
+        }
+        return stats;
+    }
+
+    private void migrate() throws IOException, InterruptedException {
+        started = System.currentTimeMillis();
+        List<Path> flat = listFlatFiles();
+        pending = flat.size();
+        if (!flat.isEmpty()) {
+            System.out.println("Moving " + flat.size() + " media files into sharded directories");
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            for (int from = 0; from < flat.size(); from += batchSize) {
+                List<Path> chunk = flat.subList(from, Math.min(flat.size(), from + batchSize));
+                List<Future<String>> tasks = new ArrayList<>(chunk.size());
+                for (Path file : chunk) {
+                    tasks.add(pool.submit(() -> move(file)));
+                }
+
+                List<String> done = new ArrayList<>(chunk.size());
+                for (Future<String> task : tasks) {
+                    try {
+                        String name = task.get();
+                        if (name != null) {
+                            done.add(name);
+                        }
+                    } catch (ExecutionException e) {
+                        failed.increment();
+                        System.err.println("Failed to shard a media file: " + e.getCause().getMessage());
+                    }
+                }
+                repoint(done);
+                pending = flat.size() - from - chunk.size();
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        repoint(jdbcTemplate.queryForList(
+                "SELECT DISTINCT storage_path FROM tracks WHERE storage_path NOT LIKE '%/%'", String.class));
+        System.out.println("Shard migration finished: " + stats());
+    }
+
+    /** Returns the flat name once the file lives in its shard directory. */
+    private String move(Path file) throws IOException {
+        pace();
+        String name = file.getFileName().toString();
+        ReentrantLock lock = storageService.lockFor(name);
+        lock.lock();
+        try {
+            if (!Files.exists(file)) {
+                return null; // released meanwhile
+            }
+            Path target = storageService.getRoot().resolve(StorageService.shardedPath(name));
+            Files.createDirectories(target.getParent());
+            if (Files.exists(target)) {
+                Files.delete(file);
+                duplicates.increment();
+            } else {
+                storageService.move(file, target);
+                moved.increment();
+            }
+
+            for (String suffix : StorageService.sidecarSuffixes()) {
+                Path oldSidecar = file.resolveSibling(name + suffix);
+                if (!Files.exists(oldSidecar)) {
+                    continue;
+                }
+                Path newSidecar = target.resolveSibling(name + suffix);
+                if (Files.exists(newSidecar)) {
+                    storageService.deleteRecursively(oldSidecar);
+                } else {
+                    storageService.move(oldSidecar, newSidecar);
+                }
+            }
+            return name;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void repoint(List<String> names) {
+        List<Object[]> updates = new ArrayList<>(names.size());
+        for (String name : names) {
+            if (StorageService.isContentName(name)
+                    && Files.exists(storageService.getRoot().resolve(StorageService.shardedPath(name)))) {
+                updates.add(new Object[] {StorageService.shardedPath(name), name});
+            }
+        }
+        if (updates.isEmpty()) {
+            return;
+        }
+
+        int[] counts = jdbcTemplate.batchUpdate(UPDATE_SQL, updates);
+        for (int count : counts) {
+            repointed.add(Math.max(count, 0));
+        }
+        for (Object[] update : updates) {
+            String name = (String) update[1];
+            mediaCache.invalidate(name);
+            seekIndexService.evict(name);
+        }
+    }
+
+    /** Spaces moves evenly; an idle period does not bank a burst. */
+    private void pace() {
+        if (filesPerSecond <= 0) {
+            return;
+        }
+        long interval = 1_000_000_000L / filesPerSecond;
+        long slot = nextSlot.accumulateAndGet(interval, (previous, step) -> Math.max(previous, System.nanoTime()) + step);
+        long wait = slot - interval - System.nanoTime();
+        if (wait > 0) {
+            LockSupport.parkNanos(wait);
+        }
+    }
+
+    private List<Path> listFlatFiles() throws IOException {
+        Path root = storageService.getRoot();
+        if (!Files.isDirectory(root)) {
+            return List.of();
+        }
+        try (Stream<Path> entries = Files.list(root)) {
+            return entries
+                    .filter(Files::isRegularFile)
+                    .filter(path -> StorageService.isContentName(path.getFileName().toString()))
+                    .toList();
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.musicplayer.service;
+
+import com.musicplayer.repository.TrackRepository;
+import com.musicplayer.streaming.MediaCache;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * One-shot move of a legacy {@code UUID_name} store to content-addressed
+ * names. Files are hashed in parallel; duplicates collapse onto one file and
+ * every track referencing them is repointed. References are updated before
+ * files are renamed, so re-running after a crash finishes what was left.
+ */
+@Service
+@RequiredArgsConstructor
+public class StorageMigrationService {
+    private final StorageService storageService;
+    private final TrackRepository trackRepository;
+    private final MediaCache mediaCache;
+    private final SeekIndexService seekIndexService;
+
+    @Value("${music.storage.migration-threads:0}")
+    private int threads;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public Map<String, Object> migrateToContentAddressing() throws IOException, InterruptedException {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("Migration is already running");
+        }
+        try {
+            long started = System.currentTimeMillis();
+            List<Path> legacy = listLegacyFiles();
+
+            LongAdder migrated = new LongAdder();
+            LongAdder duplicates = new LongAdder();
+            LongAdder bytesFreed = new LongAdder();
+            LongAdder failed = new LongAdder();
+
+            int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+            ExecutorService pool = Executors.newFixedThreadPool(poolSize);
+            try {
+                List<Future<?>> tasks = new ArrayList<>(legacy.size());
+                for (Path file : legacy) {
+                    tasks.add(pool.submit(() -> {
+                        try {
+                            long size = Files.size(file);
+                            if (migrate(file, storageService.hash(file))) {
+                                duplicates.increment();
+                                bytesFreed.add(size);
+                            }
+                            migrated.increment();
+                        } catch (IOException | RuntimeException e) {
+                            failed.increment();
+                            System.err.println("Failed to migrate " + file + ": " + e.getMessage());
+                        }
+                    }));
+                }
+                for (Future<?> task : tasks) {
+                    task.get();
+                }
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            } finally {
+                pool.shutdown();
+            }
+
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("files", legacy.size());
+            result.put("migrated", migrated.sum());
+            result.put("duplicates", duplicates.sum());
+            result.put("bytesFreed", bytesFreed.sum());
+            result.put("failed", failed.sum());
+            result.put("elapsedMs", System.currentTimeMillis() - started);
+            return result;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /** Returns whether the file turned out to be a duplicate. */
+    private boolean migrate(Path file, String digest) throws IOException {
+        String oldName = file.getFileName().toString();
+        String newName = StorageService.shardedPath(StorageService.contentName(digest, oldName));
+
+        ReentrantLock lock = storageService.lockFor(newName);
+        lock.lock();
+        try {
+            trackRepository.updateStoragePath(oldName, newName);
+
+            Path target = storageService.load(newName);
+            boolean duplicate = Files.exists(target);
+            if (duplicate) {
+                Files.delete(file);
+            } else {
+                Files.createDirectories(target.getParent());
+                storageService.move(file, target);
+            }
+
+            for (String suffix : StorageService.sidecarSuffixes()) {
+                Path oldSidecar = storageService.loadSidecar(oldName, suffix);
+                if (!Files.exists(oldSidecar)) {
+                    continue;
+                }
+                Path newSidecar = storageService.loadSidecar(newName, suffix);
+                if (Files.exists(newSidecar)) {
+                    storageService.deleteRecursively(oldSidecar);
+                } else {
+                    storageService.move(oldSidecar, newSidecar);
+                }
+            }
+
+            mediaCache.invalidate(oldName);
+            seekIndexService.evict(oldName);
+            return duplicate;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private List<Path> listLegacyFiles() throws IOException {
+        Path root = storageService.getRoot();
+        if (!Files.isDirectory(root)) {
+            return List.of();
+        }
+        try (Stream<Path> entries = Files.list(root)) {
+            return entries
+                    .filter(Files::isRegularFile)
+                    .filter(path -> isLegacyMedia(path.getFileName().toString()))
+                    .toList();
+        }
+    }
+
+    private boolean isLegacyMedia(String name) {
+        if (StorageService.isContentName(name) || name.endsWith(".tmp")) {
+            return false;
+        }
+        for (String suffix : StorageService.sidecarSuffixes()) {
+            if (name.endsWith(suffix)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -1,41 +1,351 @@
 package com.musicplayer.service;
 
+import com.musicplayer.repository.TrackRepository;
+import com.musicplayer.storage.DirectoryBackend;
+import com.musicplayer.storage.MediaBackend;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 import java.io.*;
 import java.nio.file.*;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
 import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
+/**
+ * Content-addressed media store: every file is named by the SHA-256 of its
+ * bytes ({@code <digest>.<ext>}), so identical uploads share one file.
+ * Tracks reference files through {@code storage_path}, and a file is
+ * removed only when no track points at it any more.
+ *
+ * Files fan out over two levels of digest-prefix directories
+ * ({@code ab/cd/abcd....mp3}). Stores created before that keep flat names
+ * until {@link ShardMigrationService} moves them, so every lookup accepts
+ * either form.
+ *
+ * With {@code music.storage.hot-path} set, a second, faster tier holds the
+ * currently popular files; {@link TieringService} moves them in and out.
+ * Writes always land on the main (cold) tier, and reads prefer the hot copy.
+ */
 @Service
+@RequiredArgsConstructor
 public class StorageService {
+    private static final String[] SIDECAR_SUFFIXES = {SeekIndexService.SUFFIX, HlsService.SUFFIX};
+    private static final Pattern CONTENT_NAME = Pattern.compile("[0-9a-f]{64}(\\.[a-z0-9]{1,5})?");
+    private static final Pattern EXTENSION = Pattern.compile("[a-z0-9]{1,5}");
+    private static final Pattern SHARDED_NAME = Pattern.compile("[0-9a-f]{2}/[0-9a-f]{2}/[0-9a-f]{64}(\\.[a-z0-9]{1,5})?");
+
+    private final TrackRepository trackRepository;
+
     @Value("${music.storage.path}")
     private String storagePath;
 
-    public String store(MultipartFile file) throws IOException {
-        Path storageDir = Paths.get(storagePath);
-        if (!Files.exists(storageDir)) {
-            Files.createDirectories(storageDir);
+    @Value("${music.storage.hot-path:}")
+    private String hotPath;
+
+    private MediaBackend coldTier;
+    private MediaBackend hotTier;
+
+    // storing, referencing and releasing one digest never interleave
+    private final ReentrantLock[] contentLocks = new ReentrantLock[64];
+    {
+        for (int i = 0; i < contentLocks.length; i++) {
+            contentLocks[i] = new ReentrantLock();
+        }
+    }
+
+    @PostConstruct
+    public void initTiers() throws IOException {
+        coldTier = new DirectoryBackend("cold", Paths.get(storagePath));
+        if (hotPath != null && !hotPath.isBlank()) {
+            Files.createDirectories(Paths.get(hotPath));
+            hotTier = new DirectoryBackend("hot", Paths.get(hotPath));
+        }
+    }
+
+    /**
+     * Streams the upload into the store while hashing it, then hands the
+     * content name to {@code register} under the content lock. A duplicate
+     * keeps the existing file and only the scratch copy is dropped.
+     */
+    public <T> T store(MultipartFile file, Function<String, T> register) throws IOException {
+        return store(file.getInputStream(), file.getOriginalFilename(), register);
+    }
+
+    /** Copies and hashes in the same pass; used for uploads and bulk import. */
+    public <T> T store(InputStream content, String originalFilename, Function<String, T> register) throws IOException {
+        Path temp = scratchFile();
+        String digest;
+        try (DigestInputStream in = new DigestInputStream(content, sha256())) {
+            Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+            digest = HexFormat.of().formatHex(in.getMessageDigest().digest());
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        try {
+            return commit(temp, contentName(digest, originalFilename), register);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    /**
+     * Takes ownership of an already staged file (chunked uploads). Its
+     * chunks were verified as they arrived; the file digest costs one read,
+     * and storing it is a rename, not a copy. If registering fails the file
+     * is left where it was, so the caller can try again.
+     */
+    public <T> T store(Path staged, String originalFilename, Function<String, T> register) throws IOException {
+        return commit(staged, contentName(hash(staged), originalFilename), register);
+    }
+
+    private <T> T commit(Path source, String filename, Function<String, T> register) throws IOException {
+        ReentrantLock lock = lockFor(filename);
+        lock.lock();
+        try {
+            String storedAs = shardedPath(filename);
+            Path destination = resolve(storedAs);
+            if (!Files.exists(destination) && Files.exists(resolve(filename))) {
+                storedAs = filename; // not migrated yet; keep sharing the flat copy
+                destination = resolve(filename);
+            }
+            // a popular file may live only on the hot tier; it is still the same content
+            boolean stored = Files.exists(destination)
+                    || hotTier != null && Files.exists(hotTier.resolve(shardedPath(filename)));
+            if (!stored) {
+                Files.createDirectories(destination.getParent());
+                move(source, destination);
+            }
+            T registered;
+            try {
+                registered = register.apply(storedAs);
+            } catch (RuntimeException e) {
+                // hand the content back to the caller; nothing references the stored copy yet
+                if (!stored) {
+                    try {
+                        move(destination, source);
+                    } catch (IOException moveBack) {
+                        e.addSuppressed(moveBack);
+                    }
+                }
+                throw e;
+            }
+            Files.deleteIfExists(source);
+            return registered;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drops the file and its derived data once no track references it.
+     * Returns whether the file was removed.
+     */
+    public boolean release(String filename) {
+        ReentrantLock lock = lockFor(filename);
+        lock.lock();
+        try {
+            if (isReferenced(filename)) {
+                return false;
+            }
+            delete(filename);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Counts references under both the flat and the sharded name. */
+    public boolean isReferenced(String filename) {
+        if (trackRepository.countByStoragePath(filename) > 0) {
+            return true;
+        }
+        String alternate = alternatePath(filename);
+        return alternate != null && trackRepository.countByStoragePath(alternate) > 0;
+    }
+
+    /** Locks by content, so the flat and sharded names of one file share a lock. */
+    public ReentrantLock lockFor(String filename) {
+        return contentLocks[Math.floorMod(baseName(filename).hashCode(), contentLocks.length)];
+    }
+
+    public static boolean isContentName(String filename) {
+        return CONTENT_NAME.matcher(filename).matches();
+    }
+
+    public static boolean isShardedPath(String storagePath) {
+        return SHARDED_NAME.matcher(storagePath).matches();
+    }
+
+    /** {@code abcd...mp3} becomes {@code ab/cd/abcd...mp3}; other names are returned as they are. */
+    public static String shardedPath(String filename) {
+        if (!isContentName(filename)) {
+            return filename;
+        }
+        return filename.substring(0, 2) + "/" + filename.substring(2, 4) + "/" + filename;
+    }
+
+    /** The other spelling of a content name (flat vs sharded), or {@code null}. */
+    private static String alternatePath(String storagePath) {
+        if (isShardedPath(storagePath)) {
+            return baseName(storagePath);
         }
+        return isContentName(storagePath) ? shardedPath(storagePath) : null;
+    }
+
+    public static String baseName(String storagePath) {
+        return storagePath.substring(storagePath.lastIndexOf('/') + 1);
+    }
 
-        String filename = UUID.randomUUID() + "_" + file.getOriginalFilename();
-        Path destination = storageDir.resolve(filename);
-        Files.copy(file.getInputStream(), destination,
-                StandardCopyOption.REPLACE_EXISTING);
+    public static String contentName(String digest, String originalFilename) {
+        String extension = "";
+        if (originalFilename != null && originalFilename.lastIndexOf('.') >= 0) {
+            extension = originalFilename.substring(originalFilename.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+        }
+        return EXTENSION.matcher(extension).matches() ? digest + "." + extension : digest;
+    }
 
-        return filename;
+    public String hash(Path file) throws IOException {
+        MessageDigest digest = sha256();
+        try (InputStream in = new DigestInputStream(Files.newInputStream(file), digest)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        return HexFormat.of().formatHex(digest.digest());
     }
 
+    /**
+     * Resolves a storage path, falling back to the other layout while a
+     * file is being moved between flat and sharded directories.
+     */
     public Path load(String filename) {
-        return Paths.get(storagePath).resolve(filename);
+        if (hotTier != null) {
+            Path hot = hotTier.resolve(shardedPath(baseName(filename)));
+            if (Files.exists(hot)) {
+                return hot;
+            }
+        }
+        return loadFrom(coldTier, filename);
+    }
+
+    /** Location of the file within one tier, whichever layout it is in there. */
+    public Path loadFrom(MediaBackend tier, String filename) {
+        Path file = tier.resolve(filename);
+        if (Files.exists(file)) {
+            return file;
+        }
+        String alternate = alternatePath(filename);
+        if (alternate != null && Files.exists(tier.resolve(alternate))) {
+            return tier.resolve(alternate);
+        }
+        return file;
+    }
+
+    public Path getRoot() {
+        return Paths.get(storagePath);
+    }
+
+    public MediaBackend getColdTier() {
+        return coldTier;
+    }
+
+    /** The fast tier, or {@code null} when tiering is off. */
+    public MediaBackend getHotTier() {
+        return hotTier;
+    }
+
+    /**
+     * Derived data (seek tables and the like) lives next to the media file
+     * as {@code <filename><suffix>} and goes away with it.
+     */
+    public Path loadSidecar(String filename, String suffix) {
+        Path file = load(filename);
+        return file.resolveSibling(file.getFileName() + suffix);
+    }
+
+    public static String[] sidecarSuffixes() {
+        return SIDECAR_SUFFIXES.clone();
+    }
+
+    public void storeSidecar(String filename, String suffix, byte[] content) throws IOException {
+        Path target = loadSidecar(filename, suffix);
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        Files.write(temp, content);
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
     }
 
     public void delete(String filename) {
         try {
-            Path file = load(filename);
-            Files.deleteIfExists(file);
+            String alternate = alternatePath(filename);
+            List<Path> copies = new ArrayList<>();
+            copies.add(resolve(filename));
+            if (alternate != null) {
+                copies.add(resolve(alternate));
+            }
+            if (hotTier != null) {
+                copies.add(hotTier.resolve(shardedPath(baseName(filename))));
+            }
+            for (Path file : copies) {
+                Files.deleteIfExists(file);
+                for (String suffix : SIDECAR_SUFFIXES) {
+                    deleteRecursively(file.resolveSibling(file.getFileName() + suffix));
+                }
+            }
         } catch (IOException e) {
             throw new RuntimeException("Failed to delete file", e);
         }
     }
-}
\ No newline at end of file
+
+    public void deleteRecursively(Path path) throws IOException {
+        if (!Files.isDirectory(path)) {
+            Files.deleteIfExists(path);
+            return;
+        }
+        try (Stream<Path> tree = Files.walk(path)) {
+            for (Path entry : tree.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(entry);
+            }
+        }
+    }
+
+    public void move(Path source, Path destination) throws IOException {
+        try {
+            Files.move(source, destination, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, destination, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private Path resolve(String filename) {
+        return coldTier.resolve(filename);
+    }
+
+    private Path scratchFile() throws IOException {
+        Path storageDir = Paths.get(storagePath);
+        if (!Files.exists(storageDir)) {
+            Files.createDirectories(storageDir);
+        }
+        return storageDir.resolve(UUID.randomUUID() + ".upload.tmp");
+    }
+
+    private MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package com.musicplayer.service;
+
+import com.musicplayer.storage.AccessTracker;
+import com.musicplayer.storage.MediaBackend;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the most played files on the hot tier within its byte budget.
+ * Each run ranks files by their decayed access score, demotes hot files
+ * that fell out of the top of that ranking and promotes the ones that
+ * entered it. Copies are throttled so a rebalance does not starve
+ * streaming of disk bandwidth.
+ *
+ * A move copies the sidecars, then the media file under a temporary name
+ * that is renamed into place, and only then deletes the source. At every
+ * moment one complete copy is visible to {@link StorageService#load}.
+ */
+@Service
+@RequiredArgsConstructor
+public class TieringService {
+    private static final String TEMP_SUFFIX = ".tier.tmp";
+    private static final int COPY_BUFFER = 1 << 20;
+
+    private final StorageService storageService;
+    private final AccessTracker accessTracker;
+
+    @Value("${music.tiering.hot-max-bytes:10737418240}")
+    private long hotMaxBytes;
+
+    @Value("${music.tiering.promote-score:3}")
+    private double promoteScore;
+
+    @Value("${music.tiering.bytes-per-second:52428800}")
+    private long bytesPerSecond;
+
+    @Value("${music.tiering.max-moves-per-run:200}")
+    private int maxMovesPerRun;
+
+    // base name -> size of every media file on the hot tier
+    private final ConcurrentHashMap<String, Long> hotFiles = new ConcurrentHashMap<>();
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile boolean inventoried;
+
+    private final LongAdder promoted = new LongAdder();
+    private final LongAdder demoted = new LongAdder();
+    private final LongAdder bytesMoved = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private volatile long lastRun;
+
+    public void recordAccess(String storagePath) {
+        if (storageService.getHotTier() != null) {
+            accessTracker.record(StorageService.baseName(storagePath));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${music.tiering.interval-ms:60000}",
+            initialDelayString = "${music.tiering.interval-ms:60000}")
+    public void scheduledRebalance() {
+        rebalance();
+    }
+
+    /** Returns {@code false} if tiering is off or a rebalance is already running. */
+    public boolean rebalance() {
+        MediaBackend hot = storageService.getHotTier();
+        if (hot == null || !running.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            if (!inventoried) {
+                takeInventory(hot);
+                inventoried = true;
+            }
+            // files released since the last run
+            hotFiles.keySet().removeIf(name -> !Files.exists(hot.resolve(StorageService.shardedPath(name))));
+
+            Set<String> wanted = wantedOnHotTier();
+            int moves = 0;
+            for (String name : new ArrayList<>(hotFiles.keySet())) {
+                if (!wanted.contains(name) && moves++ < maxMovesPerRun) {
+                    if (transfer(name, hot, storageService.getColdTier())) {
+                        demoted.increment();
+                        hotFiles.remove(name);
+                    }
+                }
+            }
+            for (String name : wanted) {
+                if (!hotFiles.containsKey(name) && moves++ < maxMovesPerRun) {
+                    promote(name, hot);
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            System.err.println("Tier rebalance failed: " + e.getMessage());
+            return true;
+        } finally {
+            lastRun = System.currentTimeMillis();
+            running.set(false);
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", storageService.getHotTier() != null);
+        stats.put("hotFiles", hotFiles.size());
+        stats.put("hotBytes", hotBytes());
+        stats.put("hotMaxBytes", hotMaxBytes);
+        stats.put("trackedFiles", accessTracker.size());
+        stats.put("promoted", promoted.sum());
+        stats.put("demoted", demoted.sum());
+        stats.put("bytesMoved", bytesMoved.sum());
+        stats.put("failed", failed.sum());
+        stats.put("lastRun", lastRun);
+        return stats;
+    }
+
+    /** Highest scores first, as many as fit the budget. */
+    private Set<String> wantedOnHotTier() throws IOException {
+        List<Map.Entry<String, Double>> ranked = new ArrayList<>(accessTracker.snapshot(0.01).entrySet());
+        ranked.sort(Map.Entry.<String, Double>comparingByValue().reversed());
+
+        Set<String> wanted = new HashSet<>();
+        long budget = hotMaxBytes;
+        for (Map.Entry<String, Double> entry : ranked) {
+            if (entry.getValue() < promoteScore) {
+                break;
+            }
+            String name = entry.getKey();
+            if (!StorageService.isContentName(name)) {
+                continue;
+            }
+            Long size = hotFiles.get(name);
+            if (size == null) {
+                Path cold = storageService.loadFrom(storageService.getColdTier(), name);
+                if (!Files.isRegularFile(cold)) {
+                    continue;
+                }
+                size = Files.size(cold);
+            }
+            if (size <= budget) {
+                wanted.add(name);
+                budget -= size;
+            }
+        }
+        return wanted;
+    }
+
+    private void promote(String name, MediaBackend hot) throws IOException {
+        Path cold = storageService.loadFrom(storageService.getColdTier(), name);
+        if (!Files.isRegularFile(cold)) {
+            return;
+        }
+        long size = Files.size(cold);
+        if (hotBytes() + size > hotMaxBytes || hot.getUsableSpace() < size * 2) {
+            return;
+        }
+        if (transfer(name, storageService.getColdTier(), hot)) {
+            hotFiles.put(name, size);
+            promoted.increment();
+        }
+    }
+
+    /** Moves one file and its sidecars between tiers; returns whether it was found. */
+    private boolean transfer(String name, MediaBackend from, MediaBackend to) {
+        ReentrantLock lock = storageService.lockFor(name);
+        lock.lock();
+        try {
+            Path source = storageService.loadFrom(from, name);
+            if (!Files.isRegularFile(source)) {
+                return false;
+            }
+            Path target = to.resolve(StorageService.shardedPath(name));
+            Files.createDirectories(target.getParent());
+
+            List<Path> sidecars = new ArrayList<>();
+            for (String suffix : StorageService.sidecarSuffixes()) {
+                Path sidecar = source.resolveSibling(source.getFileName() + suffix);
+                if (Files.exists(sidecar)) {
+                    copyInto(sidecar, target.resolveSibling(target.getFileName() + suffix));
+                    sidecars.add(sidecar);
+                }
+            }
+            copyInto(source, target);
+
+            Files.delete(source);
+            for (Path sidecar : sidecars) {
+                storageService.deleteRecursively(sidecar);
+            }
+            return true;
+        } catch (IOException e) {
+            failed.increment();
+            System.err.println("Failed to move " + name + " to the " + to.getName() + " tier: " + e.getMessage());
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Copies beside the target and renames into place; an existing target is kept. */
+    private void copyInto(Path source, Path target) throws IOException {
+        if (Files.exists(target)) {
+            return;
+        }
+        Path temp = target.resolveSibling(target.getFileName() + TEMP_SUFFIX);
+        try {
+            storageService.deleteRecursively(temp);
+            if (Files.isDirectory(source)) {
+                Files.createDirectories(temp);
+                try (Stream<Path> entries = Files.list(source)) {
+                    for (Path entry : entries.toList()) {
+                        copyThrottled(entry, temp.resolve(entry.getFileName().toString()));
+                    }
+                }
+            } else {
+                copyThrottled(source, temp);
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            storageService.deleteRecursively(temp);
+        }
+    }
+
+    private void copyThrottled(Path source, Path target) throws IOException {
+        long started = System.nanoTime();
+        long copied = 0;
+        byte[] buffer = new byte[COPY_BUFFER];
+        try (InputStream in = Files.newInputStream(source);
+             OutputStream out = Files.newOutputStream(target)) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                out.write(buffer, 0, read);
+                copied += read;
+                if (bytesPerSecond > 0) {
+                    long ahead = copied * 1_000_000_000L / bytesPerSecond - (System.nanoTime() - started);
+                    if (ahead > 0) {
+                        try {
+                            Thread.sleep(ahead / 1_000_000, (int) (ahead % 1_000_000));
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new IOException("Interrupted while moving " + source, e);
+                        }
+                    }
+                }
+            }
+        }
+        bytesMoved.add(copied);
+    }
+
+    /** Files already on the hot tier at startup start out warm. */
+    private void takeInventory(MediaBackend hot) throws IOException {
+        Path root = hot.resolve("");
+        try (Stream<Path> files = Files.walk(root, 3)) {
+            for (Path file : files.filter(Files::isRegularFile).toList()) {
+                String name = file.getFileName().toString();
+                if (StorageService.isContentName(name)) {
+                    hotFiles.put(name, Files.size(file));
+                    accessTracker.seed(name, promoteScore);
+                } else if (name.endsWith(TEMP_SUFFIX)) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    private long hotBytes() {
+        long total = 0;
+        for (long size : hotFiles.values()) {
+            total += size;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,217 @@
+package com.musicplayer.service;
+
+import com.musicplayer.repository.TrackRepository;
+import com.musicplayer.search.CatalogIndexer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.BadSqlGrammarException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+
+/**
+ * Ranked track search. With {@code music.search.engine=memory} natural
+ * queries are answered from the in-process {@link CatalogIndexer} once it is
+ * built. Otherwise queries with at least one token the FULLTEXT index
+ * holds go through {@code MATCH ... AGAINST} on {@code idx_search}, ordered
+ * by relevance. Shorter queries, and databases without FULLTEXT, fall back
+ * to substring matching, newest first. Fuzzy queries also accept words a
+ * couple of typos away; they need the in-memory index and are run as
+ * natural queries without it, which the result reports.
+ *
+ * Both paths page by keyset rather than OFFSET: the cursor carries the
+ * (score, id) or id of the last row, so deep pages cost the same as the
+ * first. Relevance is compared as a fixed-point decimal, since the float
+ * MATCH returns does not survive a round trip through the cursor exactly.
+ * A cursor from the in-memory index cannot continue on another path; when
+ * the index is rebuilding or switched off it is rejected as stale, and the
+ * client starts the search over.
+ */
+@Service
+@RequiredArgsConstructor
+public class TrackSearchService {
+    private static final String NATURAL = "MATCH(title, artist, album) AGAINST (? IN NATURAL LANGUAGE MODE)";
+    private static final String BOOLEAN = "MATCH(title, artist, album) AGAINST (? IN BOOLEAN MODE)";
+
+    public enum Mode { NATURAL, BOOLEAN, FUZZY }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TrackRepository trackRepository;
+    private final CatalogIndexer catalogIndexer;
+
+    // innodb_ft_min_token_size; shorter words are not in the index
+    @Value("${music.search.min-token-length:3}")
+    private int minTokenLength;
+
+    @Value("${music.search.max-limit:500}")
+    private int maxLimit;
+
+    private volatile Boolean fulltextAvailable;
+
+    public SearchResult search(String query, Mode mode, int limit, String after) {
+        int pageSize = Math.max(1, Math.min(limit, maxLimit));
+        String trimmed = query.trim();
+        char cursorKind = after != null ? cursorKind(after) : 0;
+        if (mode != Mode.BOOLEAN && (after == null || cursorKind == 'm')) {
+            SearchResult result = inMemory(trimmed, pageSize, after, mode == Mode.FUZZY);
+            if (result != null) {
+                return result;
+            }
+            if (cursorKind == 'm') {
+                throw new StaleCursorException("Search index is unavailable; start the search again");
+            }
+        }
+        if (cursorKind == 'f' || (cursorKind == 0 && usesFulltext(trimmed))) {
+            return fulltext(trimmed, mode, pageSize, after);
+        }
+        return substring(trimmed, pageSize, after);
+    }
+
+    private SearchResult inMemory(String query, int limit, String after, boolean fuzzy) {
+        long afterHit = after != null ? parse(decode(after, 'm', 1)[0], Long::parseLong) : Long.MAX_VALUE;
+        long[] hits = catalogIndexer.search(query, limit + 1, afterHit, fuzzy);
+        if (hits == null) {
+            return null;
+        }
+        List<Long> ids = new ArrayList<>(Math.min(hits.length, limit));
+        for (int i = 0; i < Math.min(hits.length, limit); i++) {
+            ids.add(hits[i] & 0xFFFFFFFFL);
+        }
+        String next = hits.length > limit ? encode('m', String.valueOf(hits[limit - 1])) : null;
+        return new SearchResult(ids, next, fuzzy ? Mode.FUZZY : Mode.NATURAL);
+    }
+
+    private SearchResult fulltext(String query, Mode mode, int limit, String after) {
+        String match = mode == Mode.BOOLEAN ? BOOLEAN : NATURAL;
+        Mode answered = mode == Mode.BOOLEAN ? Mode.BOOLEAN : Mode.NATURAL;
+        String score = "CAST(" + match + " AS DECIMAL(20,6))";
+        List<Object> args = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT id, ").append(score).append(" AS score FROM tracks WHERE ")
+                .append(match);
+        args.add(query);
+        args.add(query);
+
+        if (after != null) {
+            String[] cursor = decode(after, 'f', 2);
+            BigDecimal afterScore = parse(cursor[0], BigDecimal::new);
+            long id = parse(cursor[1], Long::parseLong);
+            sql.append(" AND (").append(score).append(" < ? OR (").append(score).append(" = ? AND id < ?))");
+            args.add(query);
+            args.add(afterScore);
+            args.add(query);
+            args.add(afterScore);
+            args.add(id);
+        }
+        sql.append(" ORDER BY score DESC, id DESC LIMIT ?");
+        args.add(limit + 1);
+
+        List<Long> ids = new ArrayList<>();
+        List<BigDecimal> scores = new ArrayList<>();
+        try {
+            jdbcTemplate.query(sql.toString(), rs -> {
+                ids.add(rs.getLong("id"));
+                scores.add(rs.getBigDecimal("score"));
+            }, args.toArray());
+        } catch (BadSqlGrammarException e) {
+            if (mode == Mode.BOOLEAN) {
+                throw new IllegalArgumentException("Invalid boolean query: " + query);
+            }
+            throw e;
+        }
+
+        if (ids.size() <= limit) {
+            return new SearchResult(ids, null, answered);
+        }
+        ids.remove(limit);
+        return new SearchResult(ids, encode('f', scores.get(limit - 1).toPlainString() + ":" + ids.get(limit - 1)),
+                answered);
+    }
+
+    private SearchResult substring(String query, int limit, String after) {
+        Long afterId = after != null ? parse(decode(after, 'l', 1)[0], Long::parseLong) : null;
+        List<Long> ids = new ArrayList<>(trackRepository.searchTrackIds(query, afterId, PageRequest.of(0, limit + 1)));
+        if (ids.size() <= limit) {
+            return new SearchResult(ids, null, Mode.NATURAL);
+        }
+        ids.remove(limit);
+        return new SearchResult(ids, encode('l', String.valueOf(ids.get(limit - 1))), Mode.NATURAL);
+    }
+
+    private boolean usesFulltext(String query) {
+        if (!isFulltextAvailable()) {
+            return false;
+        }
+        for (String token : query.split("[^\\p{L}\\p{N}]+")) {
+            if (token.length() >= minTokenLength) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isFulltextAvailable() {
+        Boolean available = fulltextAvailable;
+        if (available == null) {
+            String product = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                    connection.getMetaData().getDatabaseProductName());
+            available = product != null && (product.toLowerCase(Locale.ROOT).contains("mysql")
+                    || product.toLowerCase(Locale.ROOT).contains("mariadb"));
+            fulltextAvailable = available;
+        }
+        return available;
+    }
+
+    /** Cursors are opaque to clients; the prefix keeps a fulltext cursor from being fed to the other path. */
+    private String encode(char kind, String value) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((kind + ":" + value).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private char cursorKind(String cursor) {
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            return value.isEmpty() ? 0 : value.charAt(0);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+
+    private String[] decode(String cursor, char kind, int parts) {
+        String value;
+        try {
+            value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        String[] fields = value.split(":");
+        if (fields.length != parts + 1 || !fields[0].equals(String.valueOf(kind))) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        String[] result = new String[parts];
+        System.arraycopy(fields, 1, result, 0, parts);
+        return result;
+    }
+
+    private <T> T parse(String value, Function<String, T> parser) {
+        try {
+            return parser.apply(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+
+    /** A well-formed cursor that the path now answering the query cannot continue. */
+    public static class StaleCursorException extends RuntimeException {
+        public StaleCursorException(String message) {
+            super(message);
+        }
+    }
+}
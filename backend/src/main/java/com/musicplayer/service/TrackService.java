@@ -1,15 +1,42 @@
 package com.musicplayer.service;
 
+import com.musicplayer.browse.CatalogAggregates;
 import com.musicplayer.dto.TrackDto;
+import com.musicplayer.dto.TrackPage;
+import com.musicplayer.event.CatalogChangedEvent;
 import com.musicplayer.model.Track;
+import com.musicplayer.repository.PlaylistChangeRepository;
 import com.musicplayer.repository.PlaylistItemRepository;
+import com.musicplayer.repository.PlaylistRepository;
 import com.musicplayer.repository.TrackRepository;
+import com.musicplayer.search.CatalogIndexer;
+import com.musicplayer.search.Suggestion;
+import com.musicplayer.search.TrackSuggester;
+import com.musicplayer.streaming.MediaCache;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.multipart.MultipartFile;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -18,20 +45,138 @@ public class TrackService {
     private final TrackRepository trackRepository;
     private final StorageService storageService;
     private final PlaylistItemRepository playlistItemRepository;
+    private final PlaylistRepository playlistRepository;
+    private final PlaylistChangeRepository playlistChangeRepository;
+    private final MediaCache mediaCache;
+    private final SeekIndexService seekIndexService;
+    private final IngestService ingestService;
+    private final TrackSearchService trackSearchService;
+    private final CatalogIndexer catalogIndexer;
+    private final TrackSuggester trackSuggester;
+    private final CatalogAggregates catalogAggregates;
 
-    public List<TrackDto> getAllTracks() {
-        return trackRepository.findAll().stream()
-                .map(this::convertToDto)
-                .collect(Collectors.toList());
+    public enum Order { ID, CREATED_AT }
+
+    @Value("${music.catalog.page-size:200}")
+    private int defaultPageSize;
+
+    @Value("${music.catalog.max-page-size:1000}")
+    private int maxPageSize;
+
+    // Seeded from the clock so validators handed out before a restart never match again
+    private final AtomicLong catalogVersion = new AtomicLong(System.currentTimeMillis());
+    private volatile long catalogLastModified = System.currentTimeMillis();
+    // {catalog version, track count}; counted again only after the catalog changes
+    private volatile long[] trackCount = {-1, 0};
+
+    public long getCatalogVersion() {
+        return catalogVersion.get();
+    }
+
+    public long getCatalogLastModified() {
+        return catalogLastModified;
     }
 
-    public List<TrackDto> searchTracks(String query) {
-        if (query == null || query.trim().isEmpty()) {
-            return getAllTracks();
+    /**
+     * Inside a transaction the validators move only after commit; moved
+     * earlier, a concurrent GET could cache the old rows under the new ETag.
+     */
+    private void markCatalogChanged() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    bumpCatalogVersion();
+                }
+            });
+        } else {
+            bumpCatalogVersion();
         }
-        return trackRepository.searchTracks(query).stream()
+    }
+
+    private void bumpCatalogVersion() {
+        catalogLastModified = System.currentTimeMillis();
+        catalogVersion.incrementAndGet();
+    }
+
+    public long countTracks() {
+        long version = catalogVersion.get();
+        long[] cached = trackCount;
+        if (cached[0] != version) {
+            cached = new long[]{version, trackRepository.count()};
+            trackCount = cached;
+        }
+        return cached[1];
+    }
+
+    /**
+     * One page of the catalog, by id (oldest first) or by creation time
+     * (newest first). Pages are keyset: {@code after} carries the sort key of
+     * the last row of the previous page, so every page costs one index range
+     * scan however deep it is.
+     */
+    public TrackPage listTracks(Order order, Integer limit, String after) {
+        int pageSize = Math.max(1, Math.min(limit != null ? limit : defaultPageSize, maxPageSize));
+        PageRequest page = PageRequest.of(0, pageSize + 1);
+        List<Track> rows;
+        if (order == Order.CREATED_AT) {
+            if (after == null) {
+                rows = trackRepository.findNewest(page);
+            } else {
+                String[] cursor = decodeCursor(after, 'c', 2);
+                rows = trackRepository.findNewestBefore(parseTime(cursor[1]), parseId(cursor[0]), page);
+            }
+        } else {
+            long afterId = after != null ? parseId(decodeCursor(after, 'i', 1)[0]) : 0;
+            rows = trackRepository.findByIdGreaterThanOrderByIdAsc(afterId, page);
+        }
+
+        String next = null;
+        if (rows.size() > pageSize) {
+            rows = rows.subList(0, pageSize);
+            Track last = rows.get(pageSize - 1);
+            next = order == Order.CREATED_AT
+                    ? encodeCursor('c', last.getId() + ":" + last.getCreatedAt())
+                    : encodeCursor('i', String.valueOf(last.getId()));
+        }
+        List<TrackDto> tracks = new ArrayList<>(rows.size());
+        for (Track track : rows) {
+            tracks.add(convertToDto(track));
+        }
+        return TrackPage.builder()
+                .tracks(tracks)
+                .nextCursor(next)
+                .build();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillCreatedAt() {
+        int updated = trackRepository.backfillCreatedAt();
+        if (updated > 0) {
+            System.out.println("Set created_at on " + updated + " tracks that had none");
+        }
+    }
+
+    /** One page of ranked matches; {@code after} is the cursor returned with the previous page. */
+    public TrackPage searchTracks(String query, TrackSearchService.Mode mode, int limit, String after) {
+        SearchResult result = trackSearchService.search(query, mode, limit, after);
+        Map<Long, Track> found = trackRepository.findAllById(result.getTrackIds()).stream()
+                .collect(Collectors.toMap(Track::getId, Function.identity()));
+        List<TrackDto> tracks = result.getTrackIds().stream()
+                .map(found::get)
+                .filter(Objects::nonNull)
                 .map(this::convertToDto)
                 .collect(Collectors.toList());
+        return TrackPage.builder()
+                .tracks(tracks)
+                .nextCursor(result.getNextCursor())
+                .searchMode(result.getMode().name().toLowerCase(Locale.ROOT))
+                .build();
+    }
+
+    /** Completions for a search box; served from memory, so cheap enough for every keystroke. */
+    public List<Suggestion> suggest(String prefix, int k) {
+        return trackSuggester.suggest(prefix, Math.max(1, Math.min(k, 50)));
     }
 
     public Track getTrackById(Long id) {
@@ -39,39 +184,128 @@ public class TrackService {
                 .orElseThrow(() -> new RuntimeException("Track not found"));
     }
 
+    public void recordPlay(Long id) {
+        trackRepository.incrementPlayCount(id);
+    }
+
     public Track createTrack(String title, String artist, String album,
                              MultipartFile file) throws IOException {
-        String storagePath = storageService.store(file);
+        return storageService.store(file,
+                storagePath -> registerTrack(title, artist, album, storagePath, file.getSize(),
+                        file.getOriginalFilename()));
+    }
+
+    /** Creates a track from a fully staged upload, which is moved into the store. */
+    public Track createTrack(String title, String artist, String album,
+                             Path stagedFile, String originalFilename) throws IOException {
+        long size = Files.size(stagedFile);
+        return storageService.store(stagedFile, originalFilename,
+                storagePath -> registerTrack(title, artist, album, storagePath, size, originalFilename));
+    }
 
+    /**
+     * Inserts the row as PENDING and returns at once; tags, duration and
+     * derived media are filled in by the ingest pipeline. An empty title is
+     * kept empty until ingest finds one in the tags or falls back to the
+     * file name.
+     */
+    private Track registerTrack(String title, String artist, String album,
+                                String storagePath, long size, String originalFilename) {
         Track track = Track.builder()
-                .title(title)
+                .title(title != null ? title.trim() : "")
                 .artist(artist)
                 .album(album)
                 .storagePath(storagePath)
-                .sizeBytes(file.getSize())
+                .sizeBytes(size)
                 .build();
 
-        return trackRepository.save(track);
+        Track saved = trackRepository.save(track);
+        markCatalogChanged();
+        catalogIndexer.upsert(saved);
+        trackSuggester.upsert(saved);
+        catalogAggregates.upsert(saved);
+        ingestService.submit(saved.getId(), originalFilename);
+        return saved;
     }
 
-    public Track updateTrack(Long id, String title, String artist, String album) {
-        Track track = getTrackById(id);
-
-        if (title != null && !title.isEmpty()) track.setTitle(title);
-        if (artist != null) track.setArtist(artist);
-        if (album != null) track.setAlbum(album);
+    @EventListener
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        markCatalogChanged();
+    }
 
-        return trackRepository.save(track);
+    /** Writes only title, artist and album; null leaves a field as it is, and so does an empty title. */
+    public Track updateTrack(Long id, String title, String artist, String album) {
+        if (trackRepository.updateMetadata(id, title, artist, album) == 0) {
+            throw new RuntimeException("Track not found");
+        }
+        Track saved = getTrackById(id);
+        markCatalogChanged();
+        catalogIndexer.upsert(saved);
+        trackSuggester.upsert(saved);
+        catalogAggregates.upsert(saved);
+        return saved;
     }
 
     @Transactional
     public void deleteTrack(Long id) {
         Track track = getTrackById(id);
+        playlistRepository.incrementVersionsContaining(id);
+        playlistChangeRepository.logTrackRemoved(id);
         playlistItemRepository.deleteByTrackId(id);
-        if (track.getStoragePath() != null) {
-            storageService.delete(track.getStoragePath());
-        }
         trackRepository.delete(track);
+        markCatalogChanged();
+
+        // the file may be shared with other tracks; count references only once this delete is visible
+        String storagePath = track.getStoragePath();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                catalogIndexer.remove(id);
+                trackSuggester.remove(id);
+                catalogAggregates.remove(id);
+                if (storagePath != null && storageService.release(storagePath)) {
+                    mediaCache.invalidate(storagePath);
+                    seekIndexService.evict(storagePath);
+                }
+            }
+        });
+    }
+
+    private String encodeCursor(char kind, String value) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((kind + ":" + value).getBytes(StandardCharsets.UTF_8));
+    }
+
+    // the timestamp holds colons of its own, so it goes last and the split is bounded
+    private String[] decodeCursor(String cursor, char kind, int parts) {
+        String[] fields;
+        try {
+            fields = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":", parts + 1);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        if (fields.length != parts + 1 || !fields[0].equals(String.valueOf(kind))) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        String[] result = new String[parts];
+        System.arraycopy(fields, 1, result, 0, parts);
+        return result;
+    }
+
+    private long parseId(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+
+    private LocalDateTime parseTime(String value) {
+        try {
+            return LocalDateTime.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
     }
 
     private TrackDto convertToDto(Track track) {
@@ -82,6 +316,9 @@ public class TrackService {
                 .album(track.getAlbum())
                 .durationMs(track.getDurationMs())
                 .sizeBytes(track.getSizeBytes())
+                .bitrate(track.getBitrate())
+                .sampleRate(track.getSampleRate())
+                .status(track.getStatus())
                 .build();
     }
 }
\ No newline at end of file
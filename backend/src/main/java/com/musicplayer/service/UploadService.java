@@ -0,0 +1,265 @@
+package com.musicplayer.service;
+
+import com.musicplayer.model.Track;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Chunked, resumable uploads. Chunks stream from the request body straight
+ * into their slot of a preallocated staging file, so arrival order does not
+ * matter and parallel chunks never touch the same bytes. Completion moves
+ * the staging file into the media store without copying it.
+ *
+ * Sessions live in memory: an interrupted upload can resume while the
+ * server stays up, and a periodic sweep drops sessions idle for longer than
+ * the expiry.
+ */
+@Service
+@RequiredArgsConstructor
+public class UploadService {
+    private final TrackService trackService;
+
+    @Value("${music.upload.path:storage/uploads}")
+    private String uploadPath;
+
+    @Value("${music.upload.chunk-bytes:8388608}")
+    private int defaultChunkBytes;
+
+    @Value("${music.upload.max-chunk-bytes:33554432}")
+    private int maxChunkBytes;
+
+    @Value("${music.upload.max-file-bytes:2147483648}")
+    private long maxFileBytes;
+
+    @Value("${music.upload.expiry-minutes:60}")
+    private long expiryMinutes;
+
+    private final ConcurrentHashMap<String, UploadSession> sessions = new ConcurrentHashMap<>();
+
+    public UploadSession create(String filename, long size, Integer chunkSize,
+                                String title, String artist, String album) throws IOException {
+        if (size <= 0 || size > maxFileBytes) {
+            throw new IllegalArgumentException("File size must be between 1 and " + maxFileBytes + " bytes");
+        }
+        int chunk = chunkSize != null ? chunkSize : defaultChunkBytes;
+        if (chunk <= 0 || chunk > maxChunkBytes) {
+            throw new IllegalArgumentException("Chunk size must be between 1 and " + maxChunkBytes + " bytes");
+        }
+
+        Path dir = Paths.get(uploadPath);
+        Files.createDirectories(dir);
+        String id = UUID.randomUUID().toString();
+        Path file = dir.resolve(id + ".part");
+
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        // reserve the full length up front; chunks then land at fixed offsets
+        channel.write(ByteBuffer.allocate(1), size - 1);
+
+        String name = Paths.get(filename).getFileName().toString();
+        UploadSession session = new UploadSession(id, name, title, artist, album, size, chunk, file, channel);
+        sessions.put(id, session);
+        return session;
+    }
+
+    public UploadSession get(String id) {
+        UploadSession session = sessions.get(id);
+        if (session == null) {
+            throw new RuntimeException("Upload not found");
+        }
+        return session;
+    }
+
+    /**
+     * Writes one chunk at its offset while hashing it. The chunk only counts
+     * as received when its length and SHA-256 match; otherwise the client
+     * simply sends it again. A chunk sent again is unmarked before its bytes
+     * are overwritten, so a corrupt resend of good data leaves it missing
+     * rather than received.
+     */
+    public void writeChunk(String id, int index, String expectedSha256, InputStream body) throws IOException {
+        if (expectedSha256 == null || expectedSha256.isBlank()) {
+            throw new IllegalArgumentException("X-Chunk-Sha256 header is required");
+        }
+        UploadSession session = get(id);
+        if (index < 0 || index >= session.getChunkCount()) {
+            throw new IllegalArgumentException("Chunk index out of range");
+        }
+
+        Lock shared = session.lock().readLock();
+        shared.lock();
+        try {
+            if (session.isClosed()) {
+                throw new RuntimeException("Upload not found");
+            }
+            session.touch();
+            receiveChunk(session, index, expectedSha256, body);
+        } finally {
+            shared.unlock();
+        }
+    }
+
+    private void receiveChunk(UploadSession session, int index, String expectedSha256,
+                              InputStream body) throws IOException {
+
+        session.markMissing(index);
+        MessageDigest digest = sha256();
+        long position = session.chunkOffset(index);
+        long remaining = session.chunkLength(index);
+        byte[] buffer = new byte[64 * 1024];
+        int read;
+        while (remaining > 0 && (read = body.read(buffer, 0, (int) Math.min(buffer.length, remaining))) > 0) {
+            digest.update(buffer, 0, read);
+            ByteBuffer data = ByteBuffer.wrap(buffer, 0, read);
+            while (data.hasRemaining()) {
+                position += session.getChannel().write(data, position);
+            }
+            remaining -= read;
+        }
+
+        if (remaining > 0 || body.read() != -1) {
+            throw new IllegalArgumentException("Chunk " + index + " must be exactly "
+                    + session.chunkLength(index) + " bytes");
+        }
+        String actual = HexFormat.of().formatHex(digest.digest());
+        if (!actual.equalsIgnoreCase(expectedSha256)) {
+            throw new ChecksumMismatchException("Checksum mismatch for chunk " + index);
+        }
+        session.markReceived(index);
+    }
+
+    /**
+     * Stores the staged file and registers the track. The session stays in
+     * place until that succeeds, so a storage or database failure at this
+     * last step keeps the received bytes and {@code complete} can be retried.
+     */
+    public Track complete(String id) throws IOException {
+        UploadSession session = get(id);
+        Lock exclusive = session.lock().writeLock();
+        exclusive.lock();
+        try {
+            if (session.isClosed()) {
+                throw new RuntimeException("Upload not found");
+            }
+            if (!session.isComplete()) {
+                throw new IllegalStateException(session.missingChunks().length + " chunks are still missing");
+            }
+            session.touch();
+            session.getChannel().force(false);
+            Track track = trackService.createTrack(session.getTitle(), session.getArtist(), session.getAlbum(),
+                    session.getFile(), session.getFilename());
+            // the staging file now belongs to the store
+            sessions.remove(id, session);
+            session.close();
+            return track;
+        } finally {
+            exclusive.unlock();
+        }
+    }
+
+    public void abort(String id) throws IOException {
+        UploadSession session = sessions.get(id);
+        if (session != null) {
+            Lock exclusive = session.lock().writeLock();
+            exclusive.lock();
+            try {
+                drop(session);
+            } finally {
+                exclusive.unlock();
+            }
+        }
+    }
+
+    // caller holds the session's write lock
+    private void drop(UploadSession session) throws IOException {
+        if (session.isClosed() || !sessions.remove(session.getId(), session)) {
+            return;
+        }
+        session.close();
+        Files.deleteIfExists(session.getFile());
+    }
+
+    public Map<String, Object> describe(UploadSession session) {
+        return Map.of(
+                "uploadId", session.getId(),
+                "size", session.getSize(),
+                "chunkSize", session.getChunkSize(),
+                "chunkCount", session.getChunkCount(),
+                "received", session.receivedChunks(),
+                "missing", session.missingChunks());
+    }
+
+    /** Staging files outlive their in-memory sessions across a restart. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void removeOrphanedParts() {
+        Path dir = Paths.get(uploadPath);
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        try (DirectoryStream<Path> parts = Files.newDirectoryStream(dir, "*.part")) {
+            for (Path part : parts) {
+                Files.deleteIfExists(part);
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to clean " + dir + ": " + e.getMessage());
+        }
+    }
+
+    /** Sessions with a chunk still streaming in are skipped until the next sweep. */
+    @Scheduled(fixedDelay = 60_000)
+    public void expireIdle() {
+        long cutoff = System.currentTimeMillis() - expiryMinutes * 60_000;
+        for (UploadSession session : sessions.values()) {
+            if (session.getLastActivity() >= cutoff) {
+                continue;
+            }
+            Lock exclusive = session.lock().writeLock();
+            if (!exclusive.tryLock()) {
+                continue;
+            }
+            try {
+                if (session.getLastActivity() < cutoff) {
+                    drop(session);
+                }
+            } catch (IOException e) {
+                System.err.println("Failed to remove expired upload " + session.getId() + ": " + e.getMessage());
+            } finally {
+                exclusive.unlock();
+            }
+        }
+    }
+
+    private MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static class ChecksumMismatchException extends RuntimeException {
+        public ChecksumMismatchException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.musicplayer.service;
+
+import lombok.Getter;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * One resumable upload: a preallocated staging file that chunks are
+ * written into at their own offsets, plus the set of chunks that arrived
+ * with a matching checksum. Chunk writes share the session lock; completing
+ * or dropping the session takes it exclusively, so the staging file is
+ * never closed or moved under a write in flight.
+ */
+@Getter
+public class UploadSession {
+    private final String id;
+    private final String filename;
+    private final String title;
+    private final String artist;
+    private final String album;
+    private final long size;
+    private final int chunkSize;
+    private final Path file;
+    private final FileChannel channel;
+
+    // guarded by this
+    private final BitSet received = new BitSet();
+    private volatile long lastActivity = System.currentTimeMillis();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // guarded by the write lock
+    private boolean closed;
+
+    UploadSession(String id, String filename, String title, String artist, String album,
+                  long size, int chunkSize, Path file, FileChannel channel) {
+        this.id = id;
+        this.filename = filename;
+        this.title = title;
+        this.artist = artist;
+        this.album = album;
+        this.size = size;
+        this.chunkSize = chunkSize;
+        this.file = file;
+        this.channel = channel;
+    }
+
+    public int getChunkCount() {
+        return (int) Math.max(1, (size + chunkSize - 1) / chunkSize);
+    }
+
+    public long chunkOffset(int index) {
+        return (long) index * chunkSize;
+    }
+
+    public long chunkLength(int index) {
+        return Math.min(chunkSize, size - chunkOffset(index));
+    }
+
+    synchronized void markReceived(int index) {
+        received.set(index);
+        lastActivity = System.currentTimeMillis();
+    }
+
+    synchronized void markMissing(int index) {
+        received.clear(index);
+    }
+
+    public synchronized int[] receivedChunks() {
+        return received.stream().toArray();
+    }
+
+    public synchronized int[] missingChunks() {
+        BitSet missing = new BitSet(getChunkCount());
+        missing.set(0, getChunkCount());
+        missing.andNot(received);
+        return missing.stream().toArray();
+    }
+
+    public synchronized boolean isComplete() {
+        return received.cardinality() == getChunkCount();
+    }
+
+    void touch() {
+        lastActivity = System.currentTimeMillis();
+    }
+
+    ReadWriteLock lock() {
+        return lock;
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    void close() {
+        closed = true;
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // nothing left to flush; the staging file is removed or moved next
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.musicplayer.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Exponentially decaying access counts per stored file. A play adds one and
+ * every count halves over {@code music.tiering.half-life-minutes}, so the
+ * score follows what is popular now rather than what was ever popular.
+ */
+@Component
+public class AccessTracker {
+
+    @Value("${music.tiering.half-life-minutes:1440}")
+    private long halfLifeMinutes;
+
+    private final ConcurrentHashMap<String, Counter> counters = new ConcurrentHashMap<>();
+
+    public void record(String key) {
+        add(key, 1.0);
+    }
+
+    /** Credits a file found on the fast tier at startup, so it is not demoted before it had a chance. */
+    public void seed(String key, double score) {
+        add(key, score);
+    }
+
+    public double score(String key) {
+        Counter counter = counters.get(key);
+        return counter != null ? counter.valueAt(System.nanoTime(), decayPerNano()) : 0.0;
+    }
+
+    /** Current scores; entries that decayed below {@code floor} are dropped. */
+    public Map<String, Double> snapshot(double floor) {
+        long now = System.nanoTime();
+        double decay = decayPerNano();
+        Map<String, Double> scores = new HashMap<>();
+        counters.forEach((key, counter) -> {
+            double value = counter.valueAt(now, decay);
+            if (value < floor) {
+                counters.remove(key, counter);
+            } else {
+                scores.put(key, value);
+            }
+        });
+        return scores;
+    }
+
+    public int size() {
+        return counters.size();
+    }
+
+    private void add(String key, double amount) {
+        counters.computeIfAbsent(key, k -> new Counter()).add(amount, System.nanoTime(), decayPerNano());
+    }
+
+    private double decayPerNano() {
+        return Math.log(2) / (Math.max(1, halfLifeMinutes) * 60_000_000_000.0);
+    }
+
+    private static class Counter {
+        private double value;
+        private long stamp = System.nanoTime();
+
+        synchronized void add(double amount, long now, double decay) {
+            value = valueAt(now, decay) + amount;
+            stamp = now;
+        }
+
+        synchronized double valueAt(long now, double decay) {
+            return value * Math.exp(-decay * (now - stamp));
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.musicplayer.storage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class DirectoryBackend implements MediaBackend {
+    private final String name;
+    private final Path root;
+
+    public DirectoryBackend(String name, Path root) {
+        this.name = name;
+        this.root = root;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Path resolve(String storagePath) {
+        return root.resolve(storagePath);
+    }
+
+    @Override
+    public long getUsableSpace() throws IOException {
+        return Files.getFileStore(root).getUsableSpace();
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+}
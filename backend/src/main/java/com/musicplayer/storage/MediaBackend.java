@@ -0,0 +1,18 @@
+package com.musicplayer.storage;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * One storage tier: a mounted directory tree holding media files under their
+ * storage paths. Tiers stay plain filesystems, so streaming, the seek
+ * index and the off-heap cache read them through ordinary FileChannels.
+ */
+public interface MediaBackend {
+
+    String getName();
+
+    Path resolve(String storagePath);
+
+    long getUsableSpace() throws IOException;
+}
@@ -0,0 +1,182 @@
+package com.musicplayer.streaming;
+
+import com.musicplayer.model.Track;
+import com.musicplayer.repository.TrackRepository;
+import com.musicplayer.service.StorageService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Byte-budgeted LRU cache of whole media files held in direct buffers,
+ * keyed by storage path. Entries live outside the Java heap, so a large
+ * budget adds no GC pressure; size it together with -XX:MaxDirectMemorySize.
+ */
+@Component
+@RequiredArgsConstructor
+public class MediaCache {
+    private final TrackRepository trackRepository;
+    private final StorageService storageService;
+
+    @Value("${music.cache.max-bytes:134217728}")
+    private long maxBytes;
+
+    @Value("${music.cache.max-entry-bytes:33554432}")
+    private long maxEntryBytes;
+
+    @Value("${music.cache.warmup-tracks:50}")
+    private int warmupTracks;
+
+    // guarded by this; access-ordered so iteration starts at the least recently used entry
+    private final LinkedHashMap<String, ByteBuffer> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long usedBytes;
+
+    // one reader per file even when hundreds of clients miss at the same moment
+    private final ConcurrentHashMap<String, CompletableFuture<ByteBuffer>> loading = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Returns a private read-only view of the cached file, loading it on a
+     * miss from the caller's open channel. Returns {@code null} when the file
+     * is too large to cache, in which case the caller should stream it from
+     * that channel.
+     */
+    public ByteBuffer get(String key, FileChannel file) throws IOException {
+        ByteBuffer cached = lookup(key);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+
+        if (maxBytes <= 0 || file.size() > Math.min(maxEntryBytes, maxBytes)) {
+            return null;
+        }
+
+        CompletableFuture<ByteBuffer> mine = new CompletableFuture<>();
+        CompletableFuture<ByteBuffer> inFlight = loading.putIfAbsent(key, mine);
+        if (inFlight != null) {
+            try {
+                return inFlight.join().asReadOnlyBuffer();
+            } catch (CompletionException e) {
+                throw new IOException("Failed to load " + key, e.getCause());
+            }
+        }
+
+        try {
+            ByteBuffer buffer = read(file);
+            insert(key, buffer);
+            mine.complete(buffer);
+            return buffer.asReadOnlyBuffer();
+        } catch (IOException | RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key);
+        }
+    }
+
+    public synchronized void invalidate(String key) {
+        ByteBuffer removed = entries.remove(key);
+        if (removed != null) {
+            usedBytes -= removed.capacity();
+        }
+    }
+
+    public synchronized Map<String, Object> stats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("entries", entries.size());
+        stats.put("usedBytes", usedBytes);
+        stats.put("maxBytes", maxBytes);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("evictions", evictions.sum());
+        stats.put("hitRatio", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+        return stats;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (maxBytes <= 0 || warmupTracks <= 0) {
+            return;
+        }
+        Thread warmer = new Thread(() -> {
+            List<Track> popular = trackRepository
+                    .findAllByOrderByPlayCountDesc(PageRequest.of(0, warmupTracks));
+            int loaded = 0;
+            for (Track track : popular) {
+                Path file = storageService.load(track.getStoragePath());
+                if (!Files.isRegularFile(file)) {
+                    continue;
+                }
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                    if (channel.size() <= remainingBytes() && get(track.getStoragePath(), channel) != null) {
+                        loaded++;
+                    }
+                } catch (IOException e) {
+                    System.err.println("Cache warm-up skipped " + track.getStoragePath() + ": " + e.getMessage());
+                }
+            }
+            System.out.println("Media cache warmed with " + loaded + " tracks");
+        }, "media-cache-warmup");
+        warmer.setDaemon(true);
+        warmer.start();
+    }
+
+    private synchronized ByteBuffer lookup(String key) {
+        ByteBuffer buffer = entries.get(key);
+        return buffer != null ? buffer.asReadOnlyBuffer() : null;
+    }
+
+    private synchronized long remainingBytes() {
+        return maxBytes - usedBytes;
+    }
+
+    private synchronized void insert(String key, ByteBuffer buffer) {
+        ByteBuffer previous = entries.put(key, buffer);
+        if (previous != null) {
+            usedBytes -= previous.capacity();
+        }
+        usedBytes += buffer.capacity();
+
+        Iterator<Map.Entry<String, ByteBuffer>> eldest = entries.entrySet().iterator();
+        while (usedBytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, ByteBuffer> entry = eldest.next();
+            if (entry.getKey().equals(key)) {
+                continue;
+            }
+            usedBytes -= entry.getValue().capacity();
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    private ByteBuffer read(FileChannel file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect((int) file.size());
+        while (buffer.hasRemaining()) {
+            if (file.read(buffer, buffer.position()) < 0) {
+                throw new IOException("File shrank while caching");
+            }
+        }
+        return buffer.flip();
+    }
+}
@@ -0,0 +1,24 @@
+package com.musicplayer.streaming;
+
+import lombok.Builder;
+import lombok.Getter;
+import org.springframework.http.MediaType;
+import java.nio.file.Path;
+
+@Getter
+@Builder
+public class MediaResource {
+    private final Path file;
+    // MediaCache key; null keeps the resource out of the cache
+    private final String cacheKey;
+    private final MediaType contentType;
+    private final String filename;
+    private final String etag;
+    private final long lastModified;
+    // the entity starts this many bytes into the file (time-based seeks)
+    private final long offset;
+
+    public long length() {
+        return Math.max(0, file.toFile().length() - offset);
+    }
+}
@@ -0,0 +1,342 @@
+package com.musicplayer.streaming;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.*;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncManager;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds media responses with HTTP range support (RFC 7233). Status and
+ * headers are decided on the request thread; the body is written
+ * asynchronously on a pool of its own, shaped by the client's token bucket,
+ * straight from the off-heap cache or via FileChannel.transferTo. Only media
+ * bodies run there: other async responses (the catalog export) stay on the
+ * default MVC executor and its timeout, so they never queue ahead of a
+ * stream that already holds a StreamingLimiter permit.
+ * The file is opened before the response is returned, so a tier or shard
+ * move that lands before the body runs cannot leave it empty.
+ */
+@Component
+@RequiredArgsConstructor
+public class MediaStreamer {
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private static final CacheControl MEDIA_CACHE_CONTROL =
+            CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable();
+
+    private final MediaCache mediaCache;
+    private final StreamingLimiter streamingLimiter;
+
+    @Value("${music.streaming.max-streams:200}")
+    private int maxStreams;
+
+    @Value("${music.streaming.timeout-ms:3600000}")
+    private long timeoutMs;
+
+    private ThreadPoolTaskExecutor executor;
+
+    @PostConstruct
+    public void init() {
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(maxStreams);
+        executor.setMaxPoolSize(maxStreams);
+        executor.setAllowCoreThreadTimeOut(true);
+        executor.setKeepAliveSeconds(60);
+        // Permits cap in-flight bodies at maxStreams; the queue only absorbs the
+        // moment between a finished body releasing its permit and its thread going idle
+        executor.setQueueCapacity(maxStreams);
+        executor.setThreadNamePrefix("media-stream-");
+        executor.initialize();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Stored media never changes under the same validator, so responses are
+     * marked immutable and conditional requests are answered with 304/412
+     * before any file I/O happens. Returns {@code null} when the response has
+     * already been completed that way.
+     */
+    public ResponseEntity<StreamingResponseBody> stream(HttpServletRequest request, HttpServletResponse response,
+                                                        MediaResource media, String clientKey) {
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.CACHE_CONTROL, MEDIA_CACHE_CONTROL.getHeaderValue());
+        if (new ServletWebRequest(request, response).checkNotModified(media.getEtag(), media.getLastModified())) {
+            return null;
+        }
+
+        long length = media.length();
+        MediaType contentType = media.getContentType();
+
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader != null && !ifRangeMatches(request, media.getEtag(), media.getLastModified())) {
+            rangeHeader = null;
+        }
+
+        List<long[]> ranges = resolveRanges(rangeHeader, length);
+        if (ranges != null && ranges.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                    .header(HttpHeaders.CONTENT_RANGE, "bytes */" + length)
+                    .build();
+        }
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + media.getFilename() + "\"");
+        HttpStatus status;
+        BodyWriter writer;
+
+        if (ranges == null) {
+            status = HttpStatus.OK;
+            headers.setContentType(contentType);
+            headers.setContentLength(length);
+            writer = (out, source, bucket) -> copy(source, 0, length, out, bucket);
+        } else if (ranges.size() == 1) {
+            long start = ranges.get(0)[0];
+            long end = ranges.get(0)[1];
+            status = HttpStatus.PARTIAL_CONTENT;
+            headers.setContentType(contentType);
+            headers.set(HttpHeaders.CONTENT_RANGE, contentRange(start, end, length));
+            headers.setContentLength(end - start + 1);
+            writer = (out, source, bucket) -> copy(source, start, end - start + 1, out, bucket);
+        } else {
+            String boundary = MimeTypeUtils.generateMultipartBoundaryString();
+            List<byte[]> partHeaders = new ArrayList<>(ranges.size());
+            long contentLength = 0;
+            for (long[] range : ranges) {
+                byte[] header = ("\r\n--" + boundary + "\r\n"
+                        + HttpHeaders.CONTENT_TYPE + ": " + contentType + "\r\n"
+                        + HttpHeaders.CONTENT_RANGE + ": " + contentRange(range[0], range[1], length) + "\r\n\r\n")
+                        .getBytes(StandardCharsets.US_ASCII);
+                partHeaders.add(header);
+                contentLength += header.length + (range[1] - range[0] + 1);
+            }
+            byte[] closing = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+            contentLength += closing.length;
+
+            status = HttpStatus.PARTIAL_CONTENT;
+            headers.setContentType(MediaType.parseMediaType("multipart/byteranges; boundary=" + boundary));
+            headers.setContentLength(contentLength);
+            writer = (out, source, bucket) -> {
+                for (int i = 0; i < ranges.size(); i++) {
+                    long[] range = ranges.get(i);
+                    out.write(partHeaders.get(i));
+                    copy(source, range[0], range[1] - range[0] + 1, out, bucket);
+                }
+                out.write(closing);
+            };
+        }
+
+        if ("HEAD".equalsIgnoreCase(request.getMethod())) {
+            return ResponseEntity.status(status).headers(headers).build();
+        }
+
+        StreamingLimiter.Permit permit = streamingLimiter.tryAcquire(clientKey);
+        if (permit == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(streamingLimiter.getRetryAfterSeconds()))
+                    .build();
+        }
+
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(media.getFile(), StandardOpenOption.READ);
+        } catch (IOException e) {
+            // moved or removed since the controller resolved it
+            permit.close();
+            return ResponseEntity.notFound().build();
+        }
+
+        try {
+            // the adapter sets the default executor on every request, so this only moves this body
+            WebAsyncManager asyncManager = WebAsyncUtils.getAsyncManager(request);
+            asyncManager.setTaskExecutor(executor);
+            // the body closes both when it ends; these cover a body that is rejected, times out or never runs
+            asyncManager.registerCallableInterceptor(permit, releaseOnExit(permit, channel));
+        } catch (RuntimeException e) {
+            permit.close();
+            closeQuietly(channel);
+            throw e;
+        }
+        return ResponseEntity.status(status).headers(headers).body(out -> {
+            try (permit; channel) {
+                ByteBuffer cached = media.getCacheKey() != null
+                        ? mediaCache.get(media.getCacheKey(), channel) : null;
+                if (cached != null) {
+                    writer.write(out, new Source(cached, null, media.getOffset()), permit.getBucket());
+                } else {
+                    writer.write(out, new Source(null, channel, media.getOffset()), permit.getBucket());
+                }
+                out.flush();
+            } catch (IOException e) {
+                // client went away mid-transfer (seek, skip, closed player)
+            }
+        });
+    }
+
+    private CallableProcessingInterceptor releaseOnExit(StreamingLimiter.Permit permit, FileChannel channel) {
+        return new CallableProcessingInterceptor() {
+            // runs before the async context is started, so the media timeout replaces the MVC default
+            @Override
+            public <T> void beforeConcurrentHandling(NativeWebRequest request, Callable<T> task) {
+                if (request instanceof AsyncWebRequest asyncRequest) {
+                    asyncRequest.setTimeout(timeoutMs);
+                }
+            }
+
+            @Override
+            public <T> Object handleTimeout(NativeWebRequest request, Callable<T> task) {
+                release();
+                return RESULT_NONE;
+            }
+
+            @Override
+            public <T> Object handleError(NativeWebRequest request, Callable<T> task, Throwable t) {
+                release();
+                return RESULT_NONE;
+            }
+
+            // also runs when the executor rejects the body
+            @Override
+            public <T> void postProcess(NativeWebRequest request, Callable<T> task, Object result) {
+                release();
+            }
+
+            @Override
+            public <T> void afterCompletion(NativeWebRequest request, Callable<T> task) {
+                release();
+            }
+
+            private void release() {
+                permit.close();
+                closeQuietly(channel);
+            }
+        };
+    }
+
+    private void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // read-only channel, nothing to flush
+        }
+    }
+
+    private boolean ifRangeMatches(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"")) {
+            return ifRange.equals(etag);
+        }
+        long since = request.getDateHeader(HttpHeaders.IF_RANGE);
+        return lastModified >= 0 && since >= 0 && lastModified / 1000 == since / 1000;
+    }
+
+    /**
+     * Returns {@code null} when the whole entity should be sent (no Range
+     * header or one we choose to ignore), an empty list when none of the
+     * requested ranges can be satisfied, and inclusive [start, end] pairs otherwise.
+     */
+    private List<long[]> resolveRanges(String header, long length) {
+        if (header == null || header.isBlank()) {
+            return null;
+        }
+
+        List<HttpRange> requested;
+        try {
+            requested = HttpRange.parseRanges(header);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+
+        List<long[]> satisfiable = new ArrayList<>(requested.size());
+        for (HttpRange range : requested) {
+            try {
+                long start = range.getRangeStart(length);
+                long end = range.getRangeEnd(length);
+                if (start <= end) {
+                    satisfiable.add(new long[]{start, end});
+                }
+            } catch (IllegalArgumentException ignored) {
+                // first-byte-pos beyond the end of the file
+            }
+        }
+        return satisfiable;
+    }
+
+    private void copy(Source source, long position, long count,
+                      OutputStream out, TokenBucket bucket) throws IOException {
+        WritableByteChannel target = Channels.newChannel(out);
+        position += source.offset;
+        long end = position + count;
+        while (position < end) {
+            int chunk = (int) Math.min(CHUNK_SIZE, end - position);
+            bucket.acquire(chunk);
+
+            if (source.buffer != null) {
+                ByteBuffer region = source.buffer.duplicate();
+                region.limit((int) position + chunk).position((int) position);
+                while (region.hasRemaining()) {
+                    target.write(region);
+                }
+                position += chunk;
+            } else {
+                long written = source.channel.transferTo(position, chunk, target);
+                if (written <= 0) {
+                    throw new IOException("Unexpected end of media file");
+                }
+                position += written;
+            }
+        }
+    }
+
+    private String contentRange(long start, long end, long length) {
+        return "bytes " + start + "-" + end + "/" + length;
+    }
+
+    private static class Source {
+        private final ByteBuffer buffer;
+        private final FileChannel channel;
+        private final long offset;
+
+        private Source(ByteBuffer buffer, FileChannel channel, long offset) {
+            this.buffer = buffer;
+            this.channel = channel;
+            this.offset = offset;
+        }
+    }
+
+    @FunctionalInterface
+    private interface BodyWriter {
+        void write(OutputStream out, Source source, TokenBucket bucket) throws IOException;
+    }
+}
@@ -0,0 +1,129 @@
+package com.musicplayer.streaming;
+
+import jakarta.annotation.PostConstruct;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Admission control for long-lived media streams: a global cap that matches
+ * the streaming executor, a per-client cap, and one token bucket per client.
+ * A client's bucket outlives its streams by {@code client-idle-seconds}, so
+ * a seek or reconnect continues from the tokens it had left instead of
+ * getting a fresh burst.
+ */
+@Component
+public class StreamingLimiter {
+    @Value("${music.streaming.max-streams:200}")
+    private int maxStreams;
+
+    @Value("${music.streaming.max-streams-per-client:4}")
+    private int maxStreamsPerClient;
+
+    @Value("${music.streaming.client-bytes-per-second:524288}")
+    private long clientBytesPerSecond;
+
+    @Value("${music.streaming.client-burst-bytes:4194304}")
+    private long clientBurstBytes;
+
+    @Value("${music.streaming.client-idle-seconds:300}")
+    private long clientIdleSeconds;
+
+    @Getter
+    @Value("${music.streaming.retry-after-seconds:5}")
+    private int retryAfterSeconds;
+
+    private Semaphore slots;
+    private final ConcurrentHashMap<String, ClientState> clients = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        slots = new Semaphore(maxStreams);
+    }
+
+    /**
+     * Returns a permit that must be closed when the stream ends, or
+     * {@code null} when the server or this client is at capacity.
+     */
+    public Permit tryAcquire(String clientKey) {
+        if (!slots.tryAcquire()) {
+            return null;
+        }
+
+        ClientState[] admitted = new ClientState[1];
+        clients.compute(clientKey, (key, state) -> {
+            if (state == null) {
+                state = new ClientState(new TokenBucket(clientBytesPerSecond, clientBurstBytes));
+            }
+            if (state.active < maxStreamsPerClient) {
+                state.active++;
+                admitted[0] = state;
+            }
+            state.lastUsed = System.nanoTime();
+            return state;
+        });
+
+        if (admitted[0] == null) {
+            slots.release();
+            return null;
+        }
+        return new Permit(clientKey, admitted[0].bucket);
+    }
+
+    public int getActiveStreams() {
+        return maxStreams - slots.availablePermits();
+    }
+
+    /** Drops the buckets of clients that have had no stream for the idle time. */
+    @Scheduled(fixedDelay = 60_000)
+    public void evictIdle() {
+        long cutoff = System.nanoTime() - clientIdleSeconds * 1_000_000_000L;
+        for (String clientKey : clients.keySet()) {
+            clients.computeIfPresent(clientKey,
+                    (key, state) -> state.active == 0 && state.lastUsed - cutoff < 0 ? null : state);
+        }
+    }
+
+    private void release(String clientKey) {
+        clients.computeIfPresent(clientKey, (key, state) -> {
+            state.active--;
+            state.lastUsed = System.nanoTime();
+            return state;
+        });
+        slots.release();
+    }
+
+    private static class ClientState {
+        private final TokenBucket bucket;
+        private int active;
+        // System.nanoTime() of the last admission or release
+        private long lastUsed;
+
+        private ClientState(TokenBucket bucket) {
+            this.bucket = bucket;
+        }
+    }
+
+    public class Permit implements AutoCloseable {
+        private final String clientKey;
+        @Getter
+        private final TokenBucket bucket;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(String clientKey, TokenBucket bucket) {
+            this.clientKey = clientKey;
+            this.bucket = bucket;
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                release(clientKey);
+            }
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.musicplayer.streaming;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Byte-rate shaper shared by all streams of one client. Callers take tokens
+ * up front and sleep off any debt, so concurrent streams of the same client
+ * split the rate between them instead of each getting the full rate.
+ */
+public class TokenBucket {
+    private final long bytesPerSecond;
+    private final long capacity;
+
+    private double tokens;
+    private long lastRefill = System.nanoTime();
+
+    public TokenBucket(long bytesPerSecond, long capacity) {
+        this.bytesPerSecond = bytesPerSecond;
+        this.capacity = capacity;
+        this.tokens = capacity;
+    }
+
+    public void acquire(long bytes) throws IOException {
+        if (bytesPerSecond <= 0) {
+            return;
+        }
+
+        long waitNanos;
+        synchronized (this) {
+            long now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (now - lastRefill) * bytesPerSecond / 1e9);
+            lastRefill = now;
+            tokens -= bytes;
+            waitNanos = tokens >= 0 ? 0 : (long) (-tokens * 1e9 / bytesPerSecond);
+        }
+
+        if (waitNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while shaping stream");
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.musicplayer.bench;
+
+import com.musicplayer.search.CatalogEntry;
+import com.musicplayer.search.SuggestEntry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/** Deterministic synthetic catalogs shaped roughly like a real library. */
+public final class Catalogs {
+    private static final String[] WORDS = {
+            "love", "night", "the", "blue", "summer", "heart", "road", "light", "dream", "fire",
+            "rain", "star", "moon", "sun", "baby", "time", "home", "river", "city", "dance",
+            "lonely", "golden", "wild", "broken", "stay", "forever", "midnight", "sweet", "black", "angel",
+            "mama", "shadow", "storm", "ocean", "silver", "morning", "electric", "hollow", "paradise", "street",
+            "ghost", "candle", "winter", "echo", "thunder", "velvet", "satellite", "lullaby", "mirror", "kingdom"};
+    private static final String[] SYLLABLES = {
+            "ka", "lo", "mi", "ren", "sto", "va", "bel", "dor", "in", "ta", "shu", "mar", "el", "no", "fi",
+            "gra", "ul", "pe", "zan", "ri", "tho", "cle", "wen", "oth", "ba", "sil", "que", "dra", "mo", "ny"};
+
+    private Catalogs() {
+    }
+
+    /** Random phrase of one to four words, with a suffix so the vocabulary keeps growing. */
+    private static String phrase(Random random, int distinct) {
+        int words = 1 + random.nextInt(4);
+        StringBuilder phrase = new StringBuilder();
+        for (int w = 0; w < words; w++) {
+            if (w > 0) {
+                phrase.append(' ');
+            }
+            phrase.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return phrase.append(' ').append(Integer.toString(random.nextInt(distinct), 36)).toString();
+    }
+
+    /**
+     * Titles, artists and albums made of invented words, so the vocabulary
+     * grows with the catalog the way names and foreign words do.
+     */
+    public static List<CatalogEntry> catalogEntries(int count, long seed) {
+        Random random = new Random(seed);
+        List<String> artists = new ArrayList<>();
+        for (int i = 0; i < Math.max(1, count / 20); i++) {
+            artists.add(words(random, 1 + random.nextInt(2)));
+        }
+        List<CatalogEntry> entries = new ArrayList<>(count);
+        for (int id = 1; id <= count; id++) {
+            String artist = artists.get(random.nextInt(artists.size()));
+            entries.add(new CatalogEntry(id, words(random, 1 + random.nextInt(4)), artist,
+                    words(random, 1 + random.nextInt(3))));
+        }
+        return entries;
+    }
+
+    /** Two to four syllables; common words are much likelier than rare ones. */
+    public static String word(Random random) {
+        int syllables = 2 + random.nextInt(3);
+        StringBuilder word = new StringBuilder();
+        for (int s = 0; s < syllables; s++) {
+            int skewed = (int) (SYLLABLES.length * Math.pow(random.nextDouble(), 2));
+            word.append(SYLLABLES[skewed]);
+        }
+        return word.toString();
+    }
+
+    /** One edit away: a letter substituted, inserted, dropped or swapped with its neighbour. */
+    public static String misspell(String word, Random random) {
+        int at = random.nextInt(word.length() - 1);
+        char letter = (char) ('a' + random.nextInt(26));
+        return switch (random.nextInt(4)) {
+            case 0 -> word.substring(0, at) + letter + word.substring(at + 1);
+            case 1 -> word.substring(0, at) + letter + word.substring(at);
+            case 2 -> word.substring(0, at) + word.substring(at + 1);
+            default -> word.substring(0, at) + word.charAt(at + 1) + word.charAt(at) + word.substring(at + 2);
+        };
+    }
+
+    private static String words(Random random, int count) {
+        StringBuilder phrase = new StringBuilder();
+        for (int w = 0; w < count; w++) {
+            if (w > 0) {
+                phrase.append(' ');
+            }
+            phrase.append(word(random));
+        }
+        return phrase.toString();
+    }
+
+    /** Plays follow a power law: most tracks are rarely played, a few a lot. */
+    public static List<SuggestEntry> suggestEntries(int count, long seed) {
+        Random random = new Random(seed);
+        List<String> artists = new ArrayList<>();
+        for (int i = 0; i < Math.max(1, count / 20); i++) {
+            artists.add(phrase(random, count));
+        }
+        List<SuggestEntry> entries = new ArrayList<>(count);
+        for (int id = 1; id <= count; id++) {
+            String artist = artists.get(random.nextInt(artists.size()));
+            String album = artist + " " + WORDS[random.nextInt(WORDS.length)];
+            long plays = (long) Math.pow(random.nextDouble(), -1.5);
+            entries.add(new SuggestEntry(id, phrase(random, count), artist, album, plays));
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,60 @@
+package com.musicplayer.bench;
+
+import com.musicplayer.search.SuggestEntry;
+import com.musicplayer.search.SuggestIndex;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prefix completion latency on a synthetic catalog of a million tracks,
+ * for one- to three-letter prefixes (the widest ranges) and after a burst
+ * of edits has filled the delta. Run with:
+ *
+ * <pre>
+ * mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java \
+ *     -Dexec.args="-cp %classpath org.openjdk.jmh.Main SuggestIndexBenchmark"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx2g"})
+public class SuggestIndexBenchmark {
+    private static final String[] PREFIXES = {"l", "lo", "lov", "the", "m", "ma", "sun", "b", "bl", "st"};
+
+    @Param({"1000000"})
+    private int tracks;
+
+    @Param({"0", "10000"})
+    private int pendingEdits;
+
+    private SuggestIndex index;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void build() {
+        List<SuggestEntry> entries = Catalogs.suggestEntries(tracks, 42);
+        index = new SuggestIndex();
+        index.load(entries);
+
+        Random random = new Random(7);
+        List<SuggestEntry> edits = new ArrayList<>(pendingEdits);
+        for (int i = 0; i < pendingEdits; i++) {
+            SuggestEntry entry = entries.get(random.nextInt(entries.size()));
+            edits.add(new SuggestEntry(entry.getId(), entry.getTitle(), entry.getArtist(), entry.getAlbum(),
+                    entry.getPlays() + 1 + random.nextInt(1000)));
+        }
+        index.apply(edits, List.of());
+    }
+
+    @Benchmark
+    public void suggest(Blackhole blackhole) {
+        blackhole.consume(index.suggest(PREFIXES[next++ % PREFIXES.length], 10));
+    }
+}
@@ -0,0 +1,34 @@
+package com.musicplayer.search;
+
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CatalogIndexTest {
+
+    @Test
+    void fuzzyQueryKeepsExactMatchesBeyondCorrectionCap() {
+        List<CatalogEntry> entries = new ArrayList<>();
+        entries.add(new CatalogEntry(1, "Lova", "Someone", "Early"));
+        // far more tracks reachable only through the correction "lova" -> "love" than the cap allows
+        for (int id = 2; id <= 8000; id++) {
+            entries.add(new CatalogEntry(id, "Love " + id, "Artist", "Album"));
+        }
+        CatalogIndex index = new CatalogIndex(ForkJoinPool.commonPool(), Integer.MAX_VALUE);
+        index.load(entries);
+
+        long[] hits = index.search("lova", 5, Long.MAX_VALUE, true);
+
+        assertEquals(1, hits[0] & 0xFFFFFFFFL);
+    }
+
+    @Test
+    void subtractKeepsOnlyIdsMissingFromSecond() {
+        assertArrayEquals(new int[] {1, 4, 9}, CatalogIndex.subtract(new int[] {1, 3, 4, 7, 9}, new int[] {2, 3, 7, 8}));
+        assertArrayEquals(new int[0], CatalogIndex.subtract(new int[] {3}, new int[] {3}));
+    }
+}
@@ -0,0 +1,79 @@
+package com.musicplayer.search;
+
+import com.musicplayer.bench.Catalogs;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Typo correction latency from 10k to 1M tracks: {@code near} is the
+ * dictionary walk alone for one misspelt word, {@code fuzzySearch} a whole
+ * two-word fuzzy query with one word misspelt, candidates and verification
+ * included. Sample mode reports p50 and p99. It sits in this package because
+ * {@link WordDictionary} is package-private. Run with:
+ *
+ * <pre>
+ * mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java \
+ *     -Dexec.args="-cp %classpath org.openjdk.jmh.Main FuzzySearchBenchmark"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms3g", "-Xmx3g"})
+public class FuzzySearchBenchmark {
+    private static final int QUERIES = 1024;
+
+    @Param({"10000", "100000", "1000000"})
+    private int tracks;
+
+    private WordDictionary dictionary;
+    private CatalogIndex index;
+    private String[] misspelt;
+    private String[] queries;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void build() {
+        List<CatalogEntry> entries = Catalogs.catalogEntries(tracks, 42);
+        Map<String, Integer> counts = new HashMap<>();
+        for (CatalogEntry entry : entries) {
+            for (String field : new String[] {entry.getTitle(), entry.getArtist(), entry.getAlbum()}) {
+                for (String word : Trigrams.normalize(field).split(" ")) {
+                    counts.merge(word, 1, Integer::sum);
+                }
+            }
+        }
+        dictionary = WordDictionary.build(counts);
+        index = new CatalogIndex(ForkJoinPool.commonPool(), Integer.MAX_VALUE);
+        index.load(entries);
+
+        Random random = new Random(7);
+        misspelt = new String[QUERIES];
+        queries = new String[QUERIES];
+        for (int q = 0; q < QUERIES; q++) {
+            CatalogEntry entry = entries.get(random.nextInt(entries.size()));
+            String[] title = entry.getTitle().split(" ");
+            String word = title[random.nextInt(title.length)];
+            misspelt[q] = Catalogs.misspell(word, random);
+            queries[q] = misspelt[q] + " " + entry.getArtist().split(" ")[0];
+        }
+        System.out.println("\n" + tracks + " tracks, " + dictionary.size() + " distinct words");
+    }
+
+    @Benchmark
+    public void near(Blackhole blackhole) {
+        String word = misspelt[next++ & (QUERIES - 1)];
+        dictionary.near(word, CatalogIndex.allowedEdits(word),
+                (candidate, distance, count) -> blackhole.consume(candidate));
+    }
+
+    @Benchmark
+    public long[] fuzzySearch() {
+        return index.search(queries[next++ & (QUERIES - 1)], 50, Long.MAX_VALUE, true);
+    }
+}
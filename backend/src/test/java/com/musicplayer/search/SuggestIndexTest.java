@@ -0,0 +1,70 @@
+package com.musicplayer.search;
+
+import org.junit.jupiter.api.Test;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SuggestIndexTest {
+
+    @Test
+    void removingNewestBaseTrackFallsBackToPreviousSpelling() {
+        SuggestIndex index = new SuggestIndex();
+        index.load(List.of(
+                new SuggestEntry(1, "Hello", "Adele", "25", 5),
+                new SuggestEntry(2, "HELLO", "Lionel Richie", "Can't Slow Down", 3)));
+
+        Suggestion before = index.suggest("hel", 1).get(0);
+        assertEquals("HELLO", before.getText());
+        assertEquals(2, before.getTrackId());
+
+        index.apply(List.of(), List.of(2));
+
+        Suggestion after = index.suggest("hel", 1).get(0);
+        assertEquals("Hello", after.getText());
+        assertEquals(1, after.getTrackId());
+        assertEquals(5, after.getPlays());
+        assertEquals(1, after.getTracks());
+    }
+
+    @Test
+    void removingNewestDeltaTrackFallsBackToBase() {
+        SuggestIndex index = new SuggestIndex();
+        index.load(List.of(new SuggestEntry(1, "Hello", "Adele", "25", 5)));
+        index.apply(List.of(new SuggestEntry(7, "hello", "Someone", "Else", 1)), List.of());
+        assertEquals(7, index.suggest("hel", 1).get(0).getTrackId());
+
+        index.apply(List.of(), List.of(7));
+
+        Suggestion after = index.suggest("hel", 1).get(0);
+        assertEquals("Hello", after.getText());
+        assertEquals(1, after.getTrackId());
+    }
+
+    @Test
+    void renamingNewestTrackMovesSpellingToRemainingOne() {
+        SuggestIndex index = new SuggestIndex();
+        index.load(List.of(
+                new SuggestEntry(1, "Intro", "Band", "One", 0),
+                new SuggestEntry(2, "INTRO", "Band", "Two", 0),
+                new SuggestEntry(3, "intro", "Band", "Three", 0)));
+
+        index.apply(List.of(new SuggestEntry(3, "Outro", "Band", "Three", 0)), List.of());
+
+        Suggestion intro = index.suggest("intro", 1).get(0);
+        assertEquals("INTRO", intro.getText());
+        assertEquals(2, intro.getTrackId());
+        assertEquals(2, intro.getTracks());
+    }
+
+    @Test
+    void termWithNoTracksLeftIsNotSuggested() {
+        SuggestIndex index = new SuggestIndex();
+        index.load(List.of(new SuggestEntry(1, "Solo", "Artist", "Album", 1)));
+
+        index.apply(List.of(), List.of(1));
+
+        assertTrue(index.suggest("solo", 5).isEmpty());
+    }
+}
@@ -0,0 +1,210 @@
+package com.musicplayer.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.test.util.ReflectionTestUtils;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Catalog import against H2 in MySQL mode. The heap test streams a generated
+ * catalog through a child JVM capped at 256 MB; it runs 50k rows by default,
+ * and the full 5M with:
+ *
+ * <pre>
+ * mvn test -Dtest=CatalogTransferServiceTest#importStaysWithinSmallHeap -Dcatalog.import.rows=5000000
+ * </pre>
+ */
+class CatalogTransferServiceTest {
+    private static final int STORED_FILES = 100;
+
+    @TempDir
+    Path dir;
+
+    private JdbcTemplate jdbcTemplate;
+    private CatalogTransferService service;
+    private List<String> stored;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Fixture fixture = new Fixture(dir, "mem:" + dir.getFileName());
+        jdbcTemplate = fixture.jdbcTemplate;
+        service = fixture.service;
+        stored = fixture.stored;
+    }
+
+    @Test
+    void importIsIdempotent() throws IOException {
+        String catalog = track("One", stored.get(0), "READY") + track("Two", stored.get(1), null);
+
+        Map<String, Object> first = service.importTracks(stream(catalog));
+        Map<String, Object> second = service.importTracks(stream(catalog));
+
+        assertEquals(2L, first.get("imported"));
+        assertEquals(0L, second.get("imported"));
+        assertEquals(2L, second.get("existing"));
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM tracks", Integer.class));
+    }
+
+    @Test
+    void missingStatusDefaultsToPending() throws IOException {
+        service.importTracks(stream(track("One", stored.get(0), null)));
+
+        assertEquals("PENDING", jdbcTemplate.queryForObject("SELECT status FROM tracks", String.class));
+    }
+
+    @Test
+    void rejectsUnknownStatusAndMissingFiles() throws IOException {
+        String catalog = track("Bad status", stored.get(0), "PLAYING")
+                + track("No file", "ab/cd/" + "ab".repeat(32) + ".mp3", "READY")
+                + track("Outside the store", "../../etc/passwd", "READY")
+                + track("Good", stored.get(0), "READY");
+
+        Map<String, Object> result = service.importTracks(stream(catalog));
+
+        assertEquals(1L, result.get("imported"));
+        assertEquals(1L, result.get("invalid"));
+        assertEquals(2L, result.get("missingFiles"));
+    }
+
+    @Test
+    void failurePartWayReportsCommittedRows() {
+        ReflectionTestUtils.setField(service, "importBatchSize", 2);
+        String catalog = track("One", stored.get(0), null) + track("Two", stored.get(0), null)
+                + track("Three", stored.get(0), null) + "{\"title\": \"Broken\", \"storagePath\": \n";
+
+        CatalogTransferService.ImportFailedException failure = assertThrows(
+                CatalogTransferService.ImportFailedException.class, () -> service.importTracks(stream(catalog)));
+
+        assertEquals(2L, failure.getProgress().get("imported"));
+        assertEquals(4, failure.getProgress().get("failedAtLine"));
+        assertNotNull(failure.getProgress().get("error"));
+    }
+
+    @Test
+    void importStaysWithinSmallHeap() throws Exception {
+        long rows = Long.getLong("catalog.import.rows", 50_000);
+        Process child = new ProcessBuilder(
+                Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-Xmx256m", "-cp", System.getProperty("java.class.path"),
+                CatalogTransferServiceTest.class.getName(), String.valueOf(rows), dir.toString())
+                .redirectErrorStream(true)
+                .start();
+        String output = new String(child.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        assertTrue(child.waitFor(1, TimeUnit.HOURS));
+        System.out.println(output);
+
+        assertEquals(0, child.exitValue(), output);
+        assertTrue(output.contains("imported=" + rows + ","), output);
+    }
+
+    /** Child JVM entry point for {@link #importStaysWithinSmallHeap}: rows, working directory. */
+    public static void main(String[] args) throws IOException {
+        long rows = Long.parseLong(args[0]);
+        Path dir = Path.of(args[1]);
+        Fixture fixture = new Fixture(dir, "file:" + dir.resolve("catalog"));
+
+        Map<String, Object> result = fixture.service.importTracks(new GeneratedCatalog(rows, fixture.stored));
+
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        System.out.println(result + " peakHeapMb=" + peak / (1024 * 1024)
+                + " maxHeapMb=" + Runtime.getRuntime().maxMemory() / (1024 * 1024));
+    }
+
+    private static String track(String title, String storagePath, String status) {
+        return "{\"id\": 7, \"title\": \"" + title + "\", \"storagePath\": \"" + storagePath + "\""
+                + (status != null ? ", \"status\": \"" + status + "\"" : "") + "}\n";
+    }
+
+    private static InputStream stream(String catalog) {
+        return new ByteArrayInputStream(catalog.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** The service wired by hand over H2, with a store holding STORED_FILES media files. */
+    private static class Fixture {
+        private final JdbcTemplate jdbcTemplate;
+        private final CatalogTransferService service;
+        private final List<String> stored = new ArrayList<>();
+
+        private Fixture(Path dir, String database) throws IOException {
+            JdbcDataSource dataSource = new JdbcDataSource();
+            dataSource.setURL("jdbc:h2:" + database + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+            jdbcTemplate = new JdbcTemplate(dataSource);
+            jdbcTemplate.execute("CREATE TABLE tracks (id BIGINT PRIMARY KEY AUTO_INCREMENT, "
+                    + "title VARCHAR(255) NOT NULL, artist VARCHAR(255), album VARCHAR(255), "
+                    + "storage_path VARCHAR(500) NOT NULL, duration_ms BIGINT, size_bytes BIGINT, bitrate INT, "
+                    + "sample_rate INT, status VARCHAR(16) DEFAULT 'PENDING', play_count BIGINT NOT NULL DEFAULT 0, "
+                    + "created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP)");
+            jdbcTemplate.execute("CREATE INDEX idx_storage_path_title ON tracks (storage_path, title)");
+
+            Path store = Files.createDirectories(dir.resolve("store"));
+            StorageService storageService = new StorageService(null);
+            ReflectionTestUtils.setField(storageService, "storagePath", store.toString());
+            storageService.initTiers();
+            for (int i = 0; i < STORED_FILES; i++) {
+                String name = StorageService.contentName(String.format("%064x", i), "track.mp3");
+                Files.write(store.resolve(name), new byte[] {(byte) i});
+                stored.add(name);
+            }
+
+            service = new CatalogTransferService(jdbcTemplate, storageService,
+                    new DataSourceTransactionManager(dataSource), event -> { }, new ObjectMapper());
+            ReflectionTestUtils.setField(service, "importBatchSize", 1000);
+        }
+    }
+
+    /** NDJSON produced as it is read, so the catalog itself never sits in the heap. */
+    private static class GeneratedCatalog extends InputStream {
+        private final long rows;
+        private final List<String> stored;
+        private long next;
+        private byte[] line = new byte[0];
+        private int position;
+
+        private GeneratedCatalog(long rows, List<String> stored) {
+            this.rows = rows;
+            this.stored = stored;
+        }
+
+        @Override
+        public int read() {
+            if (position == line.length) {
+                if (next == rows) {
+                    return -1;
+                }
+                line = ("{\"id\":" + next + ",\"title\":\"Track " + next + "\",\"artist\":\"Artist " + next % 5000
+                        + "\",\"album\":\"Album " + next % 20000 + "\",\"storagePath\":\""
+                        + stored.get((int) (next % stored.size())) + "\",\"durationMs\":215000,"
+                        + "\"sizeBytes\":5160000,\"bitrate\":192,\"sampleRate\":44100,\"status\":\"READY\","
+                        + "\"playCount\":" + next % 97 + ",\"createdAt\":\"2024-05-01T12:00:00\"}\n")
+                        .getBytes(StandardCharsets.US_ASCII);
+                position = 0;
+                next++;
+            }
+            return line[position++];
+        }
+    }
+}
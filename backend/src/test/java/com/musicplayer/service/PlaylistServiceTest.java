@@ -0,0 +1,547 @@
+package com.musicplayer.service;
+
+import com.musicplayer.controller.PlaylistController;
+import com.musicplayer.dto.PlaylistChanges;
+import com.musicplayer.dto.PlaylistDto;
+import com.musicplayer.dto.PlaylistItemOp;
+import com.musicplayer.dto.PlaylistItemResult;
+import com.musicplayer.dto.PlaylistItemResults;
+import com.musicplayer.model.Playlist;
+import com.musicplayer.model.PlaylistItem;
+import com.musicplayer.model.Track;
+import com.musicplayer.repository.PlaylistItemRepository;
+import com.musicplayer.repository.PlaylistRepository;
+import com.musicplayer.repository.TrackRepository;
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import static com.musicplayer.dto.PlaylistItemResult.Status.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Playlists against H2. Reads count the statements Hibernate prepares, which
+ * must not grow with the number of items or playlists; edits check the
+ * resulting order and which rows they wrote.
+ */
+@DataJpaTest(showSql = false, properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=WARN"})
+@Import(PlaylistService.class)
+class PlaylistServiceTest {
+    private static final long OWNER = 1L;
+    // JDBC statements prepared on any connection; Hibernate statistics miss the JdbcTemplate ones
+    private static final AtomicLong jdbcStatements = new AtomicLong();
+
+    @Autowired
+    private PlaylistService playlistService;
+    @Autowired
+    private PlaylistRepository playlistRepository;
+    @Autowired
+    private PlaylistItemRepository playlistItemRepository;
+    @Autowired
+    private TrackRepository trackRepository;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Statistics statistics;
+    private List<Track> tracks;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        tracks = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            tracks.add(Track.builder().title("Track " + i).storagePath("track" + i + ".mp3").build());
+        }
+        tracks = trackRepository.saveAll(tracks);
+    }
+
+    @Test
+    void getPlaylistByIdIsTwoStatementsWhateverItsSize() {
+        Long small = playlist("Small", 1);
+        Long large = playlist("Large", 200);
+
+        assertEquals(1, statementsFor(() -> playlistService.getPlaylistById(small)).getTracks().size());
+        long smallCount = statistics.getPrepareStatementCount();
+        assertEquals(200, statementsFor(() -> playlistService.getPlaylistById(large)).getTracks().size());
+        long largeCount = statistics.getPrepareStatementCount();
+
+        assertEquals(2, smallCount);
+        assertEquals(smallCount, largeCount);
+    }
+
+    @Test
+    void getUserPlaylistsIsTwoStatementsWhateverTheirCount() {
+        playlist("First", 50);
+        assertEquals(1, statementsFor(() -> playlistService.getUserPlaylists(OWNER)).size());
+        long oneCount = statistics.getPrepareStatementCount();
+
+        for (int i = 0; i < 20; i++) {
+            playlist("More " + i, 100);
+        }
+        List<PlaylistDto> all = statementsFor(() -> playlistService.getUserPlaylists(OWNER));
+        long manyCount = statistics.getPrepareStatementCount();
+
+        assertEquals(21, all.size());
+        assertEquals(100, all.get(all.size() - 1).getTracks().size());
+        assertEquals(2, oneCount);
+        assertEquals(oneCount, manyCount);
+    }
+
+    @Test
+    void editsOfAMissingPlaylistAreNotFound() {
+        assertThrows(NoSuchElementException.class, () -> playlistService.moveTrackTo(-1L, tracks.get(0).getId(), 0));
+        assertThrows(NoSuchElementException.class, () -> playlistService.addTrackToPlaylist(-1L, tracks.get(0).getId()));
+    }
+
+    @Test
+    void changesCarryARename() {
+        Long id = playlist("Before", 3);
+        long since = playlistService.getChanges(id, null).getVersion();
+
+        playlistService.renamePlaylist(id, "After");
+        PlaylistChanges changes = playlistService.getChanges(id, since);
+
+        assertFalse(changes.isSnapshot());
+        assertEquals("After", changes.getName());
+        assertEquals(since + 1, changes.getVersion());
+        assertTrue(changes.getChanges().isEmpty());
+    }
+
+    @Test
+    void addAppendsAfterTheLastTrack() {
+        Long id = playlist("Append", 3);
+
+        playlistService.addTrackToPlaylist(id, tracks.get(3).getId());
+
+        assertEquals(ids(0, 1, 2, 3), order(id));
+        assertEquals(4 * 1024, positions(id).get(tracks.get(3).getId()));
+    }
+
+    @Test
+    void addToAnEmptyPlaylistThenAgain() {
+        Long id = playlist("Empty", 0);
+
+        playlistService.addTrackToPlaylist(id, tracks.get(5).getId());
+        playlistService.addTrackToPlaylist(id, tracks.get(6).getId());
+
+        assertEquals(ids(5, 6), order(id));
+        assertThrows(IllegalStateException.class, () -> playlistService.addTrackToPlaylist(id, tracks.get(5).getId()));
+    }
+
+    @Test
+    void moveToTheHeadWritesOnlyTheMovedRow() {
+        Long id = playlist("Head", 5);
+        Map<Long, Integer> before = positions(id);
+
+        playlistService.moveTrackAfter(id, tracks.get(4).getId(), null);
+
+        assertEquals(ids(4, 0, 1, 2, 3), order(id));
+        assertEquals(List.of(tracks.get(4).getId()), changedRows(before, positions(id)));
+    }
+
+    @Test
+    void insertsIntoOneGapRenumberWhenItRunsOut() {
+        Long id = playlist("Gap", 40);
+        List<Long> expected = new ArrayList<>(ids(0, 1));
+        Long first = tracks.get(0).getId();
+        Long second = tracks.get(1).getId();
+
+        // each move halves the gap after the first track; 1024 lasts ten of them
+        for (int i = 2; i < 40; i++) {
+            Long moved = tracks.get(i).getId();
+            playlistService.moveTrackAfter(id, moved, first);
+            expected.add(1, moved);
+            List<Long> rest = range(i + 1, 40);
+            List<Long> all = new ArrayList<>(expected);
+            all.addAll(rest);
+            assertEquals(all, order(id), "after moving track " + i);
+        }
+
+        // the second track was never moved; only a renumber gives it a new position
+        assertNotEquals(2 * 1024, positions(id).get(second));
+        assertDistinctPositions(positions(id));
+    }
+
+    @Test
+    void reorderMovesOnlyTheTracksOutOfPlace() {
+        Long id = playlist("Reorder", 6);
+        long version = playlistService.getPlaylistById(id).getVersion();
+        Map<Long, Integer> before = positions(id);
+
+        playlistService.updateTrackOrder(id, ids(0, 2, 3, 4, 1, 5), version);
+
+        assertEquals(ids(0, 2, 3, 4, 1, 5), order(id));
+        assertEquals(List.of(tracks.get(1).getId()), changedRows(before, positions(id)));
+        PlaylistChanges changes = playlistService.getChanges(id, version);
+        assertEquals(1, changes.getChanges().size());
+        assertEquals(tracks.get(4).getId(), changes.getChanges().get(0).getAfter());
+    }
+
+    @Test
+    void reorderAgainstAStaleVersionIsAConflict() {
+        Long id = playlist("Stale", 4);
+        long version = playlistService.getPlaylistById(id).getVersion();
+        playlistService.addTrackToPlaylist(id, tracks.get(4).getId());
+        assertEquals(ids(0, 1, 2, 3, 4), order(id));
+
+        PlaylistController controller = new PlaylistController(playlistService, null);
+        assertEquals(HttpStatus.CONFLICT,
+                controller.reorderTracks(id, version, ids(4, 3, 2, 1, 0)).getStatusCode());
+        assertEquals(ids(0, 1, 2, 3, 4), order(id));
+
+        assertEquals(HttpStatus.OK,
+                controller.reorderTracks(id, version + 1, ids(4, 3, 2, 1, 0)).getStatusCode());
+        assertEquals(ids(4, 3, 2, 1, 0), order(id));
+    }
+
+    @Test
+    void positionTakesEitherAfterOrIndex() {
+        Long id = playlist("Position", 5);
+        PlaylistController controller = new PlaylistController(playlistService, null);
+        Long moved = tracks.get(0).getId();
+
+        assertEquals(HttpStatus.OK, controller.moveTrack(id, moved, tracks.get(3).getId(), null).getStatusCode());
+        assertEquals(ids(1, 2, 3, 0, 4), order(id));
+
+        assertEquals(HttpStatus.OK, controller.moveTrack(id, moved, 0L, null).getStatusCode());
+        assertEquals(ids(0, 1, 2, 3, 4), order(id));
+
+        // the index counts the other tracks, so 2 puts it after the second of them
+        assertEquals(HttpStatus.OK, controller.moveTrack(id, moved, null, 2).getStatusCode());
+        assertEquals(ids(1, 2, 0, 3, 4), order(id));
+
+        assertEquals(HttpStatus.OK, controller.moveTrack(id, moved, null, 99).getStatusCode());
+        assertEquals(ids(1, 2, 3, 4, 0), order(id));
+
+        assertEquals(HttpStatus.BAD_REQUEST,
+                controller.moveTrack(id, moved, tracks.get(1).getId(), 1).getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, controller.moveTrack(id, moved, moved, null).getStatusCode());
+        assertEquals(ids(1, 2, 3, 4, 0), order(id));
+    }
+
+    /**
+     * Committed edits, so the renumber that a narrow gap queues really runs
+     * on its own thread and takes the playlist lock between them.
+     */
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void backgroundRenumberKeepsTheOrderOfRacingEdits() throws InterruptedException {
+        Long id = playlist("Race", 30);
+        try {
+            List<Long> expected = range(0, 30);
+            Long first = tracks.get(0).getId();
+            Long second = tracks.get(1).getId();
+
+            // four halvings leave 64; the fifth goes below MIN_GAP and queues the renumber
+            for (int i = 2; i < 7; i++) {
+                moveAfterFirst(id, expected, tracks.get(i).getId());
+            }
+            long deadline = System.currentTimeMillis() + 5000;
+            while (positions(id).get(second) == 2 * 1024 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertNotEquals(2 * 1024, positions(id).get(second), "the background renumber never ran");
+            assertEquals(expected, order(id));
+
+            // keep narrowing the same gap while renumbers queue and run
+            for (int i = 7; i < 30; i++) {
+                moveAfterFirst(id, expected, tracks.get(i).getId());
+                assertEquals(expected, order(id), "after moving track " + i);
+            }
+            Thread.sleep(200);
+            assertEquals(expected, order(id));
+            assertDistinctPositions(positions(id));
+            assertEquals(first, order(id).get(0));
+        } finally {
+            playlistService.deletePlaylist(id);
+            trackRepository.deleteAll(tracks);
+        }
+    }
+
+    @Test
+    void batchAppliesMixedOpsInRequestOrder() {
+        Long id = playlist("Mixed", 3);
+        long version = playlistService.getPlaylistById(id).getVersion();
+
+        PlaylistItemResults reply = playlistService.applyItemOps(id, List.of(
+                op(PlaylistItemOp.Type.ADD, 3, null),
+                op(PlaylistItemOp.Type.ADD, 4, null),
+                op(PlaylistItemOp.Type.REMOVE, 1, null),
+                op(PlaylistItemOp.Type.MOVE, 4, null),
+                op(PlaylistItemOp.Type.ADD, 1, null),
+                op(PlaylistItemOp.Type.MOVE, 2, 3),
+                op(PlaylistItemOp.Type.REMOVE, 9, null),
+                op(PlaylistItemOp.Type.MOVE, 8, 0)));
+
+        assertEquals(List.of(ADDED, ADDED, REMOVED, MOVED, ADDED, MOVED, NOT_IN_PLAYLIST, NOT_IN_PLAYLIST),
+                statuses(reply));
+        assertEquals(ids(4, 0, 3, 2, 1), order(id));
+        assertEquals(version + 1, reply.getVersion());
+        PlaylistChanges changes = playlistService.getChanges(id, version);
+        assertEquals(version + 1, changes.getVersion());
+        assertEquals(6, changes.getChanges().size());
+    }
+
+    @Test
+    void duplicatesAndMissingTracksAreResultsNotErrors() {
+        Long id = playlist("Results", 2);
+        long version = playlistService.getPlaylistById(id).getVersion();
+        long missing = tracks.get(tracks.size() - 1).getId() + 1000;
+
+        PlaylistItemResults reply = playlistService.applyItemOps(id, List.of(
+                op(PlaylistItemOp.Type.ADD, 0, null),
+                op(PlaylistItemOp.Type.ADD, 5, null),
+                op(PlaylistItemOp.Type.ADD, 5, null),
+                new PlaylistItemOp(PlaylistItemOp.Type.ADD, missing, null),
+                op(PlaylistItemOp.Type.MOVE, 1, 1),
+                op(PlaylistItemOp.Type.REMOVE, 5, null),
+                op(PlaylistItemOp.Type.REMOVE, 5, null)));
+
+        assertEquals(List.of(DUPLICATE, ADDED, DUPLICATE, NOT_FOUND, INVALID, REMOVED, NOT_IN_PLAYLIST),
+                statuses(reply));
+        assertNotNull(reply.getResults().get(4).getMessage());
+        assertEquals(ids(0, 1), order(id));
+        assertEquals(version + 1, reply.getVersion());
+
+        // nothing changed, so no new version
+        PlaylistItemResults noop = playlistService.applyItemOps(id, List.of(op(PlaylistItemOp.Type.ADD, 1, null)));
+        assertEquals(List.of(DUPLICATE), statuses(noop));
+        assertEquals(version + 1, noop.getVersion());
+    }
+
+    @Test
+    void malformedBatchesAreRejected() {
+        Long id = playlist("Malformed", 2);
+
+        assertThrows(IllegalArgumentException.class, () -> playlistService.applyItemOps(id,
+                List.of(new PlaylistItemOp(null, tracks.get(0).getId(), null))));
+        assertThrows(IllegalArgumentException.class, () -> playlistService.applyItemOps(id,
+                Collections.nCopies(5001, op(PlaylistItemOp.Type.ADD, 3, null))));
+        assertThrows(NoSuchElementException.class, () -> playlistService.applyItemOps(-1L,
+                List.of(op(PlaylistItemOp.Type.ADD, 3, null))));
+        assertEquals(ids(0, 1), order(id));
+    }
+
+    @Test
+    void batchLargerThanTheLookupChunk() {
+        List<Track> more = new ArrayList<>();
+        for (int i = tracks.size(); i < 2300; i++) {
+            more.add(Track.builder().title("Track " + i).storagePath("track" + i + ".mp3").build());
+        }
+        tracks.addAll(trackRepository.saveAll(more));
+        Long id = playlist("Big", 1100);
+
+        // 2300 adds and 1050 removes: three lookups of a thousand ids each way
+        List<PlaylistItemOp> ops = new ArrayList<>();
+        for (int i = 0; i < 2300; i++) {
+            ops.add(op(PlaylistItemOp.Type.ADD, i, null));
+        }
+        ops.add(new PlaylistItemOp(PlaylistItemOp.Type.ADD, tracks.get(2299).getId() + 1000, null));
+        for (int i = 0; i < 1050; i++) {
+            ops.add(op(PlaylistItemOp.Type.REMOVE, i, null));
+        }
+
+        PlaylistItemResults reply = jdbcStatementsFor(() -> playlistService.applyItemOps(id, ops));
+        long statements = jdbcStatements.get();
+
+        List<PlaylistItemResult.Status> statuses = statuses(reply);
+        assertEquals(Collections.nCopies(1100, DUPLICATE), statuses.subList(0, 1100));
+        assertEquals(Collections.nCopies(1200, ADDED), statuses.subList(1100, 2300));
+        assertEquals(NOT_FOUND, statuses.get(2300));
+        assertEquals(Collections.nCopies(1050, REMOVED), statuses.subList(2301, statuses.size()));
+        assertEquals(range(1050, 2300), order(id));
+        // lookups, one batch each for deletes, inserts and the log, and the version bump
+        assertTrue(statements <= 15, statements + " statements");
+    }
+
+    @Test
+    void batchStatementsDoNotGrowWithThePlaylist() {
+        Long small = playlist("Small batch", 10);
+        Long large = playlist("Large batch", 190);
+
+        jdbcStatementsFor(() -> playlistService.applyItemOps(small, sampleOps()));
+        long smallCount = jdbcStatements.get();
+        jdbcStatementsFor(() -> playlistService.applyItemOps(large, sampleOps()));
+        long largeCount = jdbcStatements.get();
+
+        assertEquals(ids(1, 3, 4, 5, 6, 7, 8, 9, 0, 195, 196, 197), order(small));
+        assertEquals(ids(1, 3, 4, 5, 6, 7, 8, 9), order(large).subList(0, 8));
+        assertTrue(smallCount > 0);
+        assertEquals(smallCount, largeCount);
+    }
+
+    /** Adds, removes and moves of tracks both sample playlists hold or lack alike. */
+    private List<PlaylistItemOp> sampleOps() {
+        return List.of(
+                op(PlaylistItemOp.Type.ADD, 195, null),
+                op(PlaylistItemOp.Type.ADD, 196, null),
+                op(PlaylistItemOp.Type.REMOVE, 2, null),
+                op(PlaylistItemOp.Type.MOVE, 0, 9),
+                op(PlaylistItemOp.Type.ADD, 197, null),
+                op(PlaylistItemOp.Type.MOVE, 1, null),
+                op(PlaylistItemOp.Type.REMOVE, 198, null));
+    }
+
+    private PlaylistItemOp op(PlaylistItemOp.Type type, int track, Integer after) {
+        return new PlaylistItemOp(type, tracks.get(track).getId(), after != null ? tracks.get(after).getId() : null);
+    }
+
+    private List<PlaylistItemResult.Status> statuses(PlaylistItemResults reply) {
+        return reply.getResults().stream().map(PlaylistItemResult::getStatus).toList();
+    }
+
+    private void moveAfterFirst(Long playlistId, List<Long> expected, Long trackId) {
+        playlistService.moveTrackAfter(playlistId, trackId, expected.get(0));
+        expected.remove(trackId);
+        expected.add(1, trackId);
+    }
+
+    private List<Long> ids(int... indexes) {
+        List<Long> ids = new ArrayList<>(indexes.length);
+        for (int index : indexes) {
+            ids.add(tracks.get(index).getId());
+        }
+        return ids;
+    }
+
+    /** Ids of tracks {@code from} (inclusive) to {@code to} (exclusive). */
+    private List<Long> range(int from, int to) {
+        List<Long> ids = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            ids.add(tracks.get(i).getId());
+        }
+        return ids;
+    }
+
+    private List<Long> order(Long playlistId) {
+        return new ArrayList<>(positions(playlistId).keySet());
+    }
+
+    /**
+     * Track id to position, in playlist order, as the table holds them. Also
+     * clears the persistence context, so the next call starts from the
+     * database like a new request would.
+     */
+    private Map<Long, Integer> positions(Long playlistId) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            entityManager.flush();
+            entityManager.clear();
+        }
+        Map<Long, Integer> positions = new LinkedHashMap<>();
+        jdbcTemplate.query("SELECT track_id, position FROM playlist_items WHERE playlist_id = ? ORDER BY position",
+                rs -> {
+                    positions.put(rs.getLong("track_id"), rs.getInt("position"));
+                }, playlistId);
+        return positions;
+    }
+
+    private List<Long> changedRows(Map<Long, Integer> before, Map<Long, Integer> after) {
+        List<Long> changed = new ArrayList<>();
+        after.forEach((trackId, position) -> {
+            if (!position.equals(before.get(trackId))) {
+                changed.add(trackId);
+            }
+        });
+        return changed;
+    }
+
+    private void assertDistinctPositions(Map<Long, Integer> positions) {
+        assertEquals(positions.size(), new HashSet<>(positions.values()).size(), "positions must be distinct");
+    }
+
+    private Long playlist(String name, int size) {
+        Playlist playlist = playlistRepository.save(Playlist.builder()
+                .name(name).userOwnerId(OWNER).isPublic(false).build());
+        List<PlaylistItem> items = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            items.add(PlaylistItem.builder()
+                    .playlistId(playlist.getId()).trackId(tracks.get(i).getId()).position((i + 1) * 1024).build());
+        }
+        playlistItemRepository.saveAll(items);
+        return playlist.getId();
+    }
+
+    /** Runs {@code edit} on an empty persistence context, with {@link #jdbcStatements} counting only it. */
+    private <T> T jdbcStatementsFor(Supplier<T> edit) {
+        entityManager.flush();
+        entityManager.clear();
+        jdbcStatements.set(0);
+        return edit.get();
+    }
+
+    /** Runs the read on an empty persistence context, with the statistics counting only it. */
+    private <T> T statementsFor(Supplier<T> read) {
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+        return read.get();
+    }
+
+    @TestConfiguration
+    static class CountStatements {
+        @Bean
+        static BeanPostProcessor countingDataSource() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if (!(bean instanceof DataSource dataSource)) {
+                        return bean;
+                    }
+                    return new DelegatingDataSource(dataSource) {
+                        @Override
+                        public Connection getConnection() throws SQLException {
+                            return counting(super.getConnection());
+                        }
+
+                        @Override
+                        public Connection getConnection(String username, String password) throws SQLException {
+                            return counting(super.getConnection(username, password));
+                        }
+                    };
+                }
+            };
+        }
+
+        private static Connection counting(Connection connection) {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                        if (method.getName().equals("prepareStatement") || method.getName().equals("createStatement")
+                                || method.getName().equals("prepareCall")) {
+                            jdbcStatements.incrementAndGet();
+                        }
+                        try {
+                            return method.invoke(connection, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    });
+        }
+    }
+}
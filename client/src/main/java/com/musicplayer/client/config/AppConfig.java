@@ -6,6 +6,8 @@ public class AppConfig {
     private Long currentUserId;
     private String currentUsername;
     private String userRole;
+    // HLS-сегменти замість одного потоку; вмикається -Dmusic.hls=true
+    private boolean segmentedStreaming = Boolean.getBoolean("music.hls");
 
     private AppConfig() {}
 
@@ -44,6 +46,12 @@ public class AppConfig {
     public void setUserRole(String userRole) {
         this.userRole = userRole;
     }
+    public boolean isSegmentedStreaming() {
+        return segmentedStreaming;
+    }
+    public void setSegmentedStreaming(boolean segmentedStreaming) {
+        this.segmentedStreaming = segmentedStreaming;
+    }
     public boolean isLoggedIn() {
         return currentUserId != null;
     }
@@ -6,6 +6,10 @@ import com.musicplayer.client.config.AppConfig;
 import com.musicplayer.client.facade.MusicPlayerFacade;
 import com.musicplayer.client.player.*;
 import com.musicplayer.client.service.ApiService;
+import com.musicplayer.client.service.PlaylistCache;
+import com.musicplayer.client.service.PlaylistSyncQueue;
+import com.musicplayer.client.service.TrackPage;
+import javafx.animation.PauseTransition;
 import javafx.application.Platform;
 import javafx.collections.*;
 import javafx.geometry.*;
@@ -13,13 +17,20 @@ import javafx.scene.control.*;
 import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.layout.*;
 import javafx.stage.FileChooser;
+import javafx.util.Duration;
 import java.io.File;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
 
 public class MainController implements PlaybackObserver {
     private final BorderPane root;
     private final MusicPlayerFacade facade;
     private final ApiService apiService;
+    private final PlaylistCache playlistCache;
+    private final PlaylistSyncQueue playlistSync;
     private final AppConfig config;
 
     // UI Components
@@ -34,7 +45,17 @@ public class MainController implements PlaybackObserver {
     private ComboBox<String> modeComboBox;
     private ListView<String> playlistView;
     private TextField searchField;
-
+    private final ContextMenu suggestionMenu = new ContextMenu();
+    // підказки запитуємо, коли користувач зупинився, а не на кожну літеру
+    private final PauseTransition suggestDelay = new PauseTransition(Duration.millis(150));
+    // один потік на всі підказки; новий запит скасовує той, що ще в дорозі
+    private final ExecutorService suggestExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "suggest");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Future<?> pendingSuggest;
+    private boolean applyingSuggestion = false;
 
     // State & Layout control
     private VBox sidebar;
@@ -45,12 +66,30 @@ public class MainController implements PlaybackObserver {
     private boolean isDraggingSlider = false;
 
     private final ObservableList<TrackInfo> tracks;
+    // каталог вантажимо сторінками: наступну — коли прокрутка дійшла до кінця завантаженого
+    private static final int PAGE_SIZE = 200;
+    private static final int PREFETCH_ROWS = 50;
+    private String nextPageCursor = null;
+    // звідки брати сторінки: каталог або поточний пошук
+    private Function<String, TrackPage> pageSource = null;
+    private boolean loadingPage = false;
+    private int pageGeneration = 0;
+    private long catalogSize = -1;
     private final Map<String, Long> playlistIdMap = new HashMap<>();
+    private final Map<String, Long> playlistTrackCounts = new HashMap<>();
 
     public MainController() {
         this.root = new BorderPane();
         this.facade = MusicPlayerFacade.getInstance();
         this.apiService = new ApiService();
+        this.playlistCache = new PlaylistCache(apiService);
+        this.playlistSync = new PlaylistSyncQueue(apiService, playlistCache, (playlistId, message) -> Platform.runLater(() -> {
+            showError(message);
+            // показаний порядок так і не дійшов до сервера — беремо серверний
+            if (currentPlaylistName != null && playlistId.equals(playlistIdMap.get(currentPlaylistName))) {
+                showPlaylistTracks(currentPlaylistName);
+            }
+        }));
         this.config = AppConfig.getInstance();
         this.tracks = FXCollections.observableArrayList();
 
@@ -77,6 +116,15 @@ public class MainController implements PlaybackObserver {
         searchField = new TextField();
         searchField.setPromptText("Search tracks...");
         searchField.setPrefWidth(300);
+        searchField.setOnAction(e -> searchTracks());
+        searchField.textProperty().addListener((obs, oldText, newText) -> {
+            if (applyingSuggestion) return;
+            suggestDelay.playFromStart();
+        });
+        searchField.focusedProperty().addListener((obs, was, focused) -> {
+            if (!focused) suggestionMenu.hide();
+        });
+        suggestDelay.setOnFinished(e -> loadSuggestions(searchField.getText()));
 
         Button searchButton = new Button("Search");
         searchButton.setOnAction(e -> searchTracks());
@@ -113,6 +161,19 @@ public class MainController implements PlaybackObserver {
 
         playlistView = new ListView<>();
         playlistView.setPrefHeight(400);
+        // елементи — назви плейлистів; кількість треків лише показуємо поруч
+        playlistView.setCellFactory(list -> new ListCell<>() {
+            @Override
+            protected void updateItem(String name, boolean empty) {
+                super.updateItem(name, empty);
+                if (empty || name == null) {
+                    setText(null);
+                    return;
+                }
+                Long count = playlistTrackCounts.get(name);
+                setText(count != null ? name + "  (" + count + ")" : name);
+            }
+        });
 
         playlistView.setOnMouseClicked(event -> {
             String selected = playlistView.getSelectionModel().getSelectedItem();
@@ -151,6 +212,8 @@ public class MainController implements PlaybackObserver {
 
         trackTable = new TableView<>();
         trackTable.setItems(tracks);
+        // кілька рядків: кнопки + і 🗑 тоді діють на все виділення
+        trackTable.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
         VBox.setVgrow(trackTable, Priority.ALWAYS);
 
         trackTable.getStyleClass().addAll(Styles.STRIPED, Styles.INTERACTIVE, Tweaks.EDGE_TO_EDGE);
@@ -163,6 +226,9 @@ public class MainController implements PlaybackObserver {
                 if (item == null || empty) {
                     return;
                 }
+                if (getIndex() >= tracks.size() - PREFETCH_ROWS) {
+                    loadNextPage();
+                }
                 if (currentlyPlayingTrack != null && Objects.equals(item.getId(), currentlyPlayingTrack.getId())) {
                     setStyle(
                             "-fx-background-color: -color-accent-subtle; " +
@@ -271,18 +337,77 @@ public class MainController implements PlaybackObserver {
     }
 
     private void loadAllTracks() {
-        tracks.setAll(facade.getAllTracks());
+        stopPaging();
+        TrackPage page = facade.getTracksPage(null, PAGE_SIZE);
+        tracks.setAll(page.getTracks());
+        pageSource = cursor -> facade.getTracksPage(cursor, PAGE_SIZE);
+        nextPageCursor = page.getNextCursor();
+        catalogSize = page.getTotal();
         currentPlaylistName = null;
         updateStatusLabel();
         trackTable.refresh();
         enableAllModes();
     }
 
+    private void loadNextPage() {
+        if (nextPageCursor == null || loadingPage) return;
+        loadingPage = true;
+        String cursor = nextPageCursor;
+        Function<String, TrackPage> source = pageSource;
+        int generation = pageGeneration;
+        new Thread(() -> {
+            TrackPage page;
+            boolean restarted = false;
+            try {
+                page = source.apply(cursor);
+            } catch (ApiService.CursorExpiredException e) {
+                // сервер не може продовжити з цього курсора — беремо все з першої сторінки
+                try {
+                    page = source.apply(null);
+                    restarted = true;
+                } catch (Exception retry) {
+                    page = null;
+                }
+            } catch (Exception e) {
+                page = null;
+            }
+            TrackPage loaded = page;
+            boolean replace = restarted;
+            Platform.runLater(() -> {
+                // поки сторінка йшла, користувач перейшов до пошуку чи плейлиста
+                if (generation != pageGeneration) return;
+                loadingPage = false;
+                if (loaded == null) {
+                    nextPageCursor = null; // не повторюємо запит на кожен рядок; "Load All" почне знову
+                    return;
+                }
+                if (replace) {
+                    tracks.setAll(loaded.getTracks());
+                } else {
+                    tracks.addAll(loaded.getTracks());
+                }
+                nextPageCursor = loaded.getNextCursor();
+                if (loaded.getTotal() >= 0) {
+                    catalogSize = loaded.getTotal();
+                }
+                updateStatusLabel();
+            });
+        }).start();
+    }
+
+    private void stopPaging() {
+        pageGeneration++;
+        pageSource = null;
+        nextPageCursor = null;
+        loadingPage = false;
+    }
+
     private void showPlaylistTracks(String playlistName) {
         try {
-            List<TrackInfo> playlistTracks = fetchTracksForPlaylist(playlistName);
-            tracks.setAll(playlistTracks);
-            currentPlaylistName = playlistName;
+            PlaylistCache.Snapshot playlist = fetchPlaylist(playlistName);
+            stopPaging();
+            tracks.setAll(playlist.tracks());
+            currentPlaylistName = playlist.name();
             updateStatusLabel();
             trackTable.refresh();
             enableAllModes();
@@ -293,11 +418,13 @@ public class MainController implements PlaybackObserver {
 
     private void playPlaylist(String playlistName) {
         try {
-            List<TrackInfo> playlistTracks = fetchTracksForPlaylist(playlistName);
+            PlaylistCache.Snapshot playlist = fetchPlaylist(playlistName);
+            List<TrackInfo> playlistTracks = playlist.tracks();
             if (!playlistTracks.isEmpty()) {
                 facade.playQueue(playlistTracks, 0);
+                stopPaging();
                 tracks.setAll(playlistTracks);
-                currentPlaylistName = playlistName;
+                currentPlaylistName = playlist.name();
                 updateStatusLabel();
                 trackTable.refresh();
                 enableAllModes();
@@ -309,24 +436,42 @@ public class MainController implements PlaybackObserver {
         }
     }
 
-    private List<TrackInfo> fetchTracksForPlaylist(String playlistName) {
+    /** Плейлист із сервера під його теперішньою назвою: якщо його перейменували деінде, список теж оновлюється. */
+    private PlaylistCache.Snapshot fetchPlaylist(String playlistName) {
         Long playlistId = playlistIdMap.get(playlistName);
         if (playlistId == null) throw new IllegalArgumentException("Playlist not found");
 
-        Map<String, Object> fullPlaylist = apiService.getPlaylist(playlistId);
-        List<Map<String, Object>> tracksData = (List<Map<String, Object>>) fullPlaylist.get("tracks");
-
-        List<TrackInfo> result = new ArrayList<>();
-        for (Map<String, Object> data : tracksData) {
-            result.add(TrackInfo.builder()
-                    .id(((Double) data.get("id")).longValue())
-                    .title((String) data.get("title"))
-                    .artist((String) data.get("artist"))
-                    .album((String) data.get("album"))
-                    .source("server")
-                    .build());
+        // вже відкритий плейлист доганяє сервер лише змінами після своєї версії
+        PlaylistCache.Snapshot playlist = playlistCache.load(playlistId);
+        List<TrackInfo> result = playlist.tracks();
+
+        // поки зміни порядку ще в черзі, показуємо їх, а не застарілий серверний порядок
+        List<Long> ids = new ArrayList<>(result.size());
+        for (TrackInfo track : result) ids.add(track.getId());
+        List<Long> order = playlistSync.loaded(playlistId, playlist.version(), ids);
+        if (order != ids) {
+            Map<Long, Integer> place = new HashMap<>();
+            for (int i = 0; i < order.size(); i++) place.put(order.get(i), i);
+            result.sort(Comparator.comparingInt(track -> place.getOrDefault(track.getId(), Integer.MAX_VALUE)));
+        }
+        if (!playlist.name().equals(playlistName)) {
+            renamedElsewhere(playlistName, playlist.name());
+        }
+        return playlist;
+    }
+
+    private void renamedElsewhere(String oldName, String newName) {
+        if (playlistIdMap.containsKey(newName)) {
+            // назву вже має інший плейлист у списку — він теж застарів, беремо список наново
+            loadPlaylists();
+            return;
         }
-        return result;
+        playlistIdMap.put(newName, playlistIdMap.remove(oldName));
+        Long count = playlistTrackCounts.remove(oldName);
+        if (count != null) playlistTrackCounts.put(newName, count);
+        int index = playlistView.getItems().indexOf(oldName);
+        if (index >= 0) playlistView.getItems().set(index, newName);
+        if (oldName.equals(currentPlaylistName)) currentPlaylistName = newName;
     }
 
     private void moveTrack(int index, int direction) {
@@ -340,20 +485,17 @@ public class MainController implements PlaybackObserver {
         if (currentPlaylistName != null) {
             Long playlistId = playlistIdMap.get(currentPlaylistName);
             if (playlistId != null) {
-                List<Long> newOrderIds = new ArrayList<>();
-                for (TrackInfo track : tracks) newOrderIds.add(track.getId());
-
-                new Thread(() -> {
-                    try {
-                        apiService.updatePlaylistOrder(playlistId, newOrderIds);
-                    } catch (Exception e) {
-                        Platform.runLater(() -> showError("Failed to save order: " + e.getMessage()));
-                    }
-                }).start();
+                playlistSync.reorder(playlistId, trackIds());
             }
         }
     }
 
+    private List<Long> trackIds() {
+        List<Long> ids = new ArrayList<>(tracks.size());
+        for (TrackInfo track : tracks) ids.add(track.getId());
+        return ids;
+    }
+
     private void uploadTrack() {
         if (!config.isAdmin()) {
             showError("Only administrators can upload tracks!");
@@ -426,7 +568,7 @@ public class MainController implements PlaybackObserver {
                 downButton.setOnAction(e -> moveTrack(getIndex(), 1));
 
                 // Додавання
-                addButton.setOnAction(e -> showAddToPlaylistMenu(getTableView().getItems().get(getIndex())));
+                addButton.setOnAction(e -> showAddToPlaylistMenu(selectionWith(getTableView().getItems().get(getIndex()))));
                 addButton.setTooltip(new Tooltip("Add to playlist"));
 
                 // Редагування
@@ -451,7 +593,7 @@ public class MainController implements PlaybackObserver {
                     // >> МИ В ПЛЕЙЛИСТІ <<
 
                     // Кнопка видалення видаляє з плейлиста
-                    deleteButton.setOnAction(e -> removeFromPlaylistUI(track));
+                    deleteButton.setOnAction(e -> removeFromPlaylistUI(selectionWith(track)));
                     deleteButton.setTooltip(new Tooltip("Remove from playlist"));
 
                     // Порядок: Стрілка | Плюс | Смітник | Стрілка
@@ -553,6 +695,8 @@ public class MainController implements PlaybackObserver {
         String text = config.isLoggedIn() ? "User: " + config.getCurrentUsername() : "";
         if (currentPlaylistName != null) {
             text += " | Playlist: " + currentPlaylistName;
+        } else if (catalogSize >= 0) {
+            text += " | Library: " + catalogSize + " tracks";
         }
         statusLabel.setText(text);
     }
@@ -673,14 +817,16 @@ public class MainController implements PlaybackObserver {
     private void loadPlaylists() {
         if (!config.isLoggedIn() || "GUEST".equals(config.getUserRole())) return;
 
-        List<Map<String, Object>> playlists = apiService.getUserPlaylists(config.getCurrentUserId());
+        List<Map<String, Object>> playlists = apiService.getUserPlaylistSummaries(config.getCurrentUserId());
         ObservableList<String> items = FXCollections.observableArrayList();
         playlistIdMap.clear();
+        playlistTrackCounts.clear();
 
         for (Map<String, Object> p : playlists) {
             String name = (String) p.get("name");
             items.add(name);
             playlistIdMap.put(name, ((Double) p.get("id")).longValue());
+            playlistTrackCounts.put(name, ((Double) p.get("trackCount")).longValue());
         }
         playlistView.setItems(items);
     }
@@ -739,7 +885,9 @@ public class MainController implements PlaybackObserver {
         Alert confirm = new Alert(Alert.AlertType.CONFIRMATION, "Delete playlist: " + playlistName + "?");
         confirm.showAndWait().filter(r -> r == ButtonType.OK).ifPresent(r -> {
             try {
-                apiService.deletePlaylist(playlistIdMap.get(playlistName));
+                Long playlistId = playlistIdMap.get(playlistName);
+                apiService.deletePlaylist(playlistId);
+                playlistCache.forget(playlistId);
                 loadPlaylists();
                 if (playlistName.equals(currentPlaylistName)) loadAllTracks(); // Reset view if deleted
                 showInfo("Deleted successfully");
@@ -749,16 +897,30 @@ public class MainController implements PlaybackObserver {
         });
     }
 
-    private void removeFromPlaylistUI(TrackInfo track) {
-        if (currentPlaylistName == null || track == null) return;
+    /** Якщо трек входить у виділення з кількох рядків — усе виділення, інакше лише він. */
+    private List<TrackInfo> selectionWith(TrackInfo track) {
+        List<TrackInfo> selected = new ArrayList<>(trackTable.getSelectionModel().getSelectedItems());
+        return selected.size() > 1 && selected.contains(track) ? selected : List.of(track);
+    }
+
+    private void removeFromPlaylistUI(List<TrackInfo> selection) {
+        if (currentPlaylistName == null || selection.isEmpty()) return;
 
         Long playlistId = playlistIdMap.get(currentPlaylistName);
         if (playlistId != null) {
+            List<Long> ids = new ArrayList<>(selection.size());
+            for (TrackInfo track : selection) ids.add(track.getId());
             try {
-                // Видаляємо через API
-                apiService.removeTrackFromPlaylist(playlistId, track.getId());
-                // Видаляємо з таблиці візуально
-                tracks.remove(track);
+                // Видаляємо через API одним запитом
+                long removed = countStatus(apiService.removeTracksFromPlaylist(playlistId, ids), "REMOVED");
+                // Видаляємо з таблиці візуально; яких там уже не було, теж зникають
+                tracks.removeAll(selection);
+                trackTable.getSelectionModel().clearSelection();
+                if (playlistSync.hasPending(playlistId)) {
+                    playlistSync.reorder(playlistId, trackIds());
+                }
+                playlistTrackCounts.computeIfPresent(currentPlaylistName, (name, count) -> count - removed);
+                playlistView.refresh();
                 // Оновлюємо порядок (опціонально, але бажано)
                 trackTable.refresh();
             } catch (Exception e) {
@@ -767,7 +929,7 @@ public class MainController implements PlaybackObserver {
         }
     }
 
-    private void showAddToPlaylistMenu(TrackInfo track) {
+    private void showAddToPlaylistMenu(List<TrackInfo> selection) {
         if (!config.isLoggedIn() || "GUEST".equals(config.getUserRole())) {
             showError("Login required");
             return;
@@ -779,24 +941,49 @@ public class MainController implements PlaybackObserver {
 
         ChoiceDialog<String> dialog = new ChoiceDialog<>(playlistView.getItems().get(0), playlistView.getItems());
         dialog.setTitle("Add to Playlist");
-        dialog.setHeaderText("Select playlist");
+        dialog.setHeaderText(selection.size() > 1 ? "Select playlist for " + selection.size() + " tracks" : "Select playlist");
         dialog.setContentText("Playlist:");
-        dialog.showAndWait().ifPresent(playlist -> addTrackToPlaylist(track, playlist));
+        dialog.showAndWait().ifPresent(playlist -> addTracksToPlaylist(selection, playlist));
     }
 
-    private void addTrackToPlaylist(TrackInfo track, String playlistName) {
-        if (track == null || "local".equals(track.getSource())) {
+    private void addTracksToPlaylist(List<TrackInfo> selection, String playlistName) {
+        List<Long> ids = new ArrayList<>(selection.size());
+        for (TrackInfo track : selection) {
+            if (track != null && !"local".equals(track.getSource())) ids.add(track.getId());
+        }
+        if (ids.isEmpty()) {
             showError("Cannot add local tracks to server playlists");
             return;
         }
         try {
-            apiService.addTrackToPlaylist(playlistIdMap.get(playlistName), track.getId());
-            showInfo("Added to " + playlistName);
+            List<Map<String, Object>> results = apiService.addTracksToPlaylist(playlistIdMap.get(playlistName), ids);
+            long added = countStatus(results, "ADDED");
+            playlistTrackCounts.computeIfPresent(playlistName, (name, count) -> count + added);
+            playlistView.refresh();
+            if (added == results.size()) {
+                showInfo(added == 1 ? "Added to " + playlistName : "Added " + added + " tracks to " + playlistName);
+            } else if (results.size() == 1) {
+                showError("DUPLICATE".equals(results.get(0).get("status"))
+                        ? "Failed to add: track is already in " + playlistName
+                        : "Failed to add: track no longer exists");
+            } else {
+                long duplicates = countStatus(results, "DUPLICATE");
+                long missing = countStatus(results, "NOT_FOUND");
+                StringBuilder message = new StringBuilder("Added " + added + " of " + results.size()
+                        + " tracks to " + playlistName);
+                if (duplicates > 0) message.append("; ").append(duplicates).append(" already there");
+                if (missing > 0) message.append("; ").append(missing).append(" no longer exist");
+                showInfo(message.toString());
+            }
         } catch (Exception e) {
             showError("Failed to add: " + e.getMessage());
         }
     }
 
+    private static long countStatus(List<Map<String, Object>> results, String status) {
+        return results.stream().filter(result -> status.equals(result.get("status"))).count();
+    }
+
     // TRACK OPERATIONS
 
     private void editTrackMetadata(TrackInfo track) {
@@ -857,9 +1044,74 @@ public class MainController implements PlaybackObserver {
     }
 
     private void searchTracks() {
+        suggestDelay.stop();
+        cancelSuggestions();
+        suggestionMenu.hide();
         String query = searchField.getText();
         if (query == null || query.trim().isEmpty()) return;
-        tracks.setAll(facade.searchTracks(query));
+        // показуємо першу сторінку, решту догружаємо під час прокрутки, як і каталог
+        Function<String, TrackPage> source = cursor -> facade.searchTracks(query, cursor, PAGE_SIZE);
+        TrackPage found = source.apply(null);
+        // нічого не знайшлося — можливо, одруківка; пробуємо нечіткий пошук
+        if (found.getTracks().isEmpty()) {
+            source = cursor -> facade.searchTracksFuzzy(query, cursor, PAGE_SIZE);
+            found = source.apply(null);
+        }
+        stopPaging();
+        tracks.setAll(found.getTracks());
+        pageSource = source;
+        nextPageCursor = found.getNextCursor();
+    }
+
+    private void loadSuggestions(String prefix) {
+        cancelSuggestions();
+        if (prefix == null || prefix.isBlank()) {
+            suggestionMenu.hide();
+            return;
+        }
+        pendingSuggest = suggestExecutor.submit(() -> {
+            List<Map<String, Object>> suggestions;
+            try {
+                suggestions = facade.suggest(prefix, 10);
+            } catch (Exception e) {
+                return; // скасовано або без підказок — пошук однаково працює
+            }
+            Platform.runLater(() -> showSuggestions(prefix, suggestions));
+        });
+    }
+
+    private void cancelSuggestions() {
+        if (pendingSuggest != null) {
+            pendingSuggest.cancel(false);
+            pendingSuggest = null;
+        }
+        facade.cancelSuggest();
+    }
+
+    private void showSuggestions(String prefix, List<Map<String, Object>> suggestions) {
+        // відповідь на застарілий текст не показуємо
+        if (!prefix.equals(searchField.getText()) || !searchField.isFocused()) return;
+        if (suggestions.isEmpty()) {
+            suggestionMenu.hide();
+            return;
+        }
+        List<MenuItem> items = new ArrayList<>();
+        for (Map<String, Object> suggestion : suggestions) {
+            String text = String.valueOf(suggestion.get("text"));
+            MenuItem item = new MenuItem(text + "  ·  " + suggestion.get("type"));
+            item.setOnAction(e -> {
+                applyingSuggestion = true;
+                searchField.setText(text);
+                searchField.positionCaret(text.length());
+                applyingSuggestion = false;
+                searchTracks();
+            });
+            items.add(item);
+        }
+        suggestionMenu.getItems().setAll(items);
+        if (!suggestionMenu.isShowing()) {
+            suggestionMenu.show(searchField, Side.BOTTOM, 0, 0);
+        }
     }
 
     private void openLocalFile() {
@@ -944,7 +1196,7 @@ public class MainController implements PlaybackObserver {
             showError("No track is currently playing");
             return;
         }
-        showAddToPlaylistMenu(current);
+        showAddToPlaylistMenu(List.of(current));
     }
 
     private void updateModeCombo(List<String> items) {
@@ -1006,6 +1258,7 @@ public class MainController implements PlaybackObserver {
         return root;
     }
     public void shutdown() {
+        suggestExecutor.shutdownNow();
         facade.stop();
     }
 
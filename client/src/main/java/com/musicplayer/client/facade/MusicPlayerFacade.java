@@ -7,6 +7,7 @@ import com.musicplayer.client.strategy.*;
 
 import java.io.File;
 import java.util.List;
+import java.util.Map;
 
 public class MusicPlayerFacade {
     private static MusicPlayerFacade instance;
@@ -83,11 +84,20 @@ public class MusicPlayerFacade {
         player.playLocalFile(file);
     }
 
-    public List<TrackInfo> searchTracks(String q) {
-        return apiService.searchTracks(q);
+    public TrackPage searchTracks(String q, String after, int limit) {
+        return apiService.searchTracks(q, "natural", after, limit);
     }
-    public List<TrackInfo> getAllTracks() {
-        return apiService.getAllTracks();
+    public TrackPage searchTracksFuzzy(String q, String after, int limit) {
+        return apiService.searchTracks(q, "fuzzy", after, limit);
+    }
+    public List<Map<String, Object>> suggest(String prefix, int k) {
+        return apiService.suggest(prefix, k);
+    }
+    public void cancelSuggest() {
+        apiService.cancelSuggest();
+    }
+    public TrackPage getTracksPage(String after, int limit) {
+        return apiService.getTracksPage(after, limit);
     }
 
     public void addPlaybackObserver(PlaybackObserver o) {
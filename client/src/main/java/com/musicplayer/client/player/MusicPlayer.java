@@ -1,5 +1,6 @@
 package com.musicplayer.client.player;
 
+import com.musicplayer.client.config.AppConfig;
 import com.musicplayer.client.strategy.*;
 import javafx.scene.media.Media;
 import javafx.scene.media.MediaPlayer;
@@ -21,6 +22,11 @@ public class MusicPlayer {
     private final Stack<Integer> history = new Stack<>();
     private final double[] equalizerGains = new double[10];
 
+    // серверний потік, відкритий з ?t=, починається не з нуля
+    private double streamOffset = 0;
+    // HLS плеєр шукає по сегментах сам
+    private boolean segmented = false;
+
     public MusicPlayer() {
         this.state = new StoppedState();
         this.playbackStrategy = new SequentialStrategy();
@@ -101,8 +107,17 @@ public class MusicPlayer {
         currentTrackIndex = index;
         TrackInfo track = queue.get(index);
 
+        streamOffset = 0;
+        openMedia(track, 0, () -> {
+            setState(new PlayingState());
+            mediaPlayer.play();
+            notifyObservers(o -> o.onTrackChanged(track));
+        });
+    }
+
+    private void openMedia(TrackInfo track, double startSeconds, Runnable onReady) {
         try {
-            Media media = createMedia(track);
+            Media media = createMedia(track, startSeconds);
             mediaPlayer = new MediaPlayer(media);
             mediaPlayer.setVolume(0.5);
 
@@ -115,15 +130,11 @@ public class MusicPlayer {
 
             applyEqualizerSettings();
 
-            mediaPlayer.setOnReady(() -> {
-                setState(new PlayingState());
-                mediaPlayer.play();
-                notifyObservers(o -> o.onTrackChanged(track));
-            });
+            mediaPlayer.setOnReady(onReady);
 
             mediaPlayer.setOnEndOfMedia(this::onTrackFinished);
             mediaPlayer.currentTimeProperty().addListener((obs, oldVal, newVal) ->
-                    notifyObservers(o -> o.onPositionChanged(newVal.toSeconds()))
+                    notifyObservers(o -> o.onPositionChanged(streamOffset + newVal.toSeconds()))
             );
 
         } catch (Exception e) {
@@ -132,11 +143,24 @@ public class MusicPlayer {
         }
     }
 
-    private Media createMedia(TrackInfo track) {
-        if ("local".equals(track.getSource())) {
+    private Media createMedia(TrackInfo track, double startSeconds) {
+        if (isLocal(track)) {
+            segmented = false;
             return new Media(new File(track.getLocalPath()).toURI().toString());
         }
-        return new Media("http://localhost:8080/api/tracks/" + track.getId() + "/stream");
+        AppConfig config = AppConfig.getInstance();
+        segmented = config.isSegmentedStreaming() && startSeconds <= 0;
+        StringBuilder url = new StringBuilder(config.getServerUrl())
+                .append("/api/tracks/").append(track.getId())
+                .append(segmented ? "/hls/index.m3u8" : "/stream");
+        if (startSeconds > 0) {
+            url.append("?t=").append(String.format(Locale.ROOT, "%.3f", startSeconds));
+        }
+        return new Media(url.toString());
+    }
+
+    private boolean isLocal(TrackInfo track) {
+        return "local".equals(track.getSource());
     }
 
     private void applyEqualizerSettings() {
@@ -181,8 +205,8 @@ public class MusicPlayer {
     public void playPrevious() {
         if (queue.isEmpty()) return;
 
-        if (mediaPlayer != null && mediaPlayer.getCurrentTime().toSeconds() > 3) {
-            mediaPlayer.seek(Duration.ZERO);
+        if (mediaPlayer != null && getPosition() > 3) {
+            seek(0);
             return;
         }
 
@@ -220,8 +244,40 @@ public class MusicPlayer {
                 .build());
     }
 
+    /**
+     * Усередині завантаженого фрагмента шукає локально. Далі — перевідкриває
+     * потік з ?t=: сервер за таблицею фреймів одразу віддає потрібні байти,
+     * навіть для VBR, замість того щоб плеєр вгадував зміщення.
+     */
     public void seek(double seconds) {
-        if (mediaPlayer != null) mediaPlayer.seek(Duration.seconds(seconds));
+        if (mediaPlayer == null) return;
+        TrackInfo track = getCurrentTrack();
+        double target = seconds - streamOffset;
+        Duration buffered = mediaPlayer.getBufferProgressTime();
+
+        if (track == null || isLocal(track) || segmented
+                || (target >= 0 && buffered != null && target <= buffered.toSeconds())) {
+            mediaPlayer.seek(Duration.seconds(Math.max(0, target)));
+            return;
+        }
+        reopenAt(track, seconds);
+    }
+
+    private void reopenAt(TrackInfo track, double seconds) {
+        double volume = mediaPlayer.getVolume();
+        mediaPlayer.stop();
+        mediaPlayer.dispose();
+
+        streamOffset = Math.max(0, seconds);
+        openMedia(track, streamOffset, () -> {
+            mediaPlayer.setVolume(volume);
+            if (state.getState() == PlaybackState.PLAYING) mediaPlayer.play();
+        });
+        notifyObservers(o -> o.onPositionChanged(streamOffset));
+    }
+
+    public double getPosition() {
+        return mediaPlayer != null ? streamOffset + mediaPlayer.getCurrentTime().toSeconds() : 0;
     }
 
     public void setVolume(double volume) {
@@ -229,7 +285,12 @@ public class MusicPlayer {
     }
 
     public double getDuration() {
-        return mediaPlayer != null ? mediaPlayer.getTotalDuration().toSeconds() : 0;
+        if (mediaPlayer == null) return 0;
+        TrackInfo track = getCurrentTrack();
+        if (streamOffset > 0 && track != null && track.getDurationMs() != null && track.getDurationMs() > 0) {
+            return track.getDurationMs() / 1000.0;
+        }
+        return streamOffset + mediaPlayer.getTotalDuration().toSeconds();
     }
 
     public TrackInfo getCurrentTrack() {
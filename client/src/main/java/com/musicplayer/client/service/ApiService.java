@@ -5,17 +5,41 @@ import com.google.gson.reflect.TypeToken;
 import com.musicplayer.client.config.AppConfig;
 import com.musicplayer.client.player.TrackInfo;
 import okhttp3.*;
+import okio.BufferedSink;
 
 import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 public class ApiService {
-    private final OkHttpClient client = new OkHttpClient();
+    // Shared so every ApiService revalidates against the same on-disk HTTP cache (ETag / Last-Modified)
+    private static final OkHttpClient client = new OkHttpClient.Builder()
+            .cache(new Cache(new File(System.getProperty("java.io.tmpdir"), "music-player-http-cache"),
+                    50L * 1024 * 1024))
+            .build();
     private final Gson gson = new Gson();
     private final AppConfig config = AppConfig.getInstance();
     private static final MediaType JSON_MEDIA_TYPE = MediaType.get("application/json; charset=utf-8");
+    private static final int UPLOAD_PARALLELISM = 4;
+    private static final int CHUNK_RETRIES = 3;
+    // complete на сервері зберігає сесію після збою, тож його варто повторювати довше
+    private static final int COMPLETE_RETRIES = 6;
+    // music.playlist.max-batch на сервері
+    private static final int PLAYLIST_BATCH_SIZE = 5000;
+    // запит підказок, що зараз у дорозі
+    private final AtomicReference<Call> suggestCall = new AtomicReference<>();
 
     // auth
 
@@ -32,17 +56,68 @@ public class ApiService {
     }
 
     // track methods
-    public List<TrackInfo> getAllTracks() {
-        Request request = new Request.Builder().url(url("/api/tracks")).get().build();
-        return executeAndParseTracks(request);
+    /** Одна сторінка каталогу; after — курсор з попередньої сторінки або null для першої. */
+    public TrackPage getTracksPage(String after, int limit) {
+        HttpUrl.Builder url = HttpUrl.parse(url("/api/tracks")).newBuilder()
+                .addQueryParameter("limit", String.valueOf(limit));
+        if (after != null) {
+            url.addQueryParameter("after", after);
+        }
+        Request request = new Request.Builder().url(url.build()).get().build();
+        Headers[] headers = new Headers[1];
+        String body = executeInternal(request, h -> headers[0] = h);
+        List<TrackInfo> tracks = parseTracks(body);
+        String total = headers[0].get("X-Total-Count");
+        return new TrackPage(tracks, headers[0].get("X-Next-Cursor"),
+                total != null ? Long.parseLong(total) : -1);
     }
 
-    public List<TrackInfo> searchTracks(String query) {
-        HttpUrl url = HttpUrl.parse(url("/api/tracks/search")).newBuilder()
+    /**
+     * Одна сторінка пошуку; mode: natural, boolean або fuzzy (допускає одруківки).
+     * Наступні сторінки — за курсором, як і в getTracksPage; total тут невідомий (-1).
+     * Курсор, який сервер уже не може продовжити (410), кидає CursorExpiredException.
+     */
+    public TrackPage searchTracks(String query, String mode, String after, int limit) {
+        HttpUrl.Builder url = HttpUrl.parse(url("/api/tracks/search")).newBuilder()
                 .addQueryParameter("query", query)
+                .addQueryParameter("mode", mode)
+                .addQueryParameter("limit", String.valueOf(limit));
+        if (after != null) {
+            url.addQueryParameter("after", after);
+        }
+        Request request = new Request.Builder().url(url.build()).get().build();
+        Headers[] headers = new Headers[1];
+        List<TrackInfo> tracks = parseTracks(executeInternal(request, h -> headers[0] = h));
+        return new TrackPage(tracks, headers[0].get("X-Next-Cursor"), -1);
+    }
+
+    /**
+     * Підказки для рядка пошуку: text, type (title/artist/album), plays.
+     * Новий запит скасовує попередній, якщо той ще не повернувся.
+     */
+    public List<Map<String, Object>> suggest(String prefix, int k) {
+        HttpUrl url = HttpUrl.parse(url("/api/tracks/suggest")).newBuilder()
+                .addQueryParameter("prefix", prefix)
+                .addQueryParameter("k", String.valueOf(k))
                 .build();
-        Request request = new Request.Builder().url(url).get().build();
-        return executeAndParseTracks(request);
+        Call call = client.newCall(new Request.Builder().url(url).get().build());
+        Call previous = suggestCall.getAndSet(call);
+        if (previous != null) {
+            previous.cancel();
+        }
+        try {
+            return gson.fromJson(executeCall(call, headers -> { }),
+                    new TypeToken<List<Map<String, Object>>>(){}.getType());
+        } finally {
+            suggestCall.compareAndSet(call, null);
+        }
+    }
+
+    public void cancelSuggest() {
+        Call call = suggestCall.getAndSet(null);
+        if (call != null) {
+            call.cancel();
+        }
     }
 
     public void updateTrackMetadata(Long trackId, String title, String artist, String album) {
@@ -59,23 +134,176 @@ public class ApiService {
         execute(request);
     }
 
+    /**
+     * Завантаження частинами: сесія на сервері, кілька частин паралельно
+     * (кожна з SHA-256), повтор невдалих, потім complete. Обрив з'єднання
+     * коштує одну частину, а не весь файл.
+     */
     public void uploadTrack(String title, String artist, String album, File file) {
-        RequestBody fileBody = RequestBody.create(file, MediaType.parse("audio/mpeg"));
-        MultipartBody requestBody = new MultipartBody.Builder()
-                .setType(MultipartBody.FORM)
-                .addFormDataPart("title", title)
-                .addFormDataPart("artist", artist)
-                .addFormDataPart("album", album)
-                .addFormDataPart("file", file.getName(), fileBody)
+        HttpUrl createUrl = HttpUrl.parse(url("/api/uploads")).newBuilder()
+                .addQueryParameter("filename", file.getName())
+                .addQueryParameter("size", String.valueOf(file.length()))
+                .addQueryParameter("title", title)
+                .addQueryParameter("artist", artist)
+                .addQueryParameter("album", album)
                 .build();
+        Map<String, Object> session = execute(
+                new Request.Builder().url(createUrl).post(RequestBody.create("", null)).build(),
+                new TypeToken<Map<String, Object>>(){}.getType());
 
-        Request request = new Request.Builder().url(url("/api/tracks")).post(requestBody).build();
-        execute(request);
+        String uploadId = (String) session.get("uploadId");
+        long chunkSize = ((Number) session.get("chunkSize")).longValue();
+        int chunkCount = ((Number) session.get("chunkCount")).intValue();
+
+        ExecutorService pool = Executors.newFixedThreadPool(UPLOAD_PARALLELISM);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            List<Future<?>> pending = new ArrayList<>();
+            for (int i = 0; i < chunkCount; i++) {
+                int index = i;
+                pending.add(pool.submit(() -> uploadChunk(uploadId, channel, index, chunkSize, file.length())));
+            }
+            for (Future<?> future : pending) {
+                try {
+                    future.get();
+                } catch (ExecutionException ignored) {
+                    // добираємо нижче за списком від сервера
+                }
+            }
+
+            Map<String, Object> status = execute(
+                    new Request.Builder().url(url("/api/uploads/" + uploadId)).get().build(),
+                    new TypeToken<Map<String, Object>>(){}.getType());
+            for (Object missing : (List<?>) status.get("missing")) {
+                uploadChunk(uploadId, channel, ((Number) missing).intValue(), chunkSize, file.length());
+            }
+
+            completeUpload(uploadId);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abortUpload(uploadId);
+            throw new RuntimeException("Upload interrupted");
+        } catch (TransientException e) {
+            // сесію не чіпаємо: сервер її тримає, доки вона не простоїть expiry-minutes
+            throw new RuntimeException(e.getMessage(), e);
+        } catch (IOException | RuntimeException e) {
+            abortUpload(uploadId);
+            throw new RuntimeException(e.getMessage(), e);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private void uploadChunk(String uploadId, FileChannel channel, int index, long chunkSize, long fileSize) {
+        long offset = index * chunkSize;
+        long length = Math.min(chunkSize, fileSize - offset);
+        String sha256 = sha256(channel, offset, length);
+
+        RuntimeException lastError = null;
+        for (int attempt = 0; attempt < CHUNK_RETRIES; attempt++) {
+            try {
+                execute(new Request.Builder()
+                        .url(url("/api/uploads/" + uploadId + "/chunks/" + index))
+                        .header("X-Chunk-Sha256", sha256)
+                        .put(new FileRegionBody(channel, offset, length))
+                        .build());
+                return;
+            } catch (RuntimeException e) {
+                lastError = e;
+                try {
+                    Thread.sleep(500L << attempt);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        throw lastError;
+    }
+
+    /** Повторює complete із затримкою, що росте вдвічі, поки збій тимчасовий (5xx чи обрив з'єднання). */
+    private void completeUpload(String uploadId) throws InterruptedException {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                execute(new Request.Builder()
+                        .url(url("/api/uploads/" + uploadId + "/complete"))
+                        .post(RequestBody.create("", null))
+                        .build());
+                return;
+            } catch (TransientException e) {
+                if (attempt + 1 >= COMPLETE_RETRIES) {
+                    throw e;
+                }
+                Thread.sleep(1000L << attempt);
+            }
+        }
+    }
+
+    private void abortUpload(String uploadId) {
+        try {
+            execute(new Request.Builder().url(url("/api/uploads/" + uploadId)).delete().build());
+        } catch (RuntimeException ignored) {
+            // сесія сама зникне на сервері після простою
+        }
+    }
+
+    private String sha256(FileChannel channel, long offset, long length) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            long position = offset;
+            long end = offset + length;
+            while (position < end) {
+                buffer.clear().limit((int) Math.min(buffer.capacity(), end - position));
+                int read = channel.read(buffer, position);
+                if (read < 0) throw new IOException("Unexpected end of file");
+                digest.update(buffer.flip());
+                position += read;
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (IOException | NoSuchAlgorithmException e) {
+            throw new RuntimeException("Cannot read file: " + e.getMessage());
+        }
+    }
+
+    // Тіло запиту прямо з файлу, без копії частини в пам'яті
+    private static class FileRegionBody extends RequestBody {
+        private static final MediaType OCTET_STREAM = MediaType.get("application/octet-stream");
+        private final FileChannel channel;
+        private final long offset;
+        private final long length;
+
+        FileRegionBody(FileChannel channel, long offset, long length) {
+            this.channel = channel;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return OCTET_STREAM;
+        }
+
+        @Override
+        public long contentLength() {
+            return length;
+        }
+
+        @Override
+        public void writeTo(BufferedSink sink) throws IOException {
+            long position = offset;
+            long end = offset + length;
+            while (position < end) {
+                long written = channel.transferTo(position, end - position, sink);
+                if (written <= 0) throw new IOException("Unexpected end of file");
+                position += written;
+            }
+        }
     }
 
     // playlist methods
-    public List<Map<String, Object>> getUserPlaylists(Long userId) {
-        Request request = new Request.Builder().url(url("/api/playlists/user/" + userId)).get().build();
+    /** Лише id, name, trackCount, durationMs і version — без треків; треки вантажить getPlaylist. */
+    public List<Map<String, Object>> getUserPlaylistSummaries(Long userId) {
+        Request request = new Request.Builder().url(url("/api/playlists/user/" + userId + "/summary")).get().build();
         return execute(request, new TypeToken<List<Map<String, Object>>>(){}.getType());
     }
 
@@ -84,6 +312,19 @@ public class ApiService {
         return execute(request, new TypeToken<Map<String, Object>>(){}.getType());
     }
 
+    /**
+     * Зміни плейлиста після версії since: changes по порядку і tracks, які вони додають.
+     * Без since, або якщо журнал уже не сягає так далеко, — увесь плейлист із snapshot = true.
+     */
+    public JsonObject getPlaylistChanges(Long playlistId, Long since) {
+        HttpUrl.Builder url = HttpUrl.parse(url("/api/playlists/" + playlistId + "/changes")).newBuilder();
+        if (since != null) {
+            url.addQueryParameter("since", since.toString());
+        }
+        Request request = new Request.Builder().url(url.build()).get().build();
+        return JsonParser.parseString(executeInternal(request)).getAsJsonObject();
+    }
+
     public Map<String, Object> createPlaylist(Long userId, String name) {
         HttpUrl url = HttpUrl.parse(url("/api/playlists")).newBuilder()
                 .addQueryParameter("userId", userId.toString())
@@ -101,20 +342,36 @@ public class ApiService {
         execute(request);
     }
 
-    public void addTrackToPlaylist(Long playlistId, Long trackId) {
-        Request request = new Request.Builder()
-                .url(url("/api/playlists/" + playlistId + "/tracks/" + trackId))
-                .post(RequestBody.create("", null))
-                .build();
-        execute(request);
+    /** Кілька змін плейлиста одним запитом (op: ADD, REMOVE або MOVE); результат кожної — у тому ж порядку. */
+    public List<Map<String, Object>> applyPlaylistOps(Long playlistId, List<Map<String, Object>> ops) {
+        return (List<Map<String, Object>>) editPlaylist(playlistId, ops).get("results");
     }
 
-    public void removeTrackFromPlaylist(Long playlistId, Long trackId) {
+    /** Як applyPlaylistOps, але вся відповідь: results і version, до якої вони привели. */
+    public Map<String, Object> editPlaylist(Long playlistId, List<Map<String, Object>> ops) {
         Request request = new Request.Builder()
-                .url(url("/api/playlists/" + playlistId + "/tracks/" + trackId))
-                .delete()
+                .url(url("/api/playlists/" + playlistId + "/items/batch"))
+                .post(createJsonBody(ops))
                 .build();
-        execute(request);
+        return execute(request, new TypeToken<Map<String, Object>>(){}.getType());
+    }
+
+    /** Великі виділення йдуть кількома запитами; результати — в тому ж порядку, що й trackIds. */
+    public List<Map<String, Object>> addTracksToPlaylist(Long playlistId, List<Long> trackIds) {
+        return applyInBatches(playlistId, "ADD", trackIds);
+    }
+
+    public List<Map<String, Object>> removeTracksFromPlaylist(Long playlistId, List<Long> trackIds) {
+        return applyInBatches(playlistId, "REMOVE", trackIds);
+    }
+
+    private List<Map<String, Object>> applyInBatches(Long playlistId, String op, List<Long> trackIds) {
+        List<Map<String, Object>> results = new ArrayList<>(trackIds.size());
+        for (int from = 0; from < trackIds.size(); from += PLAYLIST_BATCH_SIZE) {
+            List<Long> batch = trackIds.subList(from, Math.min(from + PLAYLIST_BATCH_SIZE, trackIds.size()));
+            results.addAll(applyPlaylistOps(playlistId, playlistOps(op, batch)));
+        }
+        return results;
     }
 
     public void deletePlaylist(Long playlistId) {
@@ -122,14 +379,29 @@ public class ApiService {
         execute(request);
     }
 
-    public void updatePlaylistOrder(Long playlistId, List<Long> trackIds) {
+    /** Весь порядок; якщо плейлист змінився після baseVersion, сервер відмовляє — ConflictException. */
+    public void updatePlaylistOrder(Long playlistId, List<Long> trackIds, Long baseVersion) {
+        HttpUrl.Builder url = HttpUrl.parse(url("/api/playlists/" + playlistId + "/tracks/order")).newBuilder();
+        if (baseVersion != null) {
+            url.addQueryParameter("baseVersion", baseVersion.toString());
+        }
         Request request = new Request.Builder()
-                .url(url("/api/playlists/" + playlistId + "/tracks/order"))
+                .url(url.build())
                 .put(RequestBody.create(gson.toJson(trackIds), JSON_MEDIA_TYPE))
                 .build();
         execute(request);
     }
 
+    /** Переміщує один трек одразу після afterTrackId (null — на початок); сервер змінює лише його рядок. */
+    public void movePlaylistTrack(Long playlistId, Long trackId, Long afterTrackId) {
+        HttpUrl url = HttpUrl.parse(url("/api/playlists/" + playlistId + "/items/" + trackId + "/position"))
+                .newBuilder()
+                .addQueryParameter("after", String.valueOf(afterTrackId != null ? afterTrackId : 0))
+                .build();
+        Request request = new Request.Builder().url(url).put(RequestBody.create("", null)).build();
+        execute(request);
+    }
+
 
     private <T> T execute(Request request, Type type) {
         String body = executeInternal(request);
@@ -141,7 +413,15 @@ public class ApiService {
     }
 
     private String executeInternal(Request request) {
-        try (Response response = client.newCall(request).execute()) {
+        return executeInternal(request, headers -> { });
+    }
+
+    private String executeInternal(Request request, Consumer<Headers> onHeaders) {
+        return executeCall(client.newCall(request), onHeaders);
+    }
+
+    private String executeCall(Call call, Consumer<Headers> onHeaders) {
+        try (Response response = call.execute()) {
             String body = response.body() != null ? response.body().string() : "";
 
             if (!response.isSuccessful()) {
@@ -153,17 +433,30 @@ public class ApiService {
                     }
                 } catch (Exception ignored) {
 
+                }
+                if (response.code() == 409) {
+                    throw new ConflictException(errorMsg);
+                }
+                if (response.code() == 410) {
+                    throw new CursorExpiredException(errorMsg);
+                }
+                if (response.code() >= 500) {
+                    throw new TransientException(errorMsg);
                 }
                 throw new RuntimeException(errorMsg);
             }
+            onHeaders.accept(response.headers());
             return body;
         } catch (IOException e) {
-            throw new RuntimeException("Connection error: " + e.getMessage());
+            throw new TransientException("Connection error: " + e.getMessage());
         }
     }
 
     private List<TrackInfo> executeAndParseTracks(Request request) {
-        String body = executeInternal(request);
+        return parseTracks(executeInternal(request));
+    }
+
+    private List<TrackInfo> parseTracks(String body) {
         JsonArray array = JsonParser.parseString(body).getAsJsonArray();
         List<TrackInfo> tracks = new ArrayList<>();
         for (JsonElement element : array) {
@@ -172,10 +465,11 @@ public class ApiService {
         return tracks;
     }
 
-    private TrackInfo parseTrack(JsonObject json) {
+    /** Трек із JSON сервера; спільне для всіх відповідей, де є треки. */
+    static TrackInfo parseTrack(JsonObject json) {
         return TrackInfo.builder()
                 .id(json.get("id").getAsLong())
-                .title(json.get("title").getAsString())
+                .title(json.has("title") && !json.get("title").isJsonNull() ? json.get("title").getAsString() : "Unknown")
                 .artist(json.has("artist") && !json.get("artist").isJsonNull() ? json.get("artist").getAsString() : "Unknown")
                 .album(json.has("album") && !json.get("album").isJsonNull() ? json.get("album").getAsString() : "Unknown")
                 .durationMs(json.has("durationMs") && !json.get("durationMs").isJsonNull() ? json.get("durationMs").getAsLong() : 0L)
@@ -183,6 +477,14 @@ public class ApiService {
                 .build();
     }
 
+    private List<Map<String, Object>> playlistOps(String op, List<Long> trackIds) {
+        List<Map<String, Object>> ops = new ArrayList<>(trackIds.size());
+        for (Long trackId : trackIds) {
+            ops.add(Map.of("op", op, "trackId", trackId));
+        }
+        return ops;
+    }
+
     private String url(String path) {
         return config.getServerUrl() + path;
     }
@@ -191,6 +493,27 @@ public class ApiService {
         return RequestBody.create(gson.toJson(object), JSON_MEDIA_TYPE);
     }
 
+    /** 409: запит розминувся зі змінами, яких клієнт ще не бачив. */
+    public static class ConflictException extends RuntimeException {
+        public ConflictException(String message) {
+            super(message);
+        }
+    }
+
+    /** 5xx або обрив з'єднання: той самий запит можна повторити пізніше. */
+    public static class TransientException extends RuntimeException {
+        public TransientException(String message) {
+            super(message);
+        }
+    }
+
+    /** 410: курсор сторінки більше не дійсний — починаємо з першої сторінки. */
+    public static class CursorExpiredException extends RuntimeException {
+        public CursorExpiredException(String message) {
+            super(message);
+        }
+    }
+
     private Request buildPostRequest(String path, Object bodyData) {
         return new Request.Builder()
                 .url(url(path))
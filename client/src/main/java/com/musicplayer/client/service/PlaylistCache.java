@@ -0,0 +1,105 @@
+package com.musicplayer.client.service;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.musicplayer.client.player.TrackInfo;
+import java.util.*;
+
+/**
+ * Копії плейлистів, що вже відкривалися, з версією сервера. Повторне
+ * відкриття питає лише зміни після цієї версії і програє їх над копією;
+ * увесь плейлист приходить, тільки коли копії ще немає або журнал змін
+ * сервера до неї вже не сягає. Правки самих треків (назви, тривалість
+ * після обробки) у журнал не потрапляють, тому копію, прочитану за іншої
+ * версії каталогу, теж замінює весь плейлист.
+ */
+public class PlaylistCache {
+    private final ApiService apiService;
+    // під this
+    private final Map<Long, Snapshot> playlists = new HashMap<>();
+
+    public PlaylistCache(ApiService apiService) {
+        this.apiService = apiService;
+    }
+
+    /** Поточний стан плейлиста з сервера; список можна змінювати, копія від цього не псується. */
+    public synchronized Snapshot load(Long playlistId) {
+        Snapshot cached = playlists.get(playlistId);
+        JsonObject reply = apiService.getPlaylistChanges(playlistId, cached != null ? cached.version() : null);
+        boolean whole = reply.get("snapshot").getAsBoolean();
+        List<TrackInfo> tracks = whole || !Objects.equals(cached.catalogVersion(), id(reply.get("catalogVersion")))
+                ? null : replay(cached.tracks(), reply);
+        if (tracks == null) {
+            if (!whole) {
+                // копія розійшлася з журналом або з каталогом — беремо плейлист цілком
+                reply = apiService.getPlaylistChanges(playlistId, null);
+            }
+            tracks = new ArrayList<>();
+            for (JsonElement data : reply.getAsJsonArray("tracks")) {
+                tracks.add(ApiService.parseTrack(data.getAsJsonObject()));
+            }
+        }
+        // назва — поточна на сервері, тож перейменування доходять і без записів у changes
+        Snapshot snapshot = new Snapshot(reply.get("version").getAsLong(), reply.get("name").getAsString(),
+                id(reply.get("catalogVersion")), List.copyOf(tracks));
+        playlists.put(playlistId, snapshot);
+        return new Snapshot(snapshot.version(), snapshot.name(), snapshot.catalogVersion(),
+                new ArrayList<>(snapshot.tracks()));
+    }
+
+    public synchronized void forget(Long playlistId) {
+        playlists.remove(playlistId);
+    }
+
+    /** Копія зі змінами reply, або null, якщо якась із них не лягає на копію. */
+    private static List<TrackInfo> replay(List<TrackInfo> cached, JsonObject reply) {
+        Map<Long, TrackInfo> added = new HashMap<>();
+        for (JsonElement data : reply.getAsJsonArray("tracks")) {
+            TrackInfo track = ApiService.parseTrack(data.getAsJsonObject());
+            added.put(track.getId(), track);
+        }
+        List<TrackInfo> tracks = new ArrayList<>(cached);
+        for (JsonElement element : reply.getAsJsonArray("changes")) {
+            JsonObject change = element.getAsJsonObject();
+            Long trackId = id(change.get("trackId"));
+            Long after = id(change.get("after"));
+            int index = indexOf(tracks, trackId);
+            switch (change.get("op").getAsString()) {
+                case "ADD" -> {
+                    // трек, якого вже немає в каталозі, — його REMOVE іде далі в журналі
+                    TrackInfo track = added.getOrDefault(trackId, TrackInfo.builder().id(trackId).build());
+                    if (index < 0) tracks.add(track);
+                }
+                case "REMOVE" -> {
+                    if (index >= 0) tracks.remove(index);
+                }
+                case "MOVE" -> {
+                    if (index < 0) return null;
+                    TrackInfo track = tracks.remove(index);
+                    int previous = after != null ? indexOf(tracks, after) : -1;
+                    if (after != null && previous < 0) return null;
+                    tracks.add(previous + 1, track);
+                }
+                default -> {
+                    return null;
+                }
+            }
+        }
+        return tracks;
+    }
+
+    private static int indexOf(List<TrackInfo> tracks, Long trackId) {
+        for (int i = 0; i < tracks.size(); i++) {
+            if (tracks.get(i).getId().equals(trackId)) return i;
+        }
+        return -1;
+    }
+
+    private static Long id(JsonElement value) {
+        return value != null && !value.isJsonNull() ? value.getAsLong() : null;
+    }
+
+    /** Назва і треки плейлиста в його порядку на момент version; треки прочитані за catalogVersion. */
+    public record Snapshot(long version, String name, Long catalogVersion, List<TrackInfo> tracks) {
+    }
+}
@@ -0,0 +1,269 @@
+package com.musicplayer.client.service;
+
+import com.musicplayer.client.player.TrackInfo;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Черга збереження порядку плейлистів. Таблиця змінюється одразу, а сюди
+ * передається лише новий порядок; усі запити йдуть з одного потоку, тож
+ * зміни одного плейлиста ніколи не обганяють одна одну.
+ *
+ * Кліки, швидші за DEBOUNCE_MS, зливаються: надсилається різниця між
+ * останнім підтвердженим сервером і останнім бажаним порядком — переміщення
+ * лише тих треків, що не входять у найдовшу підпослідовність, яка вже стоїть
+ * правильно, одним пакетом. Переміщення кажуть «після якого треку», тож
+ * зливаються зі змінами з інших пристроїв. Весь порядок іде, лише коли він
+ * коротший за переміщення, і з версією, від якої його складено: якщо
+ * плейлист відтоді змінився, сервер відмовляє, черга дочитує зміни через
+ * PlaylistCache і складає переміщення наново. Треки, прибрані деінде,
+ * пропускаються; додані деінде лишаються, де стоять.
+ *
+ * Невдачі повторюються із затримкою, що росте вдвічі; після MAX_ATTEMPTS
+ * зміни відкидаються і викликається onError з id плейлиста.
+ */
+public class PlaylistSyncQueue {
+    private static final long DEBOUNCE_MS = 400;
+    private static final long FIRST_RETRY_MS = 1000;
+    private static final long MAX_RETRY_MS = 30_000;
+    private static final int MAX_ATTEMPTS = 6;
+    // стільки разів поспіль сервер може сказати «змінився» до того, як це вважатиметься невдачею
+    private static final int MAX_CONFLICTS = 3;
+
+    private final ApiService apiService;
+    private final PlaylistCache playlistCache;
+    private final BiConsumer<Long, String> onError;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "playlist-sync");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // під this
+    private final Map<Long, State> playlists = new HashMap<>();
+
+    public PlaylistSyncQueue(ApiService apiService, PlaylistCache playlistCache, BiConsumer<Long, String> onError) {
+        this.apiService = apiService;
+        this.playlistCache = playlistCache;
+        this.onError = onError;
+    }
+
+    /**
+     * Порядок версії version, щойно отриманий із сервера. Повертає той, який
+     * треба показати: якщо для плейлиста ще є ненадіслані зміни — бажаний,
+     * інакше серверний.
+     */
+    public synchronized List<Long> loaded(Long playlistId, long version, List<Long> serverOrder) {
+        State state = playlists.computeIfAbsent(playlistId, id -> new State());
+        if (state.desired != null) {
+            return state.desired;
+        }
+        state.confirmed = new ArrayList<>(serverOrder);
+        state.version = version;
+        return serverOrder;
+    }
+
+    /** Новий порядок після зміни в інтерфейсі; відправка — після паузи в кліках. */
+    public synchronized void reorder(Long playlistId, List<Long> order) {
+        State state = playlists.computeIfAbsent(playlistId, id -> new State());
+        state.desired = new ArrayList<>(order);
+        schedule(playlistId, state, state.attempts == 0 ? DEBOUNCE_MS : retryDelay(state.attempts));
+    }
+
+    public synchronized boolean hasPending(Long playlistId) {
+        State state = playlists.get(playlistId);
+        return state != null && state.desired != null;
+    }
+
+    private void schedule(Long playlistId, State state, long delayMs) {
+        if (state.flush != null) {
+            // той, що вже виконується, не перериваємо: наступний піде після нього
+            state.flush.cancel(false);
+        }
+        state.flush = executor.schedule(() -> flush(playlistId), delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void flush(Long playlistId) {
+        State state;
+        List<Long> desired;
+        List<Long> confirmed;
+        Long version;
+        synchronized (this) {
+            state = playlists.get(playlistId);
+            if (state == null || state.desired == null) {
+                return;
+            }
+            desired = state.desired;
+            confirmed = state.confirmed;
+            version = state.version;
+        }
+
+        try {
+            int conflicts = 0;
+            while (true) {
+                if (confirmed == null || version == null) {
+                    // не знаємо, що зараз на сервері (невдача чи чужі зміни) — дочитуємо
+                    PlaylistCache.Snapshot server = playlistCache.load(playlistId);
+                    confirmed = new ArrayList<>();
+                    for (TrackInfo track : server.tracks()) confirmed.add(track.getId());
+                    version = server.version();
+                }
+                List<Long> target = new ArrayList<>(desired);
+                target.retainAll(new HashSet<>(confirmed));
+                List<Move> moves = moves(confirmed, target);
+                if (moves.isEmpty()) {
+                    break;
+                }
+                try {
+                    // переміщення — це трек і сусід, близько трьох id у JSON
+                    if (moves.size() * 3 > target.size()) {
+                        apiService.updatePlaylistOrder(playlistId, target, version);
+                        confirmed = withRest(target, confirmed);
+                        version = version + 1;
+                    } else {
+                        Map<String, Object> reply = apiService.editPlaylist(playlistId, ops(moves));
+                        long replyVersion = ((Double) reply.get("version")).longValue();
+                        boolean allMoved = true;
+                        for (Map<String, Object> result : (List<Map<String, Object>>) reply.get("results")) {
+                            allMoved &= "MOVED".equals(result.get("status"));
+                        }
+                        if (!allMoved) {
+                            throw new ApiService.ConflictException("Playlist changed while saving order");
+                        }
+                        confirmed = apply(confirmed, moves);
+                        // інша версія — між ними вклинився хтось інший, і його змін тут немає
+                        version = replyVersion == version + 1 ? replyVersion : null;
+                    }
+                    break;
+                } catch (ApiService.ConflictException e) {
+                    if (++conflicts >= MAX_CONFLICTS) {
+                        throw e;
+                    }
+                    confirmed = null;
+                }
+            }
+            synchronized (this) {
+                state.confirmed = confirmed;
+                state.version = version;
+                state.attempts = 0;
+                if (state.desired == desired) {
+                    state.desired = null;
+                }
+            }
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                state.attempts++;
+                // що з пакета дійшло, невідомо — наступна спроба почне з читання
+                state.version = null;
+                if (state.attempts >= MAX_ATTEMPTS) {
+                    state.desired = null;
+                    state.confirmed = null;
+                    state.attempts = 0;
+                    onError.accept(playlistId, "Failed to save order: " + e.getMessage());
+                } else if (state.desired == desired) {
+                    // новіший порядок уже має свій запуск
+                    schedule(playlistId, state, retryDelay(state.attempts));
+                }
+            }
+        }
+    }
+
+    private static List<Map<String, Object>> ops(List<Move> moves) {
+        List<Map<String, Object>> ops = new ArrayList<>(moves.size());
+        for (Move move : moves) {
+            ops.add(Map.of("op", "MOVE", "trackId", move.trackId(),
+                    "after", move.afterTrackId() != null ? move.afterTrackId() : 0L));
+        }
+        return ops;
+    }
+
+    /** Порядок після PUT усього порядку: сервер ставить не згадані треки в кінець. */
+    private static List<Long> withRest(List<Long> listed, List<Long> all) {
+        List<Long> order = new ArrayList<>(listed);
+        Set<Long> seen = new HashSet<>(listed);
+        for (Long trackId : all) {
+            if (!seen.contains(trackId)) order.add(trackId);
+        }
+        return order;
+    }
+
+    /** Програє переміщення над порядком так само, як сервер. */
+    static List<Long> apply(List<Long> order, List<Move> moves) {
+        List<Long> result = new ArrayList<>(order);
+        for (Move move : moves) {
+            result.remove(move.trackId());
+            int previous = move.afterTrackId() != null ? result.indexOf(move.afterTrackId()) : -1;
+            result.add(previous + 1, move.trackId());
+        }
+        return result;
+    }
+
+    private static long retryDelay(int attempts) {
+        return Math.min(MAX_RETRY_MS, FIRST_RETRY_MS << Math.min(attempts - 1, 20));
+    }
+
+    /**
+     * Переміщення, що роблять з from порядок to: треки поза найдовшою
+     * зростаючою (за місцем у from) підпослідовністю to ставляться зліва
+     * направо одразу після свого сусіда в to.
+     */
+    static List<Move> moves(List<Long> from, List<Long> to) {
+        Map<Long, Integer> rank = new HashMap<>();
+        for (int i = 0; i < from.size(); i++) {
+            rank.put(from.get(i), i);
+        }
+        int n = to.size();
+        int[] tails = new int[n];
+        int[] previous = new int[n];
+        int[] ranks = new int[n];
+        int length = 0;
+        for (int i = 0; i < n; i++) {
+            ranks[i] = rank.getOrDefault(to.get(i), -1);
+            if (ranks[i] < 0) {
+                continue;
+            }
+            int lo = 0;
+            int hi = length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (ranks[tails[mid]] < ranks[i]) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            previous[i] = lo > 0 ? tails[lo - 1] : -1;
+            tails[lo] = i;
+            length = Math.max(length, lo + 1);
+        }
+        boolean[] keep = new boolean[n];
+        for (int i = length > 0 ? tails[length - 1] : -1; i >= 0; i = previous[i]) {
+            keep[i] = true;
+        }
+
+        List<Move> moves = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            if (!keep[i]) {
+                moves.add(new Move(to.get(i), i > 0 ? to.get(i - 1) : null));
+            }
+        }
+        return moves;
+    }
+
+    record Move(Long trackId, Long afterTrackId) {
+    }
+
+    private static final class State {
+        // останній порядок, який сервер прийняв; null — невідомо
+        private List<Long> confirmed;
+        // версія сервера, якій відповідає confirmed; null — невідомо
+        private Long version;
+        // ще не підтверджений порядок; null — змін немає
+        private List<Long> desired;
+        private int attempts;
+        private ScheduledFuture<?> flush;
+    }
+}
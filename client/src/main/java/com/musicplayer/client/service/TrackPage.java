@@ -0,0 +1,15 @@
+package com.musicplayer.client.service;
+
+import com.musicplayer.client.player.TrackInfo;
+import lombok.*;
+
+import java.util.List;
+
+/** Сторінка каталогу: треки, курсор наступної сторінки (null — кінець) і розмір усього каталогу. */
+@Data
+@AllArgsConstructor
+public class TrackPage {
+    private List<TrackInfo> tracks;
+    private String nextCursor;
+    private long total;
+}
@@ -0,0 +1,95 @@
+package com.musicplayer.client.service;
+
+import org.junit.jupiter.api.Test;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Різниця порядків, яку надсилає PlaylistSyncQueue: програні над from
+ * переміщення мають дати рівно to, і їх не більше, ніж треків поза
+ * найдовшою підпослідовністю, що вже стоїть правильно.
+ */
+class PlaylistSyncQueueTest {
+
+    @Test
+    void movesTurnARandomPermutationIntoTheTarget() {
+        Random random = new Random(42);
+        for (int round = 0; round < 2000; round++) {
+            List<Long> from = tracks(random.nextInt(40), 0);
+            List<Long> to = new ArrayList<>(from);
+            Collections.shuffle(to, random);
+
+            List<PlaylistSyncQueue.Move> moves = PlaylistSyncQueue.moves(from, to);
+
+            assertEquals(to, PlaylistSyncQueue.apply(from, moves), "from " + from);
+            assertEquals(to.size() - longestIncreasingRun(from, to), moves.size());
+        }
+    }
+
+    @Test
+    void tracksMissingFromTheSourceAreInsertedWhereTheTargetHasThem() {
+        Random random = new Random(7);
+        for (int round = 0; round < 2000; round++) {
+            List<Long> from = tracks(random.nextInt(30), 0);
+            // додані на іншому пристрої: у to є, у from ще немає
+            List<Long> to = new ArrayList<>(from);
+            to.addAll(tracks(1 + random.nextInt(5), 1000));
+            Collections.shuffle(to, random);
+
+            assertEquals(to, PlaylistSyncQueue.apply(from, PlaylistSyncQueue.moves(from, to)), "from " + from);
+        }
+    }
+
+    @Test
+    void tracksMissingFromTheTargetKeepTheRestInOrder() {
+        Random random = new Random(11);
+        for (int round = 0; round < 2000; round++) {
+            List<Long> from = tracks(1 + random.nextInt(30), 0);
+            List<Long> to = new ArrayList<>(from);
+            Collections.shuffle(to, random);
+            // прибрані деінде: лишаються у from, але не заважають решті
+            to.subList(0, random.nextInt(to.size())).clear();
+            Collections.shuffle(to, random);
+
+            List<Long> applied = PlaylistSyncQueue.apply(from, PlaylistSyncQueue.moves(from, to));
+            applied.retainAll(to);
+            assertEquals(to, applied, "from " + from);
+        }
+    }
+
+    @Test
+    void oneTrackMovedIsOneMoveAfterItsNewNeighbour() {
+        List<Long> from = List.of(1L, 2L, 3L, 4L, 5L);
+
+        assertEquals(List.of(new PlaylistSyncQueue.Move(5L, 1L)),
+                PlaylistSyncQueue.moves(from, List.of(1L, 5L, 2L, 3L, 4L)));
+        assertEquals(List.of(new PlaylistSyncQueue.Move(3L, null)),
+                PlaylistSyncQueue.moves(from, List.of(3L, 1L, 2L, 4L, 5L)));
+        assertTrue(PlaylistSyncQueue.moves(from, from).isEmpty());
+    }
+
+    private static List<Long> tracks(int count, long firstId) {
+        List<Long> tracks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            tracks.add(firstId + i);
+        }
+        return tracks;
+    }
+
+    /** Довжина найдовшої підпослідовності to, що у from іде в тому ж порядку; O(n²) навмисно. */
+    private static int longestIncreasingRun(List<Long> from, List<Long> to) {
+        int[] best = new int[to.size()];
+        int longest = 0;
+        for (int i = 0; i < to.size(); i++) {
+            best[i] = 1;
+            for (int j = 0; j < i; j++) {
+                if (from.indexOf(to.get(j)) < from.indexOf(to.get(i))) {
+                    best[i] = Math.max(best[i], best[j] + 1);
+                }
+            }
+            longest = Math.max(longest, best[i]);
+        }
+        return longest;
+    }
+}
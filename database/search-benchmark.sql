@@ -0,0 +1,90 @@
+-- Compares the FULLTEXT search path with the LIKE fallback on a synthetic
+-- 1M-row catalog. Runs in its own schema; needs MySQL 8.0.18+ (EXPLAIN ANALYZE).
+--   mysql -u root -p < database/search-benchmark.sql
+
+CREATE DATABASE IF NOT EXISTS music_player_bench CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci;
+USE music_player_bench;
+
+DROP TABLE IF EXISTS tracks;
+CREATE TABLE tracks LIKE music_player.tracks;
+
+-- 1,000,000 rows: 5,000 artists, 50,000 albums, titles drawn from a small vocabulary
+SET SESSION cte_max_recursion_depth = 1000000;
+ALTER TABLE tracks DROP INDEX idx_search;
+INSERT INTO tracks (title, artist, album, storage_path, duration_ms, size_bytes, status, play_count)
+WITH RECURSIVE seq (n) AS (SELECT 1 UNION ALL SELECT n + 1 FROM seq WHERE n < 1000000)
+SELECT CONCAT(ELT(1 + n % 12, 'Love', 'Night', 'River', 'Summer', 'Dream', 'Fire',
+                  'Rain', 'Heart', 'City', 'Light', 'Storm', 'Road'), ' ',
+              ELT(1 + (n DIV 12) % 10, 'Song', 'Blues', 'Waltz', 'Theme', 'Ballad',
+                  'Anthem', 'Lullaby', 'Serenade', 'March', 'Hymn'), ' ', n),
+       CONCAT('Artist ', n % 5000),
+       CONCAT('Album ', n % 50000),
+       CONCAT(LPAD(HEX(n), 64, '0'), '.mp3'),
+       180000 + n % 120000,
+       4000000 + n % 4000000,
+       'READY',
+       n % 1000
+FROM seq;
+ALTER TABLE tracks ADD FULLTEXT idx_search (title, artist, album);
+ANALYZE TABLE tracks;
+
+-- 1. Old path: three LIKE predicates, full scan, unranked
+SET @t = NOW(6);
+SELECT COUNT(*) FROM (
+    SELECT id FROM tracks
+    WHERE LOWER(title) LIKE '%storm%' OR LOWER(artist) LIKE '%storm%' OR LOWER(album) LIKE '%storm%'
+    ORDER BY id DESC LIMIT 101
+) page;
+SELECT 'like, first page' AS path, TIMESTAMPDIFF(MICROSECOND, @t, NOW(6)) / 1000 AS ms;
+
+-- 2. Natural-language FULLTEXT, ranked, first page
+SET @t = NOW(6);
+SELECT COUNT(*) FROM (
+    SELECT id, MATCH(title, artist, album) AGAINST ('storm hymn' IN NATURAL LANGUAGE MODE) AS score
+    FROM tracks
+    WHERE MATCH(title, artist, album) AGAINST ('storm hymn' IN NATURAL LANGUAGE MODE)
+    ORDER BY score DESC, id DESC LIMIT 101
+) page;
+SELECT 'fulltext natural, first page' AS path, TIMESTAMPDIFF(MICROSECOND, @t, NOW(6)) / 1000 AS ms;
+
+-- 3. Boolean FULLTEXT
+SET @t = NOW(6);
+SELECT COUNT(*) FROM (
+    SELECT id, MATCH(title, artist, album) AGAINST ('+storm +hymn' IN BOOLEAN MODE) AS score
+    FROM tracks
+    WHERE MATCH(title, artist, album) AGAINST ('+storm +hymn' IN BOOLEAN MODE)
+    ORDER BY score DESC, id DESC LIMIT 101
+) page;
+SELECT 'fulltext boolean, first page' AS path, TIMESTAMPDIFF(MICROSECOND, @t, NOW(6)) / 1000 AS ms;
+
+-- 4. Keyset continuation: the page after the 100th row
+SELECT MATCH(title, artist, album) AGAINST ('storm hymn' IN NATURAL LANGUAGE MODE) AS score, id
+INTO @score, @id
+FROM tracks
+WHERE MATCH(title, artist, album) AGAINST ('storm hymn' IN NATURAL LANGUAGE MODE)
+ORDER BY score DESC, id DESC LIMIT 99, 1;
+
+SET @t = NOW(6);
+SELECT COUNT(*) FROM (
+    SELECT id, MATCH(title, artist, album) AGAINST ('storm hymn' IN NATURAL LANGUAGE MODE) AS score
+    FROM tracks
+    WHERE MATCH(title, artist, album) AGAINST ('storm hymn' IN NATURAL LANGUAGE MODE)
+      AND (MATCH(title, artist, album) AGAINST ('storm hymn' IN NATURAL LANGUAGE MODE) < @score
+           OR (MATCH(title, artist, album) AGAINST ('storm hymn' IN NATURAL LANGUAGE MODE) = @score AND id < @id))
+    ORDER BY score DESC, id DESC LIMIT 101
+) page;
+SELECT 'fulltext natural, second page' AS path, TIMESTAMPDIFF(MICROSECOND, @t, NOW(6)) / 1000 AS ms;
+
+-- Plans
+EXPLAIN ANALYZE
+SELECT id FROM tracks
+WHERE LOWER(title) LIKE '%storm%' OR LOWER(artist) LIKE '%storm%' OR LOWER(album) LIKE '%storm%'
+ORDER BY id DESC LIMIT 101;
+
+EXPLAIN ANALYZE
+SELECT id, MATCH(title, artist, album) AGAINST ('storm hymn' IN NATURAL LANGUAGE MODE) AS score
+FROM tracks
+WHERE MATCH(title, artist, album) AGAINST ('storm hymn' IN NATURAL LANGUAGE MODE)
+ORDER BY score DESC, id DESC LIMIT 101;
+
+-- DROP DATABASE music_player_bench;
@@ -20,9 +20,17 @@ CREATE TABLE tracks (
     storage_path VARCHAR(500) NOT NULL,
     duration_ms BIGINT,
     size_bytes BIGINT,
-    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    bitrate INT,
+    sample_rate INT,
+    status VARCHAR(16) DEFAULT 'PENDING',
+    play_count BIGINT NOT NULL DEFAULT 0,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
     INDEX idx_title (title),
+    INDEX idx_play_count (play_count),
     INDEX idx_artist (artist),
+    INDEX idx_storage_path_title (storage_path, title),
+    INDEX idx_status (status),
+    INDEX idx_created_at (created_at),
     FULLTEXT idx_search (title, artist, album)
 ) ENGINE=InnoDB;
 
@@ -31,6 +39,7 @@ CREATE TABLE playlists (
     name VARCHAR(255) NOT NULL,
     user_owner_id BIGINT NOT NULL,
     is_public BOOLEAN DEFAULT FALSE,
+    version BIGINT NOT NULL DEFAULT 0,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     FOREIGN KEY (user_owner_id) REFERENCES users(id) ON DELETE CASCADE,
     INDEX idx_user_owner (user_owner_id)
@@ -49,6 +58,18 @@ CREATE TABLE playlist_items (
     INDEX idx_position (playlist_id, position)
 ) ENGINE=InnoDB;
 
+CREATE TABLE playlist_changes (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    playlist_id BIGINT NOT NULL,
+    version BIGINT NOT NULL,
+    op VARCHAR(16) NOT NULL,
+    track_id BIGINT,
+    after_track_id BIGINT,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    FOREIGN KEY (playlist_id) REFERENCES playlists(id) ON DELETE CASCADE,
+    INDEX idx_playlist_version (playlist_id, version)
+) ENGINE=InnoDB;
+
 
 -- Insert default admin user (password: admin123)
 INSERT INTO users (username, password_hash, email, role) VALUES 